@@ -183,10 +183,12 @@ public class TString {
 	private static Pattern getCachedPattern(String regex, Integer flags) {
 		Pattern pattern = null;
 		flags = flags == null ? 0 : flags;
-		pattern = REGEX_PATTERN.get(regex.hashCode());
+		//正则标记不同时需要不同的 Pattern
+		int key = regex.hashCode() * 31 + flags;
+		pattern = REGEX_PATTERN.get(key);
 		if (pattern==null) {
 			pattern = Pattern.compile(regex, flags);
-			REGEX_PATTERN.put(regex.hashCode(), pattern);
+			REGEX_PATTERN.put(key, pattern);
 		}
 		return pattern;
 	}
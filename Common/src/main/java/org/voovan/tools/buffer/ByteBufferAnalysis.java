@@ -22,6 +22,9 @@ public class ByteBufferAnalysis {
     public final static LongAdder MALLOC_SIZE       = new LongAdder();
     public final static LongAdder MALLOC_COUNT      = new LongAdder();
     public final static LongAdder BYTE_BUFFER_COUNT = new LongAdder();
+    public final static LongAdder THREAD_CACHE_HIT  = new LongAdder();
+    public final static LongAdder DEPOT_HIT         = new LongAdder();
+    public final static LongAdder POOL_MISS         = new LongAdder();
 
     public final static int BYTE_BUFFER_ANALYSIS  = TEnv.getSystemProperty("ByteBufferAnalysis", 0);
 
@@ -48,10 +51,39 @@ public class ByteBufferAnalysis {
         }
     }
 
+    public static void threadCacheHit() {
+        if(BYTE_BUFFER_ANALYSIS >= 0) {
+            THREAD_CACHE_HIT.increment();
+        }
+    }
+
+    public static void depotHit() {
+        if(BYTE_BUFFER_ANALYSIS >= 0) {
+            DEPOT_HIT.increment();
+        }
+    }
+
+    public static void poolMiss() {
+        if(BYTE_BUFFER_ANALYSIS >= 0) {
+            POOL_MISS.increment();
+        }
+    }
+
     public static Map<String, Long> getByteBufferAnalysis() {
+        long threadCacheHit = THREAD_CACHE_HIT.longValue();
+        long depotHit = DEPOT_HIT.longValue();
+        long poolMiss = POOL_MISS.longValue();
+        long allocateCount = threadCacheHit + depotHit + poolMiss;
+
         return TObject.asMap("Time", TDateTime.now(), "MallocSize", TString.formatBytes(MALLOC_SIZE.longValue()),
                 "MallocCount", MALLOC_COUNT.longValue(),
-                "ByteBufferCount", BYTE_BUFFER_COUNT.longValue());
+                "ByteBufferCount", BYTE_BUFFER_COUNT.longValue(),
+                "AllocateCount", allocateCount,
+                "ThreadCacheHit", threadCacheHit,
+                "DepotHit", depotHit,
+                "PoolMiss", poolMiss,
+                "HitRate", allocateCount == 0 ? "0%" : (threadCacheHit + depotHit) * 100 / allocateCount + "%",
+                "DepotSize", TString.formatBytes(ByteBufferPool.getDepotSize()));
     }
 
     static {
@@ -0,0 +1,156 @@
+package org.voovan.tools.buffer;
+
+import org.voovan.tools.TEnv;
+import org.voovan.tools.collection.RingBuffer;
+import org.voovan.tools.collection.ThreadObjectPool;
+import org.voovan.tools.log.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 按容量分级的非堆内存池
+ *      容量按 2 的幂从 512B 到 4MB 分级, 申请的容量向上取整到所在级别
+ *      每个线程每个级别有一个本地缓存, 本地缓存满了以后放入全局共享的仓库, 供其他线程复用
+ *      超过最大级别的内存不进行池化
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class ByteBufferPool {
+	public final static int MIN_CLASS_SIZE      = 512;
+	public final static int MAX_CLASS_SIZE      = 4 * 1024 * 1024;
+	public final static int THREAD_CACHE_BYTES  = TEnv.getSystemProperty("ByteBufferThreadCacheBytes", 1024 * 1024);
+	public final static int DEPOT_BYTES         = TEnv.getSystemProperty("ByteBufferDepotBytes", 16 * 1024 * 1024);
+
+	private final static int MIN_CLASS_SHIFT = Integer.numberOfTrailingZeros(MIN_CLASS_SIZE);
+	private final static int CLASS_COUNT = Integer.numberOfTrailingZeros(MAX_CLASS_SIZE) - MIN_CLASS_SHIFT + 1;
+
+	private final static ThreadObjectPool<ByteBuffer>[] THREAD_CACHES = new ThreadObjectPool[CLASS_COUNT];
+	private final static ArrayBlockingQueue<ByteBuffer>[] DEPOTS = new ArrayBlockingQueue[CLASS_COUNT];
+
+	static {
+		for(int i=0; i<CLASS_COUNT; i++) {
+			int classSize = classSize(i);
+			THREAD_CACHES[i] = new ThreadObjectPool<ByteBuffer>(cacheCount(THREAD_CACHE_BYTES, classSize, TByteBuffer.THREAD_BUFFER_POOL_SIZE));
+			DEPOTS[i] = new ArrayBlockingQueue<ByteBuffer>(cacheCount(DEPOT_BYTES, classSize, 4096));
+		}
+	}
+
+	private static int cacheCount(int totalBytes, int classSize, int maxCount) {
+		return Math.max(1, Math.min(totalBytes / classSize, maxCount));
+	}
+
+	/**
+	 * 获取容量所在的级别
+	 * @param capacity 容量
+	 * @return 级别, -1: 超过最大级别
+	 */
+	public static int sizeClass(int capacity) {
+		if(capacity > MAX_CLASS_SIZE) {
+			return -1;
+		}
+
+		if(capacity <= MIN_CLASS_SIZE) {
+			return 0;
+		}
+
+		return 32 - Integer.numberOfLeadingZeros(capacity - 1) - MIN_CLASS_SHIFT;
+	}
+
+	/**
+	 * 获取级别的容量
+	 * @param sizeClass 级别
+	 * @return 容量
+	 */
+	public static int classSize(int sizeClass) {
+		return MIN_CLASS_SIZE << sizeClass;
+	}
+
+	/**
+	 * 分配 ByteBuffer
+	 *      依次从线程本地缓存, 全局仓库中获取, 都没有时分配新的内存
+	 * @param capacity 容量
+	 * @return ByteBuffer 对象, 容量为所在级别的容量, 超过最大级别时为申请的容量
+	 */
+	public static ByteBuffer allocate(int capacity) {
+		int sizeClass = sizeClass(capacity);
+		if(sizeClass < 0) {
+			TByteBuffer.BYTE_BUFFER_ANALYSIS.poolMiss();
+			return TByteBuffer.allocateManualReleaseBuffer(capacity);
+		}
+
+		ByteBuffer byteBuffer = THREAD_CACHES[sizeClass].getPool().pop();
+		if(byteBuffer != null) {
+			TByteBuffer.BYTE_BUFFER_ANALYSIS.threadCacheHit();
+			getDeallocator(byteBuffer).markAllocated();
+			return byteBuffer;
+		}
+
+		byteBuffer = DEPOTS[sizeClass].poll();
+		if(byteBuffer != null) {
+			TByteBuffer.BYTE_BUFFER_ANALYSIS.depotHit();
+			getDeallocator(byteBuffer).markAllocated();
+			return byteBuffer;
+		}
+
+		TByteBuffer.BYTE_BUFFER_ANALYSIS.poolMiss();
+		return TByteBuffer.allocateManualReleaseBuffer(classSize(sizeClass));
+	}
+
+	/**
+	 * 回收 ByteBuffer
+	 *      依次放入线程本地缓存, 全局仓库, 都满了或者实际分配的容量不是级别容量时不回收
+	 *      重复回收同一个 ByteBuffer 时拒绝回收, 避免同一块内存被两个使用方同时持有
+	 * @param byteBuffer ByteBuffer 对象
+	 * @param deallocator ByteBuffer 的 Deallocator 对象
+	 * @return true: 已回收或者此前已经回收过, false: 未回收, 需要调用方释放
+	 */
+	public static boolean recycle(ByteBuffer byteBuffer, Deallocator deallocator) {
+		int allocatedCapacity = deallocator.getCapacity();
+		int sizeClass = sizeClass(allocatedCapacity);
+		if(sizeClass < 0 || classSize(sizeClass) != allocatedCapacity) {
+			return false;
+		}
+
+		if(!deallocator.markRecycled()) {
+			Logger.warn("ByteBuffer is already recycled, ignore it.", new Exception());
+			return true;
+		}
+
+		//恢复为实际分配的容量
+		TByteBuffer.UNSAFE.putInt(byteBuffer, TByteBuffer.capacityFieldOffset, allocatedCapacity);
+		byteBuffer.clear();
+
+		RingBuffer<ByteBuffer> threadCache = THREAD_CACHES[sizeClass].getPool();
+		if(threadCache.push(byteBuffer) || DEPOTS[sizeClass].offer(byteBuffer)) {
+			return true;
+		}
+
+		//未能放入内存池, 由调用方释放
+		deallocator.markAllocated();
+		return false;
+	}
+
+	private static Deallocator getDeallocator(ByteBuffer byteBuffer) {
+		try {
+			return (Deallocator) TByteBuffer.getAtt(byteBuffer);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * 获取全局仓库中缓存的内存大小
+	 * @return 缓存的内存大小
+	 */
+	public static long getDepotSize() {
+		long depotSize = 0;
+		for(int i=0; i<CLASS_COUNT; i++) {
+			depotSize += (long) DEPOTS[i].size() * classSize(i);
+		}
+		return depotSize;
+	}
+}
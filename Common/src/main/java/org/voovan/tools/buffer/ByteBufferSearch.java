@@ -0,0 +1,241 @@
+package org.voovan.tools.buffer;
+
+import org.voovan.tools.TUnsafe;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * ByteBuffer 分隔符查找
+ *      每次读取 8 个字节, 使用 SWAR (SIMD Within A Register) 的位运算同时比较 8 个字节
+ *      堆外内存和有底层数组的堆内存通过 Unsafe 直接读取, 其他 ByteBuffer 逐字节读取
+ *      所有位置参数和返回值都是缓冲区中的绝对位置, 不会修改缓冲区的 position 和 limit
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class ByteBufferSearch {
+	private final static long BYTE_ARRAY_OFFSET = TUnsafe.getUnsafe().arrayBaseOffset(byte[].class);
+	private final static boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+	private final static long LOW_BITS  = 0x7F7F7F7F7F7F7F7FL;
+	private final static long ONE_BYTES = 0x0101010101010101L;
+
+	public final static byte CR = '\r';
+	public final static byte LF = '\n';
+
+	private ByteBufferSearch() {
+	}
+
+	/**
+	 * 将字节复制到 long 的每个字节中
+	 * @param value 字节
+	 * @return 每个字节都是 value 的 long
+	 */
+	private static long pattern(byte value) {
+		return ONE_BYTES * (value & 0xFF);
+	}
+
+	/**
+	 * 查找 long 中和 pattern 相等的第一个字节 (内存顺序)
+	 * @param word 读取的 8 个字节
+	 * @param pattern 每个字节都是目标字节的 long
+	 * @return 字节在 8 个字节中的偏移, 8: 未找到
+	 */
+	private static int firstMatch(long word, long pattern) {
+		long input = word ^ pattern;
+		//相等的字节为 0, 将为 0 的字节的最高位置 1, 其他位都置 0, 不会有借位导致的误判
+		long tmp = (input & LOW_BITS) + LOW_BITS;
+		tmp = ~(tmp | input | LOW_BITS);
+		return LITTLE_ENDIAN ? Long.numberOfTrailingZeros(tmp) >>> 3 : Long.numberOfLeadingZeros(tmp) >>> 3;
+	}
+
+	/**
+	 * 获取读取 ByteBuffer 内容使用的基础对象, 堆外内存为 null
+	 * @param byteBuffer ByteBuffer 对象
+	 * @return 基础对象
+	 */
+	private static byte[] base(ByteBuffer byteBuffer) {
+		return byteBuffer.isDirect() ? null : byteBuffer.array();
+	}
+
+	/**
+	 * 获取读取 ByteBuffer 内容使用的起始地址
+	 * @param byteBuffer ByteBuffer 对象
+	 * @return 起始地址, 堆外内存为绝对地址, 堆内存为数组中的偏移
+	 */
+	private static long baseAddress(ByteBuffer byteBuffer) {
+		if(byteBuffer.isDirect()) {
+			return TUnsafe.getUnsafe().getLong(byteBuffer, TByteBuffer.addressFieldOffset);
+		} else {
+			return BYTE_ARRAY_OFFSET + byteBuffer.arrayOffset();
+		}
+	}
+
+	/**
+	 * 是否可以使用 Unsafe 按 8 个字节读取
+	 * @param byteBuffer ByteBuffer 对象
+	 * @return true: 可以, false: 不可以
+	 */
+	private static boolean isSwarSupported(ByteBuffer byteBuffer) {
+		return byteBuffer.isDirect() || byteBuffer.hasArray();
+	}
+
+	/**
+	 * 查找单个字节
+	 * @param byteBuffer ByteBuffer 对象
+	 * @param from 起始位置(包含)
+	 * @param to 结束位置(不包含)
+	 * @param value 查找的字节
+	 * @return 第一个匹配字节的位置, -1: 未找到
+	 */
+	public static int indexOf(ByteBuffer byteBuffer, int from, int to, byte value) {
+		if(from >= to) {
+			return -1;
+		}
+
+		int i = from;
+		if(isSwarSupported(byteBuffer)) {
+			byte[] base = base(byteBuffer);
+			long address = baseAddress(byteBuffer);
+			long pattern = pattern(value);
+
+			for (; i + 8 <= to; i += 8) {
+				int match = firstMatch(TUnsafe.getUnsafe().getLong(base, address + i), pattern);
+				if (match != 8) {
+					return i + match;
+				}
+			}
+		}
+
+		for (; i < to; i++) {
+			if (byteBuffer.get(i) == value) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * 查找单个字节, 在 position 和 limit 之间查找
+	 * @param byteBuffer ByteBuffer 对象
+	 * @param value 查找的字节
+	 * @return 第一个匹配字节的位置, -1: 未找到
+	 */
+	public static int indexOf(ByteBuffer byteBuffer, byte value) {
+		return indexOf(byteBuffer, byteBuffer.position(), byteBuffer.limit(), value);
+	}
+
+	/**
+	 * 查找字节数组
+	 *      使用 SWAR 查找第一个字节, 然后比较剩余的字节
+	 * @param byteBuffer ByteBuffer 对象
+	 * @param from 起始位置(包含)
+	 * @param to 结束位置(不包含)
+	 * @param mark 查找的字节数组
+	 * @return 第一个匹配的位置, -1: 未找到
+	 */
+	public static int indexOf(ByteBuffer byteBuffer, int from, int to, byte[] mark) {
+		if(mark.length == 0) {
+			return -1;
+		}
+
+		if(mark.length == 1) {
+			return indexOf(byteBuffer, from, to, mark[0]);
+		}
+
+		int last = to - mark.length;
+		while(from <= last) {
+			int index = indexOf(byteBuffer, from, last + 1, mark[0]);
+			if(index < 0) {
+				return -1;
+			}
+
+			if(equals(byteBuffer, index + 1, mark, 1)) {
+				return index;
+			}
+
+			from = index + 1;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * 查找字节数组, 在 position 和 limit 之间查找
+	 * @param byteBuffer ByteBuffer 对象
+	 * @param mark 查找的字节数组
+	 * @return 第一个匹配的位置, -1: 未找到
+	 */
+	public static int indexOf(ByteBuffer byteBuffer, byte[] mark) {
+		return indexOf(byteBuffer, byteBuffer.position(), byteBuffer.limit(), mark);
+	}
+
+	/**
+	 * 查找 CRLF
+	 * @param byteBuffer ByteBuffer 对象
+	 * @param from 起始位置(包含)
+	 * @param to 结束位置(不包含)
+	 * @return CR 的位置, -1: 未找到
+	 */
+	public static int indexOfCRLF(ByteBuffer byteBuffer, int from, int to) {
+		while(from < to - 1) {
+			int index = indexOf(byteBuffer, from, to - 1, CR);
+			if(index < 0) {
+				return -1;
+			}
+
+			if(byteBuffer.get(index + 1) == LF) {
+				return index;
+			}
+
+			from = index + 1;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * 查找 CRLFCRLF, 通常用于查找 HTTP 头的结束位置
+	 * @param byteBuffer ByteBuffer 对象
+	 * @param from 起始位置(包含)
+	 * @param to 结束位置(不包含)
+	 * @return 第一个 CR 的位置, -1: 未找到
+	 */
+	public static int indexOfDoubleCRLF(ByteBuffer byteBuffer, int from, int to) {
+		while(from < to - 3) {
+			int index = indexOfCRLF(byteBuffer, from, to - 2);
+			if(index < 0) {
+				return -1;
+			}
+
+			if(byteBuffer.get(index + 2) == CR && byteBuffer.get(index + 3) == LF) {
+				return index;
+			}
+
+			from = index + 2;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * 比较缓冲区中的数据和字节数组
+	 * @param byteBuffer ByteBuffer 对象
+	 * @param index 缓冲区中的起始位置
+	 * @param mark 字节数组
+	 * @param markOffset 字节数组中的起始位置
+	 * @return true: 相等, false: 不相等
+	 */
+	private static boolean equals(ByteBuffer byteBuffer, int index, byte[] mark, int markOffset) {
+		for(int i = markOffset; i < mark.length; i++, index++) {
+			if(byteBuffer.get(index) != mark[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
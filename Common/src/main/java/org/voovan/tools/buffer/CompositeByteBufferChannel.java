@@ -0,0 +1,711 @@
+package org.voovan.tools.buffer;
+
+import org.voovan.tools.TEnv;
+import org.voovan.tools.TFile;
+import org.voovan.tools.TProperties;
+import org.voovan.tools.exception.LargerThanMaxSizeException;
+import org.voovan.tools.exception.MemoryReleasedException;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 分段 ByteBuffer 通道
+ *      由固定大小的分段组成的链表, 分段从内存池中获取
+ *      写入时在尾部追加分段, 读取时释放头部的分段, 不会移动已有的数据
+ *      适用于大量追加写入的场景, 例如: 大文件上传, 流水线请求
+ *      和 ByteBufferChannel 不同, 不提供连续内存的 getByteBuffer() 方法
+ *      默认: 非线程安全模式
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class CompositeByteBufferChannel {
+	public final static int SEGMENT_SIZE = TEnv.getSystemProperty("CompositeSegmentSize", 16 * 1024);
+	private static int BYTEBUFFERCHANNEL_MAX_SIZE = TProperties.getInt("framework", "ByteBufferChannelMaxSize", 1024*1024*10);
+
+	private ArrayDeque<ByteBuffer> segments;
+	private int segmentSize;
+	private volatile int size;
+	private int maxSize = BYTEBUFFERCHANNEL_MAX_SIZE;
+	private ReentrantLock lock;
+	private boolean isThreadSafe = false;
+
+	/**
+	 * 构造函数
+	 */
+	public CompositeByteBufferChannel() {
+		this(SEGMENT_SIZE);
+	}
+
+	/**
+	 * 构造函数
+	 * @param segmentSize 分段的大小
+	 */
+	public CompositeByteBufferChannel(int segmentSize) {
+		this.segmentSize = segmentSize;
+		this.segments = new ArrayDeque<ByteBuffer>();
+		this.lock = new ReentrantLock(true);
+		this.size = 0;
+	}
+
+	/**
+	 * 构造函数
+	 * @param segmentSize 分段的大小
+	 * @param maxSize 通道的最大容量
+	 */
+	public CompositeByteBufferChannel(int segmentSize, int maxSize) {
+		this(segmentSize);
+		this.maxSize = maxSize;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+
+	/**
+	 * 是否线程安全
+	 * @return true: 启用线程安全, false: 不启用线程安全
+	 */
+	public boolean isThreadSafe() {
+		return isThreadSafe;
+	}
+
+	/**
+	 * 设置线程安全
+	 * @param threadSafe true: 启用线程安全, false: 不启用线程安全
+	 */
+	public void setThreadSafe(boolean threadSafe) {
+		isThreadSafe = threadSafe;
+	}
+
+	public void lock(){
+		if(isThreadSafe) {
+			lock.lock();
+		}
+	}
+
+	public void unlock(){
+		if(isThreadSafe) {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 缓冲通道是否已满
+	 * @return true: 通道已满, false: 通道未满
+	 */
+	public boolean isFull(){
+		return maxSize <= size;
+	}
+
+	/**
+	 * 缓冲通道是否空
+	 * @return true: 通道空, false: 通道有数据
+	 */
+	public boolean isEmpty(){
+		return size == 0;
+	}
+
+	/**
+	 * 是否已经释放
+	 * @return true 已释放, false: 未释放
+	 */
+	public boolean isReleased(){
+		return segments == null;
+	}
+
+	/**
+	 * 测试是否被释放
+	 */
+	private void checkRelease(){
+		if(isReleased()){
+			throw new MemoryReleasedException("CompositeByteBufferChannel is released.");
+		}
+	}
+
+	/**
+	 * 当前数据大小
+	 * @return 数据大小
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * 当前分段的数量
+	 * @return 分段的数量
+	 */
+	public int segmentCount(){
+		lock();
+		try {
+			return segments == null ? 0 : segments.size();
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * 立刻释放内存
+	 */
+	public void release(){
+		lock();
+		try {
+			if(segments != null) {
+				for (ByteBuffer segment : segments) {
+					TByteBuffer.release(segment);
+				}
+				segments = null;
+				size = -1;
+			}
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * 清空通道
+	 */
+	public void clear() {
+		lock();
+		try {
+			if(segments != null) {
+				ByteBuffer segment;
+				while ((segment = segments.pollFirst()) != null) {
+					TByteBuffer.release(segment);
+				}
+				size = 0;
+			}
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * 获取可以写入的尾部分段, 尾部分段已满时追加新的分段
+	 * @return 尾部分段
+	 */
+	private ByteBuffer writableSegment() {
+		ByteBuffer segment = segments.peekLast();
+		if(segment == null || segment.limit() == segment.capacity()) {
+			segment = TByteBuffer.allocateDirect(segmentSize);
+			segment.limit(0);
+			segments.offerLast(segment);
+		}
+		return segment;
+	}
+
+	private void checkMaxSize(int writeSize) {
+		if(size + writeSize > maxSize) {
+			throw new LargerThanMaxSizeException("Max size: " + maxSize + ", expect size: " + (size + writeSize));
+		}
+	}
+
+	/**
+	 * 缓冲区尾部写入
+	 * @param src 需要写入的缓冲区 ByteBuffer 对象
+	 * @return 写入的数据大小
+	 */
+	public int writeEnd(ByteBuffer src) {
+		lock();
+		try {
+			checkRelease();
+
+			int writeSize = src.remaining();
+			checkMaxSize(writeSize);
+
+			int srcLimit = src.limit();
+			try {
+				while (src.hasRemaining()) {
+					ByteBuffer segment = writableSegment();
+					int position = segment.position();
+					int length = Math.min(src.remaining(), segment.capacity() - segment.limit());
+
+					segment.position(segment.limit());
+					segment.limit(segment.capacity());
+					src.limit(src.position() + length);
+					segment.put(src);
+					src.limit(srcLimit);
+
+					segment.limit(segment.position());
+					segment.position(position);
+				}
+			} finally {
+				src.limit(srcLimit);
+			}
+
+			size = size + writeSize;
+			return writeSize;
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * 缓冲区尾部写入
+	 * @param srcBytes 源字节数组
+	 * @param offset 字节数组偏移
+	 * @param length 写入数据长度
+	 * @return 写入的数据大小
+	 */
+	public int writeEnd(byte[] srcBytes, int offset, int length) {
+		lock();
+		try {
+			checkRelease();
+			checkMaxSize(length);
+
+			int remain = length;
+			while (remain > 0) {
+				ByteBuffer segment = writableSegment();
+				int position = segment.position();
+				int writeSize = Math.min(remain, segment.capacity() - segment.limit());
+
+				segment.position(segment.limit());
+				segment.limit(segment.capacity());
+				segment.put(srcBytes, offset, writeSize);
+
+				segment.limit(segment.position());
+				segment.position(position);
+
+				offset = offset + writeSize;
+				remain = remain - writeSize;
+			}
+
+			size = size + length;
+			return length;
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * 获取某个位置的 byte 数据
+	 *     该操作不会导致通道内的数据发生变化
+	 * @param position 位置
+	 * @return byte 数据
+	 */
+	public byte get(int position) throws IndexOutOfBoundsException {
+		lock();
+		try {
+			checkRelease();
+
+			if(position < 0 || position >= size) {
+				throw new IndexOutOfBoundsException();
+			}
+
+			for (ByteBuffer segment : segments) {
+				int remaining = segment.remaining();
+				if (position < remaining) {
+					return segment.get(segment.position() + position);
+				}
+				position = position - remaining;
+			}
+
+			throw new IndexOutOfBoundsException();
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * 获取某个位置的 byte 数据数组
+	 *     该操作不会导致通道内的数据发生变化
+	 * @param dst     目标数组
+	 * @param position  位置
+	 * @param length  长度
+	 * @return 获取数据的长度
+	 */
+	public int get(byte[] dst, int position, int length) throws IndexOutOfBoundsException {
+		lock();
+		try {
+			checkRelease();
+
+			if(position < 0 || position > size) {
+				throw new IndexOutOfBoundsException();
+			}
+
+			int dataSize = Math.min(length, size - position);
+			int offset = 0;
+			for (ByteBuffer segment : segments) {
+				if(offset == dataSize) {
+					break;
+				}
+
+				int remaining = segment.remaining();
+				if (position >= remaining) {
+					position = position - remaining;
+					continue;
+				}
+
+				int copySize = Math.min(remaining - position, dataSize - offset);
+				ByteBuffer view = segment.duplicate();
+				view.position(segment.position() + position);
+				view.get(dst, offset, copySize);
+				offset = offset + copySize;
+				position = 0;
+			}
+
+			return dataSize;
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * 获取某个偏移量位置的 byte 数据数组
+	 *     该操作不会导致通道内的数据发生变化
+	 * @param dst     目标数组
+	 * @return 获取数据的长度
+	 */
+	public int get(byte[] dst){
+		return get(dst, 0, dst.length);
+	}
+
+	/**
+	 * 获取缓冲区有效字节数组的一个拷贝
+	 * @return 缓冲区有效字节数组
+	 */
+	public byte[] array(){
+		lock();
+		try {
+			checkRelease();
+
+			byte[] temp = new byte[size];
+			get(temp, 0, size);
+			return temp;
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * 获取头部的一段数据
+	 *     数据在头部分段中时返回共享内存的视图, 跨越分段时返回复制的数据
+	 *     该操作不会导致通道内的数据发生变化
+	 * @param size 数据大小
+	 * @return ByteBuffer 对象
+	 */
+	public ByteBuffer slice(int size){
+		lock();
+		try {
+			checkRelease();
+
+			if(size > this.size) {
+				throw new IndexOutOfBoundsException();
+			}
+
+			ByteBuffer segment = segments.peekFirst();
+			if(segment != null && segment.remaining() >= size) {
+				ByteBuffer view = segment.duplicate();
+				view.limit(view.position() + size);
+				return view.slice();
+			}
+
+			byte[] temp = new byte[size];
+			get(temp, 0, size);
+			return ByteBuffer.wrap(temp);
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * 从缓冲区头部读取数据
+	 * @param dst 需要读入数据的缓冲区ByteBuffer 对象
+	 * @return 读出的数据大小
+	 */
+	public int readHead(ByteBuffer dst) {
+		lock();
+		try {
+			checkRelease();
+
+			int readSize = Math.min(dst.remaining(), size);
+			int remain = readSize;
+			while (remain > 0) {
+				ByteBuffer segment = segments.peekFirst();
+				int copySize = Math.min(remain, segment.remaining());
+
+				int limit = segment.limit();
+				segment.limit(segment.position() + copySize);
+				dst.put(segment);
+				segment.limit(limit);
+
+				if(!segment.hasRemaining()) {
+					TByteBuffer.release(segments.pollFirst());
+				}
+
+				remain = remain - copySize;
+			}
+
+			size = size - readSize;
+
+			dst.flip();
+			return readSize;
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * 收缩通道内的数据
+	 *
+	 * @param shrinkSize 收缩的偏移量: 大于0: 从头部丢弃数据, 小于0: 从尾部丢弃数据
+	 * @return true: 成功, false: 失败
+	 */
+	public boolean shrink(int shrinkSize){
+		lock();
+		try {
+			checkRelease();
+
+			int remain = Math.min(Math.abs(shrinkSize), size);
+			size = size - remain;
+			while (remain > 0) {
+				ByteBuffer segment = shrinkSize > 0 ? segments.peekFirst() : segments.peekLast();
+				int dropSize = Math.min(remain, segment.remaining());
+
+				if(shrinkSize > 0) {
+					segment.position(segment.position() + dropSize);
+				} else {
+					segment.limit(segment.limit() - dropSize);
+				}
+
+				if(!segment.hasRemaining()) {
+					TByteBuffer.release(shrinkSize > 0 ? segments.pollFirst() : segments.pollLast());
+				}
+
+				remain = remain - dropSize;
+			}
+
+			return true;
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * 查找特定 byte 标识的位置
+	 *     使用 KMP 算法跨分段查找, 不回溯已扫描的数据
+	 * @param mark byte 标识数组
+	 * @return 第一个字节的索引位置, -1: 未找到
+	 */
+	public int indexOf(byte[] mark){
+		lock();
+		try {
+			checkRelease();
+
+			if(size == 0 || mark.length == 0 || mark.length > size) {
+				return -1;
+			}
+
+			int[] next = new int[mark.length];
+			for(int i=1, j=0; i<mark.length; i++) {
+				while(j > 0 && mark[i] != mark[j]) {
+					j = next[j - 1];
+				}
+				if(mark[i] == mark[j]) {
+					j++;
+				}
+				next[i] = j;
+			}
+
+			int index = 0;
+			int matched = 0;
+			for (ByteBuffer segment : segments) {
+				for (int i = segment.position(); i < segment.limit(); i++) {
+					byte value = segment.get(i);
+					while (matched > 0 && value != mark[matched]) {
+						matched = next[matched - 1];
+					}
+					if (value == mark[matched]) {
+						matched++;
+					}
+					if (matched == mark.length) {
+						return index - mark.length + 1;
+					}
+					index++;
+				}
+			}
+
+			return -1;
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * 从头部开始判断是否以特定数据开始
+	 * @param mark 期望的数据
+	 * @return true: 是, false: 否
+	 */
+	public boolean startWith(byte[] mark){
+		if(size() < mark.length){
+			return false;
+		}
+
+		byte[] head = new byte[mark.length];
+		get(head, 0, mark.length);
+
+		for(int i=0; i<mark.length; i++){
+			if(mark[i] != head[i]){
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * 读取一行
+	 * @return 字符串
+	 */
+	public String readLine() {
+		lock();
+		try {
+			checkRelease();
+
+			if (size() == 0) {
+				return null;
+			}
+
+			int index = indexOf("\n".getBytes());
+			int length = index >= 0 ? index + 1 : size;
+
+			byte[] line = new byte[length];
+			readHead(ByteBuffer.wrap(line));
+
+			return new String(line, StandardCharsets.UTF_8);
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * 读取一段,使用 byte数组 分割
+	 * 		返回的 ByteBuffer 中不包含分割 byte 数组的内容
+	 * @param splitByte 分割字节数组
+	 * @return 字节缓冲区
+	 */
+	public ByteBuffer readWithSplit(byte[] splitByte) {
+		lock();
+		try {
+			checkRelease();
+
+			if (size() == 0) {
+				return TByteBuffer.EMPTY_BYTE_BUFFER;
+			}
+
+			int index = indexOf(splitByte);
+
+			if (index == 0) {
+				shrink(splitByte.length);
+				index = indexOf(splitByte);
+			}
+
+			if (index == -1) {
+				index = size();
+			}
+
+			ByteBuffer resultBuffer = ByteBuffer.allocate(index);
+			readHead(resultBuffer);
+
+			//跳过分割符
+			shrink(splitByte.length);
+
+			return resultBuffer;
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * 保存到文件
+	 * @param filePath 文件路径
+	 * @param length 需要保存的长度
+	 * @throws IOException Io 异常
+	 */
+	public void saveToFile(String filePath, long length) throws IOException{
+		checkRelease();
+
+		if(size() == 0){
+			return;
+		}
+
+		TFile.mkdir(filePath);
+
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(filePath, "rwd")) {
+			//追加形式
+			randomAccessFile.seek(randomAccessFile.length());
+
+			lock();
+			try {
+				length = Math.min(length, size);
+				while (length > 0) {
+					ByteBuffer segment = segments.peekFirst();
+					int writeSize = (int) Math.min(length, segment.remaining());
+
+					int limit = segment.limit();
+					segment.limit(segment.position() + writeSize);
+					randomAccessFile.getChannel().write(segment);
+					segment.limit(limit);
+
+					if (!segment.hasRemaining()) {
+						TByteBuffer.release(segments.pollFirst());
+					}
+
+					size = size - writeSize;
+					length = length - writeSize;
+				}
+			} finally {
+				unlock();
+			}
+		}
+	}
+
+	/**
+	 * 获取所有分段的只读视图, 可以用于聚合写
+	 * @return 分段视图数组
+	 */
+	public ByteBuffer[] segments() {
+		lock();
+		try {
+			checkRelease();
+
+			ByteBuffer[] result = new ByteBuffer[segments.size()];
+			Iterator<ByteBuffer> iterator = segments.iterator();
+			for(int i=0; i<result.length; i++) {
+				result[i] = iterator.next().asReadOnlyBuffer();
+			}
+			return result;
+		} finally {
+			unlock();
+		}
+	}
+
+	@Override
+	public String toString(){
+		return "{size="+size+", segments="+segmentCount()+", segmentSize="+segmentSize+", released="+isReleased()+", maxSize=" + maxSize + "}";
+	}
+
+	/**
+	 * 获取内容
+	 * @return 内容字符串
+	 */
+	public String content(){
+		return new String(array());
+	}
+}
@@ -2,6 +2,8 @@ package org.voovan.tools.buffer;
 
 import org.voovan.tools.TUnsafe;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 /**
  * 自动跟踪 GC 销毁的
  *
@@ -11,8 +13,12 @@ import org.voovan.tools.TUnsafe;
  * Licence: Apache v2 License
  */
 public class Deallocator implements Runnable {
+    private final static AtomicIntegerFieldUpdater<Deallocator> RECYCLED_UPDATER = AtomicIntegerFieldUpdater.newUpdater(Deallocator.class, "recycled");
+
     private long address;
     private int capacity;
+    //0: 被使用方持有, 1: 已回收到内存池中
+    private volatile int recycled;
 
     Deallocator(long address, int capacity) {
         this.address = address;
@@ -35,6 +41,25 @@ public class Deallocator implements Runnable {
         this.capacity = capacity;
     }
 
+    /**
+     * 标记为已回收
+     * @return true: 标记成功, false: 已经被回收过
+     */
+    boolean markRecycled() {
+        return RECYCLED_UPDATER.compareAndSet(this, 0, 1);
+    }
+
+    /**
+     * 标记为被使用方持有
+     */
+    void markAllocated() {
+        recycled = 0;
+    }
+
+    public boolean isRecycled() {
+        return recycled == 1;
+    }
+
     public void run() {
 
         if (this.address == 0) {
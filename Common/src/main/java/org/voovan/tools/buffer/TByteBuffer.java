@@ -2,7 +2,6 @@ package org.voovan.tools.buffer;
 
 import org.voovan.Global;
 import org.voovan.tools.*;
-import org.voovan.tools.collection.ThreadObjectPool;
 import org.voovan.tools.log.Logger;
 import org.voovan.tools.reflect.TReflect;
 import sun.misc.Unsafe;
@@ -38,12 +37,11 @@ public class TByteBuffer {
     public final static LongAdder MALLOC_COUNT       = new LongAdder();
     public final static LongAdder BYTE_BUFFER_COUNT  = new LongAdder();
 
-
-    public final static ThreadObjectPool<ByteBuffer> THREAD_BYTE_BUFFER_POOL = new ThreadObjectPool<ByteBuffer>(THREAD_BUFFER_POOL_SIZE, ()->allocateManualReleaseBuffer(DEFAULT_BYTE_BUFFER_SIZE));
-
     static {
-        System.out.println("[BUFFER] ThreadBufferPoolSize: \t" + THREAD_BYTE_BUFFER_POOL.getThreadPoolSize());
+        System.out.println("[BUFFER] ThreadBufferPoolSize: \t" + THREAD_BUFFER_POOL_SIZE);
         System.out.println("[BUFFER] BufferSize: \t\t" + DEFAULT_BYTE_BUFFER_SIZE);
+        System.out.println("[BUFFER] ThreadCacheBytes: \t" + ByteBufferPool.THREAD_CACHE_BYTES);
+        System.out.println("[BUFFER] DepotBytes: \t\t" + ByteBufferPool.DEPOT_BYTES);
     }
 
     public final static ByteBuffer EMPTY_BYTE_BUFFER = ByteBuffer.allocateDirect(0);
@@ -120,35 +118,22 @@ public class TByteBuffer {
 
     /**
      * 根据框架的非堆内存配置, 分配 ByteBuffer
+     *      从按容量分级的内存池中获取
      * @param capacity 容量
      * @return ByteBuffer 对象
      */
     public static ByteBuffer allocateDirect(int capacity) {
-
-        ByteBuffer byteBuffer = null;
-
-        while (byteBuffer == null) {
-            byteBuffer = THREAD_BYTE_BUFFER_POOL.get(() -> allocateManualReleaseBuffer(capacity));
-
-            try {
-                if (capacity <= byteBuffer.capacity()) {
-                    byteBuffer.limit(capacity);
-                } else {
-                    reallocate(byteBuffer, capacity);
-                }
-
-                byteBuffer.position(0);
-                byteBuffer.limit(capacity);
-            } catch (Exception e) {
-                byteBuffer = null;
-                if(byteBuffer!=null) {
-                    TByteBuffer.release(byteBuffer);
-                }
-            }
+        ByteBuffer byteBuffer = ByteBufferPool.allocate(capacity);
+        if(byteBuffer == null) {
+            throw new OutOfMemoryError("Allocate direct ByteBuffer failed, capacity: " + capacity);
         }
 
-        return byteBuffer;
+        //容量设置为申请的容量, 实际分配的容量记录在 Deallocator 中
+        UNSAFE.putInt(byteBuffer, capacityFieldOffset, capacity);
+        byteBuffer.position(0);
+        byteBuffer.limit(capacity);
 
+        return byteBuffer;
     }
 
     /**
@@ -172,20 +157,57 @@ public class TByteBuffer {
             }
 
             if(!byteBuffer.hasArray()) {
-                if(getAtt(byteBuffer) == null){
+                Object att = getAtt(byteBuffer);
+                if(att == null){
                     throw new UnsupportedOperationException("JDK's ByteBuffer can't reallocate");
                 }
+
                 long address = getAddress(byteBuffer);
+
+                if(att instanceof Deallocator) {
+                    Deallocator deallocator = (Deallocator) att;
+
+                    //实际分配的内存足够时只调整容量
+                    if (newSize <= deallocator.getCapacity()) {
+                        UNSAFE.putInt(byteBuffer, capacityFieldOffset, newSize);
+                        return true;
+                    }
+
+                    //在内存池的级别范围内, 从内存池中获取新的内存并和原 ByteBuffer 交换, 原内存回收到内存池
+                    if (ByteBufferPool.sizeClass(newSize) >= 0) {
+                        ByteBuffer newByteBuffer = ByteBufferPool.allocate(newSize);
+                        if(newByteBuffer == null) {
+                            throw new OutOfMemoryError("Reallocate direct ByteBuffer failed, capacity: " + newSize);
+                        }
+                        Deallocator newDeallocator = (Deallocator) getAtt(newByteBuffer);
+                        long newAddress = getAddress(newByteBuffer);
+                        int allocatedCapacity = deallocator.getCapacity();
+                        int newAllocatedCapacity = newDeallocator.getCapacity();
+
+                        UNSAFE.copyMemory(address, newAddress, oldCapacity);
+
+                        setAddress(newByteBuffer, address);
+                        setCapacity(newByteBuffer, allocatedCapacity);
+                        setAddress(byteBuffer, newAddress);
+                        setCapacity(byteBuffer, newAllocatedCapacity);
+                        UNSAFE.putInt(byteBuffer, capacityFieldOffset, newSize);
+
+                        release(newByteBuffer);
+                        return true;
+                    }
+                }
+
                 long newAddress = UNSAFE.reallocateMemory(address, newSize);
                 setAddress(byteBuffer, newAddress);
+                setCapacity(byteBuffer, newSize);
             } else {
                 byte[] hb = byteBuffer.array();
                 byte[] newHb = Arrays.copyOf(hb, newSize);
                 TReflect.setFieldValue(byteBuffer, "hb", newHb);
-            }
 
-            //重置容量
-            capacityField.set(byteBuffer, newSize);
+                //重置容量
+                capacityField.set(byteBuffer, newSize);
+            }
 
             BYTE_BUFFER_ANALYSIS.realloc(oldCapacity, newSize);
             return true;
@@ -307,46 +329,52 @@ public class TByteBuffer {
      * @param byteBuffer bytebuffer 对象
      */
     public static void release(ByteBuffer byteBuffer) {
-        if(byteBuffer == null){
+        if(byteBuffer == null || byteBuffer.getClass() != DIRECT_BYTE_BUFFER_CLASS){
             return;
         }
 
-        if (byteBuffer != null) {
-
-            if(THREAD_BYTE_BUFFER_POOL.getPool().avaliable() > 0 &&
-                    byteBuffer.capacity() > DEFAULT_BYTE_BUFFER_SIZE){
-                reallocate(byteBuffer, DEFAULT_BYTE_BUFFER_SIZE);
+        try {
+            //只回收框架分配的内存
+            Object att = getAtt(byteBuffer);
+            if(att == null || att.getClass() != Deallocator.class || getAddress(byteBuffer) == 0) {
                 return;
             }
 
-            Consumer<ByteBuffer> destory = null;
-
-            if(MANUAL_RELEASE) {
-                destory = buffer->{
-                    synchronized (byteBuffer) {
-                        try {
-                            long address = TByteBuffer.getAddress(byteBuffer);
-                            Object att = getAtt(byteBuffer);
-                            if (address != 0 && att != null && att.getClass() == Deallocator.class) {
-                                if (address != 0) {
-                                    byteBuffer.clear();
-                                    synchronized (buffer) {
-                                        setAddress(byteBuffer, 0);
-
-                                        UNSAFE.freeMemory(address);
-                                        BYTE_BUFFER_ANALYSIS.free(byteBuffer.capacity());
-                                    }
-                                }
-                            }
-
-                        } catch (ReflectiveOperationException e) {
-                            Logger.error(e);
-                        }
-                    }
-                };
+            if(ByteBufferPool.recycle(byteBuffer, (Deallocator) att)) {
+                return;
             }
+        } catch (ReflectiveOperationException e) {
+            Logger.error(e);
+            return;
+        }
+
+        free(byteBuffer);
+    }
+
+    /**
+     * 释放 byteBuffer 的内存
+     *      手工释放模式下立刻释放, 否则由 GC 触发 Deallocator 释放
+     * @param byteBuffer bytebuffer 对象
+     */
+    protected static void free(ByteBuffer byteBuffer) {
+        if(!MANUAL_RELEASE) {
+            return;
+        }
 
-            THREAD_BYTE_BUFFER_POOL.release(byteBuffer, destory);
+        synchronized (byteBuffer) {
+            try {
+                long address = TByteBuffer.getAddress(byteBuffer);
+                Object att = getAtt(byteBuffer);
+                if (address != 0 && att != null && att.getClass() == Deallocator.class) {
+                    byteBuffer.clear();
+                    setAddress(byteBuffer, 0);
+
+                    UNSAFE.freeMemory(address);
+                    BYTE_BUFFER_ANALYSIS.free(((Deallocator) att).getCapacity());
+                }
+            } catch (ReflectiveOperationException e) {
+                Logger.error(e);
+            }
         }
     }
 
@@ -418,7 +446,7 @@ public class TByteBuffer {
 
     /**
      * 查找特定 byte 标识的位置
-     *     byte 标识数组第一个字节的索引位置
+     *     byte 标识数组第一个字节的索引位置, 使用 ByteBufferSearch 每次比较 8 个字节
      * @param byteBuffer Bytebuffer 对象
      * @param mark byte 标识数组
      * @return 第一个字节的索引位置
@@ -433,49 +461,43 @@ public class TByteBuffer {
             return -1;
         }
 
-        int originPosition = byteBuffer.position();
-        int length = byteBuffer.remaining();
-
-        if(length < mark.length){
-            return -1;
-        }
-
-        int index = -1;
+        return ByteBufferSearch.indexOf(byteBuffer, mark);
+    }
 
-        int i = byteBuffer.position();
-        int j = 0;
 
-        while(i <= (byteBuffer.limit() - mark.length + j )  ){
-            if(byteBuffer.get(i) != mark[j] ){
-                if(i == (byteBuffer.limit() - mark.length + j )){
-                    break;
-                }
-                int pos = TByte.byteIndexOf(mark, byteBuffer.get(i+mark.length-j));
-                if( pos== -1){
-                    i = i + mark.length + 1 - j;
-                    j = 0 ;
-                } else {
-                    i = i + mark.length - pos - j;
-                    j = 0;
-                }
+    /**
+     * 创建一个没有附加对象的堆外 ByteBuffer 视图, 不持有内存, 需要通过 bindView 指向其他 ByteBuffer 的内存
+     *      框架分配的 ByteBuffer 的附加对象是 Deallocator, JDK 中部分实现(如 AES-GCM 的内存重叠检查)
+     *      会将堆外 ByteBuffer 的附加对象转换为 DirectBuffer, 这时需要使用视图代替原 ByteBuffer
+     * @return ByteBuffer 视图
+     */
+    public static ByteBuffer newView() {
+        try {
+            if(TEnv.JDK_VERSION < 14) {
+                return (ByteBuffer) DIRECT_BYTE_BUFFER_CONSTURCTOR.invoke(0L, 0, (Object)null);
             } else {
-                if(j == (mark.length - 1)){
-                    i = i - j + 1 ;
-                    j = 0;
-                    index  = i-j - 1;
-                    break;
-                } else {
-                    i++;
-                    j++;
-                }
+                return (ByteBuffer) DIRECT_BYTE_BUFFER_CONSTURCTOR.invoke(0L, 0, (Object)null, null);
             }
+        } catch (Throwable e) {
+            Logger.error("Create ByteBuffer view error. ", e);
+            return null;
         }
-
-        byteBuffer.position(originPosition);
-
-        return index;
     }
 
+    /**
+     * 将视图指向 ByteBuffer 的内存, 并同步 position 和 limit
+     *      视图只在原 ByteBuffer 的内存有效期间使用
+     * @param view 通过 newView 创建的视图
+     * @param byteBuffer 堆外 ByteBuffer
+     * @return 视图
+     */
+    public static ByteBuffer bindView(ByteBuffer view, ByteBuffer byteBuffer) {
+        UNSAFE.putLong(view, addressFieldOffset, UNSAFE.getLong(byteBuffer, addressFieldOffset));
+        UNSAFE.putInt(view, capacityFieldOffset, byteBuffer.capacity());
+        view.limit(byteBuffer.limit());
+        view.position(byteBuffer.position());
+        return view;
+    }
 
     /**
      * 获取内存地址
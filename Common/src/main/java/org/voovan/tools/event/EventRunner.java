@@ -1,12 +1,18 @@
 package org.voovan.tools.event;
 
+import org.voovan.tools.TEnv;
 import org.voovan.tools.exception.EventRunnerException;
 import org.voovan.tools.log.Logger;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 事件执行器
@@ -18,8 +24,22 @@ import java.util.concurrent.TimeUnit;
  * Licence: Apache v2 License
  */
 public class EventRunner implements Closeable {
+	public final static boolean MPSC_QUEUE = TEnv.getSystemProperty("MpscEventQueue", false);
+
+	private Queue<EventTask> eventQueue;
+	private EventTaskQueue eventTaskQueue;
+
+	//唤醒等待中的线程时写入事件队列的空任务
+	private final static Runnable WAKEUP_TASK = ()->{};
+
+	//可窃取任务队列, 每个优先级一个, 本线程从头部获取(FIFO), 窃取线程从尾部获取
+	private ConcurrentLinkedDeque<Runnable>[] stealableQueues = new ConcurrentLinkedDeque[11];
+	private AtomicInteger stealableQueueSize = new AtomicInteger(0);
+	//线程是否阻塞在事件队列上等待事件
+	private AtomicBoolean waiting = new AtomicBoolean(false);
+	private LongAdder stealCount = new LongAdder();
+	private LongAdder stolenCount = new LongAdder();
 
-	private PriorityBlockingQueue<EventTask> eventQueue = new PriorityBlockingQueue<EventTask>();
 	private Object attachment;
 	private Thread thread = null;
 	private EventRunnerGroup eventRunnerGroup;
@@ -31,7 +51,26 @@ public class EventRunner implements Closeable {
 	 *
 	 */
 	public EventRunner(EventRunnerGroup eventRunnerGroup){
+		this(eventRunnerGroup, MPSC_QUEUE);
+	}
+
+	/**
+	 * 事件处理 Thread
+	 * @param eventRunnerGroup EventRunnerGroup对象
+	 * @param isMpscQueue true: 使用每个优先级一个无锁环形队列的事件队列, false: 使用 PriorityBlockingQueue
+	 */
+	public EventRunner(EventRunnerGroup eventRunnerGroup, boolean isMpscQueue){
 		this.eventRunnerGroup = eventRunnerGroup;
+		for(int i=1; i<stealableQueues.length; i++) {
+			stealableQueues[i] = new ConcurrentLinkedDeque<Runnable>();
+		}
+
+		if(isMpscQueue) {
+			eventTaskQueue = new EventTaskQueue();
+			eventQueue = eventTaskQueue;
+		} else {
+			eventQueue = new PriorityBlockingQueue<EventTask>();
+		}
 	}
 
 	/**
@@ -75,7 +114,37 @@ public class EventRunner implements Closeable {
 		if(priority > 10 || priority < 1) {
 			throw new EventRunnerException("priority must between 1-10");
 		}
-		eventQueue.add(EventTask.newInstance(priority, runnable));
+
+		if(eventTaskQueue != null) {
+			eventTaskQueue.offer(priority, runnable);
+		} else {
+			eventQueue.add(EventTask.newInstance(priority, runnable));
+		}
+	}
+
+	/**
+	 * 添加事件
+	 * 		当前 EventRunner 在等待时唤醒它, 否则唤醒一个空闲的 EventRunner 来窃取
+	 * @param priority 事件优先级必须在1-10之间, 越大优先级越高
+	 * @param runnable 事件执行器
+	 * @param stealable true: 可被其他 EventRunner 窃取执行, false: 只在当前 EventRunner 中执行
+	 */
+	public void addEvent(int priority, Runnable runnable, boolean stealable) {
+		if(!stealable) {
+			addEvent(priority, runnable);
+			return;
+		}
+
+		if(priority > 10 || priority < 1) {
+			throw new EventRunnerException("priority must between 1-10");
+		}
+
+		stealableQueues[priority].offerLast(runnable);
+		stealableQueueSize.incrementAndGet();
+
+		if(!wakeup() && eventRunnerGroup.isSteal()) {
+			eventRunnerGroup.wakeupIdle(this);
+		}
 	}
 
 	/**
@@ -86,15 +155,174 @@ public class EventRunner implements Closeable {
 		addEvent(5, runnable);
 	}
 
+	/**
+	 * 添加窃取到的任务
+	 * 		任务按原来的优先级进入当前 EventRunner 的优先级队列
+	 * @param eventTask 任务对象
+	 */
+	void addEventTask(EventTask eventTask) {
+		if(eventTaskQueue != null) {
+			eventTaskQueue.offer(eventTask.getPriority(), eventTask.getRunnable());
+			eventTask.release();
+		} else {
+			eventQueue.add(eventTask);
+		}
+	}
+
+	/**
+	 * 唤醒等待事件的线程
+	 * 		线程阻塞在事件队列上时写入一个空任务唤醒它, 每次等待最多写入一次
+	 * @return true: 线程在等待并已被唤醒, false: 线程没有在等待
+	 */
+	public boolean wakeup() {
+		if(waiting.get() && waiting.compareAndSet(true, false)) {
+			addEvent(10, WAKEUP_TASK);
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * 当前 EventRunner 获取一个可窃取任务
+	 * 		按优先级从高到低, 同优先级先进先出
+	 * @param minPriority 只获取优先级大于这个值的任务
+	 * @return 任务, null: 无可获取的任务
+	 */
+	private Runnable pollOwnStealable(int minPriority) {
+		for(int priority = 10; priority > minPriority; priority--) {
+			Runnable runnable = stealableQueues[priority].pollFirst();
+			if(runnable != null) {
+				stealableQueueSize.decrementAndGet();
+				return runnable;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * 其他 EventRunner 窃取一个任务
+	 * 		从优先级最高的队列的尾部获取, 和当前 EventRunner 获取的位置相反
+	 * @return 任务, null: 无可窃取任务
+	 */
+	EventTask pollStealable() {
+		for(int priority = 10; priority > 0; priority--) {
+			Runnable runnable = stealableQueues[priority].pollLast();
+			if(runnable != null) {
+				stealableQueueSize.decrementAndGet();
+				stolenCount.increment();
+				return EventTask.newInstance(priority, runnable);
+			}
+		}
+
+		return null;
+	}
+
+	void incrementStealCount() {
+		stealCount.increment();
+	}
+
+	/**
+	 * 获取可窃取任务队列深度
+	 * @return 可窃取任务队列深度
+	 */
+	public int getStealableQueueSize() {
+		return stealableQueueSize.get();
+	}
+
+	/**
+	 * 获取当前 EventRunner 从其他 EventRunner 窃取的任务数
+	 * @return 窃取的任务数
+	 */
+	public long getStealCount() {
+		return stealCount.sum();
+	}
+
+	/**
+	 * 获取当前 EventRunner 被其他 EventRunner 窃取的任务数
+	 * @return 被窃取的任务数
+	 */
+	public long getStolenCount() {
+		return stolenCount.sum();
+	}
+
 	/**
 	 * 获取事件任务对象集合
 	 * @return 事件任务对象集合
 	 */
-	public PriorityBlockingQueue<EventTask> getEventQueue() {
+	public Queue<EventTask> getEventQueue() {
 		return eventQueue;
 	}
 
 
+	/**
+	 * 查看优先级队列中最高的优先级
+	 * @return 最高的优先级, 0: 队列为空
+	 */
+	private int peekEventPriority() {
+		if(eventTaskQueue != null) {
+			return eventTaskQueue.peekPriority();
+		} else {
+			//只有当前线程从优先级队列中取出任务, 查看到的任务不会被回收
+			EventTask eventTask = eventQueue.peek();
+			return eventTask == null ? 0 : eventTask.getPriority();
+		}
+	}
+
+	/**
+	 * 不等待的获取当前 EventRunner 的事件
+	 * 		优先级队列和可窃取任务队列按优先级合并, 同优先级先获取优先级队列中的事件
+	 * @return 事件, null: 没有事件
+	 * @throws InterruptedException 中断异常
+	 */
+	private Runnable pollOwnEvent() throws InterruptedException {
+		Runnable runnable = null;
+		if(stealableQueueSize.get() > 0) {
+			runnable = pollOwnStealable(peekEventPriority());
+		}
+
+		if(runnable == null) {
+			runnable = pollEvent(0);
+		}
+
+		if(runnable == null && stealableQueueSize.get() > 0) {
+			runnable = pollOwnStealable(0);
+		}
+
+		return runnable;
+	}
+
+	/**
+	 * 从优先级队列获取事件
+	 * @param timeout 等待时间, 单位: 毫秒, 0: 不等待
+	 * @return 事件, null: 等待超时
+	 * @throws InterruptedException 中断异常
+	 */
+	private Runnable pollEvent(long timeout) throws InterruptedException {
+		if(eventTaskQueue != null) {
+			return timeout == 0 ? eventTaskQueue.pollRunnable() : eventTaskQueue.pollRunnable(timeout, TimeUnit.MILLISECONDS);
+		} else {
+			PriorityBlockingQueue<EventTask> priorityQueue = (PriorityBlockingQueue<EventTask>) eventQueue;
+			return unwrap(timeout == 0 ? priorityQueue.poll() : priorityQueue.poll(timeout, TimeUnit.MILLISECONDS));
+		}
+	}
+
+	/**
+	 * 取出任务中的 Runnable 并释放任务对象
+	 * @param eventTask 任务对象
+	 * @return Runnable 对象
+	 */
+	private static Runnable unwrap(EventTask eventTask) {
+		if(eventTask == null) {
+			return null;
+		}
+
+		Runnable runnable = eventTask.getRunnable();
+		eventTask.release();
+		return runnable;
+	}
+
 	@Override
 	public void close() {
 		running = false;
@@ -114,20 +342,31 @@ public class EventRunner implements Closeable {
 			this.setThread(Thread.currentThread());
 			while (running) {
 				try {
-					EventTask eventTask = eventQueue.poll(1000, TimeUnit.MILLISECONDS);
+					boolean isSteal = eventRunnerGroup.isSteal();
 
-					//窃取任务
-					if(eventRunnerGroup.isSteal() && eventTask == null) {
-						eventTask = eventRunnerGroup.stealTask();
-						if(eventTask!=null) {
+					//优先级队列和本地可窃取队列 -> 窃取其他 EventRunner 的可窃取队列
+					Runnable runnable = pollOwnEvent();
+
+					//窃取的任务保持原来的优先级, 放入当前的优先级队列后再获取
+					if (runnable == null && isSteal) {
+						EventTask eventTask = eventRunnerGroup.stealTask();
+						if (eventTask != null) {
+							addEventTask(eventTask);
+							runnable = pollEvent(0);
 						}
 					}
 
-					if(eventTask!=null) {
-						Runnable runnable = eventTask.getRunnable();
-						if (runnable != null) {
-							runnable.run();
+					if(runnable == null) {
+						//设置等待标记后重新检查, 添加可窃取任务的线程看到标记后会写入唤醒任务
+						waiting.set(true);
+						if(stealableQueueSize.get() == 0 && !(isSteal && eventRunnerGroup.hasStealable())) {
+							runnable = pollEvent(1000);
 						}
+						waiting.set(false);
+					}
+
+					if(runnable!=null) {
+						runnable.run();
 					} else {
 						if(eventRunnerGroup.getThreadPool().isShutdown()){
 							break;
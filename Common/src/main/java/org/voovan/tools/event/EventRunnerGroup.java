@@ -1,12 +1,13 @@
 package org.voovan.tools.event;
 
 import org.voovan.tools.TEnv;
+import org.voovan.tools.TObject;
 import org.voovan.tools.TPerformance;
 import org.voovan.tools.threadpool.ThreadPool;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.Queue;
+import java.util.Map;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
@@ -97,11 +98,12 @@ public class EventRunnerGroup implements Closeable {
 
 	/**
 	 * 添加事件
+	 * 		允许任务窃取时, 通过 EventRunnerGroup 添加的事件可以被任意 EventRunner 窃取执行
 	 * @param priority 事件优先级必须在1-10之间
 	 * @param runnable 事件执行器
 	 */
 	public void addEvent(int priority, Runnable runnable) {
-		choseEventRunner().addEvent(priority, runnable);
+		choseEventRunner().addEvent(priority, runnable, isSteal);
 	}
 
 	/**
@@ -113,7 +115,9 @@ public class EventRunnerGroup implements Closeable {
 	}
 
 	/**
-	 * 从任务最多的 EventRunner 窃取任务
+	 * 从可窃取任务最多的 EventRunner 窃取任务
+	 * 		只窃取标记为可窃取的任务, 绑定在 EventRunner 上的任务(例如 Socket 的 IO 事件)不会被窃取
+	 * 		窃取优先级最高的任务中最后加入的一个, 保持原来的优先级
 	 * @return EventTask 对象
 	 */
 	public EventTask stealTask() {
@@ -121,28 +125,100 @@ public class EventRunnerGroup implements Closeable {
 			return null;
 		}
 
+		Thread currentThread = Thread.currentThread();
+		EventRunner thiefEventRunner = null;
 		EventRunner largestEventRunner = null;
 		for(EventRunner eventRunner : eventRunners) {
-			if(largestEventRunner == null) {
-				largestEventRunner = eventRunner;
+			if(eventRunner.getThread() == currentThread) {
+				thiefEventRunner = eventRunner;
 				continue;
 			}
 
-			if(eventRunner.getEventQueue().size() > largestEventRunner.getEventQueue().size()) {
+			if(largestEventRunner == null || eventRunner.getStealableQueueSize() > largestEventRunner.getStealableQueueSize()) {
 				largestEventRunner = eventRunner;
-				break;
 			}
 		}
 
-		if(largestEventRunner == null) {
+		if(largestEventRunner == null || largestEventRunner.getStealableQueueSize() == 0) {
+			return null;
+		}
+
+		EventTask eventTask = largestEventRunner.pollStealable();
+		if(eventTask == null) {
 			return null;
 		}
 
-		Queue<EventTask> eventQueue = largestEventRunner.getEventQueue();
-		synchronized (eventQueue) {
-			return largestEventRunner.getEventQueue().poll();
+		if(thiefEventRunner != null) {
+			thiefEventRunner.incrementStealCount();
+		}
+
+		return eventTask;
+	}
+
+	/**
+	 * 是否有 EventRunner 存在可窃取的任务
+	 * @return true: 存在可窃取的任务
+	 */
+	boolean hasStealable() {
+		for(EventRunner eventRunner : eventRunners) {
+			if(eventRunner.getStealableQueueSize() > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 唤醒一个等待中的 EventRunner, 用于窃取忙碌的 EventRunner 中的任务
+	 * @param busyEventRunner 加入了可窃取任务的 EventRunner
+	 */
+	void wakeupIdle(EventRunner busyEventRunner) {
+		for(EventRunner eventRunner : eventRunners) {
+			if(eventRunner != busyEventRunner && eventRunner.wakeup()) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * 获取所有 EventRunner 窃取任务的总数
+	 * @return 窃取任务的总数
+	 */
+	public long getStealCount() {
+		long stealCount = 0;
+		for(EventRunner eventRunner : eventRunners) {
+			stealCount += eventRunner.getStealCount();
+		}
+		return stealCount;
+	}
+
+	/**
+	 * 获取所有 EventRunner 的队列深度, 包含优先级队列和可窃取队列
+	 * @return 队列深度
+	 */
+	public int getQueueDepth() {
+		int queueDepth = 0;
+		for(EventRunner eventRunner : eventRunners) {
+			queueDepth += eventRunner.getEventQueue().size() + eventRunner.getStealableQueueSize();
 		}
+		return queueDepth;
+	}
 
+	/**
+	 * 获取任务窃取的统计信息
+	 * @return 统计信息
+	 */
+	public Map<String, Object> getStealAnalysis() {
+		Map<String, Object> analysis = TObject.asMap("StealCount", getStealCount(), "QueueDepth", getQueueDepth());
+		for(int i=0; i<eventRunners.length; i++) {
+			EventRunner eventRunner = eventRunners[i];
+			analysis.put("EventRunner-" + i, TObject.asMap(
+					"QueueDepth", eventRunner.getEventQueue().size(),
+					"StealableQueueDepth", eventRunner.getStealableQueueSize(),
+					"StealCount", eventRunner.getStealCount(),
+					"StolenCount", eventRunner.getStolenCount()));
+		}
+		return analysis;
 	}
 
 	/**
@@ -158,7 +234,7 @@ public class EventRunnerGroup implements Closeable {
 					count++;
 					break;
 				} else {
-					count += eventRunner.getEventQueue().size();
+					count += eventRunner.getEventQueue().size() + eventRunner.getStealableQueueSize();
 				}
 			}
 
@@ -1,5 +1,7 @@
 package org.voovan.tools.event;
 
+import org.voovan.tools.collection.ThreadObjectPool;
+
 /**
  * 时间任务
  *
@@ -9,6 +11,8 @@ package org.voovan.tools.event;
  * Licence: Apache v2 License
  */
 public class EventTask implements Comparable {
+    private final static ThreadObjectPool<EventTask> THREAD_EVENT_TASK_POOL = new ThreadObjectPool<EventTask>(64);
+
     private int priority;
     private Runnable runnable;
 
@@ -45,11 +49,23 @@ public class EventTask implements Comparable {
         }
     }
 
+    /**
+     * 释放到当前线程的对象池
+     *      释放后不能再使用这个对象
+     */
+    public void release() {
+        this.runnable = null;
+        THREAD_EVENT_TASK_POOL.release(this);
+    }
+
     public static EventTask newInstance(int priority, Runnable runnable) {
-        return new EventTask(priority, runnable);
+        EventTask eventTask = THREAD_EVENT_TASK_POOL.get(()->new EventTask(priority, runnable));
+        eventTask.priority = priority;
+        eventTask.runnable = runnable;
+        return eventTask;
     }
 
     public static EventTask newInstance(Runnable runnable) {
-        return new EventTask(0, runnable);
+        return newInstance(0, runnable);
     }
 }
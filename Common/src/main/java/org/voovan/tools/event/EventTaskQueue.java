@@ -0,0 +1,359 @@
+package org.voovan.tools.event;
+
+import org.voovan.tools.TEnv;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 事件任务队列
+ *      每个优先级一个有界无锁环形队列, 多个线程同时写入, 由 EventRunner 线程读取(窃取任务时也可以由其他线程读取)
+ *      环形队列只保存 Runnable, 写入时不会分配 EventTask 对象
+ *      环形队列写满后溢出到同优先级的 ConcurrentLinkedQueue 中, 溢出队列不为空时同优先级的任务都写入溢出队列, 保证先进先出
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class EventTaskQueue extends AbstractQueue<EventTask> {
+	public final static int RING_SIZE   = TEnv.getSystemProperty("EventQueueRingSize", 1024);
+	public final static int SPIN_COUNT  = TEnv.getSystemProperty("EventQueueSpinCount", 128);
+
+	private final static int PRIORITY_LEVEL = 10;
+
+	private AtomicReferenceArray<Ring> rings = new AtomicReferenceArray<Ring>(PRIORITY_LEVEL + 1);
+	private ConcurrentLinkedQueue<Runnable>[] overflows = new ConcurrentLinkedQueue[PRIORITY_LEVEL + 1];
+	private int ringSize;
+
+	private volatile Thread waiter;
+
+	public EventTaskQueue() {
+		this(RING_SIZE);
+	}
+
+	/**
+	 * 构造函数
+	 * @param ringSize 每个优先级环形队列的大小, 会向上取整到 2 的幂
+	 */
+	public EventTaskQueue(int ringSize) {
+		this.ringSize = ringSize;
+		for(int i=1; i<=PRIORITY_LEVEL; i++) {
+			overflows[i] = new ConcurrentLinkedQueue<Runnable>();
+		}
+	}
+
+	private Ring getRing(int priority) {
+		Ring ring = rings.get(priority);
+		if(ring == null) {
+			rings.compareAndSet(priority, null, new Ring(ringSize));
+			ring = rings.get(priority);
+		}
+		return ring;
+	}
+
+	/**
+	 * 增加一个任务
+	 * @param priority 优先级 1-10
+	 * @param runnable 任务
+	 * @return true: 成功
+	 */
+	public boolean offer(int priority, Runnable runnable) {
+		ConcurrentLinkedQueue<Runnable> overflow = overflows[priority];
+
+		//溢出队列中的任务比环形队列中的晚, 溢出队列清空前新任务也只能排在溢出队列后面
+		if(!overflow.isEmpty() || !getRing(priority).offer(runnable)) {
+			overflow.offer(runnable);
+		}
+
+		wakeup();
+
+		return true;
+	}
+
+	/**
+	 * 唤醒等待任务的线程
+	 */
+	public void wakeup() {
+		Thread waitThread = waiter;
+		if(waitThread != null) {
+			LockSupport.unpark(waitThread);
+		}
+	}
+
+	@Override
+	public boolean offer(EventTask eventTask) {
+		return offer(eventTask.getPriority(), eventTask.getRunnable());
+	}
+
+	/**
+	 * 按优先级从高到低获取一个任务
+	 * @return 任务, null: 队列为空
+	 */
+	public Runnable pollRunnable() {
+		for(int priority = PRIORITY_LEVEL; priority > 0; priority--) {
+			Runnable runnable = pollRunnable(priority);
+			if(runnable != null) {
+				return runnable;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * 查看队列中任务的最高优先级, 不会移除任务
+	 * @return 最高的优先级, 0: 队列为空
+	 */
+	public int peekPriority() {
+		for(int priority = PRIORITY_LEVEL; priority > 0; priority--) {
+			Ring ring = rings.get(priority);
+			if((ring != null && ring.size() > 0) || !overflows[priority].isEmpty()) {
+				return priority;
+			}
+		}
+
+		return 0;
+	}
+
+	private Runnable pollRunnable(int priority) {
+		Runnable runnable = null;
+		Ring ring = rings.get(priority);
+		if(ring != null) {
+			runnable = ring.poll();
+		}
+
+		if(runnable == null) {
+			runnable = overflows[priority].poll();
+		}
+
+		return runnable;
+	}
+
+	/**
+	 * 获取一个任务, 队列为空时先自旋, 然后休眠到超时, 有新任务加入时会被唤醒
+	 * @param timeout 超时时间
+	 * @param timeUnit 时间单位
+	 * @return 任务, null: 等待超时
+	 */
+	public Runnable pollRunnable(long timeout, TimeUnit timeUnit) {
+		Runnable runnable = pollRunnable();
+		if(runnable != null) {
+			return runnable;
+		}
+
+		for(int i=0; i<SPIN_COUNT; i++) {
+			Thread.onSpinWait();
+			runnable = pollRunnable();
+			if(runnable != null) {
+				return runnable;
+			}
+		}
+
+		long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+		waiter = Thread.currentThread();
+		try {
+			for (;;) {
+				//设置 waiter 后重新检查, 防止丢失唤醒
+				runnable = pollRunnable();
+				if (runnable != null) {
+					return runnable;
+				}
+
+				long remain = deadline - System.nanoTime();
+				if (remain <= 0) {
+					return null;
+				}
+
+				//offer 在发布任务后唤醒 waiter, 不需要分段休眠轮询
+				LockSupport.parkNanos(this, remain);
+			}
+		} finally {
+			waiter = null;
+		}
+	}
+
+	@Override
+	public EventTask poll() {
+		for(int priority = PRIORITY_LEVEL; priority > 0; priority--) {
+			Runnable runnable = pollRunnable(priority);
+			if(runnable != null) {
+				return EventTask.newInstance(priority, runnable);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * 按优先级从高到低查看一个任务, 不会移除任务
+	 * @return 任务, null: 队列为空
+	 */
+	@Override
+	public EventTask peek() {
+		for(int priority = PRIORITY_LEVEL; priority > 0; priority--) {
+			Runnable runnable = null;
+			Ring ring = rings.get(priority);
+			if(ring != null) {
+				runnable = ring.peek();
+			}
+
+			if(runnable == null) {
+				runnable = overflows[priority].peek();
+			}
+
+			if(runnable != null) {
+				return new EventTask(priority, runnable);
+			}
+		}
+
+		return null;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for(int priority = PRIORITY_LEVEL; priority > 0; priority--) {
+			Ring ring = rings.get(priority);
+			if(ring != null) {
+				size += ring.size();
+			}
+			size += overflows[priority].size();
+		}
+
+		return size;
+	}
+
+	/**
+	 * 获取任务的快照, 仅用于调试统计
+	 * @return 任务快照的迭代器
+	 */
+	@Override
+	public Iterator<EventTask> iterator() {
+		List<EventTask> snapshot = new ArrayList<EventTask>();
+		for(int priority = PRIORITY_LEVEL; priority > 0; priority--) {
+			Ring ring = rings.get(priority);
+			if(ring != null) {
+				for(Runnable runnable : ring.<Runnable>snapshot()) {
+					snapshot.add(new EventTask(priority, runnable));
+				}
+			}
+
+			for(Runnable runnable : overflows[priority]) {
+				snapshot.add(new EventTask(priority, runnable));
+			}
+		}
+
+		return snapshot.iterator();
+	}
+
+	/**
+	 * 有界无锁环形队列
+	 *      每个槽位使用序号标记状态, 生产者和消费者都通过 CAS 推进位置
+	 */
+	static class Ring {
+		private final Object[] elements;
+		private final AtomicLongArray sequences;
+		private final int mask;
+		private final AtomicLong head = new AtomicLong(0);
+		private final AtomicLong tail = new AtomicLong(0);
+
+		Ring(int capacity) {
+			int size = 1;
+			while(size < capacity) {
+				size = size << 1;
+			}
+
+			elements = new Object[size];
+			sequences = new AtomicLongArray(size);
+			mask = size - 1;
+			for(int i=0; i<size; i++) {
+				sequences.set(i, i);
+			}
+		}
+
+		boolean offer(Object obj) {
+			for(;;) {
+				long position = tail.get();
+				int index = (int) (position & mask);
+				long diff = sequences.get(index) - position;
+				if(diff == 0) {
+					if(tail.compareAndSet(position, position + 1)) {
+						elements[index] = obj;
+						//volatile 写, 保证之后对 waiter 的读取不会重排到发布之前
+						sequences.set(index, position + 1);
+						return true;
+					}
+				} else if(diff < 0) {
+					//队列已满
+					return false;
+				}
+			}
+		}
+
+		<T> T poll() {
+			for(;;) {
+				long position = head.get();
+				int index = (int) (position & mask);
+				long diff = sequences.get(index) - (position + 1);
+				if(diff == 0) {
+					if(head.compareAndSet(position, position + 1)) {
+						Object obj = elements[index];
+						elements[index] = null;
+						sequences.lazySet(index, position + mask + 1);
+						return (T) obj;
+					}
+				} else if(diff < 0) {
+					//队列为空
+					return null;
+				}
+			}
+		}
+
+		<T> T peek() {
+			for(;;) {
+				long position = head.get();
+				int index = (int) (position & mask);
+				if(sequences.get(index) != position + 1) {
+					//队列为空
+					return null;
+				}
+
+				Object obj = elements[index];
+				//读取期间未被其他线程取走
+				if(head.get() == position) {
+					return (T) obj;
+				}
+			}
+		}
+
+		int size() {
+			long size = tail.get() - head.get();
+			return size < 0 ? 0 : (int) size;
+		}
+
+		<T> List<T> snapshot() {
+			List<T> snapshot = new ArrayList<T>();
+			for(long position = head.get(); position < tail.get(); position++) {
+				Object obj = elements[(int) (position & mask)];
+				if(obj != null) {
+					snapshot.add((T) obj);
+				}
+			}
+			return snapshot;
+		}
+	}
+}
@@ -0,0 +1,491 @@
+package org.voovan.tools.hashwheeltimer;
+
+import org.voovan.Global;
+import org.voovan.tools.TEnv;
+import org.voovan.tools.TObject;
+import org.voovan.tools.log.Logger;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 分层时间轮定时器
+ *      第 0 层 256 个槽, 第 1-3 层各 64 个槽, 每层的槽位覆盖下一层的一圈, 步长为 1ms 时可覆盖约 18 小时,
+ *      更远的任务放在最高层, 到期前逐层下降.
+ *      槽位中的任务是侵入式的双向链表, 增加和取消都是 O(1), 执行一个槽位时直接摘下整个链表, 不复制数组.
+ *      其他线程增加和取消任务时只把任务压入无锁的待处理栈, 由时间轮的工作线程统一处理, 时间轮本身不需要加锁.
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class TimingWheel {
+    private final static int ROOT_BITS = 8;
+    private final static int ROOT_SIZE = 1 << ROOT_BITS;
+    private final static int ROOT_MASK = ROOT_SIZE - 1;
+    private final static int LEVEL_BITS = 6;
+    private final static int LEVEL_SIZE = 1 << LEVEL_BITS;
+    private final static int LEVEL_MASK = LEVEL_SIZE - 1;
+    private final static int LEVELS = 4;
+    //最高层能覆盖的步长数
+    private final static long MAX_TICKS = 1L << (ROOT_BITS + LEVEL_BITS * (LEVELS - 1));
+
+    private static AtomicInteger count = new AtomicInteger(0);
+
+    private String name;
+    private long tick;
+    private long tickNanos;
+    private long startTime;
+
+    private TimingWheelTask[][] wheel;
+    //下一个需要处理的步长
+    private long currentTick = 0;
+    private volatile int taskCount = 0;
+
+    private AtomicReference<TimingWheelTask> pending = new AtomicReference<TimingWheelTask>();
+    private volatile boolean idle = false;
+    private volatile boolean running = false;
+    private Thread worker;
+
+    /**
+     * 构造函数
+     *      默认步长 1ms
+     */
+    public TimingWheel() {
+        this(null, 1);
+    }
+
+    /**
+     * 构造函数
+     * @param tick 每个槽的步长, 单位: 毫秒
+     */
+    public TimingWheel(long tick) {
+        this(null, tick);
+    }
+
+    /**
+     * 构造函数
+     * @param name 时间轮名称
+     * @param tick 每个槽的步长, 单位: 毫秒
+     */
+    public TimingWheel(String name, long tick) {
+        if(tick <= 0) {
+            throw new IllegalArgumentException("TimingWheel tick must be greater than 0");
+        }
+
+        this.name = TObject.nullDefault(name, count.getAndIncrement() + "");
+        this.tick = tick;
+        this.tickNanos = tick * 1000000L;
+        this.startTime = System.nanoTime();
+
+        wheel = new TimingWheelTask[LEVELS][];
+        wheel[0] = new TimingWheelTask[ROOT_SIZE];
+        for(int i = 1; i < LEVELS; i++) {
+            wheel[i] = new TimingWheelTask[LEVEL_SIZE];
+        }
+    }
+
+    /**
+     * 获取时间轮名称
+     * @return 时间轮名称
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 获取每个槽的步长
+     * @return 步长, 单位: 毫秒
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * 获取时间轮中的任务数
+     *      不包含还在待处理栈中的任务
+     * @return 任务数
+     */
+    public int getTaskCount() {
+        return taskCount;
+    }
+
+    /**
+     * 增加任务
+     *      同步方式执行
+     * @param task 任务对象
+     * @param interval 任务的执行间隔, 单位: 毫秒
+     * @return 任务对象
+     */
+    public TimingWheelTask addTask(TimingWheelTask task, long interval) {
+        return addTask(task, interval, interval, false);
+    }
+
+    /**
+     * 增加任务
+     * @param task 任务对象
+     * @param interval 任务的执行间隔, 单位: 毫秒
+     * @param asynchronous 是否异步执行
+     * @return 任务对象
+     */
+    public TimingWheelTask addTask(TimingWheelTask task, long interval, boolean asynchronous) {
+        return addTask(task, interval, interval, asynchronous);
+    }
+
+    /**
+     * 增加任务
+     * @param task 任务对象
+     * @param delay 首次执行的延迟, 单位: 毫秒
+     * @param interval 任务的执行间隔, 单位: 毫秒, 0: 只执行一次
+     * @param asynchronous 是否异步执行
+     * @return 任务对象
+     */
+    public TimingWheelTask addTask(TimingWheelTask task, long delay, long interval, boolean asynchronous) {
+        if(delay < 0 || interval < 0) {
+            throw new IllegalArgumentException("TimingWheel task delay and interval must not be negative");
+        }
+
+        task.init(this, currentTimeTick() + toTicks(delay), interval, asynchronous);
+        submit(task);
+        return task;
+    }
+
+    /**
+     * 增加任务
+     *      同步方式执行
+     * @param task 任务对象
+     * @param interval 任务的执行间隔, 单位: 毫秒
+     * @return 任务对象
+     */
+    public TimingWheelTask addTask(Runnable task, long interval) {
+        return addTask(TimingWheelTask.newInstance(task), interval, interval, false);
+    }
+
+    /**
+     * 增加任务
+     * @param task 任务对象
+     * @param interval 任务的执行间隔, 单位: 毫秒
+     * @param asynchronous 是否异步执行
+     * @return 任务对象
+     */
+    public TimingWheelTask addTask(Runnable task, long interval, boolean asynchronous) {
+        return addTask(TimingWheelTask.newInstance(task), interval, interval, asynchronous);
+    }
+
+    /**
+     * 移除任务
+     * @param task 任务
+     * @return true:移除任务成功, false:移除任务失败,或任务不存在
+     */
+    public boolean removeTask(TimingWheelTask task) {
+        return task.getTimingWheel() == this && task.cancel();
+    }
+
+    /**
+     * 启动时间轮的轮转
+     * @return TimingWheel 对象
+     */
+    public synchronized TimingWheel rotate() {
+        if(!running) {
+            running = true;
+            worker = new Thread(this::work, "TIMING_WHEEL_" + name);
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        return this;
+    }
+
+    /**
+     * 停止时间轮的轮转
+     */
+    public synchronized void cancel() {
+        running = false;
+        if(worker != null) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    /**
+     * 当前时间对应的步长
+     * @return 步长
+     */
+    private long currentTimeTick() {
+        return (System.nanoTime() - startTime) / tickNanos;
+    }
+
+    /**
+     * 毫秒转换为步长, 向上取整, 至少一个步长
+     * @param millis 毫秒
+     * @return 步长
+     */
+    private long toTicks(long millis) {
+        return Math.max(1, (millis + tick - 1) / tick);
+    }
+
+    /**
+     * 将任务压入待处理栈, 由工作线程增加到槽位或从槽位移除
+     * @param task 任务对象
+     */
+    void submit(TimingWheelTask task) {
+        if(task.markQueued()) {
+            TimingWheelTask head;
+            do {
+                head = pending.get();
+                task.nextPending = head;
+            } while(!pending.compareAndSet(head, task));
+
+            if(idle) {
+                LockSupport.unpark(worker);
+            }
+        }
+    }
+
+    /**
+     * 工作线程
+     */
+    private void work() {
+        while(running && !TEnv.IS_SHUTDOWN) {
+            try {
+                processPending();
+
+                long now = currentTimeTick();
+                if(taskCount == 0) {
+                    //时间轮为空时直接跳到当前时间
+                    currentTick = Math.max(currentTick, now);
+                } else {
+                    while(currentTick <= now) {
+                        processTick();
+                    }
+                }
+
+                if(taskCount == 0) {
+                    idle = true;
+                    if(pending.get() == null) {
+                        LockSupport.park(this);
+                    }
+                    idle = false;
+                } else {
+                    long waitNanos = startTime + currentTick * tickNanos - System.nanoTime();
+                    if(waitNanos > 0) {
+                        LockSupport.parkNanos(this, waitNanos);
+                    }
+                }
+            } catch (Throwable e) {
+                Logger.error("TimingWheel " + name + " work error", e);
+            }
+        }
+    }
+
+    /**
+     * 处理待处理栈中的任务
+     */
+    private void processPending() {
+        TimingWheelTask task = pending.getAndSet(null);
+        if(task == null) {
+            return;
+        }
+
+        //栈是后进先出的, 反转后按提交的顺序处理
+        TimingWheelTask reversed = null;
+        while(task != null) {
+            TimingWheelTask next = task.nextPending;
+            task.nextPending = reversed;
+            reversed = task;
+            task = next;
+        }
+
+        task = reversed;
+        while(task != null) {
+            TimingWheelTask next = task.nextPending;
+            task.nextPending = null;
+            task.clearQueued();
+
+            //异步执行中的任务在执行完成后重新提交
+            if(!task.running) {
+                if(task.isLinked()) {
+                    unlink(task);
+                }
+
+                if(!task.isCancel()) {
+                    link(task);
+                }
+            }
+
+            task = next;
+        }
+    }
+
+    /**
+     * 处理一个步长
+     *      到达上一层的槽位边界时, 先把上一层当前槽位的任务下降到下层
+     */
+    private void processTick() {
+        long tick = currentTick;
+
+        if((tick & ROOT_MASK) == 0) {
+            int maxLevel = 1;
+            int shift = ROOT_BITS;
+            while(maxLevel < LEVELS - 1 && ((tick >>> shift) & LEVEL_MASK) == 0) {
+                maxLevel++;
+                shift = shift + LEVEL_BITS;
+            }
+
+            for(int level = maxLevel; level >= 1; level--) {
+                int slot = (int) ((tick >>> (ROOT_BITS + (level - 1) * LEVEL_BITS)) & LEVEL_MASK);
+                TimingWheelTask task = detach(level, slot);
+                while(task != null) {
+                    TimingWheelTask next = task.next;
+                    task.next = null;
+                    link(task);
+                    task = next;
+                }
+            }
+        }
+
+        TimingWheelTask task = detach(0, (int) (tick & ROOT_MASK));
+
+        //执行期间重新增加的任务最早放到下一个步长
+        currentTick = tick + 1;
+
+        while(task != null) {
+            TimingWheelTask next = task.next;
+            task.next = null;
+            runTask(task);
+            task = next;
+        }
+    }
+
+    /**
+     * 执行任务
+     * @param task 任务对象
+     */
+    private void runTask(TimingWheelTask task) {
+        if(task.isCancel()) {
+            return;
+        }
+
+        task.incDoCount();
+
+        if(task.isAsynchronous()) {
+            task.running = true;
+            try {
+                Global.async(() -> {
+                    try {
+                        task.run();
+                    } catch (Throwable e) {
+                        Logger.errorf("TimingWheelTask asynchronous error, task: {}", e, task.getClass().getCanonicalName());
+                    } finally {
+                        task.running = false;
+                        if (!task.isCancel() && task.getInterval() > 0) {
+                            task.setDeadline(currentTimeTick() + toTicks(task.getInterval()));
+                            submit(task);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                task.running = false;
+                task.cancel();
+            }
+        } else {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                Logger.errorf("TimingWheelTask error, task: {}", e, task.getClass().getCanonicalName());
+            }
+
+            if(!task.isCancel() && task.getInterval() > 0 && !task.isLinked()) {
+                task.setDeadline(currentTimeTick() + toTicks(task.getInterval()));
+                link(task);
+            }
+        }
+    }
+
+    /**
+     * 根据到期时间把任务链接到对应层的槽位
+     * @param task 任务对象
+     */
+    private void link(TimingWheelTask task) {
+        long expires = Math.max(task.getDeadline(), currentTick);
+        long delta = expires - currentTick;
+
+        int level = 0;
+        int slot;
+        if(delta < ROOT_SIZE) {
+            slot = (int) (expires & ROOT_MASK);
+        } else {
+            if(delta >= MAX_TICKS) {
+                //超出范围的任务放在最高层, 下降时会按到期时间重新计算
+                expires = currentTick + MAX_TICKS - 1;
+                delta = MAX_TICKS - 1;
+            }
+
+            level = 1;
+            int shift = ROOT_BITS;
+            while(delta >= 1L << (shift + LEVEL_BITS)) {
+                level++;
+                shift = shift + LEVEL_BITS;
+            }
+            slot = (int) ((expires >>> shift) & LEVEL_MASK);
+        }
+
+        TimingWheelTask head = wheel[level][slot];
+        task.prev = null;
+        task.next = head;
+        if(head != null) {
+            head.prev = task;
+        }
+        wheel[level][slot] = task;
+
+        task.level = level;
+        task.slot = slot;
+        taskCount++;
+    }
+
+    /**
+     * 从槽位中移除任务
+     * @param task 任务对象
+     */
+    private void unlink(TimingWheelTask task) {
+        if(task.prev != null) {
+            task.prev.next = task.next;
+        } else {
+            wheel[task.level][task.slot] = task.next;
+        }
+
+        if(task.next != null) {
+            task.next.prev = task.prev;
+        }
+
+        task.prev = null;
+        task.next = null;
+        task.level = -1;
+        task.slot = -1;
+        taskCount--;
+    }
+
+    /**
+     * 摘下一个槽位的整个链表
+     * @param level 层
+     * @param slot 槽位
+     * @return 链表的头
+     */
+    private TimingWheelTask detach(int level, int slot) {
+        TimingWheelTask head = wheel[level][slot];
+        wheel[level][slot] = null;
+
+        int size = 0;
+        for(TimingWheelTask task = head; task != null; task = task.next) {
+            task.prev = null;
+            task.level = -1;
+            task.slot = -1;
+            size++;
+        }
+        taskCount = taskCount - size;
+
+        return head;
+    }
+}
@@ -0,0 +1,163 @@
+package org.voovan.tools.hashwheeltimer;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 分层时间轮任务对象
+ *      任务对象本身就是时间轮槽中双向链表的节点, 也是待处理队列的节点, 增加和取消任务都不需要额外分配对象
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public abstract class TimingWheelTask {
+    private static final AtomicIntegerFieldUpdater<TimingWheelTask> QUEUED_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(TimingWheelTask.class, "queued");
+
+    private volatile TimingWheel timingWheel;
+    private volatile long interval;
+    private volatile boolean asynchronous;
+    private volatile boolean cancel = false;
+    private volatile long deadline;
+    private long doCount = 0;
+
+    //以下字段只在时间轮的工作线程中访问
+    TimingWheelTask prev;
+    TimingWheelTask next;
+    int level = -1;
+    int slot = -1;
+
+    //异步执行中, 执行完成后才重新加入时间轮
+    volatile boolean running = false;
+
+    //待处理队列
+    volatile TimingWheelTask nextPending;
+    private volatile int queued = 0;
+
+    public TimingWheelTask() {
+    }
+
+    /**
+     * 构造函数
+     * @param interval 任务的执行间隔, 单位: 毫秒, 0: 只执行一次
+     * @param asynchronous 是否异步执行
+     */
+    public TimingWheelTask(long interval, boolean asynchronous) {
+        this.interval = interval;
+        this.asynchronous = asynchronous;
+    }
+
+    void init(TimingWheel timingWheel, long deadline, long interval, boolean asynchronous) {
+        this.timingWheel = timingWheel;
+        this.deadline = deadline;
+        this.interval = interval;
+        this.asynchronous = asynchronous;
+        this.cancel = false;
+    }
+
+    /**
+     * 获取所属的时间轮
+     * @return 时间轮对象
+     */
+    public TimingWheel getTimingWheel() {
+        return timingWheel;
+    }
+
+    /**
+     * 获取任务的执行间隔
+     * @return 执行间隔, 单位: 毫秒, 0: 只执行一次
+     */
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * 是否是异步任务
+     * @return true: 异步任务, false: 同步任务
+     */
+    public boolean isAsynchronous() {
+        return asynchronous;
+    }
+
+    /**
+     * 获取下次执行的时间
+     * @return 下次执行的时间, 单位: 时间轮的步长
+     */
+    long getDeadline() {
+        return deadline;
+    }
+
+    void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * 获取任务执行的次数
+     * @return 任务执行的次数
+     */
+    public long getDoCount() {
+        return doCount;
+    }
+
+    void incDoCount() {
+        doCount++;
+    }
+
+    /**
+     * 判断任务是否已经取消
+     * @return true:已经取消, false: 未取消
+     */
+    public boolean isCancel() {
+        return cancel;
+    }
+
+    /**
+     * 取消当前任务
+     *      任务在时间轮的工作线程中从槽位移除
+     * @return true: 成功, false: 任务未加入时间轮或已经取消
+     */
+    public boolean cancel() {
+        TimingWheel timingWheel = this.timingWheel;
+        if(cancel || timingWheel == null) {
+            return false;
+        }
+
+        cancel = true;
+        timingWheel.submit(this);
+        return true;
+    }
+
+    /**
+     * 标记任务进入待处理队列
+     * @return true: 需要入队, false: 已经在队列中
+     */
+    boolean markQueued() {
+        return QUEUED_UPDATER.compareAndSet(this, 0, 1);
+    }
+
+    void clearQueued() {
+        queued = 0;
+    }
+
+    /**
+     * 是否在时间轮的槽位中
+     * @return true: 在槽位中, false: 不在槽位中
+     */
+    boolean isLinked() {
+        return level >= 0;
+    }
+
+    /**
+     * 运行 Task
+     */
+    public abstract void run();
+
+    public static TimingWheelTask newInstance(Runnable runnable) {
+        return new TimingWheelTask(){
+            public void run() {
+                runnable.run();
+            }
+        };
+    }
+}
@@ -0,0 +1,108 @@
+package org.voovan.test.tools.buffer;
+
+import junit.framework.TestCase;
+import org.voovan.tools.buffer.ByteBufferAnalysis;
+import org.voovan.tools.buffer.ByteBufferPool;
+import org.voovan.tools.buffer.TByteBuffer;
+import org.voovan.tools.log.Logger;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 按容量分级的内存池测试
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class ByteBufferPoolUnit extends TestCase {
+
+	public void testSizeClass() {
+		assertEquals(0, ByteBufferPool.sizeClass(1));
+		assertEquals(0, ByteBufferPool.sizeClass(512));
+		assertEquals(1, ByteBufferPool.sizeClass(513));
+		assertEquals(4, ByteBufferPool.sizeClass(8192));
+		assertEquals(13, ByteBufferPool.sizeClass(ByteBufferPool.MAX_CLASS_SIZE));
+		assertEquals(-1, ByteBufferPool.sizeClass(ByteBufferPool.MAX_CLASS_SIZE + 1));
+		assertEquals(ByteBufferPool.MAX_CLASS_SIZE, ByteBufferPool.classSize(13));
+	}
+
+	public void testThreadCacheHit() throws ReflectiveOperationException {
+		ByteBuffer byteBuffer = TByteBuffer.allocateDirect(3000);
+		assertEquals(3000, byteBuffer.capacity());
+		long address = TByteBuffer.getAddress(byteBuffer);
+		TByteBuffer.release(byteBuffer);
+
+		long hit = ByteBufferAnalysis.THREAD_CACHE_HIT.longValue();
+		ByteBuffer reuseBuffer = TByteBuffer.allocateDirect(4000);
+		assertEquals(address, (long) TByteBuffer.getAddress(reuseBuffer));
+		assertEquals(4000, reuseBuffer.capacity());
+		assertEquals(hit + 1, ByteBufferAnalysis.THREAD_CACHE_HIT.longValue());
+		TByteBuffer.release(reuseBuffer);
+	}
+
+	public void testReallocate() {
+		ByteBuffer byteBuffer = TByteBuffer.allocateDirect(600);
+		byteBuffer.put("helyho".getBytes());
+		byteBuffer.flip();
+
+		//实际分配 1024, 不需要复制
+		assertTrue(TByteBuffer.reallocate(byteBuffer, 1000));
+		assertEquals(1000, byteBuffer.capacity());
+		assertEquals("helyho", TByteBuffer.toString(byteBuffer));
+
+		//超过实际分配的容量, 从内存池中获取
+		assertTrue(TByteBuffer.reallocate(byteBuffer, 100 * 1024));
+		assertEquals(100 * 1024, byteBuffer.capacity());
+		assertEquals("helyho", TByteBuffer.toString(byteBuffer));
+
+		//超过最大级别
+		assertTrue(TByteBuffer.reallocate(byteBuffer, ByteBufferPool.MAX_CLASS_SIZE + 1));
+		assertEquals(ByteBufferPool.MAX_CLASS_SIZE + 1, byteBuffer.capacity());
+		assertEquals("helyho", TByteBuffer.toString(byteBuffer));
+
+		TByteBuffer.release(byteBuffer);
+	}
+
+	public void testDoubleRecycle() throws ReflectiveOperationException {
+		ByteBuffer byteBuffer = TByteBuffer.allocateDirect(2000);
+		long address = TByteBuffer.getAddress(byteBuffer);
+		TByteBuffer.release(byteBuffer);
+
+		//重复回收被拒绝, 同一块内存只会被分配一次
+		TByteBuffer.release(byteBuffer);
+
+		ByteBuffer firstBuffer = TByteBuffer.allocateDirect(2000);
+		ByteBuffer secondBuffer = TByteBuffer.allocateDirect(2000);
+		assertEquals(address, (long) TByteBuffer.getAddress(firstBuffer));
+		assertTrue(address != TByteBuffer.getAddress(secondBuffer));
+
+		TByteBuffer.release(firstBuffer);
+		TByteBuffer.release(secondBuffer);
+	}
+
+	public void testDepot() throws Exception {
+		ByteBuffer[] byteBuffers = new ByteBuffer[512];
+		Thread thread = new Thread(()->{
+			for(int i=0; i<byteBuffers.length; i++) {
+				byteBuffers[i] = TByteBuffer.allocateDirect(64 * 1024);
+			}
+			for(int i=0; i<byteBuffers.length; i++) {
+				TByteBuffer.release(byteBuffers[i]);
+			}
+		});
+		thread.start();
+		thread.join();
+
+		//其他线程的本地缓存满了以后进入全局仓库
+		assertTrue(ByteBufferPool.getDepotSize() > 0);
+
+		long depotHit = ByteBufferAnalysis.DEPOT_HIT.longValue();
+		ByteBuffer byteBuffer = TByteBuffer.allocateDirect(64 * 1024);
+		assertEquals(depotHit + 1, ByteBufferAnalysis.DEPOT_HIT.longValue());
+		TByteBuffer.release(byteBuffer);
+
+		Logger.simple(ByteBufferAnalysis.getByteBufferAnalysis());
+	}
+}
@@ -0,0 +1,131 @@
+package org.voovan.test.tools.buffer;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.voovan.tools.buffer.ByteBufferSearch;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分隔符查找性能测试
+ *      使用 500 字节左右的 HTTP 请求头, 对比逐字节查找和 SWAR 查找
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+public class ByteBufferSearchBench {
+    static final String REQUEST_HEAD =
+            "GET /api/v1/user/profile?id=1024&fields=name,email,avatar HTTP/1.1\r\n" +
+            "Host: www.voovan.org\r\n" +
+            "Connection: keep-alive\r\n" +
+            "User-Agent: Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/96.0 Safari/537.36\r\n" +
+            "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8\r\n" +
+            "Accept-Encoding: gzip, deflate, br\r\n" +
+            "Accept-Language: zh-CN,zh;q=0.9,en;q=0.8\r\n" +
+            "Cookie: SESSIONID=57939E50D6B2A0B23D20CA330C89E290; theme=dark\r\n" +
+            "Cache-Control: max-age=0\r\n" +
+            "\r\n";
+
+    private static final byte[] DOUBLE_CRLF = "\r\n\r\n".getBytes();
+
+    private ByteBuffer heapBuffer;
+    private ByteBuffer directBuffer;
+
+    @Setup
+    public void setup() {
+        byte[] bytes = REQUEST_HEAD.getBytes();
+        heapBuffer = ByteBuffer.wrap(bytes);
+        directBuffer = ByteBuffer.allocateDirect(bytes.length);
+        directBuffer.put(bytes);
+        directBuffer.flip();
+    }
+
+    /**
+     * 逐字节查找 CRLFCRLF
+     */
+    private static int byteLoopIndexOf(ByteBuffer byteBuffer, byte[] mark) {
+        int last = byteBuffer.limit() - mark.length;
+        for (int i = byteBuffer.position(); i <= last; i++) {
+            int j = 0;
+            while (j < mark.length && byteBuffer.get(i + j) == mark[j]) {
+                j++;
+            }
+            if (j == mark.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 逐字节拆分所有的行
+     */
+    private static int byteLoopLines(ByteBuffer byteBuffer) {
+        int count = 0;
+        for (int i = byteBuffer.position(); i < byteBuffer.limit(); i++) {
+            if (byteBuffer.get(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int swarLines(ByteBuffer byteBuffer) {
+        int count = 0;
+        int from = byteBuffer.position();
+        int index;
+        while ((index = ByteBufferSearch.indexOf(byteBuffer, from, byteBuffer.limit(), (byte) '\n')) >= 0) {
+            count++;
+            from = index + 1;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int headEnd_byteLoop_heap() {
+        return byteLoopIndexOf(heapBuffer, DOUBLE_CRLF);
+    }
+
+    @Benchmark
+    public int headEnd_swar_heap() {
+        return ByteBufferSearch.indexOfDoubleCRLF(heapBuffer, heapBuffer.position(), heapBuffer.limit());
+    }
+
+    @Benchmark
+    public int headEnd_byteLoop_direct() {
+        return byteLoopIndexOf(directBuffer, DOUBLE_CRLF);
+    }
+
+    @Benchmark
+    public int headEnd_swar_direct() {
+        return ByteBufferSearch.indexOfDoubleCRLF(directBuffer, directBuffer.position(), directBuffer.limit());
+    }
+
+    @Benchmark
+    public int lines_byteLoop_direct() {
+        return byteLoopLines(directBuffer);
+    }
+
+    @Benchmark
+    public int lines_swar_direct() {
+        return swarLines(directBuffer);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(ByteBufferSearchBench.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
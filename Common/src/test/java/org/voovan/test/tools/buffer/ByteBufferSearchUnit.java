@@ -0,0 +1,73 @@
+package org.voovan.test.tools.buffer;
+
+import junit.framework.TestCase;
+import org.voovan.tools.buffer.ByteBufferSearch;
+import org.voovan.tools.buffer.TByteBuffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 分隔符查找测试
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class ByteBufferSearchUnit extends TestCase {
+	static final String REQUEST_HEAD =
+			"GET /test/t?name=helyho HTTP/1.1\r\n"+
+			"Connection: keep-alive\r\n"+
+			"Host: 127.0.0.1:1031\r\n"+
+			"\r\n";
+
+	private ByteBuffer directBuffer(String content) {
+		ByteBuffer byteBuffer = TByteBuffer.allocateDirect(content.length());
+		byteBuffer.put(content.getBytes());
+		byteBuffer.flip();
+		return byteBuffer;
+	}
+
+	public void testIndexOfByte() {
+		ByteBuffer heapBuffer = ByteBuffer.wrap(REQUEST_HEAD.getBytes());
+		ByteBuffer directBuffer = directBuffer(REQUEST_HEAD);
+
+		//每个位置的字节都能被找到, 覆盖 8 字节块的每个偏移
+		for(int i=0; i<REQUEST_HEAD.length(); i++) {
+			byte value = (byte) REQUEST_HEAD.charAt(i);
+			int expect = REQUEST_HEAD.indexOf(value, i);
+			assertEquals(expect, ByteBufferSearch.indexOf(heapBuffer, i, REQUEST_HEAD.length(), value));
+			assertEquals(expect, ByteBufferSearch.indexOf(directBuffer, i, REQUEST_HEAD.length(), value));
+		}
+
+		assertEquals(-1, ByteBufferSearch.indexOf(heapBuffer, (byte) '#'));
+		assertEquals(-1, ByteBufferSearch.indexOf(heapBuffer, 0, 3, (byte) ' '));
+		//超过 0x7F 的字节
+		assertEquals(5, ByteBufferSearch.indexOf(ByteBuffer.wrap(new byte[]{0, 1, 2, 3, 4, (byte) 0x80, (byte) 0xFF, 0, 0}), (byte) 0x80));
+
+		TByteBuffer.release(directBuffer);
+	}
+
+	public void testIndexOfCRLF() {
+		ByteBuffer byteBuffer = directBuffer(REQUEST_HEAD);
+		assertEquals(REQUEST_HEAD.indexOf("\r\n"), ByteBufferSearch.indexOfCRLF(byteBuffer, 0, byteBuffer.limit()));
+		assertEquals(REQUEST_HEAD.indexOf("\r\n\r\n"), ByteBufferSearch.indexOfDoubleCRLF(byteBuffer, 0, byteBuffer.limit()));
+		assertEquals(-1, ByteBufferSearch.indexOfDoubleCRLF(byteBuffer, 0, byteBuffer.limit() - 1));
+
+		ByteBuffer crBuffer = ByteBuffer.wrap("a\rb\r\r\n".getBytes());
+		assertEquals(4, ByteBufferSearch.indexOfCRLF(crBuffer, 0, crBuffer.limit()));
+		TByteBuffer.release(byteBuffer);
+	}
+
+	public void testIndexOfMark() {
+		ByteBuffer byteBuffer = ByteBuffer.wrap(REQUEST_HEAD.getBytes());
+		assertEquals(REQUEST_HEAD.indexOf("Host"), ByteBufferSearch.indexOf(byteBuffer, "Host".getBytes()));
+		assertEquals(-1, ByteBufferSearch.indexOf(byteBuffer, "Hosts".getBytes()));
+
+		//slice 后的缓冲区
+		byteBuffer.position(10);
+		ByteBuffer slice = byteBuffer.slice();
+		assertEquals(REQUEST_HEAD.indexOf("Host") - 10, ByteBufferSearch.indexOf(slice, "Host".getBytes()));
+		assertEquals(REQUEST_HEAD.indexOf("Host"), TByteBuffer.indexOf(byteBuffer, "Host".getBytes()));
+	}
+}
@@ -0,0 +1,106 @@
+package org.voovan.test.tools.buffer;
+
+import junit.framework.TestCase;
+import org.voovan.tools.buffer.CompositeByteBufferChannel;
+import org.voovan.tools.buffer.TByteBuffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 分段 ByteBuffer 通道测试
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class CompositeByteBufferChannelUnit extends TestCase {
+
+	private CompositeByteBufferChannel byteBufferChannel;
+
+	public void setUp() {
+		//使用较小的分段, 让数据跨越多个分段
+		byteBufferChannel = new CompositeByteBufferChannel(8);
+		byteBufferChannel.writeEnd("GET / HTTP/1.1\r\nHost: voovan\r\n\r\n".getBytes(), 0, 32);
+	}
+
+	public void tearDown() {
+		byteBufferChannel.release();
+	}
+
+	public void testWriteEnd() {
+		assertEquals(32, byteBufferChannel.size());
+		assertEquals(4, byteBufferChannel.segmentCount());
+
+		byteBufferChannel.writeEnd(ByteBuffer.wrap("body".getBytes()));
+		assertEquals(36, byteBufferChannel.size());
+		assertEquals(5, byteBufferChannel.segmentCount());
+		assertEquals("GET / HTTP/1.1\r\nHost: voovan\r\n\r\nbody", byteBufferChannel.content());
+	}
+
+	public void testGet() {
+		assertEquals('H', byteBufferChannel.get(6));
+		assertEquals('v', byteBufferChannel.get(22));
+
+		byte[] bytes = new byte[10];
+		assertEquals(10, byteBufferChannel.get(bytes, 6, 10));
+		assertEquals("HTTP/1.1\r\n", new String(bytes));
+
+		try {
+			byteBufferChannel.get(32);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
+	public void testIndexOf() {
+		assertEquals(14, byteBufferChannel.indexOf("\r\n".getBytes()));
+		assertEquals(28, byteBufferChannel.indexOf("\r\n\r\n".getBytes()));
+		assertEquals(16, byteBufferChannel.indexOf("Host".getBytes()));
+		assertEquals(-1, byteBufferChannel.indexOf("Hosts".getBytes()));
+		assertTrue(byteBufferChannel.startWith("GET ".getBytes()));
+	}
+
+	public void testSlice() {
+		ByteBuffer byteBuffer = byteBufferChannel.slice(3);
+		assertEquals("GET", TByteBuffer.toString(byteBuffer));
+
+		//跨越分段
+		byteBuffer = byteBufferChannel.slice(14);
+		assertEquals("GET / HTTP/1.1", TByteBuffer.toString(byteBuffer));
+		assertEquals(32, byteBufferChannel.size());
+	}
+
+	public void testReadLine() {
+		assertEquals("GET / HTTP/1.1\r\n", byteBufferChannel.readLine());
+		assertEquals("Host: voovan\r\n", byteBufferChannel.readLine());
+		assertEquals("\r\n", byteBufferChannel.readLine());
+		assertNull(byteBufferChannel.readLine());
+		assertEquals(0, byteBufferChannel.segmentCount());
+	}
+
+	public void testReadWithSplit() {
+		assertEquals("GET / HTTP/1.1", TByteBuffer.toString(byteBufferChannel.readWithSplit("\r\n".getBytes())));
+		assertEquals("Host: voovan", TByteBuffer.toString(byteBufferChannel.readWithSplit("\r\n".getBytes())));
+		assertEquals(2, byteBufferChannel.size());
+	}
+
+	public void testShrink() {
+		byteBufferChannel.shrink(6);
+		assertEquals(26, byteBufferChannel.size());
+		assertTrue(byteBufferChannel.startWith("HTTP".getBytes()));
+
+		byteBufferChannel.shrink(-4);
+		assertEquals(22, byteBufferChannel.size());
+		assertEquals("HTTP/1.1\r\nHost: voovan", byteBufferChannel.content());
+		assertEquals(4, byteBufferChannel.segmentCount());
+	}
+
+	public void testReadHead() {
+		ByteBuffer byteBuffer = ByteBuffer.allocate(20);
+		assertEquals(20, byteBufferChannel.readHead(byteBuffer));
+		assertEquals("GET / HTTP/1.1\r\nHost", TByteBuffer.toString(byteBuffer));
+		assertEquals(12, byteBufferChannel.size());
+		assertEquals(2, byteBufferChannel.segmentCount());
+	}
+}
@@ -0,0 +1,160 @@
+package org.voovan.test.tools.event;
+
+import junit.framework.TestCase;
+import org.voovan.tools.TEnv;
+import org.voovan.tools.event.EventRunner;
+import org.voovan.tools.event.EventRunnerGroup;
+import org.voovan.tools.event.EventTask;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 事件执行管理器任务窃取测试
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class EventRunnerGroupUnit extends TestCase {
+
+	public void testSteal() throws InterruptedException {
+		EventRunnerGroup eventRunnerGroup = EventRunnerGroup.newInstance(4, true).process();
+		EventRunner eventRunner = eventRunnerGroup.getEventRunners()[0];
+		TEnv.sleep(100);
+
+		int taskCount = 200;
+		CountDownLatch countDownLatch = new CountDownLatch(taskCount * 2);
+		AtomicInteger affinityError = new AtomicInteger();
+
+		for(int i=0; i<taskCount; i++) {
+			//可窃取任务
+			eventRunner.addEvent(5, ()->{
+				TEnv.sleep(1);
+				countDownLatch.countDown();
+			}, true);
+
+			//绑定在 EventRunner 上的任务
+			eventRunner.addEvent(5, ()->{
+				if(Thread.currentThread() != eventRunner.getThread()) {
+					affinityError.incrementAndGet();
+				}
+				countDownLatch.countDown();
+			});
+		}
+
+		assertTrue(countDownLatch.await(10, TimeUnit.SECONDS));
+		assertEquals(0, affinityError.get());
+		assertTrue(eventRunnerGroup.getStealCount() > 0);
+		assertEquals(eventRunnerGroup.getStealCount(), eventRunner.getStolenCount());
+		System.out.println(eventRunnerGroup.getStealAnalysis());
+
+		eventRunnerGroup.close();
+	}
+
+	public void testStealKeepPriority() {
+		//不启动 EventRunner, 只验证窃取的任务对象
+		EventRunnerGroup eventRunnerGroup = EventRunnerGroup.newInstance(2, true);
+		EventRunner eventRunner = eventRunnerGroup.getEventRunners()[0];
+
+		Runnable lowTask = ()->{};
+		Runnable highTask = ()->{};
+		eventRunner.addEvent(2, lowTask, true);
+		eventRunner.addEvent(8, highTask, true);
+
+		//窃取线程从优先级最高的队列获取
+		EventTask eventTask = eventRunnerGroup.stealTask();
+		assertSame(highTask, eventTask.getRunnable());
+		assertEquals(8, eventTask.getPriority());
+
+		eventTask = eventRunnerGroup.stealTask();
+		assertSame(lowTask, eventTask.getRunnable());
+		assertEquals(2, eventTask.getPriority());
+
+		assertNull(eventRunnerGroup.stealTask());
+		assertEquals(2, eventRunner.getStolenCount());
+
+		eventRunnerGroup.close();
+	}
+
+	/**
+	 * 当前 EventRunner 按优先级执行可窃取任务, 同优先级先进先出, 和绑定的任务按优先级合并
+	 */
+	public void testOwnerOrder() throws InterruptedException {
+		EventRunnerGroup eventRunnerGroup = EventRunnerGroup.newInstance(1, false);
+		EventRunner eventRunner = eventRunnerGroup.getEventRunners()[0];
+
+		List<String> order = new Vector<String>();
+		CountDownLatch countDownLatch = new CountDownLatch(6);
+		eventRunner.addEvent(5, ()->{ order.add("s5-1"); countDownLatch.countDown(); }, true);
+		eventRunner.addEvent(5, ()->{ order.add("s5-2"); countDownLatch.countDown(); }, true);
+		eventRunner.addEvent(8, ()->{ order.add("s8"); countDownLatch.countDown(); }, true);
+		eventRunner.addEvent(3, ()->{ order.add("s3"); countDownLatch.countDown(); }, true);
+		eventRunner.addEvent(6, ()->{ order.add("b6"); countDownLatch.countDown(); });
+		eventRunner.addEvent(5, ()->{ order.add("b5"); countDownLatch.countDown(); });
+
+		eventRunnerGroup.process();
+		assertTrue(countDownLatch.await(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("s8", "b6", "b5", "s5-1", "s5-2", "s3"), order);
+
+		eventRunnerGroup.close();
+	}
+
+	/**
+	 * 空闲的 EventRunner 在加入可窃取任务时立即被唤醒
+	 */
+	public void testWakeupLatency() throws InterruptedException {
+		for(boolean isMpscQueue : new boolean[]{false, true}) {
+			//使用组中未启动的 EventRunner 的线程
+			EventRunnerGroup eventRunnerGroup = EventRunnerGroup.newInstance(1, true);
+			EventRunner eventRunner = new EventRunner(eventRunnerGroup, isMpscQueue);
+			eventRunner.process();
+			TEnv.sleep(100);
+
+			long totalLatency = 0;
+			for(int i=0; i<20; i++) {
+				CountDownLatch countDownLatch = new CountDownLatch(1);
+				long start = System.nanoTime();
+				eventRunner.addEvent(5, countDownLatch::countDown, true);
+				assertTrue(countDownLatch.await(5, TimeUnit.SECONDS));
+				totalLatency += System.nanoTime() - start;
+				TEnv.sleep(20);
+			}
+
+			//空闲等待的超时时间是 1 秒, 没有唤醒时平均延迟会接近 500 毫秒
+			assertTrue(isMpscQueue + "", TimeUnit.NANOSECONDS.toMillis(totalLatency / 20) < 50);
+			eventRunner.close();
+			eventRunnerGroup.close();
+		}
+	}
+
+	/**
+	 * 忙碌的 EventRunner 中的可窃取任务立即被空闲的 EventRunner 窃取
+	 */
+	public void testWakeupThief() throws InterruptedException {
+		EventRunnerGroup eventRunnerGroup = EventRunnerGroup.newInstance(2, true).process();
+		EventRunner eventRunner = eventRunnerGroup.getEventRunners()[0];
+		TEnv.sleep(100);
+
+		CountDownLatch busyLatch = new CountDownLatch(1);
+		eventRunner.addEvent(5, ()->{
+			busyLatch.countDown();
+			TEnv.sleep(2000);
+		});
+		assertTrue(busyLatch.await(5, TimeUnit.SECONDS));
+
+		CountDownLatch countDownLatch = new CountDownLatch(1);
+		long start = System.currentTimeMillis();
+		eventRunner.addEvent(5, countDownLatch::countDown, true);
+		assertTrue(countDownLatch.await(5, TimeUnit.SECONDS));
+		assertTrue(System.currentTimeMillis() - start < 500);
+		assertEquals(1, eventRunner.getStolenCount());
+
+		eventRunnerGroup.close();
+	}
+}
@@ -0,0 +1,148 @@
+package org.voovan.test.tools.event;
+
+import junit.framework.TestCase;
+import org.voovan.tools.TEnv;
+import org.voovan.tools.event.EventRunnerGroup;
+import org.voovan.tools.event.EventTask;
+import org.voovan.tools.event.EventTaskQueue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 事件任务队列测试
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class EventTaskQueueUnit extends TestCase {
+
+	public void testPriority() {
+		EventTaskQueue eventTaskQueue = new EventTaskQueue(4);
+		Runnable low = ()->{};
+		Runnable high = ()->{};
+
+		//超出环形队列大小的任务会进入溢出队列
+		for(int i=0; i<10; i++) {
+			eventTaskQueue.offer(2, low);
+		}
+		eventTaskQueue.offer(9, high);
+
+		assertEquals(11, eventTaskQueue.size());
+		assertSame(high, eventTaskQueue.pollRunnable());
+		for(int i=0; i<10; i++) {
+			assertSame(low, eventTaskQueue.pollRunnable());
+		}
+		assertNull(eventTaskQueue.pollRunnable());
+		assertNull(eventTaskQueue.pollRunnable(10, TimeUnit.MILLISECONDS));
+	}
+
+	public void testOverflowOrder() {
+		EventTaskQueue eventTaskQueue = new EventTaskQueue(4);
+		Runnable[] runnables = new Runnable[10];
+		for(int i=0; i<runnables.length; i++) {
+			runnables[i] = ()->{};
+			eventTaskQueue.offer(5, runnables[i]);
+		}
+
+		//环形队列腾出空间后, 溢出队列不为空, 新任务仍然排在溢出队列后面
+		assertSame(runnables[0], eventTaskQueue.pollRunnable());
+		Runnable last = ()->{};
+		eventTaskQueue.offer(5, last);
+
+		for(int i=1; i<runnables.length; i++) {
+			assertSame(runnables[i], eventTaskQueue.pollRunnable());
+		}
+		assertSame(last, eventTaskQueue.pollRunnable());
+		assertNull(eventTaskQueue.pollRunnable());
+	}
+
+	public void testPeek() {
+		EventTaskQueue eventTaskQueue = new EventTaskQueue(4);
+		assertNull(eventTaskQueue.peek());
+
+		Runnable low = ()->{};
+		Runnable high = ()->{};
+		eventTaskQueue.offer(2, low);
+		eventTaskQueue.offer(9, high);
+
+		EventTask eventTask = eventTaskQueue.peek();
+		assertEquals(9, eventTask.getPriority());
+		assertSame(high, eventTask.getRunnable());
+		assertEquals(2, eventTaskQueue.size());
+
+		assertSame(high, eventTaskQueue.pollRunnable());
+		assertSame(low, eventTaskQueue.peek().getRunnable());
+		assertSame(low, eventTaskQueue.pollRunnable());
+		assertNull(eventTaskQueue.peek());
+	}
+
+	public void testMultiProducer() throws InterruptedException {
+		EventTaskQueue eventTaskQueue = new EventTaskQueue(64);
+		int producerCount = 8;
+		int taskCount = 100000;
+		AtomicInteger counter = new AtomicInteger();
+		CountDownLatch countDownLatch = new CountDownLatch(producerCount);
+
+		for(int p=0; p<producerCount; p++) {
+			new Thread(()->{
+				for(int i=0; i<taskCount; i++) {
+					eventTaskQueue.offer(i % 10 + 1, counter::incrementAndGet);
+				}
+				countDownLatch.countDown();
+			}).start();
+		}
+
+		int consumed = 0;
+		while(consumed < producerCount * taskCount) {
+			Runnable runnable = eventTaskQueue.pollRunnable(1000, TimeUnit.MILLISECONDS);
+			assertNotNull(runnable);
+			runnable.run();
+			consumed++;
+		}
+
+		countDownLatch.await();
+		assertEquals(producerCount * taskCount, counter.get());
+		assertTrue(eventTaskQueue.isEmpty());
+	}
+
+	/**
+	 * 等待中的线程在有新任务时立即被唤醒, 没有任务时等待到超时
+	 */
+	public void testWakeup() throws InterruptedException {
+		EventTaskQueue eventTaskQueue = new EventTaskQueue(64);
+		Runnable runnable = ()->{};
+
+		long start = System.currentTimeMillis();
+		assertNull(eventTaskQueue.pollRunnable(200, TimeUnit.MILLISECONDS));
+		assertTrue(System.currentTimeMillis() - start >= 200);
+
+		for(int i=0; i<100; i++) {
+			Thread producer = new Thread(()->{
+				TEnv.sleep(1);
+				eventTaskQueue.offer(5, runnable);
+			});
+			producer.start();
+
+			start = System.currentTimeMillis();
+			assertSame(runnable, eventTaskQueue.pollRunnable(10000, TimeUnit.MILLISECONDS));
+			assertTrue(System.currentTimeMillis() - start < 5000);
+			producer.join();
+		}
+	}
+
+	public void testEventRunnerGroup() throws InterruptedException {
+		System.setProperty("MpscEventQueue", "true");
+		EventRunnerGroup eventRunnerGroup = EventRunnerGroup.newInstance(4, false);
+		CountDownLatch countDownLatch = new CountDownLatch(10000);
+		for(int i=0; i<10000; i++) {
+			eventRunnerGroup.addEvent(countDownLatch::countDown);
+		}
+		eventRunnerGroup.process();
+		assertTrue(countDownLatch.await(10, TimeUnit.SECONDS));
+		eventRunnerGroup.close();
+	}
+}
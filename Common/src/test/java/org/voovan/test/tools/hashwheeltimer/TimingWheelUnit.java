@@ -0,0 +1,97 @@
+package org.voovan.test.tools.hashwheeltimer;
+
+import junit.framework.TestCase;
+import org.voovan.tools.TEnv;
+import org.voovan.tools.hashwheeltimer.TimingWheel;
+import org.voovan.tools.hashwheeltimer.TimingWheelTask;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分层时间轮测试
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class TimingWheelUnit extends TestCase {
+
+    private TimingWheel timingWheel;
+
+    public void setUp() {
+        timingWheel = new TimingWheel("Test", 1).rotate();
+    }
+
+    public void tearDown() {
+        timingWheel.cancel();
+    }
+
+    public void testDelay() throws InterruptedException {
+        //覆盖第 0 层和第 1 层的槽位
+        long[] delays = new long[]{1, 10, 255, 256, 300, 1000, 1500};
+        CountDownLatch countDownLatch = new CountDownLatch(delays.length);
+        AtomicLong maxError = new AtomicLong(0);
+
+        for(long delay : delays) {
+            long start = System.currentTimeMillis();
+            timingWheel.addTask(new TimingWheelTask() {
+                @Override
+                public void run() {
+                    long error = System.currentTimeMillis() - start - delay;
+                    assertTrue("task run too early: " + delay + " " + error, error >= -1);
+                    maxError.accumulateAndGet(error, Math::max);
+                    countDownLatch.countDown();
+                }
+            }, delay, 0, false);
+        }
+
+        assertTrue(countDownLatch.await(5, TimeUnit.SECONDS));
+        assertTrue("max error: " + maxError.get(), maxError.get() < 100);
+    }
+
+    public void testInterval() {
+        AtomicInteger count = new AtomicInteger(0);
+        TimingWheelTask task = timingWheel.addTask(() -> count.incrementAndGet(), 20);
+        TEnv.sleep(500);
+        task.cancel();
+        int runCount = count.get();
+        assertTrue("run count: " + runCount, runCount >= 15 && runCount <= 26);
+
+        TEnv.sleep(100);
+        assertEquals(runCount, count.get());
+    }
+
+    public void testAsynchronous() {
+        AtomicInteger count = new AtomicInteger(0);
+        TimingWheelTask task = timingWheel.addTask(() -> count.incrementAndGet(), 20, true);
+        //首次异步执行需要初始化全局线程池
+        TEnv.sleep(1000);
+        task.cancel();
+        assertTrue("run count: " + count.get(), count.get() > 10);
+    }
+
+    public void testCancel() {
+        AtomicInteger count = new AtomicInteger(0);
+        TimingWheelTask[] tasks = new TimingWheelTask[100000];
+        for(int i = 0; i < tasks.length; i++) {
+            tasks[i] = timingWheel.addTask(() -> count.incrementAndGet(), 1000 + i % 1000);
+        }
+
+        TEnv.sleep(100);
+        assertEquals(tasks.length, timingWheel.getTaskCount());
+
+        for(TimingWheelTask task : tasks) {
+            task.cancel();
+        }
+
+        TEnv.sleep(100);
+        assertEquals(0, timingWheel.getTaskCount());
+
+        TEnv.sleep(2500);
+        assertEquals(0, count.get());
+    }
+}
@@ -20,7 +20,7 @@ public class Event {
 	 *
 	 */
 	public enum EventName {
-		ON_ACCEPTED, ON_INIT, ON_CONNECT, ON_DISCONNECT, ON_RECEIVE, ON_SENT, ON_FLUSH, ON_IDLE, ON_EXCEPTION
+		ON_ACCEPTED, ON_INIT, ON_CONNECT, ON_DISCONNECT, ON_RECEIVE, ON_SENT, ON_FLUSH, ON_IDLE, ON_EXCEPTION, ON_WRITABILITY_CHANGED
 	}
 
 	/**
@@ -2,13 +2,17 @@ package org.voovan.network;
 
 import org.voovan.network.Event.EventName;
 import org.voovan.network.exception.IoFilterException;
+import org.voovan.network.filter.ZipFilter;
 import org.voovan.network.handler.SynchronousHandler;
+import org.voovan.network.metrics.NetworkMetrics;
+import org.voovan.network.metrics.SelectorMetrics;
 import org.voovan.tools.collection.Chain;
 import org.voovan.tools.buffer.TByteBuffer;
 import org.voovan.tools.log.Logger;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * 事件的实际逻辑处理
@@ -79,17 +83,16 @@ public class EventProcess {
                     session.flush();
                 }
             }
-
-            //如果有未处理的数据
-            int size = session.getReadByteBufferChannel().size();
-            if(size > 0) {
-                session.socketSelector().loadAndPrepare(session, size);
-            }
-
         } finally {
             //设置空闲状态
             session.getState().setConnect(false);
         }
+
+        //如果有未处理的数据, 例如 SSL 握手时和握手报文一起收到的数据, 连接状态结束后才能触发 onReceive
+        int size = session.getReadByteBufferChannel().size();
+        if(size > 0) {
+            session.socketSelector().loadAndPrepare(session, size);
+        }
     }
 
     /**
@@ -116,6 +119,21 @@ public class EventProcess {
         }
     }
 
+    /**
+     * 获取会话所在选择器的计数器
+     *      耗时记录在选择器自己的直方图中, 不同 IO 线程之间不共享
+     * @param session 会话对象
+     * @return 选择器的计数器, 未开启 NetworkMetrics 时为 null
+     */
+    private static SelectorMetrics getSelectorMetrics(IoSession session) {
+        if(!NetworkMetrics.ENABLE) {
+            return null;
+        }
+
+        SocketSelector socketSelector = session.socketSelector();
+        return socketSelector == null ? null : socketSelector.getMetrics();
+    }
+
     /**
      * 读取事件 在消息接受完成后触发
      *
@@ -127,6 +145,8 @@ public class EventProcess {
         IoSession session = event.getSession();
 
         if (session != null) {
+            SelectorMetrics metrics = getSelectorMetrics(session);
+            long startTime = metrics != null ? System.nanoTime() : 0;
             try {
 
                 // 循环读取完整的消息包.
@@ -164,10 +184,15 @@ public class EventProcess {
                         session.flush();
                     }
 
-                    if (session.getReadByteBufferChannel().size() > 0) {
+                    //消息不完整时等待下一次读事件
+                    if (session.getReadByteBufferChannel().size() > 0 && !session.getMessageLoader().isWaitData()) {
                         EventTrigger.fireReceiveAsync(session);
                     }
                 }
+
+                if(metrics != null) {
+                    metrics.getOnReadTime().record(System.nanoTime() - startTime);
+                }
             }
         }
     }
@@ -206,28 +231,72 @@ public class EventProcess {
             return null;
         }
 
+        SelectorMetrics metrics = getSelectorMetrics(session);
+        long startTime = metrics != null ? System.nanoTime() : 0;
+
         // -----------------Filter 解密处理-----------------
         result = filterDecoder(session, byteBuffer);
         // -------------------------------------------------
 
+        if(metrics != null) {
+            long decodeTime = System.nanoTime();
+            metrics.getFilterDecodeTime().record(decodeTime - startTime);
+            startTime = decodeTime;
+        }
+
         // -----------------Handler 业务处理-----------------
         if (result != null) {
             IoHandler handler = session.socketContext().handler();
             result = handler.onReceive(session, result);
+
+            if(metrics != null) {
+                metrics.getHandlerTime().record(System.nanoTime() - startTime);
+            }
         }
         // --------------------------------------------------
 
         return result;
     }
 
+    /**
+     * 批量接收的消息处理函数
+     *      一批消息作为一个消息交给过滤器和 Handler, 用于 UDP 批量模式
+     * @param session  会话对象
+     * @param messages 一批消息
+     * @return 产生的响应
+     * @throws IOException IO 异常
+     */
+    public static Object doReciveBatch(IoSession session, List<?> messages) throws IOException {
+        Object result = null;
+
+        try {
+            session.getState().setReceive(true);
+
+            // -----------------Filter 解密处理-----------------
+            result = filterDecoder(session, messages);
+            // -------------------------------------------------
+
+            // -----------------Handler 业务处理-----------------
+            if (result != null) {
+                IoHandler handler = session.socketContext().handler();
+                result = handler.onReceive(session, result);
+            }
+            // --------------------------------------------------
+        } finally {
+            session.getState().setReceive(false);
+        }
+
+        return result;
+    }
+
     /**
      * 使用过滤器过滤解码结果
      * @param session      Session 对象
-     * @param readedBuffer	   需解码的对象
+     * @param readedBuffer	   需解码的对象, 通常是 ByteBuffer, UDP 批量模式下是 List&lt;Datagram&gt;
      * @return  解码后的对象
      * @throws IoFilterException 过滤器异常
      */
-    public static Object filterDecoder(IoSession session, ByteBuffer readedBuffer) throws IoFilterException{
+    public static Object filterDecoder(IoSession session, Object readedBuffer) throws IoFilterException{
         Object result = readedBuffer;
 
         Chain<IoFilter> filterChain = (Chain<IoFilter>) session.socketContext().getReciveFilterChain();
@@ -296,6 +365,13 @@ public class EventProcess {
             //触发发送事件
             session.getState().setSend(true);
 
+            //文件区域直接发送
+            if(sendObj instanceof FileRegion) {
+                sendFileRegion(session, (FileRegion) sendObj);
+                EventTrigger.fireSent(session, sendObj);
+                return;
+            }
+
             // ------------------Filter 加密处理-----------------
             ByteBuffer sendBuffer = EventProcess.filterEncoder(session, sendObj);
             // ---------------------------------------------------
@@ -321,6 +397,56 @@ public class EventProcess {
         }
     }
 
+    /**
+     * 发送文件区域
+     *      文件区域不经过过滤器, 直接通过 IoSession.send(FileRegion) 发送
+     *      过滤器链中存在 ZipFilter 时需要压缩数据, 退化为分段读取文件后经过过滤器发送
+     *
+     * @param session Session 对象
+     * @param fileRegion 文件区域, 发送完成后关闭
+     * @throws IOException IO 异常
+     */
+    private static void sendFileRegion(IoSession session, FileRegion fileRegion) throws IOException {
+        try {
+            if (hasZipFilter(session)) {
+                ByteBuffer buffer = TByteBuffer.allocateDirect();
+                try {
+                    while (session.isOpen()) {
+                        buffer.clear();
+                        if (fileRegion.read(buffer) <= 0) {
+                            break;
+                        }
+
+                        buffer.flip();
+                        ByteBuffer sendBuffer = EventProcess.filterEncoder(session, TByteBuffer.toArray(buffer));
+                        if (sendBuffer != null && sendBuffer.limit() > 0 && session.send(sendBuffer) < 0) {
+                            throw new IOException("EventProcess.sendFileRegion faild, writeToChannel failed");
+                        }
+                    }
+                } finally {
+                    TByteBuffer.release(buffer);
+                }
+            } else if (session.isOpen()) {
+                long sendLength = session.send(fileRegion);
+                if (sendLength < 0) {
+                    throw new IOException("EventProcess.sendFileRegion faild, writeToChannel length: " + sendLength);
+                }
+            }
+        } finally {
+            fileRegion.close();
+        }
+    }
+
+    private static boolean hasZipFilter(IoSession session) {
+        for(IoFilter filter : ((Chain<IoFilter>) session.socketContext().getSendFilterChain()).getContianer()) {
+            if(filter instanceof ZipFilter) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     /**
      * 发送完成事件 发送后出发
      *
@@ -367,6 +493,32 @@ public class EventProcess {
         }
     }
 
+    /**
+     * 可写状态变化事件
+     *      状态快速来回变化时, 事件的顺序可能和状态变化的顺序不一致,
+     *      只通知和上次通知不同的状态, 最后再补充通知当前的状态, 保证业务收到的事件交替出现并且最后一次和当前状态一致
+     *
+     * @param event 事件对象
+     * @param writable true: 可写, false: 不可写
+     */
+    public static void onWritabilityChanged(Event event, boolean writable) {
+        SocketContext socketContext = event.getSession().socketContext();
+        if (socketContext != null) {
+            IoSession session = event.getSession();
+
+            if (writable != session.getNotifiedWritable()) {
+                session.setNotifiedWritable(writable);
+                socketContext.handler().onWritabilityChanged(session, writable);
+            }
+
+            boolean currentWritable = session.isWritable();
+            if (currentWritable != session.getNotifiedWritable()) {
+                session.setNotifiedWritable(currentWritable);
+                socketContext.handler().onWritabilityChanged(session, currentWritable);
+            }
+        }
+    }
+
     /**
      * 异常产生事件 异常产生侯触发
      *
@@ -415,6 +567,8 @@ public class EventProcess {
                 EventProcess.onIdle(event);
             } else if (eventName == EventName.ON_EXCEPTION) {
                 EventProcess.onException(event, (Exception)event.getOther());
+            } else if (eventName == EventName.ON_WRITABILITY_CHANGED) {
+                EventProcess.onWritabilityChanged(event, (Boolean)event.getOther());
             }
         } catch (Exception e) {
             EventProcess.onException(event, e);
@@ -55,6 +55,10 @@ public class EventTrigger {
 		fireEventAsync(session, Event.EventName.ON_EXCEPTION,exception);
 	}
 
+	public static void fireWritabilityChangedAsync(IoSession session, boolean writable){
+		fireEventAsync(session, Event.EventName.ON_WRITABILITY_CHANGED, writable);
+	}
+
 	public static void fireAccept(IoSession session){
 		fire(session, Event.EventName.ON_ACCEPTED,null);
 	}
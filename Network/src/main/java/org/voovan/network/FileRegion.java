@@ -0,0 +1,144 @@
+package org.voovan.network;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 文件区域
+ *      描述文件中的一段数据, 通过 IoSession.send 或者 EventProcess.sendMessage 发送时
+ *      使用 FileChannel.transferTo (sendfile) 直接从文件写入通道, 不经过发送缓冲区
+ *      文件区域中的数据不经过过滤器处理, 发送完成后文件通道会被关闭
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class FileRegion implements Closeable {
+	private FileChannel fileChannel;
+	private long position;
+	private long count;
+
+	/**
+	 * 构造函数
+	 * @param file 文件对象
+	 * @throws IOException IO 异常
+	 */
+	public FileRegion(File file) throws IOException {
+		this(file, 0, file.length());
+	}
+
+	/**
+	 * 构造函数
+	 * @param file 文件对象
+	 * @param position 文件中的起始位置
+	 * @param count 发送的字节数
+	 * @throws IOException IO 异常
+	 */
+	public FileRegion(File file, long position, long count) throws IOException {
+		this(FileChannel.open(file.toPath(), StandardOpenOption.READ), position, count);
+	}
+
+	/**
+	 * 构造函数
+	 * @param fileChannel 文件通道, 发送完成后会被关闭
+	 * @param position 文件中的起始位置
+	 * @param count 发送的字节数
+	 */
+	public FileRegion(FileChannel fileChannel, long position, long count) {
+		if(position < 0 || count < 0) {
+			throw new IllegalArgumentException("FileRegion position and count must be positive");
+		}
+
+		this.fileChannel = fileChannel;
+		this.position = position;
+		this.count = count;
+	}
+
+	/**
+	 * 获取当前发送位置
+	 * @return 当前发送位置
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	/**
+	 * 获取剩余未发送的字节数
+	 * @return 剩余未发送的字节数
+	 */
+	public long remaining() {
+		return count;
+	}
+
+	/**
+	 * 是否还有未发送的数据
+	 * @return true: 有未发送的数据, false: 已发送完毕
+	 */
+	public boolean hasRemaining() {
+		return count > 0;
+	}
+
+	/**
+	 * 将文件区域中的数据传输到通道
+	 *      可能只传输部分数据, 需要循环调用直到 hasRemaining() 返回 false
+	 * @param target 目标通道
+	 * @return 本次传输的字节数, -1: 文件已经结束
+	 * @throws IOException IO 异常
+	 */
+	public long transferTo(WritableByteChannel target) throws IOException {
+		long transferSize = fileChannel.transferTo(position, count, target);
+		if(transferSize > 0) {
+			position += transferSize;
+			count -= transferSize;
+		} else if(position >= fileChannel.size()) {
+			//文件被截断
+			return -1;
+		}
+
+		return transferSize;
+	}
+
+	/**
+	 * 将文件区域中的数据读取到缓冲区, 用于不支持 transferTo 时的复制发送
+	 * @param byteBuffer 缓冲区
+	 * @return 读取的字节数, -1: 已读取完毕
+	 * @throws IOException IO 异常
+	 */
+	public int read(ByteBuffer byteBuffer) throws IOException {
+		if(count <= 0) {
+			return -1;
+		}
+
+		int oldLimit = byteBuffer.limit();
+		if(byteBuffer.remaining() > count) {
+			byteBuffer.limit(byteBuffer.position() + (int) count);
+		}
+
+		try {
+			int readSize = fileChannel.read(byteBuffer, position);
+			if (readSize > 0) {
+				position += readSize;
+				count -= readSize;
+			}
+			return readSize;
+		} finally {
+			byteBuffer.limit(oldLimit);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		fileChannel.close();
+	}
+
+	@Override
+	public String toString() {
+		return "FileRegion{position=" + position + ", remaining=" + count + "}";
+	}
+}
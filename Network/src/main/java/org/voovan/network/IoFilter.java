@@ -1,6 +1,7 @@
 package org.voovan.network;
 
 import org.voovan.network.exception.IoFilterException;
+import org.voovan.tools.collection.Chain;
 
 /**
  * 过滤器接口
@@ -32,5 +33,21 @@ public interface IoFilter {
 	 * @throws IoFilterException 过滤器异常
 	 */
 	public Object encode(IoSession session, Object object)throws IoFilterException;
-	
+
+	/**
+	 * 释放过滤器为会话保存的资源<br>
+	 * IoSession.release 内触发
+	 * @param session session 对象
+	 */
+	public default void release(IoSession session) {
+	}
+
+	public static void releaseChain(SocketContext socketContext) {
+		Chain<IoFilter> filterChain = (Chain<IoFilter>) socketContext.filterChain().clone();
+		filterChain.rewind();
+		while (filterChain.hasNext()) {
+			IoFilter filter = filterChain.next();
+			filter.release(socketContext.getSession());
+		}
+	}
 }
@@ -57,4 +57,13 @@ public interface IoHandler {
 	 * @param session Session 对象
 	 */
 	public void onIdle(IoSession session);
+
+	/**
+	 * 可写状态变化事件
+	 * 		待发送的数据超过高水位时变为不可写, 降到低水位以下时恢复可写
+	 * @param session Session 对象
+	 * @param writable true: 可写, false: 不可写
+	 */
+	public default void onWritabilityChanged(IoSession session, boolean writable) {
+	}
 }
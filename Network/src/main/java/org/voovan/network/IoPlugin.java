@@ -1,9 +1,11 @@
 package org.voovan.network;
 
+import org.voovan.network.plugin.DefaultPlugin;
 import org.voovan.tools.buffer.ByteBufferChannel;
 import org.voovan.tools.collection.Chain;
 
 import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * 插件实现接口
@@ -24,10 +26,21 @@ public interface IoPlugin {
     /**
      * 插件准备阶段, 例如:握手初始化
      * 在 SocketContext.unhold 内触发, 在 epoll 的注册以后
+     * 准备未完成时, 在 SocketSelector 中收到对端数据后再次触发, 直到 isPrepared 返回 true
      * @param session IoSession 会话对象
      */
     public void prepare(IoSession session);
 
+    /**
+     * 插件是否准备完成, 例如: 握手是否完成<br>
+     * 所有插件准备完成后才触发 onConnect 事件
+     * @param session IoSession 会话对象
+     * @return true: 准备完成, false: 准备未完成
+     */
+    public default boolean isPrepared(IoSession session) {
+        return true;
+    }
+
     /**
      * 获取默认的读取 ByteBufferChannel<br>
      * 在 SocketSelector.tcpReadFromChannel/udpReadFromChannel 触发
@@ -80,6 +93,19 @@ public interface IoPlugin {
         }
     }
 
+    public static boolean isPreparedChain(SocketContext socketContext) {
+        Chain<IoPlugin> pluginChain = (Chain<IoPlugin>) socketContext.pluginChain().clone();
+        pluginChain.rewind();
+        while (pluginChain.hasNext()) {
+            IoPlugin plugin = pluginChain.next();
+            if(!plugin.isPrepared(socketContext.getSession())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     public static ByteBufferChannel getReadBufferChannelChain(SocketContext socketContext) {
         Chain<IoPlugin> pluginChain = (Chain<IoPlugin>) socketContext.pluginChain().clone();
         pluginChain.rewind();
@@ -95,6 +121,23 @@ public interface IoPlugin {
         return byteBufferChannel;
     }
 
+    /**
+     * 判断插件链中是否只有默认插件
+     *      只有默认插件时发送的数据不需要变换, 可以直接写入通道
+     * @param socketContext SocketContext 对象
+     * @return true: 只有默认插件, false: 存在其他插件
+     */
+    public static boolean isDefaultChain(SocketContext socketContext) {
+        List<IoPlugin> plugins = socketContext.pluginChain().getContianer();
+        for(int i=0; i<plugins.size(); i++) {
+            if(plugins.get(i).getClass() != DefaultPlugin.class) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     public static void wrapChain(SocketContext socketContext, ByteBuffer byteBuffer) {
         Chain<IoPlugin> pluginChain = (Chain<IoPlugin>) socketContext.pluginChain().clone();
         pluginChain.rewind();
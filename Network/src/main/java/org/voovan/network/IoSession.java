@@ -3,18 +3,24 @@ package org.voovan.network;
 import org.voovan.network.exception.ReadMessageException;
 import org.voovan.network.exception.SendMessageException;
 import org.voovan.network.handler.SynchronousHandler;
+import org.voovan.network.metrics.IoMetrics;
+import org.voovan.network.metrics.NetworkMetrics;
 import org.voovan.tools.UniqueId;
 import org.voovan.tools.buffer.ByteBufferChannel;
+import org.voovan.tools.buffer.TByteBuffer;
 import org.voovan.tools.TEnv;
 import org.voovan.tools.collection.Attributes;
 import org.voovan.tools.event.EventRunner;
-import org.voovan.tools.hashwheeltimer.HashWheelTask;
-import org.voovan.tools.hashwheeltimer.HashWheelTimer;
+import org.voovan.tools.hashwheeltimer.TimingWheel;
+import org.voovan.tools.hashwheeltimer.TimingWheelTask;
 import org.voovan.tools.log.Logger;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectionKey;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.TimeoutException;
 
 /**
@@ -29,13 +35,16 @@ import java.util.concurrent.TimeoutException;
 public abstract class IoSession<T extends SocketContext> extends Attributes {
 	public static UniqueId SESSION_UNIQUE_ID = new UniqueId(2047);
 
-	public static HashWheelTimer SOCKET_IDLE_WHEEL_TIME = null;
+	//空闲检查时间轮的步长, 单位: 毫秒
+	public final static int SOCKET_IDLE_WHEEL_TICK = TEnv.getSystemProperty("SocketIdleWheelTick", 100);
 
-	public static HashWheelTimer getIdleWheelTimer() {
+	public static TimingWheel SOCKET_IDLE_WHEEL_TIME = null;
+
+	public static TimingWheel getIdleWheelTimer() {
 		if(SOCKET_IDLE_WHEEL_TIME == null) {
 			synchronized (IoSession.class) {
 				if(SOCKET_IDLE_WHEEL_TIME == null) {
-					SOCKET_IDLE_WHEEL_TIME = new HashWheelTimer("SocketIdle", 60, 1000);
+					SOCKET_IDLE_WHEEL_TIME = new TimingWheel("SocketIdle", SOCKET_IDLE_WHEEL_TICK);
 					SOCKET_IDLE_WHEEL_TIME.rotate();
 				}
 			}
@@ -48,13 +57,21 @@ public abstract class IoSession<T extends SocketContext> extends Attributes {
 	private MessageLoader messageLoader;
 	protected ByteBufferChannel readByteBufferChannel;
 	protected ByteBufferChannel sendByteBufferChannel;
+	private ArrayDeque<ByteBuffer> gatheringQueue;
+	private ByteBuffer[] gatheringBuffers;
+	private volatile long gatheringSize;
+	private AtomicBoolean unwritable = new AtomicBoolean(false);
+	//最后一次通知业务的可写状态
+	private volatile boolean notifiedWritable = true;
 	private T socketContext;
 	private long lastIdleTime = -1;
-	private HashWheelTask checkIdleTask;
+	private TimingWheelTask checkIdleTask;
 	private HeartBeat heartBeat;
+	private SSLParser sslParser;
 	private State state;
 	private SelectionKey selectionKey;
 	private SocketSelector socketSelector;
+	private IoMetrics metrics;
 
 	private Object attachment;
 
@@ -130,6 +147,12 @@ public abstract class IoSession<T extends SocketContext> extends Attributes {
 		sendByteBufferChannel = new ByteBufferChannel(socketContext.getSendBufferSize());
 		readByteBufferChannel.setThreadSafe(SocketContext.ASYNC_RECIVE);
 		sendByteBufferChannel.setThreadSafe(SocketContext.ASYNC_SEND);
+		gatheringQueue = new ArrayDeque<ByteBuffer>();
+		gatheringBuffers = new ByteBuffer[16];
+
+		if(NetworkMetrics.ENABLE) {
+			metrics = new IoMetrics();
+		}
 		messageLoader = new MessageLoader(this);
 	}
 
@@ -201,6 +224,23 @@ public abstract class IoSession<T extends SocketContext> extends Attributes {
 		this.heartBeat = heartBeat;
 	}
 
+	/**
+	 * 获取 SSL 解析器
+	 *      服务端接受的连接共享同一个 SSLPlugin, 每个会话的 SSL 状态保存在会话中
+	 * @return SSL 解析器, 未使用 SSL 时为 null
+	 */
+	public SSLParser getSSLParser() {
+		return sslParser;
+	}
+
+	/**
+	 * 设置 SSL 解析器
+	 * @param sslParser SSL 解析器
+	 */
+	public void setSSLParser(SSLParser sslParser) {
+		this.sslParser = sslParser;
+	}
+
 	/**
 	 * 获取状态
 	 * @return 当前状态
@@ -217,7 +257,7 @@ public abstract class IoSession<T extends SocketContext> extends Attributes {
 			if(checkIdleTask == null){
 				final IoSession session = this;
 
-				checkIdleTask = new HashWheelTask() {
+				checkIdleTask = new TimingWheelTask() {
 					public void run() {
 						if(session.state.isConnect()) {
 							return;
@@ -234,7 +274,7 @@ public abstract class IoSession<T extends SocketContext> extends Attributes {
 					}
 				};
 
-				getIdleWheelTimer().addTask(checkIdleTask, socketContext.getIdleInterval(), true);
+				getIdleWheelTimer().addTask(checkIdleTask, socketContext.getIdleInterval() * 1000L, true);
 			}
 		}
 	}
@@ -279,6 +319,14 @@ public abstract class IoSession<T extends SocketContext> extends Attributes {
 		return readByteBufferChannel;
 	}
 
+	/**
+	 * 获取会话的计数器
+	 * @return 会话的计数器, 未开启 NetworkMetrics 时为 null
+	 */
+	public IoMetrics getMetrics() {
+		return metrics;
+	}
+
 	/**
 	 * 获取发送缓冲区
 	 *
@@ -438,12 +486,26 @@ public abstract class IoSession<T extends SocketContext> extends Attributes {
 				return -1;
 			}
 
+			//聚合发送队列中有数据时先发送, 保证数据的顺序
+			//gatheringSize 只在持有 gatheringQueue 锁时修改, 这里只作判断, flush 中会在锁内重新检查
+			if(gatheringSize > 0) {
+				flush();
+			}
+
 			//如果大于缓冲区,则现发送一次
 			if(buffer.limit() + sendByteBufferChannel.size() > sendByteBufferChannel.getMaxSize()){
 				flush();
 			}
 
 			int size = sendByteBufferChannel.writeEnd(buffer);
+			checkHighWaterMark();
+
+			if(metrics != null) {
+				metrics.sendBuffer(sendByteBufferChannel.size());
+				if(socketSelector != null && socketSelector.getMetrics() != null) {
+					socketSelector.getMetrics().sendBuffer(sendByteBufferChannel.size());
+				}
+			}
 
 			//强行每次发送都进行 flush
 			if(SocketContext.FORCE_FLUSH) {
@@ -512,28 +574,251 @@ public abstract class IoSession<T extends SocketContext> extends Attributes {
 		}
 	}
 
+	/**
+	 * 是否支持聚合发送
+	 * 		TCP 连接且插件链中只有默认插件时, 数据不需要经过插件变换, 可以直接聚合写入通道
+	 * @return true: 支持, false: 不支持
+	 */
+	public boolean isGatheringSupported() {
+		return socketContext.getConnectType() == ConnectType.TCP && IoPlugin.isDefaultChain(socketContext);
+	}
+
+	/**
+	 * 以聚合写的方式发送多个缓冲区
+	 * 		缓冲区不会被复制到发送缓冲区中, 在 flush 时和发送缓冲区中的数据一起通过一次 GatheringByteChannel.write 写入通道
+	 * 		支持只读缓冲区和文件映射缓冲区, 在 flush 完成前不能修改或释放传入的缓冲区
+	 * 		不支持聚合发送时退化为 send(buffer) 的复制方式
+	 * 		注意直接调用不会触发 onSent 事件, 也不会经过任何过滤器
+	 * @param buffers byte缓冲区
+	 * @return 加入发送队列的字节数
+	 */
+	public long sendGathering(ByteBuffer ... buffers) {
+		long size = 0;
+		if(!isGatheringSupported()) {
+			for(ByteBuffer buffer : buffers) {
+				size += send(buffer);
+			}
+			return size;
+		}
+
+		synchronized (gatheringQueue) {
+			for (ByteBuffer buffer : buffers) {
+				if (buffer != null && buffer.hasRemaining()) {
+					gatheringQueue.offer(buffer);
+					size += buffer.remaining();
+				}
+			}
+			gatheringSize += size;
+		}
+
+		checkHighWaterMark();
+
+		//强行每次发送都进行 flush
+		if(SocketContext.FORCE_FLUSH) {
+			flush();
+		}
+
+		return size;
+	}
+
+	/**
+	 * 直接发送文件区域
+	 * 		支持时先推送缓冲区中的数据, 然后使用 FileChannel.transferTo 将文件区域直接写入通道
+	 * 		不支持时(UDP 或者存在 SSL 等插件)退化为分段读取文件后通过 send(buffer) 复制发送
+	 * 		注意直接调用不会触发 onSent 事件, 也不会经过任何过滤器, 调用方负责关闭文件区域
+	 * @param fileRegion 文件区域
+	 * @return 发送的数据大小, -1: 发送失败
+	 */
+	public long send(FileRegion fileRegion) {
+		try {
+			if (isGatheringSupported()) {
+				flush();
+
+				long size = socketSelector != null ? socketSelector.writeToChannel(socketContext, fileRegion) : -1;
+				if (size < 0) {
+					close();
+				}
+				return size;
+			} else {
+				long size = 0;
+				ByteBuffer buffer = TByteBuffer.allocateDirect();
+				try {
+					while (true) {
+						buffer.clear();
+						int readSize = fileRegion.read(buffer);
+						if (readSize <= 0) {
+							break;
+						}
+
+						buffer.flip();
+						send(buffer);
+						size += readSize;
+					}
+				} finally {
+					TByteBuffer.release(buffer);
+				}
+				return size;
+			}
+		} catch (IOException e) {
+			Logger.error("IoSession.send fileRegion failed " + this, e);
+			close();
+			return -1;
+		}
+	}
+
+	/**
+	 * 推送缓冲区和聚合发送队列的数据到 socketChannel
+	 * 		调用方需持有 gatheringQueue 的锁
+	 */
+	private void flushGathering() {
+		state.setFlush(true);
+		ByteBuffer byteBuffer = sendByteBufferChannel.getByteBuffer();
+		int length = 0;
+		try {
+			if (gatheringBuffers.length < gatheringQueue.size() + 1) {
+				gatheringBuffers = new ByteBuffer[gatheringQueue.size() + 1];
+			}
+
+			//发送缓冲区中的数据在聚合发送队列之前
+			if (byteBuffer != null && byteBuffer.hasRemaining()) {
+				gatheringBuffers[length++] = byteBuffer;
+			}
+
+			for (ByteBuffer buffer : gatheringQueue) {
+				gatheringBuffers[length++] = buffer;
+			}
+
+			long size = socketSelector != null ? socketSelector.writeToChannel(socketContext, gatheringBuffers, length) : -1;
+			if (size >= 0) {
+				//初始化完成才出发 flush 事件
+				if (!state.isInit()) {
+					//触发发送事件
+					EventTrigger.fireFlush(this);
+				}
+			} else {
+				this.close();
+			}
+		} finally {
+			gatheringQueue.clear();
+			gatheringSize = 0;
+			for(int i=0; i<length; i++) {
+				gatheringBuffers[i] = null;
+			}
+			sendByteBufferChannel.compact();
+			state.setFlush(false);
+		}
+	}
+
 	/**
 	 * 推送缓冲区的数据到 socketChannel
+	 * 		持有 gatheringQueue 的锁, 保证发送缓冲区和聚合发送队列按加入的顺序写入通道
 	 */
 	public void flush() {
-		if(sendByteBufferChannel.size()>0) {
-			state.setFlush(true);
-			ByteBuffer byteBuffer = sendByteBufferChannel.getByteBuffer();
-			try {
-				int size = send0(byteBuffer);
-				if(size >= 0) {
-					//初始化完成才出发 flush 事件
-					if(!state.isInit()) {
-						//触发发送事件
-						EventTrigger.fireFlush(this);
+		synchronized (gatheringQueue) {
+			if (!gatheringQueue.isEmpty()) {
+				flushGathering();
+			} else if (sendByteBufferChannel.size() > 0) {
+				state.setFlush(true);
+				ByteBuffer byteBuffer = sendByteBufferChannel.getByteBuffer();
+				try {
+					int size = send0(byteBuffer);
+					if (size >= 0) {
+						//初始化完成才出发 flush 事件
+						if (!state.isInit()) {
+							//触发发送事件
+							EventTrigger.fireFlush(this);
+						}
+					} else {
+						this.close();
 					}
+				} finally {
+					sendByteBufferChannel.compact();
+					state.setFlush(false);
+				}
+			} else {
+				return;
+			}
+		}
+
+		checkLowWaterMark();
+	}
+
+	/**
+	 * 获取待发送的数据量
+	 * 		包括发送缓冲区和聚合发送队列中的数据
+	 * @return 待发送的字节数
+	 */
+	public long getPendingSendSize() {
+		return sendByteBufferChannel.size() + gatheringSize;
+	}
+
+	/**
+	 * 会话是否可写
+	 * 		待发送的数据超过高水位后不可写, 降到低水位以下后恢复可写
+	 * 		不可写时继续发送不会失败, 由业务根据这个状态或 onWritabilityChanged 事件控制发送速度
+	 * @return true: 可写, false: 不可写
+	 */
+	public boolean isWritable() {
+		return !unwritable.get();
+	}
+
+	/**
+	 * 数据加入发送队列后检查是否超过高水位
+	 */
+	private void checkHighWaterMark() {
+		int highWaterMark = socketContext.getWriteHighWaterMark();
+		if(highWaterMark > 0 && getPendingSendSize() >= highWaterMark && unwritable.compareAndSet(false, true)) {
+			pauseRead();
+			EventTrigger.fireWritabilityChangedAsync(this, false);
+
+			//设置不可写之前其他线程可能已经把数据发送到低水位以下, 它的低水位检查看不到不可写的状态, 需要在这里重新检查
+			checkLowWaterMark();
+		}
+	}
+
+	/**
+	 * 数据发送后检查是否降到低水位
+	 */
+	private void checkLowWaterMark() {
+		if(unwritable.get() && getPendingSendSize() <= socketContext.getWriteLowWaterMark() && unwritable.compareAndSet(true, false)) {
+			pauseRead();
+			EventTrigger.fireWritabilityChangedAsync(this, true);
+		}
+	}
+
+	/**
+	 * 获取最后一次通知业务的可写状态
+	 * @return 最后一次通知业务的可写状态
+	 */
+	boolean getNotifiedWritable() {
+		return notifiedWritable;
+	}
+
+	void setNotifiedWritable(boolean notifiedWritable) {
+		this.notifiedWritable = notifiedWritable;
+	}
+
+	/**
+	 * 按当前的可写状态暂停或者继续读取
+	 * 		每次状态变化后调用, 加锁后按最新的状态设置, 并发的状态变化不会使读取停在错误的状态
+	 */
+	private void pauseRead() {
+		if(!socketContext.isPauseReadOnUnwritable() || socketContext.getConnectType() != ConnectType.TCP ||
+				selectionKey == null || !selectionKey.isValid()) {
+			return;
+		}
+
+		try {
+			synchronized (unwritable) {
+				if (unwritable.get()) {
+					NioUtil.removeOps(selectionKey, SelectionKey.OP_READ);
 				} else {
-					this.close();
+					NioUtil.addOps(selectionKey, SelectionKey.OP_READ);
+					socketSelector.wakeup();
 				}
-			} finally {
-				sendByteBufferChannel.compact();
-				state.setFlush(false);
 			}
+		} catch (CancelledKeyException e) {
+			//连接已关闭
 		}
 	}
 
@@ -576,8 +861,12 @@ public abstract class IoSession<T extends SocketContext> extends Attributes {
 
 		readByteBufferChannel.release();
 		sendByteBufferChannel.release();
+		synchronized (gatheringQueue) {
+			gatheringQueue.clear();
+		}
 
 		IoPlugin.releaseChain(socketContext);
+		IoFilter.releaseChain(socketContext);
 
 		cancelIdle();
 	}
@@ -22,6 +22,7 @@ public class MessageLoader {
 	private IoSession session;
 	private StopType stopType;
 	private ByteBufferChannel byteBufferChannel;
+	private int waitDataSize = -1;
 
 	/**
 	 * 构造函数
@@ -39,6 +40,7 @@ public class MessageLoader {
 		SOCKET_CLOSED,
 		STREAM_END,
 		MSG_SPLITTER,
+		WAIT_DATA,
 		EXCEPTION
 	}
 
@@ -58,6 +60,15 @@ public class MessageLoader {
 		this.stopType = stopType;
 	}
 
+	/**
+	 * 是否在等待数据
+	 *      消息分割器返回 WAIT_DATA 后, 缓冲区中没有新的数据时不需要再次触发读取
+	 * @return true: 等待新的数据, false: 缓冲区中有未处理的数据
+	 */
+	public boolean isWaitData() {
+		return stopType == StopType.WAIT_DATA && waitDataSize == byteBufferChannel.size();
+	}
+
 	/**
 	 * 判断字节所属流是否结束
 	 * @param length  长度
@@ -166,6 +177,11 @@ public class MessageLoader {
 						if (splitLength >= 0) {
 							stopType = StopType.MSG_SPLITTER;
 							break;
+						} else if (splitLength == MessageSplitter.WAIT_DATA) {
+							//消息不完整, 不在当前线程中等待, 下一次读事件时继续处理
+							stopType = StopType.WAIT_DATA;
+							waitDataSize = byteBufferChannel.size();
+							break;
 						} else {
 							//消息不可分割,且有消息报文存在, 则尝试继续从 Socket 通道读取数据
 							session.socketSelector().select();
@@ -12,6 +12,10 @@ import java.nio.ByteBuffer;
  * Licence: Apache v2 License
  */
 public interface MessageSplitter {
+	/**
+	 * 消息不完整, 立即结束本次读取, 在下一次读事件时继续判断, 不在当前线程中等待数据
+	 */
+	public final static int WAIT_DATA = -3;
 
 	/**
 	 * 判断消息是否可分割
@@ -22,6 +26,7 @@ public interface MessageSplitter {
 	 * @param byteBuffer 缓冲数据
 	 * @return   返回: 大于0或者等于0可区分,小于不0可区分,则继续接收数据
 	 * 				   返回的int数据值,则被用于从缓冲区取值给onRecive函数作为参数的的数据的长度.
+	 * 				   返回 WAIT_DATA 时结束本次读取, 等待下一次读事件
 	 *
 	 */
 	public int canSplite(IoSession session, ByteBuffer byteBuffer);
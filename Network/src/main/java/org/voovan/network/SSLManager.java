@@ -1,6 +1,9 @@
 package org.voovan.network;
 
+import org.voovan.tools.TEnv;
+import org.voovan.tools.TPerformance;
 import org.voovan.tools.TString;
+import org.voovan.tools.threadpool.ThreadPool;
 
 import javax.net.ssl.*;
 import java.io.ByteArrayInputStream;
@@ -9,6 +12,9 @@ import java.io.IOException;
 import java.security.*;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * SSL管理器
@@ -21,6 +27,9 @@ import java.security.cert.X509Certificate;
  * TLSv1.1 - Supports RFC 4346: TLS version 1.1 ; may support other versions
  * TLSv1.2 - Supports RFC 5246: TLS version 1.2 ; may support other versions
  *
+ * 所有连接共用一个 SSLContext, 会话缓存和 TLS 1.3 的会话票据在连接之间复用, 减少完整握手
+ * 握手中的委派任务(证书校验, 密钥交换)在独立的有界线程池中执行, 不阻塞 IO 线程
+ *
  * @author helyho
  *
  * Voovan Framework.
@@ -28,11 +37,41 @@ import java.security.cert.X509Certificate;
  * Licence: Apache v2 License
  */
 public class SSLManager {
+	//SSL 会话缓存的最大数量
+	public final static int SESSION_CACHE_SIZE = TEnv.getSystemProperty("SSLSessionCacheSize", 20480);
+	//SSL 会话缓存的超时时间, 单位: 秒
+	public final static int SESSION_TIMEOUT = TEnv.getSystemProperty("SSLSessionTimeout", 3600);
+	//执行握手委派任务的线程数, 0: 在 IO 线程中执行
+	public final static int TASK_THREAD_SIZE = TEnv.getSystemProperty("SSLTaskThreadSize", Math.max(2, TPerformance.getProcessorCount() / 2));
+	//握手委派任务的队列大小, 队列满时在 IO 线程中执行
+	public final static int TASK_QUEUE_SIZE = TEnv.getSystemProperty("SSLTaskQueueSize", 1024);
+
+	private static ThreadPoolExecutor TASK_EXECUTOR;
+
+	/**
+	 * 获取默认的握手委派任务线程池, 所有 SSLManager 共用
+	 * @return 线程池对象, TASK_THREAD_SIZE 为 0 时返回 null
+	 */
+	public static synchronized ThreadPoolExecutor getDefaultTaskExecutor() {
+		if(TASK_EXECUTOR == null && TASK_THREAD_SIZE > 0) {
+			TASK_EXECUTOR = ThreadPool.createThreadPool("VOOVAN@SSL_TASK", TASK_THREAD_SIZE, TASK_THREAD_SIZE, 60 * 1000, true, 5, TASK_QUEUE_SIZE);
+		}
+		return TASK_EXECUTOR;
+	}
+
 	private KeyManagerFactory keyManagerFactory;
 	private TrustManagerFactory trustManagerFactory;
 	private SSLContext context;
 	private boolean needClientAuth;
 	private String protocol;
+	private int sessionCacheSize = SESSION_CACHE_SIZE;
+	private int sessionTimeout = SESSION_TIMEOUT;
+	private Executor taskExecutor = getDefaultTaskExecutor();
+
+	private AtomicLong fullHandShakeCount = new AtomicLong(0);
+	private AtomicLong resumedHandShakeCount = new AtomicLong(0);
+	private AtomicLong handShakeTime = new AtomicLong(0);
+	private AtomicLong maxHandShakeTime = new AtomicLong(0);
 
 	/**
 	 * 构造函数
@@ -73,6 +112,7 @@ public class SSLManager {
 
 			keyManagerFactory = KeyManagerFactory.getInstance("SunX509");
 			keyManagerFactory.init(keystore, keyPassword.toCharArray());
+			context = null;
 		} catch (CertificateException | IOException | NoSuchAlgorithmException | KeyStoreException | UnrecoverableKeyException e) {
 			throw new SSLException("Init SSLContext Error: "+e.getMessage(),e);
 		}finally {
@@ -101,6 +141,7 @@ public class SSLManager {
 
 			trustManagerFactory = TrustManagerFactory.getInstance("SunX509");
 			trustManagerFactory.init(keystore);
+			context = null;
 		} catch (CertificateException | IOException | NoSuchAlgorithmException | KeyStoreException e) {
 			throw new SSLException("Init SSLContext Error: "+e.getMessage(),e);
 		}finally {
@@ -130,6 +171,7 @@ public class SSLManager {
 
 			keyManagerFactory = KeyManagerFactory.getInstance("SunX509");
 			keyManagerFactory.init(keystore, keyPassword.toCharArray());
+			context = null;
 		} catch (CertificateException | IOException | NoSuchAlgorithmException | KeyStoreException | UnrecoverableKeyException e) {
 			throw new SSLException("Init SSLContext Error: "+e.getMessage(),e);
 		}
@@ -149,23 +191,147 @@ public class SSLManager {
 
 			trustManagerFactory = TrustManagerFactory.getInstance("SunX509");
 			trustManagerFactory.init(keystore);
+			context = null;
 		} catch (CertificateException | IOException | NoSuchAlgorithmException | KeyStoreException  e) {
 			throw new SSLException("Init SSLContext Error: "+e.getMessage(),e);
 		}
 	}
 
+	/**
+	 * 获取 SSL 会话缓存的最大数量
+	 * @return SSL 会话缓存的最大数量
+	 */
+	public int getSessionCacheSize() {
+		return sessionCacheSize;
+	}
+
+	/**
+	 * 设置 SSL 会话缓存的最大数量
+	 * @param sessionCacheSize SSL 会话缓存的最大数量, 0: 不限制
+	 */
+	public synchronized void setSessionCacheSize(int sessionCacheSize) {
+		this.sessionCacheSize = sessionCacheSize;
+		configSessionContext();
+	}
+
+	/**
+	 * 获取 SSL 会话缓存的超时时间
+	 * @return 超时时间, 单位: 秒
+	 */
+	public int getSessionTimeout() {
+		return sessionTimeout;
+	}
+
+	/**
+	 * 设置 SSL 会话缓存的超时时间
+	 * @param sessionTimeout 超时时间, 单位: 秒, 0: 不超时
+	 */
+	public synchronized void setSessionTimeout(int sessionTimeout) {
+		this.sessionTimeout = sessionTimeout;
+		configSessionContext();
+	}
+
+	/**
+	 * 获取执行握手委派任务的执行器
+	 * @return 执行器, null: 在 IO 线程中执行
+	 */
+	public Executor getTaskExecutor() {
+		return taskExecutor;
+	}
+
+	/**
+	 * 设置执行握手委派任务的执行器
+	 * @param taskExecutor 执行器, null: 在 IO 线程中执行
+	 */
+	public void setTaskExecutor(Executor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * 获取等待执行的握手委派任务数量
+	 * @return 等待执行的任务数量
+	 */
+	public int getTaskQueueSize() {
+		return taskExecutor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) taskExecutor).getQueue().size() : 0;
+	}
+
+	/**
+	 * 获取握手的平均耗时
+	 * @return 平均耗时, 单位: 毫秒
+	 */
+	public long getAverageHandShakeTime() {
+		long count = fullHandShakeCount.get() + resumedHandShakeCount.get();
+		return count == 0 ? 0 : handShakeTime.get() / count;
+	}
+
+	/**
+	 * 获取握手的最大耗时
+	 * @return 最大耗时, 单位: 毫秒
+	 */
+	public long getMaxHandShakeTime() {
+		return maxHandShakeTime.get();
+	}
+
+	/**
+	 * 获取完整握手的次数
+	 * @return 完整握手的次数
+	 */
+	public long getFullHandShakeCount() {
+		return fullHandShakeCount.get();
+	}
+
+	/**
+	 * 获取会话复用握手的次数
+	 * @return 会话复用握手的次数
+	 */
+	public long getResumedHandShakeCount() {
+		return resumedHandShakeCount.get();
+	}
+
+	/**
+	 * 记录一次完成的握手
+	 * @param resumed true: 会话复用握手, false: 完整握手
+	 * @param time 握手耗时, 单位: 毫秒
+	 */
+	void handShakeDone(boolean resumed, long time) {
+		handShakeTime.addAndGet(time);
+		maxHandShakeTime.accumulateAndGet(time, Math::max);
+
+		if(resumed) {
+			resumedHandShakeCount.incrementAndGet();
+		} else {
+			fullHandShakeCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * 配置服务端和客户端的会话缓存
+	 */
+	private void configSessionContext() {
+		if(context != null) {
+			for(SSLSessionContext sessionContext : new SSLSessionContext[]{context.getServerSessionContext(), context.getClientSessionContext()}) {
+				sessionContext.setSessionCacheSize(sessionCacheSize);
+				sessionContext.setSessionTimeout(sessionTimeout);
+			}
+		}
+	}
+
 	/**
 	 * 初始化
+	 *      SSLContext 只初始化一次, 重新加载证书后再次初始化
 	 * @param protocol		协议名称 SSL/TLS
 	 * @throws SSLException SSL 异常
 	 */
 	private synchronized void init(String protocol) throws SSLException {
+		if(context != null) {
+			return;
+		}
 
 		if(TString.isNullOrEmpty(protocol)){
 			this.protocol = "SSL";
 		}
 		try {
-			context = SSLContext.getInstance(protocol);
+			context = SSLContext.getInstance(this.protocol);
 			if(keyManagerFactory!=null && trustManagerFactory!=null){
 				context.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(), new SecureRandom());
 			} else if(keyManagerFactory!=null){
@@ -175,6 +341,7 @@ public class SSLManager {
 			} else {
 				context.init(null, new TrustManager[]{new DefaultTrustManager()}, new SecureRandom());
 			}
+			configSessionContext();
 			//NoSuchAlgorithmException | KeyManagementException |
 		} catch ( Exception e) {
 
@@ -202,7 +369,7 @@ public class SSLManager {
 		SSLEngine engine = createSSLEngine(protocol, session.socketContext().getHost(), session.socketContext().getPort());
 		engine.setUseClientMode(true);
 
-		return new SSLParser(engine, session);
+		return new SSLParser(engine, session, this);
 	}
 
 	/**
@@ -216,7 +383,7 @@ public class SSLManager {
 		engine.setUseClientMode(false);
 		engine.setNeedClientAuth(needClientAuth);
 
-		return new SSLParser(engine, session);
+		return new SSLParser(engine, session, this);
 	}
 
 	private static class DefaultTrustManager implements X509TrustManager {
@@ -10,6 +10,10 @@ import javax.net.ssl.SSLEngineResult.HandshakeStatus;
 import javax.net.ssl.SSLEngineResult.Status;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * SSL 解析器
@@ -24,11 +28,20 @@ import java.nio.ByteBuffer;
  */
 public class SSLParser {
 	private SSLEngine engine;
-	private ByteBuffer appData;
-	private ByteBuffer netData;
 	private IoSession session;
+	private SSLManager sslManager;
 	boolean handShakeDone = false;
-	private ByteBufferChannel sslByteBufferChannel;
+	private long handShakeStartTime = -1;
+	private volatile boolean released = false;
+	private volatile boolean taskRunning = false;
+
+	//接收的 SSL 报文, 只在存在未解包的报文时从内存池中借用缓冲区
+	private ByteBufferChannel netByteBufferChannel;
+
+	//传给 SSLEngine 的堆外缓冲区视图, 参考 TByteBuffer.newView
+	private ByteBuffer netView = TByteBuffer.newView();
+	private ByteBuffer appView = TByteBuffer.newView();
+
 	/**
 	 * 构造函数
 	 *
@@ -36,15 +49,53 @@ public class SSLParser {
 	 * @param session session 对象
 	 */
 	public SSLParser(SSLEngine engine, IoSession session) {
+		this(engine, session, null);
+	}
+
+	/**
+	 * 构造函数
+	 *      打包和解包使用的缓冲区只在打包和解包时从内存池中借用, 不会长期占用
+	 *
+	 * @param engine  SSLEngine对象
+	 * @param session session 对象
+	 * @param sslManager 创建 SSLParser 的 SSLManager, 用于统计握手次数
+	 */
+	public SSLParser(SSLEngine engine, IoSession session, SSLManager sslManager) {
 		this.engine = engine;
 		this.session = session;
-		this.appData = buildAppBuffer();
-		this.netData = buildNetBuffer();
-		sslByteBufferChannel = new ByteBufferChannel(session.socketContext().getReadBufferSize());
+		this.sslManager = sslManager;
 	}
 
-	public ByteBufferChannel getSSlByteBufferChannel() {
-		return sslByteBufferChannel;
+	/**
+	 * 获取接收 SSL 报文的缓冲区
+	 *      缓冲区在报文全部解包后归还内存池, 下次读取时重新借用
+	 *
+	 * @return 接收 SSL 报文的缓冲区
+	 */
+	public synchronized ByteBufferChannel getNetByteBufferChannel() {
+		if (!released && (netByteBufferChannel == null || netByteBufferChannel.isReleased())) {
+			netByteBufferChannel = new ByteBufferChannel(engine.getSession().getPacketBufferSize());
+		}
+
+		return netByteBufferChannel;
+	}
+
+	/**
+	 * 获取未解包的 SSL 报文的大小
+	 *
+	 * @return 未解包的 SSL 报文的大小
+	 */
+	public synchronized int getNetDataSize() {
+		return netByteBufferChannel == null || netByteBufferChannel.isReleased() ? 0 : netByteBufferChannel.size();
+	}
+
+	/**
+	 * 报文全部解包后将缓冲区归还内存池
+	 */
+	private void recycleNetByteBufferChannel() {
+		if (netByteBufferChannel != null && netByteBufferChannel.size() == 0) {
+			netByteBufferChannel.release();
+		}
 	}
 
 	/**
@@ -77,14 +128,6 @@ public class SSLParser {
 		return TByteBuffer.allocateDirect(newBufferMax);
 	}
 
-	/**
-	 * 清理缓冲区
-	 */
-	private void clearBuffer() {
-		appData.clear();
-		netData.clear();
-	}
-
 	/**
 	 * 打包并发送数据
 	 *
@@ -93,25 +136,24 @@ public class SSLParser {
 	 * @throws SSLException IO 异常
 	 */
 	public synchronized SSLEngineResult warp(ByteBuffer buffer) throws SSLException {
-		if (session.isConnected()) {
+		if (session.isConnected() && !released) {
 			SSLEngineResult engineResult = null;
 
-			do {
-				synchronized (netData) {
-					if(!TByteBuffer.isReleased(netData)) {
-						netData.clear();
-						engineResult = engine.wrap(buffer, netData);
+			//只在打包期间借用缓冲区
+			ByteBuffer netData = buildNetBuffer();
+			try {
+				do {
+					netData.clear();
+					engineResult = wrap(buffer, netData);
 
-						netData.flip();
-						if (session.isConnected() && engineResult.bytesProduced() > 0 && netData.limit() > 0) {
-							session.sendToBuffer(netData);
-						}
-						netData.clear();
-					} else {
-						return null;
+					netData.flip();
+					if (session.isConnected() && engineResult.bytesProduced() > 0 && netData.limit() > 0) {
+						session.sendToBuffer(netData);
 					}
-				}
-			} while (engineResult.getStatus() == Status.OK && buffer.hasRemaining());
+				} while (engineResult.getStatus() == Status.OK && buffer.hasRemaining());
+			} finally {
+				TByteBuffer.release(netData);
+			}
 
 			return engineResult;
 		} else {
@@ -119,6 +161,53 @@ public class SSLParser {
 		}
 	}
 
+	/**
+	 * 调用 SSLEngine 打包, 堆外缓冲区通过视图传入
+	 * @param appBuffer 应用数据
+	 * @param netBuffer 打包后的数据
+	 * @return SSLEngineResult 对象
+	 * @throws SSLException SSL 异常
+	 */
+	private SSLEngineResult wrap(ByteBuffer appBuffer, ByteBuffer netBuffer) throws SSLException {
+		ByteBuffer appSource = bindView(appView, appBuffer);
+		ByteBuffer netTarget = bindView(netView, netBuffer);
+		try {
+			return engine.wrap(appSource, netTarget);
+		} finally {
+			syncView(appSource, appBuffer);
+			syncView(netTarget, netBuffer);
+		}
+	}
+
+	/**
+	 * 调用 SSLEngine 解包, 堆外缓冲区通过视图传入
+	 * @param netBuffer 需要解包的数据
+	 * @param appBuffer 解包后的数据
+	 * @return SSLEngineResult 对象
+	 * @throws SSLException SSL 异常
+	 */
+	private SSLEngineResult unwrap(ByteBuffer netBuffer, ByteBuffer appBuffer) throws SSLException {
+		ByteBuffer netSource = bindView(netView, netBuffer);
+		ByteBuffer appTarget = bindView(appView, appBuffer);
+		try {
+			return engine.unwrap(netSource, appTarget);
+		} finally {
+			syncView(netSource, netBuffer);
+			syncView(appTarget, appBuffer);
+		}
+	}
+
+	private static ByteBuffer bindView(ByteBuffer view, ByteBuffer byteBuffer) {
+		return byteBuffer.isDirect() && view != null ? TByteBuffer.bindView(view, byteBuffer) : byteBuffer;
+	}
+
+	private static void syncView(ByteBuffer view, ByteBuffer byteBuffer) {
+		if (view != byteBuffer) {
+			byteBuffer.limit(view.limit());
+			byteBuffer.position(view.position());
+		}
+	}
+
 	/**
 	 * 处理握手 Warp;
 	 *
@@ -133,9 +222,7 @@ public class SSLParser {
 		}
 
 		try {
-			clearBuffer();
-			appData.flip();
-			if (warp(appData) == null) {
+			if (warp(TByteBuffer.EMPTY_BYTE_BUFFER) == null) {
 				return null;
 			}
 			//如果有 HandShake Task 则执行
@@ -160,7 +247,7 @@ public class SSLParser {
 			SSLEngineResult engineResult = null;
 
 			if(!TByteBuffer.isReleased(appBuffer)) {
-				engineResult = engine.unwrap(netBuffer, appBuffer);
+				engineResult = unwrap(netBuffer, appBuffer);
 			} else {
 				return null;
 			}
@@ -171,6 +258,49 @@ public class SSLParser {
 		}
 	}
 
+	/**
+	 * 解包数据, 解包后的数据直接写入会话的读缓冲区
+	 *      读缓冲区的可用空间不足时自动扩容
+	 *
+	 * @param netBuffer 接受解包数据的缓冲区
+	 * @param appByteBufferChannel 会话的读缓冲区
+	 * @throws SSLException SSL 异常
+	 * @return SSLEngineResult 对象
+	 */
+	private synchronized SSLEngineResult unwarp(ByteBuffer netBuffer, ByteBufferChannel appByteBufferChannel) throws SSLException {
+		if (!session.isConnected() || appByteBufferChannel.isReleased()) {
+			return null;
+		}
+
+		int appBufferSize = engine.getSession().getApplicationBufferSize();
+		while (true) {
+			if (appByteBufferChannel.available() < appBufferSize) {
+				appByteBufferChannel.reallocate(appByteBufferChannel.size() + appBufferSize);
+			}
+
+			SSLEngineResult engineResult;
+			ByteBuffer appBuffer = appByteBufferChannel.getByteBuffer();
+			try {
+				//从已有数据的尾部开始写入
+				appBuffer.position(appBuffer.limit());
+				appBuffer.limit(appBuffer.capacity());
+
+				engineResult = unwrap(netBuffer, appBuffer);
+
+				appBuffer.flip();
+			} finally {
+				appByteBufferChannel.compact();
+			}
+
+			if (engineResult.getStatus() == Status.BUFFER_OVERFLOW) {
+				appBufferSize = appBufferSize * 2;
+				continue;
+			}
+
+			return engineResult;
+		}
+	}
+
 	/**
 	 * 处理握手 Unwarp;
 	 *
@@ -182,18 +312,16 @@ public class SSLParser {
 		HandshakeStatus handshakeStatus = null;
 		SSLEngineResult engineResult = null;
 
-		clearBuffer();
-
-		if (sslByteBufferChannel.isReleased()) {
+		if (released) {
 			throw new IOException("Socket is disconnect");
 		}
 
-		if (sslByteBufferChannel.size() > 0) {
-			ByteBuffer byteBuffer = sslByteBufferChannel.getByteBuffer();
+		if (getNetDataSize() > 0) {
+			ByteBuffer byteBuffer = netByteBufferChannel.getByteBuffer();
 
 			try {
 
-				engineResult = unwarp(byteBuffer, appData);
+				engineResult = unwarp(byteBuffer, session.getReadByteBufferChannel());
 
 				if (engineResult == null) {
 					return null;
@@ -213,26 +341,59 @@ public class SSLParser {
 				}
 
 			} finally {
-				sslByteBufferChannel.compact();
+				netByteBufferChannel.compact();
 			}
-
-
 		}
 
 		return handshakeStatus == null ? engine.getHandshakeStatus() : handshakeStatus;
 	}
 
+	/**
+	 * 判断握手委派任务是否正在执行
+	 *
+	 * @return true: 正在执行, false: 没有在执行
+	 */
+	public boolean isTaskRunning() {
+		return taskRunning;
+	}
+
 	/**
 	 * 执行委派任务
+	 *      存在执行器时委派任务提交到执行器中执行, 执行期间暂停会话的读事件, 执行完成后恢复并唤醒选择器
 	 *
-	 * @throws Exception
+	 * @return 握手状态, 委派任务在执行器中执行时返回 NEED_TASK
 	 */
 	private synchronized HandshakeStatus runDelegatedTasks() {
 		if (handShakeDone == false) {
-			if (engine.getHandshakeStatus() == HandshakeStatus.NEED_TASK) {
-				Runnable runnable;
-				while ((runnable = engine.getDelegatedTask()) != null) {
-					runnable.run();
+			if (engine.getHandshakeStatus() == HandshakeStatus.NEED_TASK && !taskRunning) {
+				Executor taskExecutor = sslManager == null ? null : sslManager.getTaskExecutor();
+
+				if (taskExecutor == null) {
+					runTasks();
+				} else {
+					taskRunning = true;
+					pauseRead(true);
+
+					try {
+						taskExecutor.execute(() -> {
+							try {
+								runTasks();
+							} finally {
+								taskRunning = false;
+								//在选择器线程中继续握手, 不依赖对端发送新的数据
+								continueHandShake();
+								pauseRead(false);
+							}
+						});
+					} catch (RejectedExecutionException e) {
+						//队列已满, 在当前线程执行
+						try {
+							runTasks();
+						} finally {
+							taskRunning = false;
+							pauseRead(false);
+						}
+					}
 				}
 			}
 			return engine.getHandshakeStatus();
@@ -240,13 +401,65 @@ public class SSLParser {
 		return null;
 	}
 
+	private void runTasks() {
+		Runnable runnable;
+		while ((runnable = engine.getDelegatedTask()) != null) {
+			runnable.run();
+		}
+	}
+
+	/**
+	 * 在选择器线程中继续握手
+	 */
+	private void continueHandShake() {
+		SocketSelector socketSelector = session.socketSelector();
+		if (socketSelector != null) {
+			socketSelector.addEvent(5, () -> session.socketContext().continuePrepare());
+		}
+	}
+
+	/**
+	 * 暂停或恢复会话的读事件
+	 *
+	 * @param pause true: 暂停, false: 恢复
+	 */
+	private void pauseRead(boolean pause) {
+		SelectionKey selectionKey = session.getSelectionKey();
+		try {
+			if (selectionKey != null && selectionKey.isValid()) {
+				if (pause) {
+					NioUtil.removeOps(selectionKey, SelectionKey.OP_READ);
+				} else {
+					NioUtil.addOps(selectionKey, SelectionKey.OP_READ);
+				}
+			}
+		} catch (CancelledKeyException e) {
+			//会话已关闭
+		}
+
+		if (!pause && session.socketSelector() != null) {
+			session.socketSelector().wakeup();
+		}
+	}
+
 	/**
 	 * 进行 SSL 握手
+	 *      不会阻塞等待对端的握手数据, 数据不足时直接返回, 收到新的数据后再次调用继续握手
 	 * @return true: 握手完成, false: 握手未完成
 	 */
 	public synchronized boolean doHandShake() {
+		//委派任务执行完成后再继续握手
+		if (taskRunning || handShakeDone) {
+			return handShakeDone;
+		}
+
 		try {
-			engine.beginHandshake();
+			//只在第一次调用时开始握手, 握手过程中重复调用 beginHandshake 会重新发起握手
+			if (handShakeStartTime < 0) {
+				handShakeStartTime = System.currentTimeMillis();
+				engine.beginHandshake();
+			}
+
 			int handShakeCount = 0;
 			HandshakeStatus handshakeStatus = engine.getHandshakeStatus();
 			while (!handShakeDone && handShakeCount < 20) {
@@ -258,6 +471,9 @@ public class SSLParser {
 				switch (handshakeStatus) {
 					case NEED_TASK:
 						handshakeStatus = runDelegatedTasks();
+						if (taskRunning) {
+							return false;
+						}
 						break;
 					case NEED_WRAP:
 						handshakeStatus = doHandShakeWarp();
@@ -272,32 +488,41 @@ public class SSLParser {
 						}
 						break;
 					case FINISHED:
-						handshakeStatus = engine.getHandshakeStatus();
-						handShakeDone = true;
-						break;
 					case NOT_HANDSHAKING:
-                        //对于粘包数据的处理
-						if(sslByteBufferChannel.size() > 0){
-							try {
-								unwarpByteBufferChannel();
-							} finally {
-								sslByteBufferChannel.compact();
-							}
-						}
-
-						handShakeDone = true;
+						onHandShakeDone();
 						break;
 					default:
 						break;
 				}
 			}
+
+			//和握手报文一起收到的应用数据, 解包到会话的读缓冲区
+			if (handShakeDone) {
+				unwarpByteBufferChannel();
+			}
 		} catch (Exception e) {
 			Logger.error("SSLParser.doHandShake error:", e);
+		} finally {
+			recycleNetByteBufferChannel();
 		}
 
 		return handShakeDone;
 	}
 
+	/**
+	 * 握手完成, 统计完整握手和会话复用握手
+	 *      复用的会话在本次握手开始前就已经创建
+	 */
+	private void onHandShakeDone() {
+		if (!handShakeDone) {
+			handShakeDone = true;
+
+			if (sslManager != null) {
+				sslManager.handShakeDone(engine.getSession().getCreationTime() < handShakeStartTime, System.currentTimeMillis() - handShakeStartTime);
+			}
+		}
+	}
+
 	/**
 	 * 读取SSL消息到缓冲区
 	 *
@@ -313,19 +538,18 @@ public class SSLParser {
 
 		int readSize = 0;
 
-		if (session.isConnected() && sslByteBufferChannel.size() > 0) {
+		if (session.isConnected() && getNetDataSize() > 0) {
 			SSLEngineResult engineResult = null;
 
 			try {
 				while (true) {
-					appData.clear();
-
-					ByteBuffer sslByteBuffer = sslByteBufferChannel.getByteBuffer();;
+					ByteBuffer sslByteBuffer = netByteBufferChannel.getByteBuffer();
 
 					try {
-						engineResult = unwarp(sslByteBuffer, appData);
+						//直接解包到会话的读缓冲区
+						engineResult = unwarp(sslByteBuffer, appByteBufferChannel);
 					} finally {
-						sslByteBufferChannel.compact();
+						netByteBufferChannel.compact();
 					}
 
 					if (engineResult == null) {
@@ -333,8 +557,7 @@ public class SSLParser {
 					}
 
 					if (engineResult.getStatus() == Status.OK){
-						appData.flip();
-						appByteBufferChannel.writeEnd(appData);
+						readSize = readSize + engineResult.bytesProduced();
 
 						if(sslByteBuffer.remaining() == 0) {
 							break;
@@ -351,6 +574,8 @@ public class SSLParser {
 				if(!session.isConnected()) {
 					throw new SSLException("unWarpByteBufferChannel ", e);
 				}
+			} finally {
+				recycleNetByteBufferChannel();
 			}
 		}
 		return readSize;
@@ -359,10 +584,11 @@ public class SSLParser {
 	/**
 	 * 释放方法
 	 */
-	public void release() {
-		TByteBuffer.release(netData);
-		TByteBuffer.release(appData);
-		sslByteBufferChannel.release();
+	public synchronized void release() {
+		released = true;
+		if (netByteBufferChannel != null) {
+			netByteBufferChannel.release();
+		}
 	}
 
 
@@ -400,7 +626,11 @@ public class SSLParser {
 	 </pre>
 	 */
 	private boolean isEnoughToUnwarp() throws SSLException {
-		ByteBuffer src = sslByteBufferChannel.getByteBuffer();
+		if (getNetDataSize() == 0) {
+			return false;
+		}
+
+		ByteBuffer src = netByteBufferChannel.getByteBuffer();
 		try {
 			if (src.remaining() < 5) {
 				return false;
@@ -425,7 +655,7 @@ public class SSLParser {
 			}
 			return true;
 		} finally {
-			sslByteBufferChannel.compact();
+			netByteBufferChannel.compact();
 		}
 	}
 }
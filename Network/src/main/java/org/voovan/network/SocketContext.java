@@ -45,6 +45,10 @@ public abstract class SocketContext<C extends SelectableChannel, S extends IoSes
 	public final static boolean 	ASYNC_RECIVE 	    = TEnv.getSystemProperty("AsyncRecive", true);
 	public final static boolean 	DIRECT_IO 	        = TEnv.getSystemProperty("DirectIO", false);
 	public final static boolean 	FORCE_FLUSH 	    = TEnv.getSystemProperty("ForecFlush", false);
+	//发送数据的高低水位, 单位: 字节, 高水位为 0 时不检查, 低水位为 0 时使用高水位的一半
+	public final static int 		WRITE_HIGH_WATER_MARK 		= TEnv.getSystemProperty("WriteHighWaterMark", 0);
+	public final static int 		WRITE_LOW_WATER_MARK 		= TEnv.getSystemProperty("WriteLowWaterMark", 0);
+	public final static boolean 	PAUSE_READ_ON_UNWRITABLE 	= TEnv.getSystemProperty("PauseReadOnUnwritable", false);
 
 	static {
 		IO_THREAD_SIZE = IO_THREAD_SIZE < 8 ? 8 : IO_THREAD_SIZE;
@@ -75,6 +79,7 @@ public abstract class SocketContext<C extends SelectableChannel, S extends IoSes
 		name = name + "-" + (isAccept ? "Accept" : "IO");
 		int threadPriority = isAccept ? 10 : 9;
 
+		//Socket 的事件都绑定在 SocketSelector 所在的 EventRunner 上, 没有可窃取的任务, 不开启任务窃取
 		EventRunnerGroup eventRunnerGroup =  EventRunnerGroup.newInstance(name, size, false, threadPriority, (obj)->{
 			try {
 				boolean isCheckTimeout = true;
@@ -139,10 +144,20 @@ public abstract class SocketContext<C extends SelectableChannel, S extends IoSes
 	protected int readBufferSize = TByteBuffer.DEFAULT_BYTE_BUFFER_SIZE;
 	protected int sendBufferSize = TByteBuffer.DEFAULT_BYTE_BUFFER_SIZE;
 
+	protected int writeHighWaterMark = WRITE_HIGH_WATER_MARK;
+	protected int writeLowWaterMark = WRITE_LOW_WATER_MARK;
+	protected boolean pauseReadOnUnwritable = PAUSE_READ_ON_UNWRITABLE;
+
 	protected int idleInterval = 0;
 	protected long lastReadTime = System.currentTimeMillis();
+	//下次读超时检查的时间, 由 SocketSelector 维护
+	long timeoutDeadline;
 
 	private volatile boolean isRegister = false;
+	//插件是否准备完成, 例如: SSL 握手是否完成
+	private volatile boolean isPrepared = false;
+	//指定绑定的选择器, 为空时从事件执行器组中选择
+	protected SocketSelector bindSelector;
 	protected volatile boolean isSynchronous = true;
 
 	private EventRunnerGroup acceptEventRunnerGroup;
@@ -244,6 +259,9 @@ public abstract class SocketContext<C extends SelectableChannel, S extends IoSes
 		this.readBufferSize 		= parentSocketContext.readBufferSize;
 		this.sendBufferSize 		= parentSocketContext.sendBufferSize;
 		this.idleInterval 			= parentSocketContext.idleInterval;
+		this.writeHighWaterMark 	= parentSocketContext.writeHighWaterMark;
+		this.writeLowWaterMark 		= parentSocketContext.writeLowWaterMark;
+		this.pauseReadOnUnwritable 	= parentSocketContext.pauseReadOnUnwritable;
 		this.acceptEventRunnerGroup = parentSocketContext.acceptEventRunnerGroup;
 		this.ioEventRunnerGroup 	= parentSocketContext.ioEventRunnerGroup;
 	}
@@ -328,6 +346,54 @@ public abstract class SocketContext<C extends SelectableChannel, S extends IoSes
 		this.sendBufferSize = sendBufferSize;
 	}
 
+	/**
+	 * 获取发送数据的高水位
+	 * @return 高水位, 单位: 字节, 0: 不检查
+	 */
+	public int getWriteHighWaterMark() {
+		return writeHighWaterMark;
+	}
+
+	/**
+	 * 获取发送数据的低水位
+	 * @return 低水位, 单位: 字节
+	 */
+	public int getWriteLowWaterMark() {
+		return writeLowWaterMark > 0 ? writeLowWaterMark : writeHighWaterMark / 2;
+	}
+
+	/**
+	 * 设置发送数据的高低水位
+	 * 		待发送的数据超过高水位时会话变为不可写, 降到低水位以下时恢复可写, 变化时触发 onWritabilityChanged 事件
+	 * @param writeLowWaterMark 低水位, 单位: 字节, 0: 使用高水位的一半
+	 * @param writeHighWaterMark 高水位, 单位: 字节, 0: 不检查
+	 */
+	public void setWriteWaterMark(int writeLowWaterMark, int writeHighWaterMark) {
+		if(writeLowWaterMark < 0 || writeHighWaterMark < 0 || (writeHighWaterMark > 0 && writeLowWaterMark > writeHighWaterMark)) {
+			throw new IllegalArgumentException("Invalid write water mark, low: " + writeLowWaterMark + ", high: " + writeHighWaterMark);
+		}
+
+		this.writeLowWaterMark = writeLowWaterMark;
+		this.writeHighWaterMark = writeHighWaterMark;
+	}
+
+	/**
+	 * 不可写时是否暂停读取
+	 * @return true: 暂停读取, false: 不暂停读取
+	 */
+	public boolean isPauseReadOnUnwritable() {
+		return pauseReadOnUnwritable;
+	}
+
+	/**
+	 * 设置不可写时是否暂停读取, 仅对 TCP 连接有效
+	 * 		暂停后对端的数据留在系统缓冲区中, 恢复可写后继续读取, 用于代理等场景防止读取快于发送
+	 * @param pauseReadOnUnwritable true: 暂停读取, false: 不暂停读取
+	 */
+	public void setPauseReadOnUnwritable(boolean pauseReadOnUnwritable) {
+		this.pauseReadOnUnwritable = pauseReadOnUnwritable;
+	}
+
 	public boolean isRegister() {
 		return isRegister;
 	}
@@ -505,7 +571,7 @@ public abstract class SocketContext<C extends SelectableChannel, S extends IoSes
 	 * 等待连接完成, 包含事件注册和 SSL 握手, 用于在同步调用的方法中同步
 	 */
 	protected void hold() {
-		if(!isRegister) {
+		if(!wait.isDone()) {
 			try {
 				wait.get(readTimeout, TimeUnit.MILLISECONDS);
 			} catch (Exception e) {
@@ -517,8 +583,29 @@ public abstract class SocketContext<C extends SelectableChannel, S extends IoSes
 
 	protected void unhold() {
 		EventTrigger.fireInit(getSession());
-		EventTrigger.fireConnect(getSession());
-		wait.run();
+		prepared();
+	}
+
+	/**
+	 * 继续插件的准备, 例如: SSL 握手
+	 *      在选择器线程中收到对端数据, 或者 SSL 委派任务完成后触发, 不阻塞选择器线程等待对端数据
+	 */
+	public void continuePrepare() {
+		if(!isPrepared) {
+			EventTrigger.fireInit(getSession());
+			prepared();
+		}
+	}
+
+	/**
+	 * 所有插件准备完成后触发连接事件, 并结束同步等待
+	 */
+	private void prepared() {
+		if(!isPrepared && IoPlugin.isPreparedChain(this)) {
+			isPrepared = true;
+			EventTrigger.fireConnect(getSession());
+			wait.run();
+		}
 	}
 
 	/**
@@ -526,6 +613,11 @@ public abstract class SocketContext<C extends SelectableChannel, S extends IoSes
 	 * @param ops 选择的操作类型
 	 */
 	public void bindToSocketSelector(int ops) {
+		if(bindSelector != null) {
+			bindToSocketSelector(ops, bindSelector);
+			return;
+		}
+
 		EventRunner eventRunner = null;
 
 		if(connectModel == ConnectModel.LISTENER) {
@@ -540,7 +632,15 @@ public abstract class SocketContext<C extends SelectableChannel, S extends IoSes
 			eventRunner = ioEventRunnerGroup.choseEventRunner();
 		}
 
-		SocketSelector socketSelector = (SocketSelector)eventRunner.attachment();
+		bindToSocketSelector(ops, (SocketSelector)eventRunner.attachment());
+	}
+
+	/**
+	 * 绑定到指定的 SocketSelector
+	 * @param ops 选择的操作类型
+	 * @param socketSelector SocketSelector 对象
+	 */
+	public void bindToSocketSelector(int ops, SocketSelector socketSelector) {
 		socketSelector.register(this, ops);
 
 		//绑定 FileDescriptor
@@ -1,8 +1,11 @@
 package org.voovan.network;
 
 import org.voovan.Global;
+import org.voovan.network.metrics.NetworkMetrics;
+import org.voovan.network.metrics.SelectorMetrics;
 import org.voovan.network.tcp.TcpServerSocket;
 import org.voovan.network.tcp.TcpSocket;
+import org.voovan.network.udp.Datagram;
 import org.voovan.network.udp.UdpServerSocket;
 import org.voovan.network.udp.UdpSession;
 import org.voovan.network.udp.UdpSocket;
@@ -21,8 +24,13 @@ import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
 import java.nio.channels.spi.SelectorProvider;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 选择器
@@ -41,8 +49,18 @@ public class SocketSelector implements Closeable {
 	protected ArraySet<SelectionKey> selectedKeys = new ArraySet<SelectionKey>(65536);
 	protected AtomicBoolean selecting = new AtomicBoolean(false);
 
+	//未设置读超时的连接的检查间隔, 用于发现运行中设置的读超时
+	private final static int NO_TIMEOUT_CHECK_INTERVAL = 10 * 1000;
+
+	//按读超时检查时间排序的队列, 只在选择器线程中访问
+	private PriorityQueue<SocketContext> timeoutQueue = new PriorityQueue<SocketContext>((o1, o2) -> Long.compare(o1.timeoutDeadline, o2.timeoutDeadline));
+	private volatile int lastTimeoutCount = 0;
+	private LongAdder totalTimeoutCount = new LongAdder();
+
 	private Runnable selectEvent;
 
+	private SelectorMetrics metrics;
+
 	/**
 	 * 构造方法
 	 * @param eventRunner 事件执行器
@@ -54,6 +72,11 @@ public class SocketSelector implements Closeable {
 		this.eventRunner = eventRunner;
 		this.isCheckTimeout = isCheckTimeout;
 
+		if(NetworkMetrics.ENABLE) {
+			metrics = new SelectorMetrics(eventRunner);
+			NetworkMetrics.register(metrics);
+		}
+
 		NioUtil.transformSelector(selector, selectedKeys);
 
 		selectEvent = ()->{
@@ -96,6 +119,14 @@ public class SocketSelector implements Closeable {
 		return eventRunner;
 	}
 
+	/**
+	 * 获取选择器的计数器
+	 * @return 选择器的计数器, 未开启 NetworkMetrics 时为 null
+	 */
+	public SelectorMetrics getMetrics() {
+		return metrics;
+	}
+
 
 	/**
 	 * 注册一个 SocketContext 到选择器
@@ -104,6 +135,17 @@ public class SocketSelector implements Closeable {
 	 * @return true:成功, false:失败
 	 */
 	public boolean register(SocketContext socketContext, int ops){
+		return register(socketContext, socketContext.socketChannel(), ops);
+	}
+
+	/**
+	 * 注册一个 SocketContext 的通道到选择器
+	 * @param socketContext SocketContext 对象
+	 * @param channel 注册的通道, SO_REUSEPORT 模式下一个 TcpServerSocket 有多个监听通道
+	 * @param ops 需要关注的操作
+	 * @return true:成功, false:失败
+	 */
+	public boolean register(SocketContext socketContext, SelectableChannel channel, int ops){
 		if(ops==0) {
 			//udp
 			IoSession session = socketContext.getSession();
@@ -118,7 +160,7 @@ public class SocketSelector implements Closeable {
 			//tcp
 			addEvent(6, () -> {
 				try {
-					SelectionKey selectionKey = socketContext.socketChannel().register(selector, ops, socketContext);
+					SelectionKey selectionKey = channel.register(selector, ops, socketContext);
 
 					IoSession session = socketContext.getSession();
 
@@ -128,6 +170,10 @@ public class SocketSelector implements Closeable {
 					}
 
 					socketContext.setRegister(true);
+
+					if (socketContext.connectModel != ConnectModel.LISTENER) {
+						addReadTimeout(socketContext);
+					}
 				} catch (ClosedChannelException e) {
 					Logger.error("Register " + socketContext + " to selector error", e);
 				} finally {
@@ -206,6 +252,15 @@ public class SocketSelector implements Closeable {
 		}
 	}
 
+	/**
+	 * 唤醒选择器, 用于其他线程中的操作完成后让选择器立即处理
+	 */
+	public void wakeup() {
+		if(selector.isOpen()) {
+			selector.wakeup();
+		}
+	}
+
 	int JvmEpollBugFlag = 0;
 
 	/**
@@ -242,36 +297,108 @@ public class SocketSelector implements Closeable {
 				//检查超时
 				checkReadTimeout();
 				selecting.compareAndSet(false, true);
-				NioUtil.select(selector, SocketContext.SELECT_INTERVAL);
+				int selectedSize = NioUtil.select(selector, SocketContext.SELECT_INTERVAL);
 				selecting.compareAndSet(true, false);
+
+				if(metrics != null) {
+					metrics.select(selectedSize);
+				}
 		} catch (Throwable e) {
 			Logger.error(e);
 		}
 	}
 
+	/**
+	 * 加入读超时检查队列
+	 * @param socketContext SocketContext 对象
+	 */
+	private void addReadTimeout(SocketContext socketContext) {
+		if(isCheckTimeout) {
+			socketContext.timeoutDeadline = nextTimeoutDeadline(socketContext, System.currentTimeMillis());
+			timeoutQueue.add(socketContext);
+		}
+	}
+
+	/**
+	 * 计算下次读超时检查的时间
+	 * @param socketContext SocketContext 对象
+	 * @param now 当前时间
+	 * @return 下次读超时检查的时间
+	 */
+	private static long nextTimeoutDeadline(SocketContext socketContext, long now) {
+		long deadline = socketContext.getReadTimeout() > 0 ?
+				socketContext.getLastReadTime() + socketContext.getReadTimeout() : now + NO_TIMEOUT_CHECK_INTERVAL;
+		return Math.max(deadline, now + 1);
+	}
+
 	/**
 	 * 读超时检查
+	 *      按检查时间排序, 只处理到达检查时间的连接, 连接在检查时间之前有读取则重新计算检查时间后放回队列
 	 */
 	public void checkReadTimeout(){
 		if(isCheckTimeout) {
-			for (SelectionKey selectionKey : selector.keys()) {
-				SocketContext socketContext = (SocketContext) selectionKey.attachment();
-				if (socketContext!=null && socketContext.connectModel != ConnectModel.LISTENER) {
+			long now = System.currentTimeMillis();
+			int count = 0;
+			int timeoutCount = 0;
+
+			SocketContext socketContext;
+			while ((socketContext = timeoutQueue.peek()) != null && socketContext.timeoutDeadline <= now) {
+				timeoutQueue.poll();
+				count++;
+
+				//已经关闭的连接不再检查
+				if (!socketContext.isRegister() || !socketContext.isOpen()) {
+					continue;
+				}
 
-					//缓冲区是否有数据
-					boolean bufferDataEmpty = socketContext.getSession().getReadByteBufferChannel().isEmpty();
+				//缓冲区是否有数据
+				boolean bufferDataEmpty = socketContext.getSession().getReadByteBufferChannel().isEmpty();
 
-					if(socketContext.isTimeOut() && bufferDataEmpty) {
-						socketContext.close();
-						EventTrigger.fireException(socketContext.getSession(), new TimeoutException("Socket Read timeout"));
-					} else if(!bufferDataEmpty) {
+				if(socketContext.isTimeOut() && bufferDataEmpty) {
+					timeoutCount++;
+					socketContext.close();
+					EventTrigger.fireException(socketContext.getSession(), new TimeoutException("Socket Read timeout"));
+				} else {
+					if(!bufferDataEmpty) {
 						socketContext.updateLastTime();
 					}
+
+					socketContext.timeoutDeadline = nextTimeoutDeadline(socketContext, now);
+					timeoutQueue.add(socketContext);
 				}
 			}
+
+			if(count > 0) {
+				lastTimeoutCount = timeoutCount;
+				totalTimeoutCount.add(timeoutCount);
+			}
 		}
 	}
 
+	/**
+	 * 获取最近一次读超时检查中超时的连接数
+	 * @return 超时的连接数
+	 */
+	public int getLastTimeoutCount() {
+		return lastTimeoutCount;
+	}
+
+	/**
+	 * 获取读超时的连接总数
+	 * @return 超时的连接总数
+	 */
+	public long getTimeoutCount() {
+		return totalTimeoutCount.sum();
+	}
+
+	/**
+	 * 获取读超时检查队列中的连接数
+	 * @return 连接数
+	 */
+	public int getTimeoutQueueSize() {
+		return timeoutQueue.size();
+	}
+
 	/**
 	 * 处理选择到的 Key
 	 * @return true: 有相关的 NIO 事件被处理, false: 无相关 NIO 事件被处理
@@ -280,7 +407,9 @@ public class SocketSelector implements Closeable {
 
 	private boolean processSelectionKeys() throws IOException {
 		boolean ret = false;
-		for (int i = 0; i< selectedKeys.size(); i++) {
+		//getAndRemove 会减少 size, 这里需要使用选择到的 key 的数量
+		int selectedSize = selectedKeys.size();
+		for (int i = 0; i< selectedSize; i++) {
 			SelectionKey selectedKey = selectedKeys.getAndRemove(i);
 
 			if (selectedKey!=null && selectedKey.isValid()) {
@@ -288,20 +417,30 @@ public class SocketSelector implements Closeable {
 				SelectableChannel channel = selectedKey.channel();
 				SocketContext socketContext = (SocketContext) selectedKey.attachment();
 
-				if (channel.isOpen() && selectedKey.isValid()) {
-					//事件分发,包含时间 onRead onAccept
-					{
-						// Server接受连接
-						if ((selectedKey.readyOps() & SelectionKey.OP_ACCEPT) != 0) {
-							SocketChannel socketChannel = ((ServerSocketChannel) channel).accept();
-							tcpAccept((TcpServerSocket) socketContext, socketChannel);
-						}
-
-						// 有数据读取
-						if ((selectedKey.readyOps() & SelectionKey.OP_READ) != 0) {
-							readFromChannel(socketContext, channel);
+				try {
+					if (channel.isOpen() && selectedKey.isValid()) {
+						//通道可能在处理过程中被其他线程关闭, 只读取一次就绪事件
+						int readyOps = selectedKey.readyOps();
+
+						//事件分发,包含时间 onRead onAccept
+						{
+							// Server接受连接
+							if ((readyOps & SelectionKey.OP_ACCEPT) != 0) {
+								//超过连接数或接受速率的限制时暂停接受连接
+								if(((TcpServerSocket) socketContext).tryAccept(selectedKey)) {
+									SocketChannel socketChannel = ((ServerSocketChannel) channel).accept();
+									tcpAccept((TcpServerSocket) socketContext, socketChannel);
+								}
+							}
+
+							// 有数据读取
+							if ((readyOps & SelectionKey.OP_READ) != 0) {
+								readFromChannel(socketContext, channel);
+							}
 						}
 					}
+				} catch (CancelledKeyException e) {
+					//通道已经关闭, 不影响其他 key 的处理和后续的选择
 				}
 				ret = true;
 			}
@@ -316,6 +455,10 @@ public class SocketSelector implements Closeable {
 	 * 选择器关闭方法
 	 */
 	public void close() {
+		if(metrics != null) {
+			NetworkMetrics.unregister(metrics);
+		}
+
 		try {
 			selector.close();
 		} catch (IOException e) {
@@ -340,12 +483,21 @@ public class SocketSelector implements Closeable {
 
 				//udp accept new connection
 				if (socketContext.getConnectModel() == ConnectModel.LISTENER && !datagramChannel.isConnected()) {
-					socketContext = (UdpSocket) udpAccept((UdpServerSocket) socketContext, datagramChannel);
+					UdpServerSocket udpServerSocket = (UdpServerSocket) socketContext;
+
+					//批量模式不创建会话, 直接处理这次读事件中的所有数据报
+					if (udpServerSocket.isBatchMode()) {
+						return (int) recordRead(socketContext, udpBatchReadFromChannel(udpServerSocket, datagramChannel));
+					}
+
+					socketContext = (UdpSocket) udpAccept(udpServerSocket, datagramChannel);
 				}
 
 				readSize = udpReadFromChannel((SocketContext<DatagramChannel, UdpSession>) socketContext, (DatagramChannel) selectableChannel);
 			}
 
+			recordRead(socketContext, readSize);
+
 			IoSession session = socketContext.getSession();
 
 			// 如果对端连接关闭,或者 session 关闭,则直接调用 session 的关闭
@@ -358,6 +510,9 @@ public class SocketSelector implements Closeable {
 				//初始化状态不出发 loadAndPrepare
 				if (!session.getState().isInit()) {
 					readSize = loadAndPrepare(session, readSize);
+				} else if (readSize > 0) {
+					//插件准备阶段收到的数据, 例如: SSL 握手报文
+					socketContext.continuePrepare();
 				}
 			}
 			return readSize;
@@ -366,6 +521,42 @@ public class SocketSelector implements Closeable {
 		}
 	}
 
+	/**
+	 * 记录读取的字节数
+	 * @param socketContext SocketContext 对象
+	 * @param readSize 读取的字节数
+	 * @return 读取的字节数
+	 */
+	private long recordRead(SocketContext socketContext, long readSize) {
+		if(metrics != null && readSize > 0) {
+			metrics.read(readSize);
+
+			IoSession session = socketContext.getSession();
+			if(session != null && session.getMetrics() != null) {
+				session.getMetrics().read(readSize);
+			}
+		}
+		return readSize;
+	}
+
+	/**
+	 * 记录写入的字节数
+	 * @param socketContext SocketContext 对象
+	 * @param sendSize 写入的字节数
+	 * @return 写入的字节数
+	 */
+	private long recordWrite(SocketContext socketContext, long sendSize) {
+		if(metrics != null && sendSize > 0) {
+			metrics.write(sendSize);
+
+			IoSession session = socketContext.getSession();
+			if(session != null && session.getMetrics() != null) {
+				session.getMetrics().write(sendSize);
+			}
+		}
+		return sendSize;
+	}
+
 	/**
 	 * 通用封装的向通道写数据的方法
 	 * @param socketContext SocketContext 对象
@@ -375,9 +566,40 @@ public class SocketSelector implements Closeable {
 	public int writeToChannel(SocketContext socketContext, ByteBuffer buffer){
 		try {
 			if (socketContext.getConnectType() == ConnectType.TCP) {
-				return tcpWriteToChannel((TcpSocket) socketContext, buffer);
+				return (int) recordWrite(socketContext, tcpWriteToChannel((TcpSocket) socketContext, buffer));
+			} else if (socketContext.getConnectType() == ConnectType.UDP) {
+				return (int) recordWrite(socketContext, udpWriteToChannel((UdpSocket) socketContext, buffer));
+			} else {
+				return -1;
+			}
+		} catch(Exception e) {
+			return dealException(socketContext, e);
+		} finally {
+			socketContext.getSession().getSendByteBufferChannel().clear();
+		}
+	}
+
+	/**
+	 * 通用封装的向通道聚合写数据的方法
+	 * @param socketContext SocketContext 对象
+	 * @param buffers 待写入的数据缓冲对象数组
+	 * @param length 数组中有效的缓冲对象数量
+	 * @return 写入数据的字节数, -1:写入失败
+	 */
+	public long writeToChannel(SocketContext socketContext, ByteBuffer[] buffers, int length){
+		try {
+			if (socketContext.getConnectType() == ConnectType.TCP) {
+				return recordWrite(socketContext, tcpWriteToChannel((TcpSocket) socketContext, buffers, length));
 			} else if (socketContext.getConnectType() == ConnectType.UDP) {
-				return udpWriteToChannel((UdpSocket) socketContext, buffer);
+				long totalSendByte = 0;
+				for(int i=0; i<length; i++) {
+					int sendSize = udpWriteToChannel((UdpSocket) socketContext, buffers[i]);
+					if(sendSize < 0) {
+						return -1;
+					}
+					totalSendByte += sendSize;
+				}
+				return recordWrite(socketContext, totalSendByte);
 			} else {
 				return -1;
 			}
@@ -388,13 +610,67 @@ public class SocketSelector implements Closeable {
 		}
 	}
 
+	/**
+	 * 通用封装的向通道写文件区域的方法, 仅支持 TCP
+	 * @param socketContext SocketContext 对象
+	 * @param fileRegion 待写入的文件区域
+	 * @return 写入数据的字节数, -1:写入失败
+	 */
+	public long writeToChannel(SocketContext socketContext, FileRegion fileRegion){
+		try {
+			if (socketContext.getConnectType() == ConnectType.TCP) {
+				return recordWrite(socketContext, tcpWriteToChannel((TcpSocket) socketContext, fileRegion));
+			} else {
+				return -1;
+			}
+		} catch(Exception e) {
+			return dealException(socketContext, e);
+		}
+	}
+
 	/**
 	 * Tcp 服务接受一个新的连接
 	 * @param socketContext SocketContext 对象
 	 * @param socketChannel Socketchannel 对象
 	 */
 	public void tcpAccept(TcpServerSocket socketContext, SocketChannel socketChannel) {
-		TcpSocket socket = new TcpSocket(socketContext, socketChannel);
+		if(socketChannel == null) {
+			return;
+		}
+
+		//超过单个 IP 的最大连接数则直接关闭
+		if(!socketContext.admit(socketChannel)) {
+			try {
+				socketChannel.close();
+			} catch (IOException e) {
+				Logger.error("Close rejected socket channel error", e);
+			}
+			return;
+		}
+
+		String remoteIp = socketChannel.socket().getInetAddress().getHostAddress();
+		TcpSocket socket = null;
+		try {
+			socket = new TcpSocket(socketContext, socketChannel);
+		} catch (Exception e) {
+			Logger.error("Create accepted socket failed", e);
+		}
+
+		//创建失败时归还准入检查时计入的连接数
+		if(socket == null || socket.getSession() == null) {
+			socketContext.release(remoteIp);
+			try {
+				socketChannel.close();
+			} catch (IOException e) {
+				Logger.error("Close accepted socket channel error", e);
+			}
+			return;
+		}
+
+		//SO_REUSEPORT 模式下连接直接注册到接受它的 IO 选择器
+		if(socketContext.isReusePort()) {
+			socket.bindSelector = this;
+		}
 		EventTrigger.fireAccept(socket.getSession());
 	}
 
@@ -411,6 +687,7 @@ public class SocketSelector implements Closeable {
 		ByteBufferChannel byteBufferChannel = IoPlugin.getReadBufferChannelChain(socketContext);
 
 		int readSize = -1;
+		int totalReadSize = 0;
 		boolean isBufferFull = false;
 		for(;;) {
 			if (!byteBufferChannel.isReleased()) {
@@ -421,6 +698,9 @@ public class SocketSelector implements Closeable {
 					byteBuffer.position(byteBuffer.limit());
 					byteBuffer.limit(byteBuffer.capacity());
 					readSize = NioUtil.read(socketContext, byteBuffer);
+					if(readSize > 0) {
+						totalReadSize += readSize;
+					}
 
 					isBufferFull = !byteBuffer.hasRemaining();
 
@@ -439,10 +719,15 @@ public class SocketSelector implements Closeable {
 				} finally {
 					byteBufferChannel.compact();
 				}
+			} else {
+				//会话关闭后缓冲区已经释放, 不能继续读取, 否则会在这里空转占用选择器线程
+				readSize = -1;
+				break;
 			}
 		}
 
-		return readSize;
+		//已读取到数据则先处理数据, 流结束在下一次选择时处理
+		return totalReadSize > 0 ? totalReadSize : readSize;
 	}
 
 	/**
@@ -487,6 +772,100 @@ public class SocketSelector implements Closeable {
 		return totalSendByte;
 	}
 
+	/**
+	 * TCP 向通道聚合写数据的方法
+	 * 		使用 GatheringByteChannel.write(ByteBuffer[]) 一次系统调用写入多个缓冲区
+	 * @param socketContext TcpSocket 对象
+	 * @param buffers 待写入的数据缓冲对象数组
+	 * @param length 数组中有效的缓冲对象数量
+	 * @return 写入数据的字节数, -1:写入失败
+	 * @throws IOException IO 异常
+	 */
+	public long tcpWriteToChannel(TcpSocket socketContext, ByteBuffer[] buffers, int length) throws IOException {
+		long totalSendByte = 0;
+		long sendSize = - 1;
+		int offset = 0;
+
+		SocketChannel socketChannel = socketContext.socketChannel();
+		long start = System.currentTimeMillis();
+		//循环发送直到全部内容发送完毕
+		try {
+			while (offset < length) {
+				//跳过已经发送完的缓冲区
+				if(!buffers[offset].hasRemaining()) {
+					offset++;
+					continue;
+				}
+
+				sendSize = socketChannel.write(buffers, offset, length - offset);
+
+				if (sendSize == 0) {
+					if (socketContext.getSendTimeout() >0 && System.currentTimeMillis() - start >= socketContext.getSendTimeout()) {
+						Logger.error("SocketSelector tcpWriteToChannel timeout", new TimeoutException());
+						socketContext.close();
+						return -1;
+					}
+				} else if (sendSize < 0) {
+					socketContext.close();
+					return -1;
+				} else {
+					start = System.currentTimeMillis();
+					totalSendByte += sendSize;
+				}
+			}
+		} catch (NotYetConnectedException | ClosedChannelException e) {
+			socketContext.close();
+			return -1;
+		} catch (Throwable e) {
+			throw new IOException("SocketSelector.tcpWriteToChannel error: " + e.getMessage(), e);
+		}
+
+		return totalSendByte;
+	}
+
+	/**
+	 * TCP 向通道写文件区域的方法
+	 * 		使用 FileChannel.transferTo 直接从文件写入通道, 部分写入时循环发送直到全部完成或超时
+	 * @param socketContext TcpSocket 对象
+	 * @param fileRegion 待写入的文件区域
+	 * @return 写入数据的字节数, -1:写入失败
+	 * @throws IOException IO 异常
+	 */
+	public long tcpWriteToChannel(TcpSocket socketContext, FileRegion fileRegion) throws IOException {
+		long totalSendByte = 0;
+		long sendSize = - 1;
+
+		SocketChannel socketChannel = socketContext.socketChannel();
+		long start = System.currentTimeMillis();
+		//循环发送直到全部内容发送完毕
+		try {
+			while (fileRegion.hasRemaining()) {
+				sendSize = fileRegion.transferTo(socketChannel);
+
+				if (sendSize == 0) {
+					if (socketContext.getSendTimeout() >0 && System.currentTimeMillis() - start >= socketContext.getSendTimeout()) {
+						Logger.error("SocketSelector tcpWriteToChannel timeout", new TimeoutException());
+						socketContext.close();
+						return -1;
+					}
+				} else if (sendSize < 0) {
+					socketContext.close();
+					return -1;
+				} else {
+					start = System.currentTimeMillis();
+					totalSendByte += sendSize;
+				}
+			}
+		} catch (NotYetConnectedException | ClosedChannelException e) {
+			socketContext.close();
+			return -1;
+		} catch (Throwable e) {
+			throw new IOException("SocketSelector.tcpWriteToChannel error: " + e.getMessage(), e);
+		}
+
+		return totalSendByte;
+	}
+
 	/**
 	 * UDP 服务接受一个新的连接
 	 * @param socketContext UdpServerSocket 对象
@@ -548,12 +927,111 @@ public class SocketSelector implements Closeable {
 				} finally {
 					byteBufferChannel.compact();
 				}
+			} else {
+				//会话关闭后缓冲区已经释放, 不能继续读取, 否则会在这里空转占用选择器线程
+				readSize = -1;
+				break;
+			}
+		}
+
+		return readSize;
+	}
+
+	/**
+	 * UDP 批量模式从通道读数据的方法
+	 *      Java NIO 没有 recvmmsg, 这里在一次读事件中循环非阻塞的接收, 最多接收 batchSize 个数据报,
+	 *      这批数据报作为一个 List&lt;Datagram&gt; 交给过滤器和 onReceive, 不为每个数据报创建会话,
+	 *      onReceive 返回和通过 UdpSession.sendDatagram 提交的数据报在处理完成后一起发送
+	 * @param udpServerSocket UdpServerSocket 对象
+	 * @param datagramChannel 读取的 DatagramChannel 对象
+	 * @return 读取数据的字节数
+	 * @throws IOException IO 异常
+	 */
+	public int udpBatchReadFromChannel(UdpServerSocket udpServerSocket, DatagramChannel datagramChannel) throws IOException {
+		UdpSocket udpSocket = udpServerSocket.getBatchSocket();
+		UdpSession session = udpSocket.getSession();
+		ByteBuffer receiveBuffer = udpServerSocket.getReceiveBuffer();
+
+		int batchSize = udpServerSocket.getBatchSize();
+		List<Datagram> datagrams = new ArrayList<Datagram>(batchSize);
+		int readSize = 0;
+
+		try {
+			for (int i = 0; i < batchSize; i++) {
+				receiveBuffer.clear();
+				InetSocketAddress address = (InetSocketAddress) datagramChannel.receive(receiveBuffer);
+				if (address == null) {
+					break;
+				}
+				receiveBuffer.flip();
+
+				//Datagram 按数据报的实际长度从内存池中分配并复制
+				Datagram datagram = new Datagram(address, receiveBuffer);
+				datagrams.add(datagram);
+				readSize = readSize + datagram.getData().limit();
+			}
+
+			if (datagrams.isEmpty()) {
+				return 0;
+			}
+
+			udpSocket.updateLastTime();
+
+			try {
+				Object result = EventProcess.doReciveBatch(session, datagrams);
+
+				if (result instanceof Datagram) {
+					session.sendDatagram((Datagram) result);
+				} else if (result instanceof Collection) {
+					session.sendDatagrams((Collection<Datagram>) result);
+				} else if (result != null) {
+					Logger.warn("SocketSelector.udpBatchReadFromChannel: response in batch mode must be Datagram or Collection<Datagram>, " + result.getClass().getName() + " is ignored");
+				}
+
+				udpFlushDatagrams(udpSocket);
+			} catch (Exception e) {
+				EventTrigger.fireException(session, e);
+			}
+		} finally {
+			for (Datagram datagram : datagrams) {
+				datagram.release();
 			}
 		}
 
 		return readSize;
 	}
 
+	/**
+	 * UDP 批量模式发送发送队列中的数据报
+	 *      Java NIO 没有 sendmmsg, 这里在一次循环中依次发送, 发送完成后释放数据报
+	 * @param udpSocket UdpSocket 对象
+	 * @return 发送的数据报数量
+	 */
+	public int udpFlushDatagrams(UdpSocket udpSocket) {
+		List<Datagram> datagrams = udpSocket.getSession().drainDatagrams();
+		if (datagrams == null) {
+			return 0;
+		}
+
+		int count = 0;
+		try {
+			for (Datagram datagram : datagrams) {
+				if (udpWriteToChannel(udpSocket, datagram.getAddress(), datagram.getData()) < 0) {
+					break;
+				}
+				count++;
+			}
+		} catch (IOException e) {
+			dealException(udpSocket, e);
+		} finally {
+			for (Datagram datagram : datagrams) {
+				datagram.release();
+			}
+		}
+
+		return count;
+	}
+
 	/**
 	 * UDP 向通道写数据的方法
 	 * @param socketContext UdpSocket 对象
@@ -562,8 +1040,19 @@ public class SocketSelector implements Closeable {
 	 * @throws IOException IO 异
 	 */
 	public int udpWriteToChannel(UdpSocket socketContext, ByteBuffer buffer) throws IOException {
+		return udpWriteToChannel(socketContext, socketContext.getSession().getInetSocketAddress(), buffer);
+	}
+
+	/**
+	 * UDP 向指定地址写数据的方法
+	 * @param socketContext UdpSocket 对象
+	 * @param address 对端地址, 连接模式下忽略
+	 * @param buffer 待写入的数据缓冲对象
+	 * @return 写入数据的字节数, -1:写入失败
+	 * @throws IOException IO 异
+	 */
+	public int udpWriteToChannel(UdpSocket socketContext, InetSocketAddress address, ByteBuffer buffer) throws IOException {
 		DatagramChannel datagramChannel = socketContext.socketChannel();
-		UdpSession session = socketContext.getSession();
 
 		int totalSendByte = 0;
 		long start = System.currentTimeMillis();
@@ -575,7 +1064,7 @@ public class SocketSelector implements Closeable {
 					if (datagramChannel.isConnected()) {
 						sendSize = datagramChannel.write(buffer);
 					} else {
-						sendSize = datagramChannel.send(buffer, session.getInetSocketAddress());
+						sendSize = datagramChannel.send(buffer, address);
 					}
 
 					if (sendSize == 0) {
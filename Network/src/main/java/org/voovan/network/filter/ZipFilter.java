@@ -3,41 +3,125 @@ package org.voovan.network.filter;
 import org.voovan.network.IoFilter;
 import org.voovan.network.IoSession;
 import org.voovan.network.exception.IoFilterException;
-import org.voovan.tools.TZip;
+import org.voovan.network.filter.zip.DeflateCodec;
+import org.voovan.network.filter.zip.GzipCodec;
+import org.voovan.network.filter.zip.Lz4Codec;
+import org.voovan.network.filter.zip.ZipCodec;
+import org.voovan.tools.buffer.TByteBuffer;
 import org.voovan.tools.log.Logger;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
 
 /**
- * Some description
+ * 压缩过滤器
+ *      encode 传入 byte[] 或 ByteBuffer, 返回相同类型的压缩数据
+ *      decode 传入 byte[] 或 ByteBuffer, 返回相同类型的解压数据
+ *      每个会话使用独立的编解码器, 编解码器保存在会话的属性中, 可以在消息之间复用压缩上下文
  *
  * @author helyho
  * Project: DBase
  * Create: 2017/11/3 21:08
  */
 public class ZipFilter implements IoFilter{
+
+    /**
+     * 内置的压缩方式
+     */
+    public enum Type {
+        //每个消息一个完整的 GZIP 数据, 和之前的 ZipFilter 兼容
+        GZIP,
+        //会话内流式 Deflate, 消息之间共享压缩字典
+        DEFLATE,
+        //LZ4 块压缩, CPU 开销最小
+        LZ4;
+
+        /**
+         * 创建编解码器
+         * @return 编解码器
+         */
+        public ZipCodec newCodec() {
+            switch (this) {
+                case DEFLATE:
+                    return new DeflateCodec();
+                case LZ4:
+                    return new Lz4Codec();
+                default:
+                    return new GzipCodec();
+            }
+        }
+    }
+
+    private Supplier<ZipCodec> codecFactory;
+
+    public ZipFilter() {
+        this(Type.GZIP);
+    }
+
+    /**
+     * 构造函数
+     * @param type 压缩方式
+     */
+    public ZipFilter(Type type) {
+        this(type::newCodec);
+    }
+
+    /**
+     * 构造函数
+     * @param codecFactory 编解码器工厂, 为每个会话创建一个编解码器, 用于接入其他压缩算法
+     */
+    public ZipFilter(Supplier<ZipCodec> codecFactory) {
+        this.codecFactory = codecFactory;
+    }
+
+    /**
+     * 获取会话的编解码器
+     * @param session 会话对象
+     * @return 编解码器
+     */
+    public ZipCodec getCodec(IoSession session) {
+        return (ZipCodec) session.attributes().computeIfAbsent(this, key -> codecFactory.get());
+    }
+
+    /**
+     * 释放会话的编解码器, 会话释放时调用
+     * @param session 会话对象
+     */
+    @Override
+    public void release(IoSession session) {
+        ZipCodec codec = (ZipCodec) session.attributes().remove(this);
+        if(codec != null) {
+            codec.release();
+        }
+    }
+
     @Override
     public Object decode(IoSession session, Object object) throws IoFilterException {
-        if(object.getClass() == ByteFilter.BYTE_ARRAY_CLASS){
-            try {
-                return TZip.decodeGZip((byte[])object);
-            } catch (IOException e) {
-                Logger.error("ZipFilter decode error, socket will be close");
-                session.close();
+        try {
+            if (object.getClass() == ByteFilter.BYTE_ARRAY_CLASS) {
+                return TByteBuffer.toArray(getCodec(session).decompress(ByteBuffer.wrap((byte[]) object)));
+            } else if (object instanceof ByteBuffer) {
+                return getCodec(session).decompress((ByteBuffer) object);
             }
+        } catch (IOException e) {
+            Logger.error("ZipFilter decode error, socket will be close", e);
+            session.close();
         }
         return null;
     }
 
     @Override
     public Object encode(IoSession session, Object object) throws IoFilterException {
-        if(object.getClass() == ByteFilter.BYTE_ARRAY_CLASS){
-            try {
-                return TZip.encodeGZip((byte[])object);
-            } catch (IOException e) {
-                Logger.error("ZipFilter encode error, socket will be close");
-                session.close();
+        try {
+            if (object.getClass() == ByteFilter.BYTE_ARRAY_CLASS) {
+                return TByteBuffer.toArray(getCodec(session).compress(ByteBuffer.wrap((byte[]) object)));
+            } else if (object instanceof ByteBuffer) {
+                return getCodec(session).compress((ByteBuffer) object);
             }
+        } catch (IOException e) {
+            Logger.error("ZipFilter encode error, socket will be close", e);
+            session.close();
         }
         return null;
     }
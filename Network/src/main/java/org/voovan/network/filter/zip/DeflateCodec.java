@@ -0,0 +1,108 @@
+package org.voovan.network.filter.zip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 流式 Deflate 编解码器
+ *      会话内的所有消息共用一个 Deflater 和 Inflater, 每个消息以 SYNC_FLUSH 结束,
+ *      压缩字典在消息之间保留, 小消息也能获得较好的压缩率
+ *      要求消息按发送的顺序解压, 不能和其他编解码器互通
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class DeflateCodec implements ZipCodec {
+	private Deflater deflater;
+	private Inflater inflater;
+
+	public DeflateCodec() {
+		this(Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * 构造函数
+	 * @param level 压缩级别, 0-9
+	 */
+	public DeflateCodec(int level) {
+		deflater = new Deflater(level, true);
+		inflater = new Inflater(true);
+	}
+
+	@Override
+	public ByteBuffer compress(ByteBuffer source) throws IOException {
+		synchronized (deflater) {
+			ByteBuffer output = ByteBuffer.allocate(source.remaining() + (source.remaining() >> 3) + 16);
+			deflater.setInput(source);
+
+			//SYNC_FLUSH 在输出缓冲区填满时返回, 需要扩容后继续
+			while (true) {
+				deflater.deflate(output, Deflater.SYNC_FLUSH);
+				if (output.hasRemaining()) {
+					break;
+				}
+				output = grow(output);
+			}
+
+			output.flip();
+			return output;
+		}
+	}
+
+	@Override
+	public ByteBuffer decompress(ByteBuffer source) throws IOException {
+		synchronized (inflater) {
+			ByteBuffer output = ByteBuffer.allocate(Math.max(source.remaining() * 4, 64));
+			inflater.setInput(source);
+
+			try {
+				while (true) {
+					int inflateSize = inflater.inflate(output);
+					if (inflater.needsInput() && output.hasRemaining()) {
+						break;
+					}
+
+					if (!output.hasRemaining()) {
+						output = grow(output);
+					} else if (inflateSize == 0) {
+						throw new IOException("DeflateCodec decompress failed, stream is finished or needs dictionary");
+					}
+				}
+			} catch (DataFormatException e) {
+				throw new IOException("DeflateCodec decompress failed", e);
+			}
+
+			output.flip();
+			return output;
+		}
+	}
+
+	/**
+	 * 扩容输出缓冲区
+	 * @param output 输出缓冲区
+	 * @return 扩容后的输出缓冲区
+	 */
+	static ByteBuffer grow(ByteBuffer output) {
+		ByteBuffer newOutput = ByteBuffer.allocate(output.capacity() * 2);
+		output.flip();
+		newOutput.put(output);
+		return newOutput;
+	}
+
+	@Override
+	public void release() {
+		synchronized (deflater) {
+			deflater.end();
+		}
+
+		synchronized (inflater) {
+			inflater.end();
+		}
+	}
+}
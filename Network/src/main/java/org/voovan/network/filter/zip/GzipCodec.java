@@ -0,0 +1,173 @@
+package org.voovan.network.filter.zip;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * GZIP 编解码器
+ *      每个消息是一个完整的 GZIP 数据, 和 TZip.encodeGZip/decodeGZip 的格式兼容,
+ *      会话内复用 Deflater 和 Inflater, 不会为每个消息创建 GZIP 流
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class GzipCodec implements ZipCodec {
+	private final static int GZIP_MAGIC = 0x8b1f;
+	private final static byte[] GZIP_HEADER = new byte[] {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+	private final static int TRAILER_SIZE = 8;
+
+	private final static int FHCRC      = 2;
+	private final static int FEXTRA     = 4;
+	private final static int FNAME      = 8;
+	private final static int FCOMMENT   = 16;
+
+	private Deflater deflater;
+	private Inflater inflater;
+	private CRC32 compressCrc = new CRC32();
+	private CRC32 decompressCrc = new CRC32();
+
+	public GzipCodec() {
+		this(Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * 构造函数
+	 * @param level 压缩级别, 0-9
+	 */
+	public GzipCodec(int level) {
+		deflater = new Deflater(level, true);
+		inflater = new Inflater(true);
+	}
+
+	@Override
+	public ByteBuffer compress(ByteBuffer source) throws IOException {
+		synchronized (deflater) {
+			int sourceSize = source.remaining();
+			ByteBuffer output = ByteBuffer.allocate(GZIP_HEADER.length + sourceSize + (sourceSize >> 3) + 16 + TRAILER_SIZE);
+			output.put(GZIP_HEADER);
+
+			compressCrc.reset();
+			compressCrc.update(source.duplicate());
+
+			deflater.reset();
+			deflater.setInput(source);
+			deflater.finish();
+			while (!deflater.finished()) {
+				deflater.deflate(output);
+				if (!output.hasRemaining()) {
+					output = DeflateCodec.grow(output);
+				}
+			}
+
+			if (output.remaining() < TRAILER_SIZE) {
+				output = DeflateCodec.grow(output);
+			}
+
+			output.order(ByteOrder.LITTLE_ENDIAN);
+			output.putInt((int) compressCrc.getValue());
+			output.putInt(sourceSize);
+			output.order(ByteOrder.BIG_ENDIAN);
+
+			output.flip();
+			return output;
+		}
+	}
+
+	@Override
+	public ByteBuffer decompress(ByteBuffer source) throws IOException {
+		synchronized (inflater) {
+			ByteOrder originOrder = source.order();
+			source.order(ByteOrder.LITTLE_ENDIAN);
+
+			try {
+				readHeader(source);
+
+				ByteBuffer output = ByteBuffer.allocate(Math.max(source.remaining() * 4, 64));
+				inflater.reset();
+				inflater.setInput(source);
+				while (!inflater.finished()) {
+					int inflateSize = inflater.inflate(output);
+					if (!output.hasRemaining()) {
+						output = DeflateCodec.grow(output);
+					} else if (inflateSize == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+						throw new IOException("GzipCodec decompress failed, unexpected end of data");
+					}
+				}
+				output.flip();
+
+				if (source.remaining() < TRAILER_SIZE) {
+					throw new IOException("GzipCodec decompress failed, trailer not exists");
+				}
+
+				decompressCrc.reset();
+				decompressCrc.update(output.duplicate());
+				if ((source.getInt() & 0xFFFFFFFFL) != decompressCrc.getValue() || source.getInt() != output.remaining()) {
+					throw new IOException("GzipCodec decompress failed, corrupt trailer");
+				}
+
+				source.position(source.limit());
+				return output;
+			} catch (DataFormatException | BufferUnderflowException | IllegalArgumentException e) {
+				throw new IOException("GzipCodec decompress failed", e);
+			} finally {
+				source.order(originOrder);
+			}
+		}
+	}
+
+	/**
+	 * 读取并跳过 GZIP 头
+	 * @param source 小端字节序的数据
+	 * @throws IOException IO 异常
+	 */
+	private static void readHeader(ByteBuffer source) throws IOException {
+		if ((source.getShort() & 0xFFFF) != GZIP_MAGIC) {
+			throw new IOException("GzipCodec decompress failed, not in GZIP format");
+		}
+
+		if (source.get() != Deflater.DEFLATED) {
+			throw new IOException("GzipCodec decompress failed, unsupported compression method");
+		}
+
+		int flag = source.get() & 0xFF;
+		//MTIME(4) XFL(1) OS(1)
+		source.position(source.position() + 6);
+
+		if ((flag & FEXTRA) == FEXTRA) {
+			int extraLength = source.getShort() & 0xFFFF;
+			source.position(source.position() + extraLength);
+		}
+
+		if ((flag & FNAME) == FNAME) {
+			while (source.get() != 0) ;
+		}
+
+		if ((flag & FCOMMENT) == FCOMMENT) {
+			while (source.get() != 0) ;
+		}
+
+		if ((flag & FHCRC) == FHCRC) {
+			source.getShort();
+		}
+	}
+
+	@Override
+	public void release() {
+		synchronized (deflater) {
+			deflater.end();
+		}
+
+		synchronized (inflater) {
+			inflater.end();
+		}
+	}
+}
@@ -0,0 +1,294 @@
+package org.voovan.network.filter.zip;
+
+import org.voovan.tools.TEnv;
+import org.voovan.tools.Varint;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * LZ4 编解码器
+ *      纯 Java 实现的 LZ4 块格式, 压缩率低于 Deflate, 但压缩和解压的 CPU 开销小得多, 适合内网 RPC 这类带宽充足的连接
+ *      每个消息的格式: Varint 编码的原始长度 + LZ4 块
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class Lz4Codec implements ZipCodec {
+	//解压后的最大长度, 默认和读缓冲区的最大容量一致, 避免恶意的长度前缀导致分配过大的内存
+	public final static int MAX_ORIGIN_LENGTH = TEnv.getSystemProperty("Lz4MaxOriginLength", 1024 * 1024 * 10);
+
+	private final static int MIN_MATCH 		= 4;
+	//最后一个匹配必须在数据结束前 12 字节之前开始
+	private final static int MF_LIMIT 		= 12;
+	//最后 5 个字节必须是字面量
+	private final static int LAST_LITERALS 	= 5;
+	private final static int MAX_DISTANCE 	= 65535;
+	private final static int HASH_LOG 		= 12;
+	private final static int RUN_MASK 		= 15;
+
+	private int[] hashTable = new int[1 << HASH_LOG];
+	private int maxOriginLength;
+
+	public Lz4Codec() {
+		this(MAX_ORIGIN_LENGTH);
+	}
+
+	/**
+	 * 构造函数
+	 * @param maxOriginLength 解压后的最大长度
+	 */
+	public Lz4Codec(int maxOriginLength) {
+		this.maxOriginLength = maxOriginLength;
+	}
+
+	@Override
+	public ByteBuffer compress(ByteBuffer source) throws IOException {
+		int sourceLength = source.remaining();
+		byte[] sourceBytes;
+		int sourceOffset;
+		if (source.hasArray()) {
+			sourceBytes = source.array();
+			sourceOffset = source.arrayOffset() + source.position();
+		} else {
+			sourceBytes = new byte[sourceLength];
+			source.duplicate().get(sourceBytes);
+			sourceOffset = 0;
+		}
+		source.position(source.limit());
+
+		byte[] lengthBytes = Varint.intToVarintBytes(sourceLength);
+		byte[] output = new byte[lengthBytes.length + maxCompressedLength(sourceLength)];
+		System.arraycopy(lengthBytes, 0, output, 0, lengthBytes.length);
+
+		int compressedLength;
+		synchronized (hashTable) {
+			compressedLength = compress(sourceBytes, sourceOffset, sourceLength, output, lengthBytes.length, hashTable);
+		}
+
+		return ByteBuffer.wrap(output, 0, lengthBytes.length + compressedLength);
+	}
+
+	@Override
+	public ByteBuffer decompress(ByteBuffer source) throws IOException {
+		try {
+			int originLength = Varint.varintToInt(source);
+			if (originLength < 0 || originLength > maxOriginLength) {
+				throw new IOException("Lz4Codec decompress failed, illegal length: " + originLength);
+			}
+
+			int sourceLength = source.remaining();
+			byte[] sourceBytes;
+			int sourceOffset;
+			if (source.hasArray()) {
+				sourceBytes = source.array();
+				sourceOffset = source.arrayOffset() + source.position();
+			} else {
+				sourceBytes = new byte[sourceLength];
+				source.duplicate().get(sourceBytes);
+				sourceOffset = 0;
+			}
+			source.position(source.limit());
+
+			byte[] output = new byte[originLength];
+			decompress(sourceBytes, sourceOffset, sourceLength, output);
+			return ByteBuffer.wrap(output);
+		} catch (IndexOutOfBoundsException | BufferUnderflowException | NegativeArraySizeException e) {
+			throw new IOException("Lz4Codec decompress failed, malformed data", e);
+		}
+	}
+
+	/**
+	 * 压缩后的最大长度
+	 * @param length 原始长度
+	 * @return 压缩后的最大长度
+	 */
+	public static int maxCompressedLength(int length) {
+		return length + length / 255 + 16;
+	}
+
+	/**
+	 * 压缩为 LZ4 块
+	 * @param source 原始数据
+	 * @param sourceOffset 原始数据的起始位置
+	 * @param sourceLength 原始数据的长度
+	 * @param dest 目标数组, 剩余空间不小于 maxCompressedLength(sourceLength)
+	 * @param destOffset 目标数组的起始位置
+	 * @param hashTable 哈希表
+	 * @return 压缩后的长度
+	 */
+	public static int compress(byte[] source, int sourceOffset, int sourceLength, byte[] dest, int destOffset, int[] hashTable) {
+		int end = sourceOffset + sourceLength;
+		int matchLimit = end - LAST_LITERALS;
+		int mfLimit = end - MF_LIMIT;
+
+		int anchor = sourceOffset;
+		int destPosition = destOffset;
+
+		if (sourceLength > MF_LIMIT) {
+			Arrays.fill(hashTable, -1);
+
+			int position = sourceOffset;
+			while (position < mfLimit) {
+				int sequence = readInt(source, position);
+				int hash = hash(sequence);
+				int reference = hashTable[hash];
+				hashTable[hash] = position;
+
+				if (reference < 0 || position - reference > MAX_DISTANCE || readInt(source, reference) != sequence) {
+					position++;
+					continue;
+				}
+
+				//向前扩展匹配
+				int matchLength = MIN_MATCH;
+				while (position > anchor && reference > sourceOffset && source[position - 1] == source[reference - 1]) {
+					position--;
+					reference--;
+					matchLength++;
+				}
+
+				//向后扩展匹配
+				while (position + matchLength < matchLimit && source[position + matchLength] == source[reference + matchLength]) {
+					matchLength++;
+				}
+
+				destPosition = writeSequence(source, anchor, position - anchor, dest, destPosition, position - reference, matchLength);
+
+				position = position + matchLength;
+				anchor = position;
+			}
+		}
+
+		//最后的字面量
+		int literalLength = end - anchor;
+		int tokenPosition = destPosition++;
+		destPosition = writeLength(dest, destPosition, literalLength);
+		dest[tokenPosition] = (byte) (Math.min(literalLength, RUN_MASK) << 4);
+		System.arraycopy(source, anchor, dest, destPosition, literalLength);
+		destPosition = destPosition + literalLength;
+
+		return destPosition - destOffset;
+	}
+
+	/**
+	 * 解压 LZ4 块
+	 * @param source 压缩数据
+	 * @param sourceOffset 压缩数据的起始位置
+	 * @param sourceLength 压缩数据的长度
+	 * @param dest 目标数组, 长度为原始数据的长度
+	 * @throws IOException 数据格式错误
+	 */
+	public static void decompress(byte[] source, int sourceOffset, int sourceLength, byte[] dest) throws IOException {
+		int position = sourceOffset;
+		int end = sourceOffset + sourceLength;
+		int destPosition = 0;
+
+		while (position < end) {
+			int token = source[position++] & 0xFF;
+
+			//字面量
+			int literalLength = token >>> 4;
+			if (literalLength == RUN_MASK) {
+				int lengthByte;
+				do {
+					lengthByte = source[position++] & 0xFF;
+					literalLength = literalLength + lengthByte;
+				} while (lengthByte == 255);
+			}
+
+			System.arraycopy(source, position, dest, destPosition, literalLength);
+			position = position + literalLength;
+			destPosition = destPosition + literalLength;
+
+			//最后一个序列只有字面量
+			if (position >= end) {
+				break;
+			}
+
+			//匹配
+			int distance = (source[position++] & 0xFF) | ((source[position++] & 0xFF) << 8);
+			int matchLength = token & RUN_MASK;
+			if (matchLength == RUN_MASK) {
+				int lengthByte;
+				do {
+					lengthByte = source[position++] & 0xFF;
+					matchLength = matchLength + lengthByte;
+				} while (lengthByte == 255);
+			}
+			matchLength = matchLength + MIN_MATCH;
+
+			int reference = destPosition - distance;
+			if (distance == 0 || reference < 0) {
+				throw new IOException("Lz4Codec decompress failed, illegal match distance: " + distance);
+			}
+
+			//匹配可能和输出重叠, 逐字节复制
+			if (distance >= matchLength) {
+				System.arraycopy(dest, reference, dest, destPosition, matchLength);
+			} else {
+				for (int i = 0; i < matchLength; i++) {
+					dest[destPosition + i] = dest[reference + i];
+				}
+			}
+			destPosition = destPosition + matchLength;
+		}
+
+		if (destPosition != dest.length) {
+			throw new IOException("Lz4Codec decompress failed, expect length " + dest.length + ", actual length " + destPosition);
+		}
+	}
+
+	private static int writeSequence(byte[] source, int literalOffset, int literalLength, byte[] dest, int destPosition, int distance, int matchLength) {
+		int tokenPosition = destPosition++;
+
+		destPosition = writeLength(dest, destPosition, literalLength);
+		System.arraycopy(source, literalOffset, dest, destPosition, literalLength);
+		destPosition = destPosition + literalLength;
+
+		dest[destPosition++] = (byte) distance;
+		dest[destPosition++] = (byte) (distance >>> 8);
+
+		int matchRun = matchLength - MIN_MATCH;
+		destPosition = writeLength(dest, destPosition, matchRun);
+
+		dest[tokenPosition] = (byte) ((Math.min(literalLength, RUN_MASK) << 4) | Math.min(matchRun, RUN_MASK));
+		return destPosition;
+	}
+
+	/**
+	 * 写入超过 token 可表示范围的长度
+	 * @param dest 目标数组
+	 * @param destPosition 写入位置
+	 * @param length 长度
+	 * @return 写入后的位置
+	 */
+	private static int writeLength(byte[] dest, int destPosition, int length) {
+		if (length >= RUN_MASK) {
+			length = length - RUN_MASK;
+			while (length >= 255) {
+				dest[destPosition++] = (byte) 255;
+				length = length - 255;
+			}
+			dest[destPosition++] = (byte) length;
+		}
+		return destPosition;
+	}
+
+	private static int readInt(byte[] bytes, int position) {
+		return (bytes[position] & 0xFF) | ((bytes[position + 1] & 0xFF) << 8) | ((bytes[position + 2] & 0xFF) << 16) | ((bytes[position + 3] & 0xFF) << 24);
+	}
+
+	private static int hash(int sequence) {
+		return (sequence * -1640531535) >>> (32 - HASH_LOG);
+	}
+
+	@Override
+	public void release() {
+	}
+}
@@ -0,0 +1,39 @@
+package org.voovan.network.filter.zip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * ZipFilter 使用的压缩编解码器
+ *      每个会话使用一个独立的实例, 实例中可以保存跨消息的压缩上下文
+ *      compress 和 decompress 可能在不同的线程中调用, 实现需要保证各自的线程安全
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public interface ZipCodec {
+
+	/**
+	 * 压缩
+	 * @param source 待压缩的数据, 从 position 到 limit, 压缩后 position 移动到 limit
+	 * @return 压缩后的数据
+	 * @throws IOException IO 异常
+	 */
+	public ByteBuffer compress(ByteBuffer source) throws IOException;
+
+	/**
+	 * 解压缩
+	 * @param source 待解压的数据, 从 position 到 limit, 解压后 position 移动到 limit
+	 * @return 解压后的数据
+	 * @throws IOException IO 异常
+	 */
+	public ByteBuffer decompress(ByteBuffer source) throws IOException;
+
+	/**
+	 * 释放编解码器占用的资源
+	 */
+	public void release();
+}
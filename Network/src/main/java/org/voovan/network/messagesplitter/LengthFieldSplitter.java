@@ -0,0 +1,310 @@
+package org.voovan.network.messagesplitter;
+
+import org.voovan.network.IoSession;
+import org.voovan.network.MessageSplitter;
+import org.voovan.tools.Varint;
+import org.voovan.tools.log.Logger;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 长度前缀消息分割器
+ *      报文格式: 长度头 + 数据, 长度头支持 Varint 和 1/2/4/8 字节的大端或小端整数
+ *      长度头的值加上长度修正值是数据部分的长度, 例如长度头的值包含长度头本身时修正值为负的长度头字节数
+ *      默认分割时会消费掉长度头, 过滤器和 Handler 收到的只有数据部分, 也可以保留长度头
+ *      超过最大长度的报文可以跨多次读取丢弃, 也可以直接关闭连接
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class LengthFieldSplitter implements MessageSplitter {
+
+	/**
+	 * 长度头的类型
+	 */
+	public enum HeadType {
+		VARINT(0),
+		BYTE(1),
+		SHORT(2),
+		INT(4),
+		LONG(8);
+
+		private int size;
+
+		HeadType(int size) {
+			this.size = size;
+		}
+
+		/**
+		 * 获取长度头的字节数
+		 * @return 长度头的字节数, VARINT 为 0
+		 */
+		public int getSize() {
+			return size;
+		}
+	}
+
+	private HeadType headType;
+	private ByteOrder byteOrder;
+	private int lengthAdjustment;
+	private int maxFrameLength;
+	private boolean skipOversize;
+	private boolean stripHead;
+
+	/**
+	 * 构造函数
+	 *      使用 Varint 长度头, 不限制报文长度
+	 */
+	public LengthFieldSplitter() {
+		this(HeadType.VARINT, ByteOrder.BIG_ENDIAN, Integer.MAX_VALUE, false);
+	}
+
+	/**
+	 * 构造函数
+	 *      超过最大长度的报文会关闭连接
+	 * @param headType 长度头的类型
+	 * @param maxFrameLength 报文数据部分的最大长度
+	 */
+	public LengthFieldSplitter(HeadType headType, int maxFrameLength) {
+		this(headType, ByteOrder.BIG_ENDIAN, maxFrameLength, false);
+	}
+
+	/**
+	 * 构造函数
+	 * @param headType 长度头的类型
+	 * @param byteOrder 长度头的字节序, 对 VARINT 无效
+	 * @param maxFrameLength 报文数据部分的最大长度
+	 * @param skipOversize true: 丢弃超长的报文, false: 关闭连接
+	 */
+	public LengthFieldSplitter(HeadType headType, ByteOrder byteOrder, int maxFrameLength, boolean skipOversize) {
+		this(headType, byteOrder, 0, maxFrameLength, skipOversize, true);
+	}
+
+	/**
+	 * 构造函数
+	 * @param headType 长度头的类型
+	 * @param byteOrder 长度头的字节序, 对 VARINT 和 BYTE 无效
+	 * @param lengthAdjustment 长度修正值, 长度头的值加上修正值为数据部分的长度
+	 * @param maxFrameLength 报文数据部分的最大长度
+	 * @param skipOversize true: 丢弃超长的报文, false: 关闭连接
+	 * @param stripHead true: 分割出的报文不包含长度头, false: 分割出的报文包含长度头
+	 */
+	public LengthFieldSplitter(HeadType headType, ByteOrder byteOrder, int lengthAdjustment, int maxFrameLength, boolean skipOversize, boolean stripHead) {
+		this.headType = headType;
+		this.byteOrder = byteOrder;
+		this.lengthAdjustment = lengthAdjustment;
+		this.maxFrameLength = maxFrameLength;
+		this.skipOversize = skipOversize;
+		this.stripHead = stripHead;
+	}
+
+	public HeadType getHeadType() {
+		return headType;
+	}
+
+	public ByteOrder getByteOrder() {
+		return byteOrder;
+	}
+
+	public int getLengthAdjustment() {
+		return lengthAdjustment;
+	}
+
+	public int getMaxFrameLength() {
+		return maxFrameLength;
+	}
+
+	public boolean isSkipOversize() {
+		return skipOversize;
+	}
+
+	public boolean isStripHead() {
+		return stripHead;
+	}
+
+	/**
+	 * 生成报文的长度头, 用于发送端
+	 * @param length 数据部分的长度
+	 * @return 长度头
+	 */
+	public ByteBuffer head(int length) {
+		length = length - lengthAdjustment;
+		if(headType == HeadType.VARINT) {
+			return Varint.intToVarintBuffer(length);
+		}
+
+		ByteBuffer head = ByteBuffer.allocate(headType.getSize()).order(byteOrder);
+		switch (headType) {
+			case BYTE:
+				head.put((byte) length);
+				break;
+			case SHORT:
+				head.putShort((short) length);
+				break;
+			case INT:
+				head.putInt(length);
+				break;
+			default:
+				head.putLong(length);
+				break;
+		}
+		head.flip();
+		return head;
+	}
+
+	@Override
+	public int canSplite(IoSession session, ByteBuffer byteBuffer) {
+		//继续丢弃上一次未丢弃完的超长报文
+		if(!skip(session, byteBuffer)) {
+			return MessageSplitter.WAIT_DATA;
+		}
+
+		while(byteBuffer.hasRemaining()) {
+			int originPosition = byteBuffer.position();
+
+			long length = readLength(byteBuffer);
+
+			//长度头不完整
+			if (length == -1) {
+				byteBuffer.position(originPosition);
+				return MessageSplitter.WAIT_DATA;
+			}
+
+			//修正为数据部分的长度
+			if (length >= 0) {
+				length = length + lengthAdjustment;
+			}
+
+			//长度头异常
+			if (length < 0) {
+				byteBuffer.position(originPosition);
+				Logger.warn("LengthFieldSplitter: invalid length field, socket will be close");
+				session.close();
+				return MessageSplitter.WAIT_DATA;
+			}
+
+			if (length > maxFrameLength) {
+				if (!skipOversize) {
+					byteBuffer.position(originPosition);
+					Logger.warn("LengthFieldSplitter: frame length " + length + " exceeds " + maxFrameLength + ", socket will be close");
+					session.close();
+					return MessageSplitter.WAIT_DATA;
+				}
+
+				Logger.warn("LengthFieldSplitter: frame length " + length + " exceeds " + maxFrameLength + ", frame skipped");
+				session.setAttribute(this, length);
+				if (!skip(session, byteBuffer)) {
+					return MessageSplitter.WAIT_DATA;
+				}
+				continue;
+			}
+
+			//空报文只消费长度头
+			if (length == 0 && stripHead) {
+				continue;
+			}
+
+			if (byteBuffer.remaining() >= length) {
+				if (stripHead) {
+					//保留消费掉的长度头, 压缩缓冲区时长度头会被移除, 分割出来的只有数据部分
+					return (int) length;
+				} else {
+					int headSize = byteBuffer.position() - originPosition;
+					byteBuffer.position(originPosition);
+					return headSize + (int) length;
+				}
+			} else {
+				byteBuffer.position(originPosition);
+				return MessageSplitter.WAIT_DATA;
+			}
+		}
+
+		return MessageSplitter.WAIT_DATA;
+	}
+
+	/**
+	 * 丢弃超长报文的数据
+	 * @param session 会话对象
+	 * @param byteBuffer 缓冲数据
+	 * @return true: 丢弃完成, false: 还有数据需要在后续的读取中丢弃
+	 */
+	private boolean skip(IoSession session, ByteBuffer byteBuffer) {
+		Long skipLength = (Long) session.getAttribute(this);
+		if(skipLength == null) {
+			return true;
+		}
+
+		int size = (int) Math.min(skipLength, byteBuffer.remaining());
+		byteBuffer.position(byteBuffer.position() + size);
+		skipLength = skipLength - size;
+
+		if(skipLength == 0) {
+			session.removeAttribute(this);
+			return true;
+		} else {
+			session.setAttribute(this, skipLength);
+			return false;
+		}
+	}
+
+	/**
+	 * 读取长度头
+	 * @param byteBuffer 缓冲数据
+	 * @return 数据部分的长度, -1: 长度头不完整, -2: 长度头异常
+	 */
+	private long readLength(ByteBuffer byteBuffer) {
+		if(headType == HeadType.VARINT) {
+			//先确认 Varint 完整, 避免读取越界
+			int position = byteBuffer.position();
+			int varintSize = Math.min(5, byteBuffer.remaining());
+			int i = 0;
+			for(; i < varintSize; i++) {
+				if((byteBuffer.get(position + i) & 0x80) == 0) {
+					break;
+				}
+			}
+
+			if(i == varintSize) {
+				return varintSize == 5 ? -2 : -1;
+			}
+
+			try {
+				int length = Varint.varintToInt(byteBuffer);
+				return length < 0 ? -2 : length;
+			} catch (RuntimeException e) {
+				return -2;
+			}
+		}
+
+		if(byteBuffer.remaining() < headType.getSize()) {
+			return -1;
+		}
+
+		ByteOrder originOrder = byteBuffer.order();
+		try {
+			byteBuffer.order(byteOrder);
+			long length;
+			switch (headType) {
+				case BYTE:
+					length = byteBuffer.get() & 0xFF;
+					break;
+				case SHORT:
+					length = byteBuffer.getShort() & 0xFFFF;
+					break;
+				case INT:
+					length = byteBuffer.getInt() & 0xFFFFFFFFL;
+					break;
+				default:
+					length = byteBuffer.getLong();
+					break;
+			}
+			return length < 0 ? -2 : length;
+		} finally {
+			byteBuffer.order(originOrder);
+		}
+	}
+}
@@ -3,7 +3,7 @@ package org.voovan.network.messagesplitter;
 import org.voovan.Global;
 import org.voovan.network.IoSession;
 import org.voovan.network.MessageSplitter;
-import org.voovan.tools.buffer.TByteBuffer;
+import org.voovan.tools.buffer.ByteBufferSearch;
 
 import java.nio.ByteBuffer;
 
@@ -22,7 +22,7 @@ public class LineMessageSplitter implements MessageSplitter {
 	@Override
 	public int canSplite(IoSession session, ByteBuffer byteBuffer) {
 		if(byteBuffer.limit() > 1){
-			int lineBreakIndex = TByteBuffer.indexOf(byteBuffer, bytes);
+			int lineBreakIndex = ByteBufferSearch.indexOf(byteBuffer, bytes);
 			if(lineBreakIndex >=0 )
 				return lineBreakIndex+1;
 		}
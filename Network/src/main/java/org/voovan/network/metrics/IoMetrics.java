@@ -0,0 +1,115 @@
+package org.voovan.network.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * IO 计数器
+ *      会话和选择器各持有一个, 记录读写的字节数和发送缓冲区的高水位
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class IoMetrics {
+	protected LongAdder readBytes = new LongAdder();
+	protected LongAdder readCount = new LongAdder();
+	protected LongAdder writeBytes = new LongAdder();
+	protected LongAdder writeCount = new LongAdder();
+	protected AtomicLong sendBufferHighWater = new AtomicLong(0);
+
+	/**
+	 * 记录一次读取
+	 * @param size 读取的字节数
+	 */
+	public void read(long size) {
+		readBytes.add(size);
+		readCount.increment();
+	}
+
+	/**
+	 * 记录一次写入
+	 * @param size 写入的字节数
+	 */
+	public void write(long size) {
+		writeBytes.add(size);
+		writeCount.increment();
+	}
+
+	/**
+	 * 记录发送缓冲区的数据量, 只保留最大值
+	 * @param size 发送缓冲区的数据量
+	 */
+	public void sendBuffer(long size) {
+		long highWater = sendBufferHighWater.get();
+		while(size > highWater && !sendBufferHighWater.compareAndSet(highWater, size)) {
+			highWater = sendBufferHighWater.get();
+		}
+	}
+
+	public long getReadBytes() {
+		return readBytes.sum();
+	}
+
+	public long getReadCount() {
+		return readCount.sum();
+	}
+
+	public long getWriteBytes() {
+		return writeBytes.sum();
+	}
+
+	public long getWriteCount() {
+		return writeCount.sum();
+	}
+
+	public long getSendBufferHighWater() {
+		return sendBufferHighWater.get();
+	}
+
+	/**
+	 * 将计数累加到另一个计数器
+	 * @param target 目标计数器
+	 */
+	void addTo(IoMetrics target) {
+		target.readBytes.add(readBytes.sum());
+		target.readCount.add(readCount.sum());
+		target.writeBytes.add(writeBytes.sum());
+		target.writeCount.add(writeCount.sum());
+		target.sendBuffer(sendBufferHighWater.get());
+	}
+
+	/**
+	 * 重置计数
+	 */
+	public void reset() {
+		readBytes.reset();
+		readCount.reset();
+		writeBytes.reset();
+		writeCount.reset();
+		sendBufferHighWater.set(0);
+	}
+
+	/**
+	 * 获取计数的快照
+	 * @return 计数的快照
+	 */
+	public Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+		snapshot.put("readBytes", getReadBytes());
+		snapshot.put("readCount", getReadCount());
+		snapshot.put("writeBytes", getWriteBytes());
+		snapshot.put("writeCount", getWriteCount());
+		snapshot.put("sendBufferHighWater", getSendBufferHighWater());
+		return snapshot;
+	}
+
+	@Override
+	public String toString() {
+		return snapshot().toString();
+	}
+}
@@ -0,0 +1,193 @@
+package org.voovan.network.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的延迟直方图
+ *      按 2 的幂分段, 每段再线性分为 8 个桶, 相对误差不超过 12.5%, 和 HdrHistogram 的分桶方式类似
+ *      记录操作只有一次原子自增, 不分配对象, 可以在 IO 线程中常开
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class LatencyHistogram {
+	private final static int SUB_BUCKET_BITS = 3;
+	private final static int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private final static int BUCKET_COUNT = 64 * SUB_BUCKET_COUNT;
+
+	private String name;
+	private AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	private LongAdder count = new LongAdder();
+	private LongAdder sum = new LongAdder();
+	private LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * 构造函数
+	 * @param name 直方图名称
+	 */
+	public LatencyHistogram(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * 记录一个值
+	 * @param value 记录的值, 通常是纳秒
+	 */
+	public void record(long value) {
+		if(value < 0) {
+			value = 0;
+		}
+
+		buckets.incrementAndGet(bucketIndex(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	/**
+	 * 计算值所在的桶
+	 * @param value 值
+	 * @return 桶的索引
+	 */
+	static int bucketIndex(long value) {
+		if(value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	/**
+	 * 获取桶能表示的最大值
+	 * @param index 桶的索引
+	 * @return 桶能表示的最大值
+	 */
+	static long bucketValue(int index) {
+		if(index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+
+		int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+		int subBucket = index % SUB_BUCKET_COUNT;
+		int shift = exponent - SUB_BUCKET_BITS;
+		long lower = ((long)(SUB_BUCKET_COUNT + subBucket)) << shift;
+		return lower + (1L << shift) - 1;
+	}
+
+	/**
+	 * 获取记录的次数
+	 * @return 记录的次数
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * 获取平均值
+	 * @return 平均值
+	 */
+	public long getMean() {
+		long total = count.sum();
+		return total == 0 ? 0 : sum.sum() / total;
+	}
+
+	/**
+	 * 获取最大值
+	 * @return 最大值
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * 获取百分位数
+	 * @param percentile 百分位, 例如: 99.9
+	 * @return 百分位数, 为所在桶能表示的最大值
+	 */
+	public long getPercentile(double percentile) {
+		long total = 0;
+		long[] counts = new long[BUCKET_COUNT];
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+
+		if(total == 0) {
+			return 0;
+		}
+
+		long target = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100) / 100));
+		long current = 0;
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			current += counts[i];
+			if(current >= target) {
+				return Math.min(bucketValue(i), max.get());
+			}
+		}
+
+		return max.get();
+	}
+
+	/**
+	 * 将记录的值累加到另一个直方图
+	 * @param target 目标直方图
+	 */
+	void addTo(LatencyHistogram target) {
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			long bucket = buckets.get(i);
+			if(bucket > 0) {
+				target.buckets.addAndGet(i, bucket);
+			}
+		}
+		target.count.add(count.sum());
+		target.sum.add(sum.sum());
+		target.max.accumulate(max.get());
+	}
+
+	/**
+	 * 重置直方图
+	 *      重置过程中记录的值可能部分丢失
+	 */
+	public void reset() {
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			buckets.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+
+	/**
+	 * 获取直方图的快照
+	 * @return 包含 count, mean, p50, p90, p99, p999, max 的 Map
+	 */
+	public Map<String, Long> snapshot() {
+		Map<String, Long> snapshot = new LinkedHashMap<String, Long>();
+		snapshot.put("count", getCount());
+		snapshot.put("mean", getMean());
+		snapshot.put("p50", getPercentile(50));
+		snapshot.put("p90", getPercentile(90));
+		snapshot.put("p99", getPercentile(99));
+		snapshot.put("p999", getPercentile(99.9));
+		snapshot.put("max", getMax());
+		return snapshot;
+	}
+
+	@Override
+	public String toString() {
+		return name + snapshot();
+	}
+}
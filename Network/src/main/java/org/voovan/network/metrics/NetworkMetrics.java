@@ -0,0 +1,118 @@
+package org.voovan.network.metrics;
+
+import org.voovan.Global;
+import org.voovan.tools.TEnv;
+import org.voovan.tools.json.JSON;
+import org.voovan.tools.log.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 网络层的指标
+ *      汇总所有选择器的读写字节数, 选择次数, 事件队列长度, 发送缓冲区高水位
+ *      并记录 onRead, 过滤器解码, Handler 处理的耗时直方图, 单位: 纳秒
+ *      计数和直方图都由各个选择器分别持有, 汇总时才合并, IO 线程之间不竞争同一个计数器
+ *      默认关闭, NetworkMetrics 为 true 时才记录, NetworkMetricsDumpInterval 大于 0 时按间隔(秒)输出到日志
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class NetworkMetrics {
+	public final static boolean ENABLE 			= TEnv.getSystemProperty("NetworkMetrics", false);
+	public final static int DUMP_INTERVAL 		= TEnv.getSystemProperty("NetworkMetricsDumpInterval", 0);
+
+	private final static Set<SelectorMetrics> SELECTOR_METRICS = ConcurrentHashMap.newKeySet();
+
+	//已关闭的选择器的计数
+	private final static SelectorMetrics CLOSED_SELECTOR_METRICS = new SelectorMetrics(null);
+
+	static {
+		if(ENABLE && DUMP_INTERVAL > 0) {
+			Global.schedual(NetworkMetrics::dump, DUMP_INTERVAL);
+		}
+	}
+
+	/**
+	 * 私有构造函数,防止被实例化
+	 */
+	private NetworkMetrics() {
+	}
+
+	/**
+	 * 注册选择器的计数器
+	 * @param selectorMetrics 选择器计数器
+	 */
+	public static void register(SelectorMetrics selectorMetrics) {
+		SELECTOR_METRICS.add(selectorMetrics);
+	}
+
+	/**
+	 * 注销选择器的计数器, 计数累加到汇总中
+	 * @param selectorMetrics 选择器计数器
+	 */
+	public static void unregister(SelectorMetrics selectorMetrics) {
+		if(SELECTOR_METRICS.remove(selectorMetrics)) {
+			selectorMetrics.addTo(CLOSED_SELECTOR_METRICS);
+		}
+	}
+
+	/**
+	 * 获取所有选择器的汇总计数
+	 * @return 汇总计数
+	 */
+	public static SelectorMetrics total() {
+		SelectorMetrics total = new SelectorMetrics(null);
+		CLOSED_SELECTOR_METRICS.addTo(total);
+		for(SelectorMetrics selectorMetrics : SELECTOR_METRICS) {
+			selectorMetrics.addTo(total);
+		}
+		return total;
+	}
+
+	/**
+	 * 获取所有指标的快照
+	 * @return 指标的快照
+	 */
+	public static Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+
+		Map<String, Object> total = total().snapshot();
+		total.remove("eventQueueSize");
+		snapshot.put("total", total);
+
+		List<Map<String, Object>> selectors = new ArrayList<Map<String, Object>>();
+		for(SelectorMetrics selectorMetrics : SELECTOR_METRICS) {
+			Map<String, Object> selectorSnapshot = new LinkedHashMap<String, Object>();
+			selectorSnapshot.put("name", selectorMetrics.getName());
+			selectorSnapshot.putAll(selectorMetrics.snapshot());
+			selectors.add(selectorSnapshot);
+		}
+		snapshot.put("selectors", selectors);
+		return snapshot;
+	}
+
+	/**
+	 * 将指标输出到日志
+	 */
+	public static void dump() {
+		Logger.simple("[NETWORK METRICS] " + JSON.toJSON(snapshot()));
+	}
+
+	/**
+	 * 重置所有指标
+	 */
+	public static void reset() {
+		CLOSED_SELECTOR_METRICS.reset();
+		for(SelectorMetrics selectorMetrics : SELECTOR_METRICS) {
+			selectorMetrics.reset();
+		}
+	}
+}
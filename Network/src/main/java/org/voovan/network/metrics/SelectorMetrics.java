@@ -0,0 +1,128 @@
+package org.voovan.network.metrics;
+
+import org.voovan.tools.event.EventRunner;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 选择器计数器
+ *      在 IO 计数的基础上记录选择次数, 空选择次数和执行器的事件队列长度
+ *      以及 onRead, 过滤器解码, Handler 处理的耗时直方图, 只由选择器所在的 IO 线程写入
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class SelectorMetrics extends IoMetrics {
+	private EventRunner eventRunner;
+	private LongAdder selectCount = new LongAdder();
+	private LongAdder emptySelectCount = new LongAdder();
+	private LatencyHistogram onReadTime = new LatencyHistogram("onRead");
+	private LatencyHistogram filterDecodeTime = new LatencyHistogram("filterDecoder");
+	private LatencyHistogram handlerTime = new LatencyHistogram("handler");
+
+	/**
+	 * 构造函数
+	 * @param eventRunner 选择器绑定的事件执行器
+	 */
+	public SelectorMetrics(EventRunner eventRunner) {
+		this.eventRunner = eventRunner;
+	}
+
+	/**
+	 * 记录一次选择
+	 * @param selectedSize 选择到的通道数量
+	 */
+	public void select(int selectedSize) {
+		selectCount.increment();
+		if(selectedSize <= 0) {
+			emptySelectCount.increment();
+		}
+	}
+
+	public long getSelectCount() {
+		return selectCount.sum();
+	}
+
+	public long getEmptySelectCount() {
+		return emptySelectCount.sum();
+	}
+
+	/**
+	 * 获取 onRead 的耗时直方图
+	 * @return 耗时直方图, 单位: 纳秒
+	 */
+	public LatencyHistogram getOnReadTime() {
+		return onReadTime;
+	}
+
+	/**
+	 * 获取过滤器解码的耗时直方图
+	 * @return 耗时直方图, 单位: 纳秒
+	 */
+	public LatencyHistogram getFilterDecodeTime() {
+		return filterDecodeTime;
+	}
+
+	/**
+	 * 获取 Handler 处理的耗时直方图
+	 * @return 耗时直方图, 单位: 纳秒
+	 */
+	public LatencyHistogram getHandlerTime() {
+		return handlerTime;
+	}
+
+	/**
+	 * 获取执行器中排队的事件数量
+	 * @return 排队的事件数量
+	 */
+	public int getEventQueueSize() {
+		return eventRunner == null ? 0 : eventRunner.getEventQueue().size();
+	}
+
+	/**
+	 * 获取执行器的线程名称
+	 * @return 线程名称
+	 */
+	public String getName() {
+		Thread thread = eventRunner == null ? null : eventRunner.getThread();
+		return thread == null ? "-" : thread.getName();
+	}
+
+	@Override
+	void addTo(IoMetrics target) {
+		super.addTo(target);
+		if(target instanceof SelectorMetrics) {
+			((SelectorMetrics) target).selectCount.add(selectCount.sum());
+			((SelectorMetrics) target).emptySelectCount.add(emptySelectCount.sum());
+			onReadTime.addTo(((SelectorMetrics) target).onReadTime);
+			filterDecodeTime.addTo(((SelectorMetrics) target).filterDecodeTime);
+			handlerTime.addTo(((SelectorMetrics) target).handlerTime);
+		}
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		selectCount.reset();
+		emptySelectCount.reset();
+		onReadTime.reset();
+		filterDecodeTime.reset();
+		handlerTime.reset();
+	}
+
+	@Override
+	public Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = super.snapshot();
+		snapshot.put("selectCount", getSelectCount());
+		snapshot.put("emptySelectCount", getEmptySelectCount());
+		snapshot.put("eventQueueSize", getEventQueueSize());
+		snapshot.put(onReadTime.getName(), onReadTime.snapshot());
+		snapshot.put(filterDecodeTime.getName(), filterDecodeTime.snapshot());
+		snapshot.put(handlerTime.getName(), handlerTime.snapshot());
+		return snapshot;
+	}
+}
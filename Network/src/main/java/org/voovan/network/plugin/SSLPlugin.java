@@ -19,7 +19,6 @@ import java.security.NoSuchAlgorithmException;
  */
 public class SSLPlugin implements IoPlugin {
     private SSLManager sslManager;
-    private SSLParser sslParser;
 
     public SSLPlugin(SSLManager sslManager) {
         this.sslManager = sslManager;
@@ -38,10 +37,11 @@ public class SSLPlugin implements IoPlugin {
         //准备 SSL 证书
         try {
             SocketContext socketContext = session.socketContext();
+            //服务端接受的连接共享同一个插件对象, SSLParser 保存在各自的会话中
             if (sslManager != null && socketContext.getConnectModel() == ConnectModel.SERVER) {
-                sslParser = sslManager.createServerSSLParser(session);
+                session.setSSLParser(sslManager.createServerSSLParser(session));
             } else if (sslManager != null && socketContext.getConnectModel() == ConnectModel.CLIENT) {
-                sslParser = sslManager.createClientSSLParser(session);
+                session.setSSLParser(sslManager.createClientSSLParser(session));
             }
         } catch (SSLException e) {
             e.printStackTrace();
@@ -50,32 +50,26 @@ public class SSLPlugin implements IoPlugin {
 
     @Override
     public void prepare(IoSession session) {
-        //客户端模式主动发起 SSL 握手
-        if(session.socketContext().getConnectModel() == ConnectModel.CLIENT) {
-            sslParser.doHandShake();
-        }
-
-        //等待握手完成
-        while(session.isConnected() && !sslParser.isHandShakeDone()) {
-            session.socketSelector().select();
+        //进行 SSL 握手, 握手数据不足时直接返回, 收到对端的握手数据后继续握手
+        session.getSSLParser().doHandShake();
+    }
 
-            if(sslParser.getSSlByteBufferChannel().size()>0) {
-                sslParser.doHandShake();
-            }
-        }
+    @Override
+    public boolean isPrepared(IoSession session) {
+        return session.getSSLParser().isHandShakeDone();
     }
 
     @Override
     public ByteBufferChannel getReadBufferChannel(IoSession session) {
-        //使用 SSLParser 中的缓冲区
-        return sslParser.getSSlByteBufferChannel();
+        //使用 SSLParser 中接收 SSL 报文的缓冲区
+        return session.getSSLParser().getNetByteBufferChannel();
     }
 
     @Override
     public ByteBuffer wrap(IoSession session, ByteBuffer byteBuffer) {
 
         try {
-            sslParser.warp(byteBuffer);
+            session.getSSLParser().warp(byteBuffer);
         } catch (SSLException e){
             e.printStackTrace();
         }
@@ -87,7 +81,7 @@ public class SSLPlugin implements IoPlugin {
     public void unwrap(IoSession session) {
         //将 SSLParser 的缓冲区转换到 IoSession 的缓冲区
         try {
-            sslParser.unwarpByteBufferChannel();
+            session.getSSLParser().unwarpByteBufferChannel();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -95,6 +89,6 @@ public class SSLPlugin implements IoPlugin {
 
     @Override
     public void release(IoSession session) {
-        sslParser.release();
+        session.getSSLParser().release();
     }
 }
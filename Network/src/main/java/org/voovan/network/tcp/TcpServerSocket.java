@@ -1,20 +1,39 @@
 package org.voovan.network.tcp;
 
+import org.voovan.Global;
 import org.voovan.network.ConnectModel;
 import org.voovan.network.ConnectType;
+import org.voovan.network.NioUtil;
 import org.voovan.network.SocketContext;
+import org.voovan.network.SocketSelector;
 import org.voovan.tools.TEnv;
+import org.voovan.tools.bucket.TokenBucket;
+import org.voovan.tools.event.EventRunner;
+import org.voovan.tools.hashwheeltimer.HashWheelTask;
 import org.voovan.tools.log.Logger;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.SelectorProvider;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * NioServerSocket 监听
+ *      支持连接准入控制: 最大连接数, 每个 IP 的最大连接数, 每秒接受的最大连接数
+ *      达到最大连接数或者接受速率的限制时暂停监听 OP_ACCEPT, 未接受的连接留在系统的 backlog 中
+ *      SO_REUSEPORT 模式下每个 IO 线程有独立的监听通道, 由内核分配连接, 连接在接受它的 IO 线程中处理
  *
  * @author helyho
  *
@@ -23,9 +42,28 @@ import java.nio.channels.spi.SelectorProvider;
  * Licence: Apache v2 License
  */
 public class TcpServerSocket extends SocketContext<ServerSocketChannel, TcpSession> {
+	//最大连接数, 0: 不限制
+	public final static int MAX_CONNECTIONS 		= TEnv.getSystemProperty("MaxConnections", 0);
+	//每个 IP 的最大连接数, 0: 不限制
+	public final static int MAX_CONNECTIONS_PER_IP 	= TEnv.getSystemProperty("MaxConnectionsPerIp", 0);
+	//每秒接受的最大连接数, 0: 不限制
+	public final static int ACCEPT_RATE 			= TEnv.getSystemProperty("AcceptRate", 0);
+	//是否使用 SO_REUSEPORT 为每个 IO 线程绑定监听通道
+	public final static boolean REUSE_PORT 			= TEnv.getSystemProperty("ReusePort", false);
 
 	private SelectorProvider provider;
 	private ServerSocketChannel serverSocketChannel;
+	private boolean reusePort = REUSE_PORT;
+	private List<ServerSocketChannel> reusePortChannels = new ArrayList<ServerSocketChannel>();
+
+	private int maxConnections = MAX_CONNECTIONS;
+	private int maxConnectionsPerIp = MAX_CONNECTIONS_PER_IP;
+	private TokenBucket acceptBucket = ACCEPT_RATE > 0 ? new TokenBucket(ACCEPT_RATE, 1) : null;
+	private AtomicInteger connectionCount = new AtomicInteger(0);
+	private ConcurrentHashMap<String, Integer> ipConnectionCount = new ConcurrentHashMap<String, Integer>();
+	private AtomicLong rejectedCount = new AtomicLong(0);
+	private AtomicBoolean acceptPaused = new AtomicBoolean(false);
+	private ConcurrentLinkedQueue<SelectionKey> pausedKeys = new ConcurrentLinkedQueue<SelectionKey>();
 
 	//用来阻塞当前Socket
 	private Object waitObj = null;
@@ -95,6 +133,199 @@ public class TcpServerSocket extends SocketContext<ServerSocketChannel, TcpSessi
 	 */
 	public <T> void setOption(SocketOption<T> name, T value) throws IOException {
 		serverSocketChannel.setOption(name, value);
+		for(ServerSocketChannel reusePortChannel : reusePortChannels) {
+			if(reusePortChannel != serverSocketChannel) {
+				reusePortChannel.setOption(name, value);
+			}
+		}
+	}
+
+	/**
+	 * 获取最大连接数
+	 * @return 最大连接数, 0: 不限制
+	 */
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	/**
+	 * 设置最大连接数
+	 * @param maxConnections 最大连接数, 0: 不限制
+	 */
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	/**
+	 * 获取每个 IP 的最大连接数
+	 * @return 每个 IP 的最大连接数, 0: 不限制
+	 */
+	public int getMaxConnectionsPerIp() {
+		return maxConnectionsPerIp;
+	}
+
+	/**
+	 * 设置每个 IP 的最大连接数
+	 * @param maxConnectionsPerIp 每个 IP 的最大连接数, 0: 不限制
+	 */
+	public void setMaxConnectionsPerIp(int maxConnectionsPerIp) {
+		this.maxConnectionsPerIp = maxConnectionsPerIp;
+	}
+
+	/**
+	 * 设置每秒接受的最大连接数
+	 * @param acceptRate 每秒接受的最大连接数, 0: 不限制
+	 */
+	public synchronized void setAcceptRate(int acceptRate) {
+		if(acceptBucket != null) {
+			acceptBucket.release();
+			acceptBucket = null;
+		}
+
+		if(acceptRate > 0) {
+			acceptBucket = new TokenBucket(acceptRate, 1);
+		}
+	}
+
+	/**
+	 * 获取当前的连接数
+	 * @return 当前的连接数
+	 */
+	public int getConnectionCount() {
+		return connectionCount.get();
+	}
+
+	/**
+	 * 获取被拒绝的连接数
+	 * @return 被拒绝的连接数
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * 是否暂停了接受连接
+	 * @return true: 暂停, false: 正常接受
+	 */
+	public boolean isAcceptPaused() {
+		return acceptPaused.get();
+	}
+
+	/**
+	 * 接受连接前的检查, 超过最大连接数或者接受速率的限制时暂停接受连接
+	 * @param selectionKey 监听通道的 SelectionKey
+	 * @return true: 可以接受连接, false: 已暂停接受连接
+	 */
+	public boolean tryAccept(SelectionKey selectionKey) {
+		if((maxConnections > 0 && connectionCount.get() >= maxConnections) ||
+				(acceptBucket != null && !acceptBucket.acquire())) {
+			pauseAccept(selectionKey);
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * 连接准入检查, 通过后计入连接数
+	 * @param socketChannel 接受的 SocketChannel 对象
+	 * @return true: 准入, false: 超过该 IP 的最大连接数, 需要关闭连接
+	 */
+	public boolean admit(SocketChannel socketChannel) {
+		if(maxConnectionsPerIp > 0) {
+			String ip = socketChannel.socket().getInetAddress().getHostAddress();
+			if(ipConnectionCount.merge(ip, 1, Integer::sum) > maxConnectionsPerIp) {
+				releaseIp(ip);
+				rejectedCount.incrementAndGet();
+				return false;
+			}
+		}
+
+		connectionCount.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * 连接关闭后释放占用的连接数
+	 * @param ip 连接的远端 IP
+	 */
+	public void release(String ip) {
+		if(maxConnectionsPerIp > 0) {
+			releaseIp(ip);
+		}
+
+		if(connectionCount.decrementAndGet() < maxConnections || maxConnections <= 0) {
+			resumeAccept();
+		}
+	}
+
+	private void releaseIp(String ip) {
+		ipConnectionCount.computeIfPresent(ip, (key, count) -> count <= 1 ? null : count - 1);
+	}
+
+	/**
+	 * 暂停接受连接, 每秒检查一次是否可以恢复
+	 * @param selectionKey 监听通道的 SelectionKey
+	 */
+	private void pauseAccept(SelectionKey selectionKey) {
+		try {
+			NioUtil.removeOps(selectionKey, SelectionKey.OP_ACCEPT);
+		} catch (CancelledKeyException e) {
+			return;
+		}
+
+		//先加入暂停队列再设置状态, 保证恢复时一定能处理到这个 SelectionKey
+		pausedKeys.add(selectionKey);
+
+		if(acceptPaused.compareAndSet(false, true)) {
+			Global.schedual(new HashWheelTask() {
+				@Override
+				public void run() {
+					if(!acceptPaused.get() || !isOpen()) {
+						this.cancel();
+					} else if(maxConnections <= 0 || connectionCount.get() < maxConnections) {
+						resumeAccept();
+						this.cancel();
+					}
+				}
+			}, 1);
+		}
+	}
+
+	/**
+	 * 恢复接受连接
+	 */
+	private void resumeAccept() {
+		if(acceptPaused.compareAndSet(true, false)) {
+			SelectionKey selectionKey;
+			while((selectionKey = pausedKeys.poll()) != null) {
+				try {
+					if (selectionKey.isValid()) {
+						NioUtil.addOps(selectionKey, SelectionKey.OP_ACCEPT);
+						selectionKey.selector().wakeup();
+					}
+				} catch (CancelledKeyException e) {
+					//监听已关闭
+				}
+			}
+		}
+	}
+
+	/**
+	 * 是否使用 SO_REUSEPORT 模式
+	 * @return true: SO_REUSEPORT 模式, false: 单个监听通道
+	 */
+	public boolean isReusePort() {
+		return reusePort;
+	}
+
+	/**
+	 * 设置是否使用 SO_REUSEPORT 模式, 需要在启动前设置
+	 *      启用后 IO 事件执行器组中的每个执行器绑定一个监听通道, 不再使用 Accept 事件执行器组
+	 * @param reusePort true: SO_REUSEPORT 模式, false: 单个监听通道
+	 */
+	public void setReusePort(boolean reusePort) {
+		this.reusePort = reusePort;
 	}
 
 	/**
@@ -138,8 +369,34 @@ public class TcpServerSocket extends SocketContext<ServerSocketChannel, TcpSessi
 	@Override
 	public void syncStart() throws IOException {
 		init();
-		serverSocketChannel.bind(new InetSocketAddress(host, port), 512);
-		bindToSocketSelector(SelectionKey.OP_ACCEPT);
+
+		if(reusePort && serverSocketChannel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+			bindReusePort();
+		} else {
+			serverSocketChannel.bind(new InetSocketAddress(host, port), 512);
+			bindToSocketSelector(SelectionKey.OP_ACCEPT);
+		}
+	}
+
+	/**
+	 * SO_REUSEPORT 模式下为每个 IO 事件执行器绑定一个监听通道
+	 * @throws IOException IO 异常
+	 */
+	private void bindReusePort() throws IOException {
+		if(getIoEventRunnerGroup() == null) {
+			setIoEventRunnerGroup(SocketContext.getCommonIoEventRunnerGroup());
+		}
+
+		reusePortChannels.clear();
+		for(EventRunner eventRunner : getIoEventRunnerGroup().getEventRunners()) {
+			ServerSocketChannel channel = reusePortChannels.isEmpty() ? serverSocketChannel : provider.openServerSocketChannel();
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+			channel.bind(new InetSocketAddress(host, port), 512);
+			reusePortChannels.add(channel);
+
+			((SocketSelector) eventRunner.attachment()).register(this, channel, SelectionKey.OP_ACCEPT);
+		}
 	}
 
 	@Override
@@ -171,6 +428,10 @@ public class TcpServerSocket extends SocketContext<ServerSocketChannel, TcpSessi
 	 */
 	public boolean restart(){
 		try {
+			for(ServerSocketChannel reusePortChannel : reusePortChannels) {
+				reusePortChannel.close();
+			}
+
 			if(serverSocketChannel!=null && serverSocketChannel.isOpen()){
 				serverSocketChannel.close();
 			}
@@ -197,6 +458,12 @@ public class TcpServerSocket extends SocketContext<ServerSocketChannel, TcpSessi
 	@Override
 	public boolean close() {
 		try {
+			for(ServerSocketChannel reusePortChannel : reusePortChannels) {
+				if(reusePortChannel != serverSocketChannel) {
+					reusePortChannel.close();
+				}
+			}
+
 			if(serverSocketChannel!=null && serverSocketChannel.isOpen()){
 				serverSocketChannel.close();
 				return true;
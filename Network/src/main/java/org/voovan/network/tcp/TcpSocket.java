@@ -25,6 +25,9 @@ public class TcpSocket extends SocketContext<SocketChannel, TcpSession> {
 	private SelectorProvider provider;
 	private SocketChannel socketChannel;
 	private TcpSession session;
+	//接受这个连接的 TcpServerSocket, 关闭时释放占用的连接数
+	private TcpServerSocket serverSocket;
+	private String remoteIp;
 
 	//用来阻塞当前Socket
 	private Object waitObj = null;
@@ -97,6 +100,11 @@ public class TcpSocket extends SocketContext<SocketChannel, TcpSession> {
 			this.connectModel = ConnectModel.SERVER;
 			this.connectType = ConnectType.TCP;
 
+			if(parentSocketContext instanceof TcpServerSocket) {
+				this.serverSocket = (TcpServerSocket) parentSocketContext;
+				this.remoteIp = socketChannel.socket().getInetAddress().getHostAddress();
+			}
+
 			session = new TcpSession(this);
 		} catch (IOException e) {
 			Logger.error("Create socket channel failed",e);
@@ -219,6 +227,8 @@ public class TcpSocket extends SocketContext<SocketChannel, TcpSession> {
 		} catch (IOException e) {
 			Logger.error("TcpSocket.close failed", e);
 		} finally {
+			releaseConnection();
+
 			if(session!=null) {
 				session.release();
 			}
@@ -233,4 +243,18 @@ public class TcpSocket extends SocketContext<SocketChannel, TcpSession> {
 		return false;
 	}
 
+	/**
+	 * 释放在 TcpServerSocket 中占用的连接数, 只释放一次
+	 */
+	private void releaseConnection() {
+		TcpServerSocket serverSocket;
+		synchronized (this) {
+			serverSocket = this.serverSocket;
+			this.serverSocket = null;
+		}
+
+		if(serverSocket != null) {
+			serverSocket.release(remoteIp);
+		}
+	}
 }
@@ -0,0 +1,88 @@
+package org.voovan.network.udp;
+
+import org.voovan.tools.buffer.TByteBuffer;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * UDP 数据报
+ *      批量模式下接收和发送的消息单元, 包含对端地址和数据
+ *      数据报总是持有一个独占的内存池 ByteBuffer, 构造时会复制传入的数据,
+ *      调用方的 byte[] 或 ByteBuffer 不会被框架回收或修改.
+ *      接收到的数据报在 onReceive 返回后回收, 发送的数据报在发送后回收,
+ *      如需在 onReceive 之外使用接收到的数据, 请自行复制
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class Datagram {
+	private InetSocketAddress address;
+	private ByteBuffer data;
+	private volatile boolean released = false;
+
+	/**
+	 * 构造函数
+	 *      复制 data 中 position 到 limit 之间的数据, 不改变 data 的 position
+	 * @param address 对端地址
+	 * @param data 数据
+	 */
+	public Datagram(InetSocketAddress address, ByteBuffer data) {
+		this.address = address;
+		this.data = TByteBuffer.allocateDirect(data.remaining());
+		this.data.put(data.duplicate());
+		this.data.flip();
+	}
+
+	/**
+	 * 构造函数
+	 *      复制 data 中的数据
+	 * @param address 对端地址
+	 * @param data 数据
+	 */
+	public Datagram(InetSocketAddress address, byte[] data) {
+		this(address, ByteBuffer.wrap(data));
+	}
+
+	/**
+	 * 获取对端地址
+	 * @return 对端地址
+	 */
+	public InetSocketAddress getAddress() {
+		return address;
+	}
+
+	/**
+	 * 获取数据
+	 * @return 数据
+	 */
+	public ByteBuffer getData() {
+		return data;
+	}
+
+	/**
+	 * 是否已经释放
+	 * @return true: 已释放, false: 未释放
+	 */
+	public boolean isReleased() {
+		return released;
+	}
+
+	/**
+	 * 释放数据占用的内存, 重复调用不会重复回收
+	 */
+	public synchronized void release() {
+		if(!released) {
+			released = true;
+			TByteBuffer.release(data);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Datagram{" + address + ", " + (released ? "released" : data.remaining() + " bytes") + "}";
+	}
+}
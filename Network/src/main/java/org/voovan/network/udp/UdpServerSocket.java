@@ -2,12 +2,14 @@ package org.voovan.network.udp;
 
 import org.voovan.network.*;
 import org.voovan.tools.TEnv;
+import org.voovan.tools.buffer.TByteBuffer;
 import org.voovan.tools.log.Logger;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.InetSocketAddress;
 import java.net.SocketOption;
+import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.spi.SelectorProvider;
@@ -22,10 +24,18 @@ import java.nio.channels.spi.SelectorProvider;
  * Licence: Apache v2 License
  */
 public class UdpServerSocket extends SocketContext<DatagramChannel, UdpSession> {
+    //UDP 数据报的最大长度
+    public final static int MAX_DATAGRAM_SIZE = 65507;
+    //每次读事件最多接收的数据报数量, 0: 不使用批量模式
+    public final static int BATCH_SIZE = TEnv.getSystemProperty("UdpBatchSize", 0);
 
     private SelectorProvider provider;
     private DatagramChannel datagramChannel;
 
+    private int batchSize = BATCH_SIZE;
+    private UdpSocket batchSocket;
+    private ByteBuffer receiveBuffer;
+
     //用来阻塞当前Socket
     private Object waitObj = new Object();
 
@@ -93,6 +103,58 @@ public class UdpServerSocket extends SocketContext<DatagramChannel, UdpSession>
         datagramChannel.setOption(name, value);
     }
 
+    /**
+     * 获取每次读事件最多接收的数据报数量
+     * @return 数据报数量, 0: 不使用批量模式
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * 设置每次读事件最多接收的数据报数量
+     *      大于 0 时使用批量模式: 不再为每个数据报创建 UdpSession, 所有对端共用一个会话,
+     *      一次读事件接收的数据报以 List&lt;Datagram&gt; 的形式交给过滤器和 onReceive,
+     *      onReceive 返回的 Datagram 或 Datagram 集合在这批数据报处理完成后一起发送
+     * @param batchSize 数据报数量, 0: 不使用批量模式
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 是否使用批量模式
+     * @return true: 批量模式, false: 每个数据报一个会话
+     */
+    public boolean isBatchMode() {
+        return batchSize > 0;
+    }
+
+    /**
+     * 获取批量模式下所有对端共用的 UdpSocket
+     * @return UdpSocket 对象
+     * @throws IOException IO 异常
+     */
+    public UdpSocket getBatchSocket() throws IOException {
+        if(batchSocket == null) {
+            batchSocket = new UdpSocket(this, datagramChannel, null);
+            batchSocket.acceptStart();
+        }
+        return batchSocket;
+    }
+
+    /**
+     * 获取批量模式下接收数据报使用的缓冲区
+     *      只在监听的 SocketSelector 线程中使用
+     * @return 接收缓冲区
+     */
+    public ByteBuffer getReceiveBuffer() {
+        if(receiveBuffer == null) {
+            receiveBuffer = TByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+        }
+        return receiveBuffer;
+    }
+
     @Override
     public DatagramChannel socketChannel() {
         return datagramChannel;
@@ -157,6 +219,7 @@ public class UdpServerSocket extends SocketContext<DatagramChannel, UdpSession>
             if(datagramChannel!=null && datagramChannel.isOpen()){
                 datagramChannel.close();
             }
+            batchSocket = null;
 
             int acceptSize = this.getAcceptEventRunnerGroup().getThreadPool().getPoolSize();
             int ioSize = this.getIoEventRunnerGroup().getThreadPool().getPoolSize();
@@ -183,6 +246,7 @@ public class UdpServerSocket extends SocketContext<DatagramChannel, UdpSession>
         if(datagramChannel!=null){
             try{
                 datagramChannel.close();
+
                 synchronized (waitObj) {
                     waitObj.notify();
                 }
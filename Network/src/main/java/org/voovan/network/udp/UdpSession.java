@@ -6,6 +6,9 @@ import org.voovan.tools.log.Logger;
 
 import java.net.InetSocketAddress;
 import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * UDP NIO 会话连接对象
@@ -19,6 +22,7 @@ import java.nio.channels.DatagramChannel;
 public class UdpSession extends IoSession<UdpSocket> {
 	private DatagramChannel	datagramChannel;
 	private InetSocketAddress inetSocketAddress;
+	private List<Datagram> pendingDatagrams;
 
 	/**
 	 * 构造函数
@@ -64,7 +68,8 @@ public class UdpSession extends IoSession<UdpSocket> {
 	 * @return 对端 ip 地址
 	 */
 	public String remoteAddress() {
-		return inetSocketAddress.getAddress().getHostAddress();
+		//批量模式下会话没有固定的对端
+		return inetSocketAddress == null ? null : inetSocketAddress.getAddress().getHostAddress();
 	}
 
 	public InetSocketAddress getInetSocketAddress() {
@@ -82,7 +87,40 @@ public class UdpSession extends IoSession<UdpSocket> {
 	 * @return 返回对端端口
 	 */
 	public int remotePort() {
-		return inetSocketAddress.getPort();
+		return inetSocketAddress == null ? -1 : inetSocketAddress.getPort();
+	}
+
+	/**
+	 * 批量模式下发送数据报
+	 *      数据报加入发送队列, 在当前这批数据报处理完成后和 onReceive 的返回值一起发送
+	 *      发送完成后数据报会被释放
+	 * @param datagram 数据报
+	 */
+	public synchronized void sendDatagram(Datagram datagram) {
+		if(pendingDatagrams == null) {
+			pendingDatagrams = new ArrayList<Datagram>();
+		}
+		pendingDatagrams.add(datagram);
+	}
+
+	/**
+	 * 批量模式下发送多个数据报
+	 * @param datagrams 数据报集合
+	 */
+	public synchronized void sendDatagrams(Collection<Datagram> datagrams) {
+		for(Datagram datagram : datagrams) {
+			sendDatagram(datagram);
+		}
+	}
+
+	/**
+	 * 取出发送队列中的所有数据报
+	 * @return 数据报列表, 没有待发送的数据报时返回 null
+	 */
+	public synchronized List<Datagram> drainDatagrams() {
+		List<Datagram> datagrams = pendingDatagrams;
+		pendingDatagrams = null;
+		return datagrams;
 	}
 
 	/**
@@ -0,0 +1,127 @@
+package org.voovan.test.network.filter;
+
+import junit.framework.TestCase;
+import org.voovan.network.IoSession;
+import org.voovan.network.filter.ZipFilter;
+import org.voovan.network.filter.zip.Lz4Codec;
+import org.voovan.network.filter.zip.ZipCodec;
+import org.voovan.network.tcp.TcpSocket;
+import org.voovan.tools.TZip;
+import org.voovan.tools.buffer.TByteBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 压缩过滤器测试
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class ZipFilterUnit extends TestCase {
+
+	private TcpSocket socket;
+
+	@Override
+	public void setUp() throws IOException {
+		//只使用会话的属性, 不需要连接
+		TcpSocket parentSocket = new TcpSocket("127.0.0.1", 28096, 1000);
+		socket = new TcpSocket(parentSocket, SocketChannel.open());
+	}
+
+	@Override
+	public void tearDown() throws IOException {
+		socket.getSession().release();
+		socket.socketChannel().close();
+	}
+
+	private static byte[][] messages() {
+		Random random = new Random(1);
+		byte[] randomBytes = new byte[64 * 1024];
+		random.nextBytes(randomBytes);
+
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			text.append("{\"id\":").append(i).append(",\"name\":\"helyho\"}");
+		}
+
+		return new byte[][] {"a".getBytes(), "hello voovan".getBytes(), randomBytes, text.toString().getBytes(), "hello voovan".getBytes()};
+	}
+
+	private void assertRoundTrip(ZipFilter.Type type) throws Exception {
+		ZipFilter zipFilter = new ZipFilter(type);
+		IoSession session = socket.getSession();
+
+		for (byte[] message : messages()) {
+			byte[] encoded = (byte[]) zipFilter.encode(session, message);
+			assertTrue(Arrays.equals(message, (byte[]) zipFilter.decode(session, encoded)));
+
+			ByteBuffer encodedBuffer = (ByteBuffer) zipFilter.encode(session, ByteBuffer.wrap(message));
+			ByteBuffer decodedBuffer = (ByteBuffer) zipFilter.decode(session, encodedBuffer);
+			assertTrue(Arrays.equals(message, TByteBuffer.toArray(decodedBuffer)));
+		}
+	}
+
+	public void testGzipRoundTrip() throws Exception {
+		assertRoundTrip(ZipFilter.Type.GZIP);
+
+		//和 TZip 的格式兼容
+		byte[] message = messages()[3];
+		byte[] encoded = (byte[]) new ZipFilter(ZipFilter.Type.GZIP).encode(socket.getSession(), message);
+		assertTrue(Arrays.equals(message, TZip.decodeGZip(encoded)));
+	}
+
+	public void testDeflateRoundTrip() throws Exception {
+		assertRoundTrip(ZipFilter.Type.DEFLATE);
+	}
+
+	public void testLz4RoundTrip() throws Exception {
+		assertRoundTrip(ZipFilter.Type.LZ4);
+	}
+
+	public void testLz4Truncated() throws IOException {
+		byte[] message = messages()[3];
+		ByteBuffer encoded = new Lz4Codec().compress(ByteBuffer.wrap(message));
+		encoded.limit(encoded.limit() - 10);
+
+		try {
+			new Lz4Codec().decompress(encoded);
+			fail("truncated frame should be rejected");
+		} catch (IOException e) {
+			//期望的异常
+		}
+	}
+
+	public void testLz4Oversized() throws IOException {
+		byte[] message = new byte[2048];
+		ByteBuffer encoded = new Lz4Codec().compress(ByteBuffer.wrap(message));
+
+		//长度前缀超过最大值时不分配内存
+		try {
+			new Lz4Codec(1024).decompress(encoded.duplicate());
+			fail("oversized frame should be rejected");
+		} catch (IOException e) {
+			//期望的异常
+		}
+
+		assertEquals(2048, new Lz4Codec(2048).decompress(encoded).remaining());
+	}
+
+	public void testRelease() throws Exception {
+		ZipFilter zipFilter = new ZipFilter(ZipFilter.Type.DEFLATE);
+		socket.filterChain().add(zipFilter);
+
+		IoSession session = socket.getSession();
+		ZipCodec codec = zipFilter.getCodec(session);
+		assertSame(codec, zipFilter.getCodec(session));
+
+		//会话释放时移除编解码器
+		session.release();
+		assertFalse(session.attributes().containsKey(zipFilter));
+	}
+}
@@ -0,0 +1,230 @@
+package org.voovan.test.network.messagesplitter;
+
+import junit.framework.TestCase;
+import org.voovan.network.IoSession;
+import org.voovan.network.MessageSplitter;
+import org.voovan.network.messagesplitter.LengthFieldSplitter;
+import org.voovan.network.messagesplitter.LengthFieldSplitter.HeadType;
+import org.voovan.network.tcp.TcpSocket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+
+/**
+ * 长度前缀消息分割器测试
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class LengthFieldSplitterUnit extends TestCase {
+	private final static byte[] DATA = "hello".getBytes();
+	private final static HeadType[] FIXED_HEAD_TYPES = {HeadType.BYTE, HeadType.SHORT, HeadType.INT, HeadType.LONG};
+	private final static ByteOrder[] BYTE_ORDERS = {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN};
+
+	private TcpSocket socket;
+	private IoSession session;
+
+	@Override
+	public void setUp() throws IOException {
+		//只使用会话的属性, 不需要连接
+		TcpSocket parentSocket = new TcpSocket("127.0.0.1", 28096, 1000);
+		socket = new TcpSocket(parentSocket, SocketChannel.open());
+		session = socket.getSession();
+	}
+
+	@Override
+	public void tearDown() throws IOException {
+		if (socket.socketChannel().isOpen()) {
+			session.release();
+			socket.socketChannel().close();
+		}
+	}
+
+	private static ByteBuffer frame(LengthFieldSplitter splitter, byte[]... datas) {
+		ByteBuffer byteBuffer = ByteBuffer.allocate(1024);
+		for (byte[] data : datas) {
+			byteBuffer.put(splitter.head(data.length));
+			byteBuffer.put(data);
+		}
+		byteBuffer.flip();
+		return byteBuffer;
+	}
+
+	private static String split(ByteBuffer byteBuffer, int length) {
+		return new String(byteBuffer.array(), byteBuffer.position(), length);
+	}
+
+	/**
+	 * 1/2/4/8 字节的长度头, 大端和小端
+	 */
+	public void testFixedHead() {
+		for (HeadType headType : FIXED_HEAD_TYPES) {
+			for (ByteOrder byteOrder : BYTE_ORDERS) {
+				LengthFieldSplitter splitter = new LengthFieldSplitter(headType, byteOrder, 1024, false);
+				ByteBuffer byteBuffer = frame(splitter, DATA, "next".getBytes());
+
+				String message = headType + " " + byteOrder;
+				assertEquals(message, headType.getSize(), splitter.head(DATA.length).remaining());
+				assertEquals(message, DATA.length, splitter.canSplite(session, byteBuffer));
+				//长度头已经被消费
+				assertEquals(message, headType.getSize(), byteBuffer.position());
+				assertEquals(message, "hello", split(byteBuffer, DATA.length));
+			}
+		}
+	}
+
+	/**
+	 * 按指定的字节序解析长度头
+	 */
+	public void testByteOrder() {
+		ByteBuffer byteBuffer = ByteBuffer.allocate(2 + DATA.length);
+		byteBuffer.put(new byte[]{5, 0});
+		byteBuffer.put(DATA);
+		byteBuffer.flip();
+
+		LengthFieldSplitter littleEndian = new LengthFieldSplitter(HeadType.SHORT, ByteOrder.LITTLE_ENDIAN, 1024, false);
+		assertEquals(DATA.length, littleEndian.canSplite(session, byteBuffer));
+		assertEquals(ByteOrder.BIG_ENDIAN, byteBuffer.order());
+
+		//大端解析为 1280, 数据不完整
+		byteBuffer.position(0);
+		LengthFieldSplitter bigEndian = new LengthFieldSplitter(HeadType.SHORT, ByteOrder.BIG_ENDIAN, 2048, false);
+		assertEquals(MessageSplitter.WAIT_DATA, bigEndian.canSplite(session, byteBuffer));
+		assertEquals(0, byteBuffer.position());
+	}
+
+	public void testVarint() {
+		LengthFieldSplitter splitter = new LengthFieldSplitter();
+		byte[] data = new byte[300];
+		ByteBuffer byteBuffer = frame(splitter, data);
+
+		assertEquals(300, splitter.canSplite(session, byteBuffer));
+		assertEquals(2, byteBuffer.position());
+	}
+
+	/**
+	 * 长度头的值包含长度头本身
+	 */
+	public void testLengthAdjustment() {
+		for (HeadType headType : FIXED_HEAD_TYPES) {
+			LengthFieldSplitter splitter = new LengthFieldSplitter(headType, ByteOrder.BIG_ENDIAN, -headType.getSize(), 1024, false, true);
+			ByteBuffer head = splitter.head(DATA.length);
+			long headValue = headType == HeadType.BYTE ? head.get(0) : headType == HeadType.SHORT ? head.getShort(0) :
+					headType == HeadType.INT ? head.getInt(0) : head.getLong(0);
+			assertEquals(headType.toString(), headType.getSize() + DATA.length, headValue);
+
+			ByteBuffer byteBuffer = frame(splitter, DATA);
+			assertEquals(headType.toString(), DATA.length, splitter.canSplite(session, byteBuffer));
+			assertEquals(headType.toString(), "hello", split(byteBuffer, DATA.length));
+		}
+
+		//修正后长度为负数时关闭连接
+		LengthFieldSplitter splitter = new LengthFieldSplitter(HeadType.INT, ByteOrder.BIG_ENDIAN, -4, 1024, false, true);
+		ByteBuffer byteBuffer = ByteBuffer.allocate(4).putInt(2);
+		byteBuffer.flip();
+		assertEquals(MessageSplitter.WAIT_DATA, splitter.canSplite(session, byteBuffer));
+		assertEquals(0, byteBuffer.position());
+		assertFalse(socket.socketChannel().isOpen());
+	}
+
+	/**
+	 * 长度头或数据不完整时等待数据, 不移动缓冲区的位置
+	 */
+	public void testPartial() {
+		for (HeadType headType : FIXED_HEAD_TYPES) {
+			LengthFieldSplitter splitter = new LengthFieldSplitter(headType, ByteOrder.BIG_ENDIAN, 1024, false);
+			ByteBuffer complete = frame(splitter, DATA);
+
+			for (int limit = 0; limit < complete.limit(); limit++) {
+				ByteBuffer byteBuffer = complete.duplicate();
+				byteBuffer.limit(limit);
+				assertEquals(headType + " " + limit, MessageSplitter.WAIT_DATA, splitter.canSplite(session, byteBuffer));
+				assertEquals(headType + " " + limit, 0, byteBuffer.position());
+			}
+		}
+
+		LengthFieldSplitter splitter = new LengthFieldSplitter();
+		ByteBuffer byteBuffer = frame(splitter, new byte[300]);
+		byteBuffer.limit(1);
+		assertEquals(MessageSplitter.WAIT_DATA, splitter.canSplite(session, byteBuffer));
+		assertEquals(0, byteBuffer.position());
+		assertTrue(socket.socketChannel().isOpen());
+	}
+
+	/**
+	 * 超过最大长度时关闭连接
+	 */
+	public void testOversizeClose() {
+		LengthFieldSplitter splitter = new LengthFieldSplitter(HeadType.INT, 4);
+		ByteBuffer byteBuffer = frame(splitter, DATA);
+
+		assertEquals(MessageSplitter.WAIT_DATA, splitter.canSplite(session, byteBuffer));
+		assertEquals(0, byteBuffer.position());
+		assertFalse(socket.socketChannel().isOpen());
+	}
+
+	/**
+	 * 超过最大长度时跨多次读取丢弃报文
+	 */
+	public void testOversizeSkip() {
+		LengthFieldSplitter splitter = new LengthFieldSplitter(HeadType.SHORT, ByteOrder.BIG_ENDIAN, 4, true);
+		ByteBuffer byteBuffer = frame(splitter, "0123456789".getBytes(), "ok".getBytes());
+
+		//第一次只收到超长报文的一部分
+		ByteBuffer first = byteBuffer.duplicate();
+		first.limit(6);
+		assertEquals(MessageSplitter.WAIT_DATA, splitter.canSplite(session, first));
+		assertEquals(6, first.position());
+
+		ByteBuffer second = byteBuffer.duplicate();
+		second.position(6);
+		assertEquals(2, splitter.canSplite(session, second));
+		assertEquals("ok", split(second, 2));
+		assertTrue(socket.socketChannel().isOpen());
+	}
+
+	/**
+	 * 保留长度头时分割出的报文包含长度头
+	 */
+	public void testNoStrip() {
+		for (HeadType headType : FIXED_HEAD_TYPES) {
+			LengthFieldSplitter splitter = new LengthFieldSplitter(headType, ByteOrder.LITTLE_ENDIAN, 0, 1024, false, false);
+			ByteBuffer byteBuffer = frame(splitter, DATA);
+
+			assertEquals(headType.toString(), headType.getSize() + DATA.length, splitter.canSplite(session, byteBuffer));
+			assertEquals(headType.toString(), 0, byteBuffer.position());
+		}
+
+		//空报文只包含长度头
+		LengthFieldSplitter splitter = new LengthFieldSplitter(HeadType.INT, ByteOrder.BIG_ENDIAN, 0, 1024, false, false);
+		assertEquals(4, splitter.canSplite(session, frame(splitter, new byte[0])));
+	}
+
+	/**
+	 * 去掉长度头时跳过空报文
+	 */
+	public void testStripEmpty() {
+		LengthFieldSplitter splitter = new LengthFieldSplitter(HeadType.INT, 1024);
+		ByteBuffer byteBuffer = frame(splitter, new byte[0], new byte[0], DATA);
+
+		assertEquals(DATA.length, splitter.canSplite(session, byteBuffer));
+		assertEquals(12, byteBuffer.position());
+		assertEquals("hello", split(byteBuffer, DATA.length));
+	}
+
+	/**
+	 * 8 字节长度头为负数时关闭连接
+	 */
+	public void testInvalidLength() {
+		LengthFieldSplitter splitter = new LengthFieldSplitter(HeadType.LONG, 1024);
+		ByteBuffer byteBuffer = ByteBuffer.allocate(8).putLong(-1);
+		byteBuffer.flip();
+
+		assertEquals(MessageSplitter.WAIT_DATA, splitter.canSplite(session, byteBuffer));
+		assertFalse(socket.socketChannel().isOpen());
+	}
+}
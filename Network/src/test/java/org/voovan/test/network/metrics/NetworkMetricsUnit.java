@@ -0,0 +1,197 @@
+package org.voovan.test.network.metrics;
+
+import junit.framework.TestCase;
+import org.voovan.network.IoSession;
+import org.voovan.network.filter.StringFilter;
+import org.voovan.network.messagesplitter.LineMessageSplitter;
+import org.voovan.network.metrics.IoMetrics;
+import org.voovan.network.metrics.LatencyHistogram;
+import org.voovan.network.metrics.NetworkMetrics;
+import org.voovan.network.metrics.SelectorMetrics;
+import org.voovan.network.tcp.TcpServerSocket;
+import org.voovan.network.tcp.TcpSocket;
+import org.voovan.test.network.ssl.SSLParserUnit;
+import org.voovan.tools.TEnv;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+
+/**
+ * 网络层指标测试
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class NetworkMetricsUnit extends TestCase {
+	private final static int PORT = 28150;
+
+	/**
+	 * 没有指定 NetworkMetrics 时默认关闭, 会话不创建计数器
+	 */
+	public void testDisabledByDefault() throws Exception {
+		if (System.getProperty("NetworkMetrics") != null) {
+			return;
+		}
+
+		assertFalse(NetworkMetrics.ENABLE);
+
+		TcpSocket parentSocket = new TcpSocket("127.0.0.1", PORT, 1000);
+		TcpSocket socket = new TcpSocket(parentSocket, SocketChannel.open());
+		try {
+			assertNull(socket.getSession().getMetrics());
+		} finally {
+			socket.getSession().release();
+			socket.socketChannel().close();
+		}
+	}
+
+	public void testHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram("test");
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i);
+		}
+		histogram.record(-1);
+
+		assertEquals(1001, histogram.getCount());
+		assertEquals(1000, histogram.getMax());
+		assertEquals(500, histogram.getMean());
+
+		//分桶的相对误差不超过 12.5%
+		assertEquals(500, histogram.getPercentile(50), 500 * 0.125);
+		assertEquals(990, histogram.getPercentile(99), 990 * 0.125);
+		assertEquals(1000, histogram.getPercentile(100));
+
+		Map<String, Long> snapshot = histogram.snapshot();
+		assertEquals(Long.valueOf(1001), snapshot.get("count"));
+		assertTrue(snapshot.get("p50") <= snapshot.get("p90"));
+		assertTrue(snapshot.get("p90") <= snapshot.get("p99"));
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(99));
+	}
+
+	public void testIoMetrics() throws Exception {
+		final IoMetrics ioMetrics = new IoMetrics();
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < 10000; j++) {
+					ioMetrics.read(2);
+					ioMetrics.write(3);
+					ioMetrics.sendBuffer(j);
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(40000, ioMetrics.getReadCount());
+		assertEquals(80000, ioMetrics.getReadBytes());
+		assertEquals(40000, ioMetrics.getWriteCount());
+		assertEquals(120000, ioMetrics.getWriteBytes());
+		assertEquals(9999, ioMetrics.getSendBufferHighWater());
+
+		ioMetrics.reset();
+		assertEquals(0, ioMetrics.getReadBytes());
+		assertEquals(0, ioMetrics.getSendBufferHighWater());
+	}
+
+	/**
+	 * 每个选择器的计数和直方图独立记录, 汇总时合并, 注销的选择器计入汇总
+	 */
+	public void testTotal() {
+		SelectorMetrics first = new SelectorMetrics(null);
+		SelectorMetrics second = new SelectorMetrics(null);
+
+		SelectorMetrics before = NetworkMetrics.total();
+		NetworkMetrics.register(first);
+		NetworkMetrics.register(second);
+		try {
+			first.read(10);
+			first.select(0);
+			first.getOnReadTime().record(100);
+			first.getHandlerTime().record(5000);
+			second.read(20);
+			second.select(3);
+			second.getOnReadTime().record(200);
+
+			assertEquals(1, first.getOnReadTime().getCount());
+			assertEquals(1, second.getOnReadTime().getCount());
+
+			SelectorMetrics total = NetworkMetrics.total();
+			assertEquals(30, total.getReadBytes() - before.getReadBytes());
+			assertEquals(2, total.getSelectCount() - before.getSelectCount());
+			assertEquals(1, total.getEmptySelectCount() - before.getEmptySelectCount());
+			assertEquals(2, total.getOnReadTime().getCount() - before.getOnReadTime().getCount());
+			assertEquals(1, total.getHandlerTime().getCount() - before.getHandlerTime().getCount());
+			assertTrue(total.getHandlerTime().getMax() >= 5000);
+
+			Map<String, Object> snapshot = NetworkMetrics.snapshot();
+			assertTrue(snapshot.containsKey("total"));
+			assertTrue(((Map) snapshot.get("total")).containsKey("onRead"));
+			assertFalse(((Map) snapshot.get("total")).containsKey("eventQueueSize"));
+		} finally {
+			NetworkMetrics.unregister(first);
+		}
+
+		//注销后计数仍然计入汇总, 重复注销不会重复计入
+		NetworkMetrics.unregister(first);
+		SelectorMetrics total = NetworkMetrics.total();
+		assertEquals(30, total.getReadBytes() - before.getReadBytes());
+		assertEquals(2, total.getOnReadTime().getCount() - before.getOnReadTime().getCount());
+
+		NetworkMetrics.unregister(second);
+		second.reset();
+		assertEquals(0, second.getReadBytes());
+		assertEquals(0, second.getSelectCount());
+		assertEquals(0, second.getOnReadTime().getCount());
+	}
+
+	/**
+	 * 开启 NetworkMetrics 时, 耗时记录在会话所在的选择器中
+	 */
+	public void testSelectorRecord() throws Exception {
+		if (!NetworkMetrics.ENABLE) {
+			return;
+		}
+
+		final IoSession[] serverSession = new IoSession[1];
+		TcpServerSocket serverSocket = new TcpServerSocket("127.0.0.1", PORT, 5000, 0);
+		serverSocket.filterChain().add(new StringFilter());
+		serverSocket.messageSplitter(new LineMessageSplitter());
+		serverSocket.handler(new SSLParserUnit.EchoHandler() {
+			@Override
+			public Object onReceive(IoSession session, Object obj) {
+				serverSession[0] = session;
+				return super.onReceive(session, obj);
+			}
+		});
+		serverSocket.syncStart();
+
+		try (Socket socket = new Socket("127.0.0.1", PORT)) {
+			socket.setSoTimeout(5000);
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+			for (int i = 0; i < 10; i++) {
+				socket.getOutputStream().write(("hello" + i + "\r\n").getBytes());
+				assertEquals("echo:hello" + i, reader.readLine());
+			}
+
+			TEnv.wait(3000, () -> serverSession[0] == null);
+			SelectorMetrics selectorMetrics = serverSession[0].socketSelector().getMetrics();
+			assertTrue(selectorMetrics.getOnReadTime().getCount() > 0);
+			assertTrue(selectorMetrics.getHandlerTime().getCount() >= 10);
+			assertTrue(serverSession[0].getMetrics().getReadBytes() > 0);
+			assertTrue(NetworkMetrics.total().getHandlerTime().getCount() >= 10);
+		} finally {
+			serverSocket.close();
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package org.voovan.test.network.ssl;
+
+import junit.framework.TestCase;
+import org.voovan.network.IoHandler;
+import org.voovan.network.IoSession;
+import org.voovan.network.SSLManager;
+import org.voovan.network.filter.StringFilter;
+import org.voovan.network.handler.SynchronousHandler;
+import org.voovan.network.messagesplitter.LineMessageSplitter;
+import org.voovan.network.plugin.SSLPlugin;
+import org.voovan.network.tcp.TcpServerSocket;
+import org.voovan.network.tcp.TcpSocket;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SSL 握手和收发测试
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class SSLParserUnit extends TestCase {
+	private static int port = 28095;
+	private final static int CONNECTION_COUNT = 20;
+
+	private TcpServerSocket serverSocket;
+	private SSLManager serverSSLManager;
+
+	public static String getKeyFile() {
+		String keyFile = "src/test/java/org/voovan/test/network/ssl/sslkeys/rsa.keystore";
+		return new File(keyFile).exists() ? keyFile : "Network/" + keyFile;
+	}
+
+	public static SSLManager createSSLManager() throws Exception {
+		SSLManager sslManager = new SSLManager("TLS");
+		sslManager.loadKey(getKeyFile(), "123456", "123456");
+		sslManager.loadTrustKey(getKeyFile(), "123456");
+		return sslManager;
+	}
+
+	@Override
+	public void setUp() throws Exception {
+		serverSSLManager = createSSLManager();
+		//每个测试使用独立的端口, 避免上一个测试的端口尚未释放
+		port++;
+		serverSocket = new TcpServerSocket("127.0.0.1", port, 5000, 0);
+		serverSocket.pluginChain().add(new SSLPlugin(serverSSLManager));
+		serverSocket.filterChain().add(new StringFilter());
+		serverSocket.messageSplitter(new LineMessageSplitter());
+		serverSocket.handler(new EchoHandler());
+		serverSocket.syncStart();
+	}
+
+	@Override
+	public void tearDown() {
+		serverSocket.close();
+	}
+
+	private TcpSocket connect(SSLManager sslManager) throws Exception {
+		TcpSocket socket = new TcpSocket("127.0.0.1", port, 5000, 0);
+		socket.pluginChain().add(new SSLPlugin(sslManager));
+		socket.filterChain().add(new StringFilter());
+		socket.messageSplitter(new LineMessageSplitter());
+		socket.handler(new SynchronousHandler());
+		socket.syncStart();
+		return socket;
+	}
+
+	private static String echo(TcpSocket socket, String message) throws Exception {
+		socket.getSession().syncSend(message + "\r\n");
+		Object response = socket.getSession().syncRead();
+		return response == null ? null : response.toString().trim();
+	}
+
+	/**
+	 * 服务端接受的连接共享同一个 SSLPlugin, 同时存在的多个连接的握手和收发互不影响
+	 */
+	public void testConcurrentConnections() throws Exception {
+		SSLManager clientSSLManager = createSSLManager();
+		List<TcpSocket> sockets = new ArrayList<TcpSocket>();
+		try {
+			for (int i = 0; i < CONNECTION_COUNT; i++) {
+				sockets.add(connect(clientSSLManager));
+			}
+
+			for (int i = 0; i < CONNECTION_COUNT; i++) {
+				assertEquals("echo:hello" + i, echo(sockets.get(i), "hello" + i));
+			}
+
+			//已经关闭的连接不影响后续连接的握手
+			for (int i = 0; i < CONNECTION_COUNT; i += 2) {
+				sockets.get(i).close();
+			}
+
+			for (int i = 1; i < CONNECTION_COUNT; i += 2) {
+				assertEquals("echo:again" + i, echo(sockets.get(i), "again" + i));
+			}
+
+			TcpSocket socket = connect(clientSSLManager);
+			sockets.add(socket);
+			assertEquals("echo:last", echo(socket, "last"));
+		} finally {
+			for (TcpSocket socket : sockets) {
+				socket.close();
+			}
+		}
+
+		assertEquals(CONNECTION_COUNT + 1, clientSSLManager.getFullHandShakeCount() + clientSSLManager.getResumedHandShakeCount());
+		assertTrue(clientSSLManager.getResumedHandShakeCount() > 0);
+	}
+
+	/**
+	 * 超过一个 SSL 记录的大小的报文
+	 */
+	public void testLargeMessage() throws Exception {
+		StringBuilder message = new StringBuilder();
+		for (int i = 0; i < 100 * 1024; i++) {
+			message.append((char) ('a' + i % 26));
+		}
+
+		TcpSocket socket = connect(createSSLManager());
+		try {
+			for (int i = 0; i < 3; i++) {
+				assertEquals("echo:" + message, echo(socket, message.toString()));
+			}
+		} finally {
+			socket.close();
+		}
+	}
+
+	public static class EchoHandler implements IoHandler {
+		@Override
+		public Object onConnect(IoSession session) {
+			return null;
+		}
+
+		@Override
+		public void onDisconnect(IoSession session) {
+		}
+
+		@Override
+		public Object onReceive(IoSession session, Object obj) {
+			return "echo:" + obj.toString().trim() + "\r\n";
+		}
+
+		@Override
+		public void onException(IoSession session, Exception e) {
+		}
+
+		@Override
+		public void onIdle(IoSession session) {
+		}
+
+		@Override
+		public void onSent(IoSession session, Object obj) {
+		}
+
+		@Override
+		public void onFlush(IoSession session) {
+		}
+	}
+}
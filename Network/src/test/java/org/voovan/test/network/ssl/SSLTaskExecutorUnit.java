@@ -0,0 +1,140 @@
+package org.voovan.test.network.ssl;
+
+import junit.framework.TestCase;
+import org.voovan.network.SSLManager;
+import org.voovan.network.filter.StringFilter;
+import org.voovan.network.handler.SynchronousHandler;
+import org.voovan.network.messagesplitter.LineMessageSplitter;
+import org.voovan.network.plugin.SSLPlugin;
+import org.voovan.network.tcp.TcpServerSocket;
+import org.voovan.network.tcp.TcpSocket;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SSL 握手委派任务执行器测试
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class SSLTaskExecutorUnit extends TestCase {
+	private static int port = 28130;
+
+	private TcpServerSocket serverSocket;
+	private SSLManager serverSSLManager;
+
+	@Override
+	public void setUp() throws Exception {
+		serverSSLManager = SSLParserUnit.createSSLManager();
+	}
+
+	@Override
+	public void tearDown() {
+		if (serverSocket != null) {
+			serverSocket.close();
+		}
+	}
+
+	private void startServer() throws Exception {
+		port++;
+		serverSocket = new TcpServerSocket("127.0.0.1", port, 5000, 0);
+		serverSocket.pluginChain().add(new SSLPlugin(serverSSLManager));
+		serverSocket.filterChain().add(new StringFilter());
+		serverSocket.messageSplitter(new LineMessageSplitter());
+		serverSocket.handler(new SSLParserUnit.EchoHandler());
+		serverSocket.syncStart();
+	}
+
+	private void assertEcho(SSLManager clientSSLManager, int count) throws Exception {
+		for (int i = 0; i < count; i++) {
+			TcpSocket socket = new TcpSocket("127.0.0.1", port, 5000, 0);
+			socket.pluginChain().add(new SSLPlugin(clientSSLManager));
+			socket.filterChain().add(new StringFilter());
+			socket.messageSplitter(new LineMessageSplitter());
+			socket.handler(new SynchronousHandler());
+			try {
+				socket.syncStart();
+				socket.getSession().syncSend("hello" + i + "\r\n");
+				Object response = socket.getSession().syncRead();
+				assertNotNull(response);
+				assertEquals("echo:hello" + i, response.toString().trim());
+			} finally {
+				socket.close();
+			}
+		}
+	}
+
+	/**
+	 * 默认执行器是所有 SSLManager 共用的有界线程池
+	 */
+	public void testDefaultExecutor() throws Exception {
+		ThreadPoolExecutor taskExecutor = SSLManager.getDefaultTaskExecutor();
+		assertNotNull(taskExecutor);
+		assertSame(taskExecutor, SSLManager.getDefaultTaskExecutor());
+		assertSame(taskExecutor, serverSSLManager.getTaskExecutor());
+
+		assertEquals(SSLManager.TASK_THREAD_SIZE, taskExecutor.getMaximumPoolSize());
+		assertEquals(SSLManager.TASK_QUEUE_SIZE, taskExecutor.getQueue().size() + taskExecutor.getQueue().remainingCapacity());
+
+		startServer();
+		assertEcho(SSLParserUnit.createSSLManager(), 3);
+		assertEquals(0, serverSSLManager.getTaskQueueSize());
+	}
+
+	/**
+	 * 委派任务在执行器的线程中执行, 不占用 IO 线程
+	 */
+	public void testTaskOnExecutor() throws Exception {
+		final AtomicInteger taskCount = new AtomicInteger();
+		final AtomicInteger wrongThreadCount = new AtomicInteger();
+		final Executor defaultExecutor = SSLManager.getDefaultTaskExecutor();
+		serverSSLManager.setTaskExecutor(command -> {
+			taskCount.incrementAndGet();
+			defaultExecutor.execute(() -> {
+				if (!Thread.currentThread().getName().startsWith("VOOVAN@SSL_TASK")) {
+					wrongThreadCount.incrementAndGet();
+				}
+				command.run();
+			});
+		});
+
+		startServer();
+		assertEcho(SSLParserUnit.createSSLManager(), 3);
+
+		assertTrue(taskCount.get() > 0);
+		assertEquals(0, wrongThreadCount.get());
+	}
+
+	/**
+	 * 执行器拒绝时在当前线程执行, 握手仍然完成
+	 */
+	public void testRejected() throws Exception {
+		final AtomicInteger rejectCount = new AtomicInteger();
+		serverSSLManager.setTaskExecutor(command -> {
+			rejectCount.incrementAndGet();
+			throw new RejectedExecutionException("queue is full");
+		});
+
+		startServer();
+		assertEcho(SSLParserUnit.createSSLManager(), 3);
+		assertTrue(rejectCount.get() > 0);
+	}
+
+	/**
+	 * 没有执行器时在 IO 线程中执行
+	 */
+	public void testNoExecutor() throws Exception {
+		serverSSLManager.setTaskExecutor(null);
+		SSLManager clientSSLManager = SSLParserUnit.createSSLManager();
+		clientSSLManager.setTaskExecutor(null);
+
+		startServer();
+		assertEcho(clientSSLManager, 3);
+		assertEquals(0, serverSSLManager.getTaskQueueSize());
+	}
+}
@@ -0,0 +1,147 @@
+package org.voovan.test.network.tcp;
+
+import junit.framework.TestCase;
+import org.voovan.network.SocketSelector;
+import org.voovan.network.handler.SynchronousHandler;
+import org.voovan.network.tcp.TcpServerSocket;
+import org.voovan.tools.TEnv;
+import org.voovan.tools.event.EventRunnerGroup;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 连接准入测试
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class AdmissionUnit extends TestCase {
+	private static int port = 28135;
+
+	private TcpServerSocket serverSocket;
+	private List<Socket> sockets = new ArrayList<Socket>();
+
+	@Override
+	public void setUp() throws Exception {
+		port++;
+		serverSocket = new TcpServerSocket("127.0.0.1", port, 5000, 0);
+		serverSocket.handler(new SynchronousHandler());
+	}
+
+	@Override
+	public void tearDown() throws IOException {
+		for (Socket socket : sockets) {
+			socket.close();
+		}
+		serverSocket.close();
+	}
+
+	private Socket connect() throws IOException {
+		Socket socket = new Socket("127.0.0.1", port);
+		socket.setSoTimeout(1000);
+		sockets.add(socket);
+		return socket;
+	}
+
+	private static boolean isClosedByPeer(Socket socket) throws IOException {
+		try {
+			return socket.getInputStream().read() == -1;
+		} catch (SocketTimeoutException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 达到最大连接数后暂停接受连接, 有连接关闭后恢复
+	 */
+	public void testMaxConnections() throws Exception {
+		serverSocket.setMaxConnections(2);
+		serverSocket.syncStart();
+
+		Socket first = connect();
+		connect();
+		TEnv.wait(3000, () -> serverSocket.getConnectionCount() < 2);
+		assertEquals(2, serverSocket.getConnectionCount());
+
+		//第三个连接留在监听队列中等待接受
+		connect();
+		TEnv.sleep(500);
+		assertEquals(2, serverSocket.getConnectionCount());
+		assertTrue(serverSocket.isAcceptPaused());
+
+		first.close();
+		TEnv.wait(3000, () -> serverSocket.isAcceptPaused());
+		TEnv.wait(3000, () -> serverSocket.getConnectionCount() < 2);
+		assertFalse(serverSocket.isAcceptPaused());
+		assertEquals(2, serverSocket.getConnectionCount());
+
+		for (Socket socket : sockets) {
+			socket.close();
+		}
+		TEnv.wait(3000, () -> serverSocket.getConnectionCount() > 0);
+		assertEquals(0, serverSocket.getConnectionCount());
+	}
+
+	/**
+	 * 超过单个 IP 的最大连接数时直接关闭连接
+	 */
+	public void testMaxConnectionsPerIp() throws Exception {
+		serverSocket.setMaxConnectionsPerIp(1);
+		serverSocket.syncStart();
+
+		Socket first = connect();
+		TEnv.wait(3000, () -> serverSocket.getConnectionCount() < 1);
+
+		Socket second = connect();
+		assertTrue(isClosedByPeer(second));
+		assertFalse(isClosedByPeer(first));
+		assertEquals(1, serverSocket.getRejectedCount());
+		assertEquals(1, serverSocket.getConnectionCount());
+
+		//关闭后同一个 IP 可以再次连接
+		first.close();
+		TEnv.wait(3000, () -> serverSocket.getConnectionCount() > 0);
+		Socket third = connect();
+		assertFalse(isClosedByPeer(third));
+		assertEquals(1, serverSocket.getConnectionCount());
+	}
+
+	/**
+	 * 创建连接对象失败时归还准入检查计入的连接数
+	 */
+	public void testAcceptFailure() throws Exception {
+		serverSocket.setMaxConnectionsPerIp(1);
+
+		try (ServerSocketChannel serverSocketChannel = ServerSocketChannel.open()) {
+			serverSocketChannel.bind(new InetSocketAddress("127.0.0.1", 0));
+			Socket socket = new Socket("127.0.0.1", serverSocketChannel.socket().getLocalPort());
+			sockets.add(socket);
+
+			//已关闭的通道无法创建 TcpSocket
+			SocketChannel socketChannel = serverSocketChannel.accept();
+			socketChannel.close();
+
+			EventRunnerGroup eventRunnerGroup = EventRunnerGroup.newInstance(1, false);
+			SocketSelector socketSelector = new SocketSelector(eventRunnerGroup.getEventRunners()[0], false);
+			try {
+				socketSelector.tcpAccept(serverSocket, socketChannel);
+				socketSelector.tcpAccept(serverSocket, socketChannel);
+			} finally {
+				socketSelector.close();
+				eventRunnerGroup.close();
+			}
+		}
+
+		assertEquals(0, serverSocket.getConnectionCount());
+		assertEquals(0, serverSocket.getRejectedCount());
+	}
+}
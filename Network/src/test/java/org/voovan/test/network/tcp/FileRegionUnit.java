@@ -0,0 +1,210 @@
+package org.voovan.test.network.tcp;
+
+import junit.framework.TestCase;
+import org.voovan.network.FileRegion;
+import org.voovan.network.IoHandler;
+import org.voovan.network.IoSession;
+import org.voovan.network.messagesplitter.LineMessageSplitter;
+import org.voovan.network.plugin.DefaultPlugin;
+import org.voovan.network.tcp.TcpServerSocket;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * 文件区域发送测试
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class FileRegionUnit extends TestCase {
+	private final static int FILE_SIZE = 3 * 1024 * 1024 + 17;
+	private final static int OFFSET = 1000;
+	private final static byte[] HEAD = "head\n".getBytes();
+	private final static byte[] TAIL = "tail\n".getBytes();
+
+	private static int port = 28126;
+
+	private File file;
+	private byte[] content;
+	private TcpServerSocket serverSocket;
+	private volatile Boolean gathering;
+
+	@Override
+	public void setUp() throws Exception {
+		content = new byte[FILE_SIZE];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) (i * 31 + i / 7);
+		}
+
+		file = File.createTempFile("FileRegionUnit", ".bin");
+		Files.write(file.toPath(), content);
+	}
+
+	@Override
+	public void tearDown() {
+		if (serverSocket != null) {
+			serverSocket.close();
+		}
+		file.delete();
+	}
+
+	private byte[] slice(int offset, int length) {
+		return Arrays.copyOfRange(content, offset, offset + length);
+	}
+
+	public void testTransferTo() throws IOException {
+		int count = FILE_SIZE - OFFSET - 100;
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		WritableByteChannel target = Channels.newChannel(outputStream);
+
+		try (FileRegion fileRegion = new FileRegion(file, OFFSET, count)) {
+			while (fileRegion.hasRemaining()) {
+				assertTrue(fileRegion.transferTo(target) > 0);
+			}
+			assertEquals(0, fileRegion.remaining());
+			assertEquals(OFFSET + count, fileRegion.getPosition());
+		}
+
+		assertTrue(Arrays.equals(slice(OFFSET, count), outputStream.toByteArray()));
+	}
+
+	public void testRead() throws IOException {
+		int count = 10000;
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+		try (FileRegion fileRegion = new FileRegion(file, OFFSET, count)) {
+			ByteBuffer buffer = ByteBuffer.allocate(4096);
+			int readSize;
+			while ((readSize = fileRegion.read(buffer)) > 0) {
+				//不会读取超过区域长度的数据
+				assertTrue(fileRegion.remaining() >= 0);
+				buffer.flip();
+				outputStream.write(buffer.array(), 0, buffer.limit());
+				buffer.clear();
+			}
+			assertEquals(-1, readSize);
+		}
+
+		assertTrue(Arrays.equals(slice(OFFSET, count), outputStream.toByteArray()));
+	}
+
+	public void testTruncated() throws IOException {
+		try (FileRegion fileRegion = new FileRegion(file, 0, FILE_SIZE + 100)) {
+			//截断文件
+			try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+				randomAccessFile.setLength(100);
+			}
+
+			WritableByteChannel target = Channels.newChannel(new ByteArrayOutputStream());
+			assertEquals(100, fileRegion.transferTo(target));
+			assertEquals(-1, fileRegion.transferTo(target));
+		}
+
+		try {
+			new FileRegion(file, -1, 10);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 * 只有默认插件时通过 transferTo 直接写入通道
+	 */
+	public void testSendZeroCopy() throws Exception {
+		startServer(false);
+		assertSend();
+		assertTrue(gathering);
+	}
+
+	/**
+	 * 存在其他插件时退化为读取后复制发送
+	 */
+	public void testSendCopy() throws Exception {
+		startServer(true);
+		assertSend();
+		assertFalse(gathering);
+	}
+
+	private void startServer(boolean customPlugin) throws Exception {
+		port++;
+		serverSocket = new TcpServerSocket("127.0.0.1", port, 5000, 0);
+		if (customPlugin) {
+			serverSocket.pluginChain().clear();
+			serverSocket.pluginChain().add(new DefaultPlugin() {
+			});
+		}
+		serverSocket.messageSplitter(new LineMessageSplitter());
+		serverSocket.handler(new FileHandler());
+		serverSocket.syncStart();
+	}
+
+	private void assertSend() throws Exception {
+		int count = FILE_SIZE - OFFSET;
+		try (Socket socket = new Socket("127.0.0.1", port)) {
+			socket.setSoTimeout(5000);
+			socket.getOutputStream().write("go\r\n".getBytes());
+
+			byte[] response = new byte[HEAD.length + count + TAIL.length];
+			new DataInputStream(socket.getInputStream()).readFully(response);
+
+			//文件区域之前和之后写入缓冲区的数据保持顺序
+			assertTrue(Arrays.equals(HEAD, Arrays.copyOfRange(response, 0, HEAD.length)));
+			assertTrue(Arrays.equals(slice(OFFSET, count), Arrays.copyOfRange(response, HEAD.length, HEAD.length + count)));
+			assertTrue(Arrays.equals(TAIL, Arrays.copyOfRange(response, HEAD.length + count, response.length)));
+		}
+	}
+
+	public class FileHandler implements IoHandler {
+		@Override
+		public Object onConnect(IoSession session) {
+			return null;
+		}
+
+		@Override
+		public void onDisconnect(IoSession session) {
+		}
+
+		@Override
+		public Object onReceive(IoSession session, Object obj) {
+			gathering = session.isGatheringSupported();
+			session.send(ByteBuffer.wrap(HEAD));
+			try (FileRegion fileRegion = new FileRegion(file, OFFSET, FILE_SIZE - OFFSET)) {
+				session.send(fileRegion);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			session.send(ByteBuffer.wrap(TAIL));
+			session.flush();
+			return null;
+		}
+
+		@Override
+		public void onException(IoSession session, Exception e) {
+			e.printStackTrace();
+		}
+
+		@Override
+		public void onIdle(IoSession session) {
+		}
+
+		@Override
+		public void onSent(IoSession session, Object obj) {
+		}
+
+		@Override
+		public void onFlush(IoSession session) {
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package org.voovan.test.network.tcp;
+
+import junit.framework.TestCase;
+import org.voovan.network.IoHandler;
+import org.voovan.network.IoSession;
+import org.voovan.network.messagesplitter.LineMessageSplitter;
+import org.voovan.network.tcp.TcpServerSocket;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 发送缓冲区和聚合发送队列混合发送的顺序测试
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class GatheringOrderUnit extends TestCase {
+	private final static int PORT = 28125;
+	private final static int THREAD_COUNT = 4;
+	private final static int MESSAGE_COUNT = 2000;
+
+	private TcpServerSocket serverSocket;
+
+	@Override
+	public void setUp() throws Exception {
+		serverSocket = new TcpServerSocket("127.0.0.1", PORT, 5000, 0);
+		serverSocket.messageSplitter(new LineMessageSplitter());
+		serverSocket.handler(new MixedSendHandler());
+		serverSocket.syncStart();
+	}
+
+	@Override
+	public void tearDown() {
+		serverSocket.close();
+	}
+
+	/**
+	 * 多个线程交替使用 send 和 sendGathering 发送, 每个线程的数据按发送的顺序到达
+	 */
+	public void testOrder() throws Exception {
+		try (Socket socket = new Socket("127.0.0.1", PORT)) {
+			socket.setSoTimeout(5000);
+			socket.getOutputStream().write("go\r\n".getBytes());
+
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+			int[] lastSequence = new int[THREAD_COUNT];
+			for (int i = 0; i < THREAD_COUNT; i++) {
+				lastSequence[i] = -1;
+			}
+
+			for (int i = 0; i < THREAD_COUNT * MESSAGE_COUNT; i++) {
+				String line = reader.readLine();
+				assertNotNull(line);
+
+				String[] parts = line.split(":");
+				int thread = Integer.parseInt(parts[0]);
+				int sequence = Integer.parseInt(parts[1]);
+				assertEquals(line, lastSequence[thread] + 1, sequence);
+				lastSequence[thread] = sequence;
+			}
+
+			for (int i = 0; i < THREAD_COUNT; i++) {
+				assertEquals(MESSAGE_COUNT - 1, lastSequence[i]);
+			}
+		}
+	}
+
+	public static class MixedSendHandler implements IoHandler {
+		@Override
+		public Object onConnect(IoSession session) {
+			return null;
+		}
+
+		@Override
+		public void onDisconnect(IoSession session) {
+		}
+
+		@Override
+		public Object onReceive(IoSession session, Object obj) {
+			CountDownLatch startLatch = new CountDownLatch(1);
+			for (int i = 0; i < THREAD_COUNT; i++) {
+				final int thread = i;
+				new Thread(() -> {
+					try {
+						startLatch.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+
+					for (int sequence = 0; sequence < MESSAGE_COUNT; sequence++) {
+						ByteBuffer buffer = ByteBuffer.wrap((thread + ":" + sequence + "\n").getBytes());
+						if (sequence % 2 == 0) {
+							session.send(buffer);
+						} else {
+							session.sendGathering(buffer);
+						}
+
+						if (sequence % 7 == 0) {
+							session.flush();
+						}
+					}
+					session.flush();
+				}).start();
+			}
+			startLatch.countDown();
+			return null;
+		}
+
+		@Override
+		public void onException(IoSession session, Exception e) {
+		}
+
+		@Override
+		public void onIdle(IoSession session) {
+		}
+
+		@Override
+		public void onSent(IoSession session, Object obj) {
+		}
+
+		@Override
+		public void onFlush(IoSession session) {
+		}
+	}
+}
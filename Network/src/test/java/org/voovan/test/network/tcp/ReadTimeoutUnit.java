@@ -0,0 +1,160 @@
+package org.voovan.test.network.tcp;
+
+import junit.framework.TestCase;
+import org.voovan.network.IoHandler;
+import org.voovan.network.IoSession;
+import org.voovan.network.messagesplitter.LineMessageSplitter;
+import org.voovan.network.tcp.TcpServerSocket;
+import org.voovan.tools.TEnv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 读超时检查测试
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class ReadTimeoutUnit extends TestCase {
+	private final static int READ_TIMEOUT = 500;
+
+	private static int port = 28140;
+
+	private TcpServerSocket serverSocket;
+	private AtomicInteger timeoutCount = new AtomicInteger();
+	private List<Socket> sockets = new ArrayList<Socket>();
+
+	@Override
+	public void setUp() throws Exception {
+		port++;
+		serverSocket = new TcpServerSocket("127.0.0.1", port, READ_TIMEOUT, 0);
+		serverSocket.messageSplitter(new LineMessageSplitter());
+		serverSocket.handler(new TimeoutHandler());
+		serverSocket.syncStart();
+	}
+
+	@Override
+	public void tearDown() throws IOException {
+		for (Socket socket : sockets) {
+			socket.close();
+		}
+		serverSocket.close();
+	}
+
+	private Socket connect() throws IOException {
+		Socket socket = new Socket("127.0.0.1", port);
+		socket.setSoTimeout(100);
+		sockets.add(socket);
+		return socket;
+	}
+
+	private static boolean isClosedByPeer(Socket socket) throws IOException {
+		InputStream inputStream = socket.getInputStream();
+		try {
+			while (inputStream.read() != -1) {
+			}
+			return true;
+		} catch (SocketTimeoutException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 没有读取的连接在超时后关闭
+	 */
+	public void testIdleTimeout() throws Exception {
+		Socket socket = connect();
+		long start = System.currentTimeMillis();
+		TEnv.wait(5000, () -> timeoutCount.get() == 0);
+		long cost = System.currentTimeMillis() - start;
+
+		assertEquals(1, timeoutCount.get());
+		assertTrue(cost >= READ_TIMEOUT - 100);
+		assertTrue(isClosedByPeer(socket));
+	}
+
+	/**
+	 * 持续有读取的连接不会超时, 停止发送后超时
+	 */
+	public void testActiveNotTimeout() throws Exception {
+		Socket socket = connect();
+		for (int i = 0; i < 10; i++) {
+			socket.getOutputStream().write("ping\r\n".getBytes());
+			TEnv.sleep(READ_TIMEOUT / 3);
+			assertFalse(isClosedByPeer(socket));
+		}
+		assertEquals(0, timeoutCount.get());
+
+		TEnv.wait(5000, () -> timeoutCount.get() == 0);
+		assertEquals(1, timeoutCount.get());
+		assertTrue(isClosedByPeer(socket));
+	}
+
+	/**
+	 * 多个连接各自按检查时间超时, 提前关闭的连接不触发超时
+	 */
+	public void testManyConnections() throws Exception {
+		int count = 50;
+		List<Socket> idleSockets = new ArrayList<Socket>();
+		for (int i = 0; i < count; i++) {
+			Socket socket = connect();
+			if (i % 5 == 0) {
+				socket.close();
+			} else {
+				idleSockets.add(socket);
+			}
+			TEnv.sleep(10);
+		}
+
+		TEnv.wait(5000, () -> timeoutCount.get() < idleSockets.size());
+		TEnv.sleep(READ_TIMEOUT);
+		assertEquals(idleSockets.size(), timeoutCount.get());
+		for (Socket socket : idleSockets) {
+			assertTrue(isClosedByPeer(socket));
+		}
+	}
+
+	public class TimeoutHandler implements IoHandler {
+		@Override
+		public Object onConnect(IoSession session) {
+			return null;
+		}
+
+		@Override
+		public void onDisconnect(IoSession session) {
+		}
+
+		@Override
+		public Object onReceive(IoSession session, Object obj) {
+			return null;
+		}
+
+		@Override
+		public void onException(IoSession session, Exception e) {
+			if (e instanceof TimeoutException) {
+				timeoutCount.incrementAndGet();
+			}
+		}
+
+		@Override
+		public void onIdle(IoSession session) {
+		}
+
+		@Override
+		public void onSent(IoSession session, Object obj) {
+		}
+
+		@Override
+		public void onFlush(IoSession session) {
+		}
+	}
+}
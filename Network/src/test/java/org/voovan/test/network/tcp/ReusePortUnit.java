@@ -0,0 +1,169 @@
+package org.voovan.test.network.tcp;
+
+import junit.framework.TestCase;
+import org.voovan.network.IoHandler;
+import org.voovan.network.IoSession;
+import org.voovan.network.SocketContext;
+import org.voovan.network.SocketSelector;
+import org.voovan.network.filter.StringFilter;
+import org.voovan.network.messagesplitter.LineMessageSplitter;
+import org.voovan.network.tcp.TcpServerSocket;
+import org.voovan.tools.TEnv;
+import org.voovan.tools.event.EventRunner;
+import org.voovan.tools.event.EventRunnerGroup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SO_REUSEPORT 模式测试
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class ReusePortUnit extends TestCase {
+	private final static int IO_THREAD_SIZE = 4;
+	private final static int CONNECTION_COUNT = 64;
+
+	private static int port = 28145;
+
+	private TcpServerSocket serverSocket;
+	private EventRunnerGroup ioEventRunnerGroup;
+	private Set<SocketSelector> selectors = ConcurrentHashMap.newKeySet();
+	private AtomicInteger wrongThreadCount = new AtomicInteger();
+
+	private static boolean isReusePortSupported() throws IOException {
+		try (ServerSocketChannel serverSocketChannel = ServerSocketChannel.open()) {
+			return serverSocketChannel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+		}
+	}
+
+	@Override
+	public void setUp() throws Exception {
+		port++;
+		ioEventRunnerGroup = SocketContext.createEventRunnerGroup("ReusePortUnit", IO_THREAD_SIZE, false);
+		serverSocket = new TcpServerSocket("127.0.0.1", port, 5000, 0);
+		serverSocket.setReusePort(true);
+		serverSocket.setIoEventRunnerGroup(ioEventRunnerGroup);
+		serverSocket.filterChain().add(new StringFilter());
+		serverSocket.messageSplitter(new LineMessageSplitter());
+		serverSocket.handler(new SelectorHandler());
+	}
+
+	@Override
+	public void tearDown() {
+		serverSocket.close();
+		ioEventRunnerGroup.close();
+	}
+
+	/**
+	 * 每个 IO 线程有独立的监听通道, 连接在接受它的 IO 线程中处理
+	 */
+	public void testAcceptOnIoThread() throws Exception {
+		if (!isReusePortSupported()) {
+			return;
+		}
+		serverSocket.syncStart();
+
+		Set<SocketSelector> ioSelectors = new HashSet<SocketSelector>();
+		for (EventRunner eventRunner : ioEventRunnerGroup.getEventRunners()) {
+			ioSelectors.add((SocketSelector) eventRunner.attachment());
+		}
+
+		List<Socket> sockets = new ArrayList<Socket>();
+		try {
+			for (int i = 0; i < CONNECTION_COUNT; i++) {
+				sockets.add(new Socket("127.0.0.1", port));
+			}
+
+			for (int i = 0; i < CONNECTION_COUNT; i++) {
+				Socket socket = sockets.get(i);
+				socket.setSoTimeout(5000);
+				socket.getOutputStream().write(("hello" + i + "\r\n").getBytes());
+				BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+				assertEquals("echo:hello" + i, reader.readLine());
+			}
+		} finally {
+			for (Socket socket : sockets) {
+				socket.close();
+			}
+		}
+
+		assertEquals(0, wrongThreadCount.get());
+		assertTrue(ioSelectors.containsAll(selectors));
+		//内核按连接的四元组分配到不同的监听通道
+		assertTrue(selectors.size() > 1);
+	}
+
+	/**
+	 * 关闭后所有监听通道都被关闭
+	 */
+	public void testClose() throws Exception {
+		if (!isReusePortSupported()) {
+			return;
+		}
+		serverSocket.syncStart();
+		new Socket("127.0.0.1", port).close();
+		serverSocket.close();
+		//注册在选择器上的通道在选择器注销后才真正关闭
+		TEnv.sleep(SocketContext.SELECT_INTERVAL.intValue() + 500);
+
+		for (int i = 0; i < IO_THREAD_SIZE * 4; i++) {
+			try {
+				new Socket("127.0.0.1", port).close();
+				fail("Listener is still open");
+			} catch (ConnectException e) {
+			}
+		}
+	}
+
+	public class SelectorHandler implements IoHandler {
+		@Override
+		public Object onConnect(IoSession session) {
+			return null;
+		}
+
+		@Override
+		public void onDisconnect(IoSession session) {
+		}
+
+		@Override
+		public Object onReceive(IoSession session, Object obj) {
+			SocketSelector socketSelector = session.socketSelector();
+			selectors.add(socketSelector);
+			if (socketSelector.getEventRunner().getThread() != Thread.currentThread()) {
+				wrongThreadCount.incrementAndGet();
+			}
+			return "echo:" + obj.toString().trim() + "\r\n";
+		}
+
+		@Override
+		public void onException(IoSession session, Exception e) {
+		}
+
+		@Override
+		public void onIdle(IoSession session) {
+		}
+
+		@Override
+		public void onSent(IoSession session, Object obj) {
+		}
+
+		@Override
+		public void onFlush(IoSession session) {
+		}
+	}
+}
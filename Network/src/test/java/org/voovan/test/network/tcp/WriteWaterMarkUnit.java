@@ -0,0 +1,154 @@
+package org.voovan.test.network.tcp;
+
+import junit.framework.TestCase;
+import org.voovan.network.IoHandler;
+import org.voovan.network.IoSession;
+import org.voovan.network.messagesplitter.LineMessageSplitter;
+import org.voovan.network.tcp.TcpServerSocket;
+import org.voovan.tools.TEnv;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * 发送缓冲区水位测试
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class WriteWaterMarkUnit extends TestCase {
+	private final static int MESSAGE_SIZE = 64 * 1024;
+
+	private static int port = 28099;
+
+	private TcpServerSocket serverSocket;
+	private List<Boolean> events = new Vector<Boolean>();
+	private List<Boolean> writableAfterSend = new Vector<Boolean>();
+	private volatile IoSession serverSession;
+
+	@Override
+	public void setUp() throws Exception {
+		port++;
+		serverSocket = new TcpServerSocket("127.0.0.1", port, 5000, 0);
+		serverSocket.setSendBufferSize(1024 * 1024);
+		serverSocket.setWriteWaterMark(32 * 1024, 100 * 1024);
+		serverSocket.setPauseReadOnUnwritable(true);
+		serverSocket.messageSplitter(new LineMessageSplitter());
+		serverSocket.handler(new SendHandler());
+		serverSocket.syncStart();
+	}
+
+	@Override
+	public void tearDown() {
+		serverSocket.close();
+	}
+
+	private void readFully(InputStream inputStream, long length) throws Exception {
+		byte[] buffer = new byte[64 * 1024];
+		long total = 0;
+		while (total < length) {
+			int readSize = inputStream.read(buffer);
+			assertTrue(readSize > 0);
+			total += readSize;
+		}
+	}
+
+	/**
+	 * 超过高水位变为不可写, 发送后降到低水位以下恢复可写
+	 */
+	public void testTransitions() throws Exception {
+		try (Socket socket = new Socket("127.0.0.1", port)) {
+			socket.setSoTimeout(5000);
+			socket.getOutputStream().write("go\r\n".getBytes());
+			readFully(socket.getInputStream(), 3 * MESSAGE_SIZE);
+
+			TEnv.wait(5000, () -> events.size() < 2);
+
+			//64K 可写, 128K 和 192K 超过 100K 的高水位
+			assertEquals(3, writableAfterSend.size());
+			assertTrue(writableAfterSend.get(0));
+			assertFalse(writableAfterSend.get(1));
+			assertFalse(writableAfterSend.get(2));
+
+			assertEquals(2, events.size());
+			assertFalse(events.get(0));
+			assertTrue(events.get(1));
+			assertTrue(serverSession.isWritable());
+			assertEquals(0, serverSession.getPendingSendSize());
+		}
+	}
+
+	/**
+	 * 多次变化后事件交替出现, 最后一次事件和当前状态一致
+	 */
+	public void testEvents() throws Exception {
+		int rounds = 20;
+		try (Socket socket = new Socket("127.0.0.1", port)) {
+			socket.setSoTimeout(5000);
+			OutputStream outputStream = socket.getOutputStream();
+			InputStream inputStream = socket.getInputStream();
+			for (int i = 0; i < rounds; i++) {
+				outputStream.write("go\r\n".getBytes());
+				readFully(inputStream, 3 * MESSAGE_SIZE);
+			}
+
+			TEnv.wait(5000, () -> events.size() < 2 * rounds);
+			TEnv.sleep(100);
+
+			assertEquals(2 * rounds, events.size());
+			for (int i = 0; i < events.size(); i++) {
+				assertEquals(i % 2 == 1, (boolean) events.get(i));
+			}
+			assertTrue(serverSession.isWritable());
+		}
+	}
+
+	public class SendHandler implements IoHandler {
+		@Override
+		public Object onConnect(IoSession session) {
+			serverSession = session;
+			return null;
+		}
+
+		@Override
+		public void onDisconnect(IoSession session) {
+		}
+
+		@Override
+		public Object onReceive(IoSession session, Object obj) {
+			writableAfterSend.clear();
+			for (int i = 0; i < 3; i++) {
+				session.send(ByteBuffer.wrap(new byte[MESSAGE_SIZE]));
+				writableAfterSend.add(session.isWritable());
+			}
+			return null;
+		}
+
+		@Override
+		public void onException(IoSession session, Exception e) {
+		}
+
+		@Override
+		public void onIdle(IoSession session) {
+		}
+
+		@Override
+		public void onSent(IoSession session, Object obj) {
+		}
+
+		@Override
+		public void onFlush(IoSession session) {
+		}
+
+		@Override
+		public void onWritabilityChanged(IoSession session, boolean writable) {
+			events.add(writable);
+		}
+	}
+}
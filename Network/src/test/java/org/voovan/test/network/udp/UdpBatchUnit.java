@@ -0,0 +1,150 @@
+package org.voovan.test.network.udp;
+
+import junit.framework.TestCase;
+import org.voovan.network.IoHandler;
+import org.voovan.network.IoSession;
+import org.voovan.network.udp.Datagram;
+import org.voovan.network.udp.UdpServerSocket;
+import org.voovan.tools.TEnv;
+import org.voovan.tools.buffer.TByteBuffer;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * UDP 批量模式测试
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class UdpBatchUnit extends TestCase {
+	private final static int PORT = 28120;
+	private final static int COUNT = 200;
+
+	public void testDatagramCopy() {
+		InetSocketAddress address = new InetSocketAddress("127.0.0.1", PORT);
+
+		byte[] bytes = "hello".getBytes();
+		Datagram datagram = new Datagram(address, bytes);
+		bytes[0] = 'j';
+		assertEquals("hello", TByteBuffer.toString(datagram.getData()));
+
+		ByteBuffer byteBuffer = ByteBuffer.wrap("0123456789".getBytes());
+		byteBuffer.position(2);
+		byteBuffer.limit(6);
+		Datagram slice = new Datagram(address, byteBuffer);
+		assertEquals(2, byteBuffer.position());
+		assertEquals(6, byteBuffer.limit());
+		assertEquals("2345", TByteBuffer.toString(slice.getData()));
+
+		//重复释放不会重复回收, 调用方的数据不受影响
+		datagram.release();
+		datagram.release();
+		slice.release();
+		assertTrue(datagram.isReleased());
+		assertTrue(slice.isReleased());
+		assertEquals("jello", new String(bytes));
+		assertEquals("2345", new String(byteBuffer.array(), 2, 4));
+	}
+
+	public void testBatchEcho() throws Exception {
+		final AtomicInteger batchCount = new AtomicInteger();
+		final ConcurrentLinkedQueue<Datagram> received = new ConcurrentLinkedQueue<Datagram>();
+
+		UdpServerSocket server = new UdpServerSocket("127.0.0.1", PORT, 5000, 0);
+		server.setBatchSize(16);
+		server.handler(new IoHandler() {
+			@Override
+			public Object onConnect(IoSession session) {
+				return null;
+			}
+
+			@Override
+			public void onDisconnect(IoSession session) {
+			}
+
+			@Override
+			public Object onReceive(IoSession session, Object obj) {
+				batchCount.incrementAndGet();
+				List<Datagram> response = new ArrayList<Datagram>();
+				for (Datagram datagram : (List<Datagram>) obj) {
+					received.add(datagram);
+					String message = TByteBuffer.toString(datagram.getData());
+					if (message.hashCode() % 2 == 0) {
+						//原样返回接收到的数据报
+						response.add(datagram);
+					} else {
+						//使用接收到的数据构造新的数据报
+						response.add(new Datagram(datagram.getAddress(), datagram.getData()));
+					}
+				}
+				return response;
+			}
+
+			@Override
+			public void onException(IoSession session, Exception e) {
+				e.printStackTrace();
+			}
+
+			@Override
+			public void onIdle(IoSession session) {
+			}
+
+			@Override
+			public void onSent(IoSession session, Object obj) {
+			}
+
+			@Override
+			public void onFlush(IoSession session) {
+			}
+		});
+		server.syncStart();
+
+		DatagramSocket client = new DatagramSocket();
+		try {
+			client.setSoTimeout(3000);
+			Set<String> sent = new HashSet<String>();
+			for (int i = 0; i < COUNT; i++) {
+				byte[] bytes = ("message" + i).getBytes();
+				sent.add("message" + i);
+				client.send(new DatagramPacket(bytes, bytes.length, new InetSocketAddress("127.0.0.1", PORT)));
+			}
+
+			Set<String> echoed = new HashSet<String>();
+			byte[] buffer = new byte[1024];
+			try {
+				while (echoed.size() < COUNT) {
+					DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+					client.receive(packet);
+					echoed.add(new String(packet.getData(), 0, packet.getLength()));
+				}
+			} catch (SocketTimeoutException e) {
+			}
+
+			//本机回环的 UDP 仍可能丢包, 只要求收到的内容都是发送过的
+			assertTrue(echoed.size() > COUNT / 2);
+			assertTrue(sent.containsAll(echoed));
+			assertTrue(batchCount.get() <= received.size());
+
+			//onReceive 返回后接收到的数据报全部被释放, 回显发出后才释放, 稍作等待
+			TEnv.sleep(200);
+			for (Datagram datagram : received) {
+				assertTrue(datagram.isReleased());
+			}
+		} finally {
+			client.close();
+			server.close();
+		}
+	}
+}
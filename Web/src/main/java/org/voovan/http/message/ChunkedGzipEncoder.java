@@ -0,0 +1,211 @@
+package org.voovan.http.message;
+
+import org.voovan.http.message.packet.Body;
+import org.voovan.network.FileRegion;
+import org.voovan.network.IoSession;
+import org.voovan.tools.FastThreadLocal;
+import org.voovan.tools.TEnv;
+import org.voovan.tools.buffer.ByteBufferChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 流式的 gzip chunked 编码器
+ *      边压缩边按 chunked 格式写入发送缓冲区, 不再先压缩整个 body
+ *      每个线程复用一个 Deflater, 字节形式的 body 直接作为压缩的输入, 文件形式的 body 分段读取
+ *      chunk 的长度使用固定 6 位的十六进制, 压缩完成后回填, GzipLevel 用于设置压缩级别
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class ChunkedGzipEncoder {
+	public final static int GZIP_LEVEL = TEnv.getSystemProperty("GzipLevel", Deflater.DEFAULT_COMPRESSION);
+
+	//chunk 长度行: 6 位十六进制 + CRLF
+	private final static int CHUNK_HEAD_SIZE = 8;
+	private final static int CHUNK_MAX_SIZE = 0xFFFFFF;
+	//发送缓冲区剩余空间小于这个值时先发送
+	private final static int CHUNK_MIN_SPACE = 64;
+	private final static int FILE_READ_SIZE = 16 * 1024;
+
+	private final static byte[] GZIP_HEADER = new byte[]{0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+	private final static byte[] HEX_BYTES = "0123456789abcdef".getBytes();
+	private final static byte[] LAST_CHUNK = ("0" + HttpStatic.BODY_MARK_STRING).getBytes();
+
+	/**
+	 * 线程内复用的压缩对象
+	 */
+	private static class GzipContext {
+		private Deflater deflater = new Deflater(GZIP_LEVEL, true);
+		private CRC32 crc32 = new CRC32();
+		private ByteBuffer fileBuffer;
+	}
+
+	private final static FastThreadLocal<GzipContext> THREAD_GZIP_CONTEXT = FastThreadLocal.withInitial(()->new GzipContext());
+
+	/**
+	 * 私有构造函数
+	 * 该类无法被实例化
+	 */
+	private ChunkedGzipEncoder(){
+	}
+
+	/**
+	 * 压缩 body 并按 chunked 格式写入发送缓冲区, 包含结束的空 chunk
+	 * 		完成后 byteBuffer 处于可读状态, 和 Response.send 中的发送缓冲区操作一致
+	 * @param session socket 会话对象
+	 * @param byteBufferChannel 发送缓冲通道
+	 * @param byteBuffer 通过 byteBufferChannel.getByteBuffer() 获得的发送缓冲区, 从 position 开始写入
+	 * @param body 需要压缩的 body
+	 * @throws IOException IO 异常
+	 */
+	public static void encode(IoSession session, ByteBufferChannel byteBufferChannel, ByteBuffer byteBuffer, Body body) throws IOException {
+		GzipContext gzipContext = THREAD_GZIP_CONTEXT.get();
+		Deflater deflater = gzipContext.deflater;
+		CRC32 crc32 = gzipContext.crc32;
+		crc32.reset();
+
+		try {
+			int chunkStart = beginChunk(session, byteBufferChannel, byteBuffer);
+			byteBuffer.put(GZIP_HEADER);
+			endChunk(byteBuffer, chunkStart);
+
+			long totalSize = 0;
+			if (body.getType() == Body.BodyType.BYTES) {
+				ByteBuffer input = body.getByteBufferView();
+				if(input != null) {
+					totalSize = input.remaining();
+					crc32.update(input.duplicate());
+					deflater.setInput(input);
+					deflate(session, byteBufferChannel, byteBuffer, deflater, false);
+				}
+			} else {
+				if (gzipContext.fileBuffer == null) {
+					gzipContext.fileBuffer = ByteBuffer.allocate(FILE_READ_SIZE);
+				}
+
+				ByteBuffer input = gzipContext.fileBuffer;
+				try (FileRegion fileRegion = body.getFileRegion()) {
+					while (true) {
+						input.clear();
+						int readSize = fileRegion.read(input);
+						//Deflater 持有 input 的引用, 结束时也需要 flip, 避免 finish 时再次读取
+						input.flip();
+						if (readSize < 0) {
+							break;
+						}
+
+						totalSize = totalSize + readSize;
+						crc32.update(input.duplicate());
+						deflater.setInput(input);
+						deflate(session, byteBufferChannel, byteBuffer, deflater, false);
+					}
+				}
+			}
+
+			deflater.finish();
+			deflate(session, byteBufferChannel, byteBuffer, deflater, true);
+
+			//gzip 结尾: CRC32 和原始长度, 小端字节序
+			chunkStart = beginChunk(session, byteBufferChannel, byteBuffer);
+			ByteOrder byteOrder = byteBuffer.order();
+			byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+			byteBuffer.putInt((int) crc32.getValue());
+			byteBuffer.putInt((int) totalSize);
+			byteBuffer.order(byteOrder);
+			endChunk(byteBuffer, chunkStart);
+
+			if (byteBuffer.remaining() < LAST_CHUNK.length) {
+				flush(session, byteBufferChannel, byteBuffer);
+			}
+			byteBuffer.put(LAST_CHUNK);
+			byteBuffer.flip();
+		} finally {
+			//释放对 body 内存的引用
+			deflater.reset();
+		}
+	}
+
+	/**
+	 * 将 Deflater 的输出按 chunk 写入发送缓冲区
+	 * @param session socket 会话对象
+	 * @param byteBufferChannel 发送缓冲通道
+	 * @param byteBuffer 发送缓冲区
+	 * @param deflater 压缩对象
+	 * @param finish false: 写到输入用完, true: 写到压缩结束
+	 */
+	private static void deflate(IoSession session, ByteBufferChannel byteBufferChannel, ByteBuffer byteBuffer, Deflater deflater, boolean finish) {
+		while (finish ? !deflater.finished() : !deflater.needsInput()) {
+			int chunkStart = beginChunk(session, byteBufferChannel, byteBuffer);
+
+			//预留 chunk 结尾的 CRLF
+			byteBuffer.limit(Math.min(byteBuffer.capacity() - 2, chunkStart + CHUNK_HEAD_SIZE + CHUNK_MAX_SIZE));
+			deflater.deflate(byteBuffer, Deflater.NO_FLUSH);
+			byteBuffer.limit(byteBuffer.capacity());
+
+			endChunk(byteBuffer, chunkStart);
+		}
+	}
+
+	/**
+	 * 开始一个 chunk, 发送缓冲区空间不足时先发送
+	 * @param session socket 会话对象
+	 * @param byteBufferChannel 发送缓冲通道
+	 * @param byteBuffer 发送缓冲区
+	 * @return chunk 在发送缓冲区中的起始位置
+	 */
+	private static int beginChunk(IoSession session, ByteBufferChannel byteBufferChannel, ByteBuffer byteBuffer) {
+		if (byteBuffer.remaining() < CHUNK_MIN_SPACE) {
+			flush(session, byteBufferChannel, byteBuffer);
+		}
+
+		int chunkStart = byteBuffer.position();
+		byteBuffer.position(chunkStart + CHUNK_HEAD_SIZE);
+		return chunkStart;
+	}
+
+	/**
+	 * 结束一个 chunk, 回填长度行并写入结尾的 CRLF, 空的 chunk 会被丢弃
+	 * @param byteBuffer 发送缓冲区
+	 * @param chunkStart chunk 在发送缓冲区中的起始位置
+	 */
+	private static void endChunk(ByteBuffer byteBuffer, int chunkStart) {
+		int chunkSize = byteBuffer.position() - chunkStart - CHUNK_HEAD_SIZE;
+		if (chunkSize == 0) {
+			byteBuffer.position(chunkStart);
+			return;
+		}
+
+		for (int i = CHUNK_HEAD_SIZE - 3; i >= 0; i--) {
+			byteBuffer.put(chunkStart + i, HEX_BYTES[chunkSize & 0xF]);
+			chunkSize = chunkSize >>> 4;
+		}
+		byteBuffer.put(chunkStart + CHUNK_HEAD_SIZE - 2, (byte) '\r');
+		byteBuffer.put(chunkStart + CHUNK_HEAD_SIZE - 1, (byte) '\n');
+
+		byteBuffer.put((byte) '\r');
+		byteBuffer.put((byte) '\n');
+	}
+
+	/**
+	 * 发送缓冲区中的数据, 之后从缓冲区的尾部继续写入
+	 * @param session socket 会话对象
+	 * @param byteBufferChannel 发送缓冲通道
+	 * @param byteBuffer 发送缓冲区
+	 */
+	private static void flush(IoSession session, ByteBufferChannel byteBufferChannel, ByteBuffer byteBuffer) {
+		byteBuffer.flip();
+		byteBufferChannel.compact();
+		session.flush();
+
+		byteBuffer.position(byteBuffer.limit());
+		byteBuffer.limit(byteBuffer.capacity());
+	}
+}
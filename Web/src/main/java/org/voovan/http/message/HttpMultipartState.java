@@ -0,0 +1,258 @@
+package org.voovan.http.message;
+
+import org.voovan.Global;
+import org.voovan.tools.TFile;
+import org.voovan.tools.TString;
+import org.voovan.tools.buffer.ByteBufferSearch;
+import org.voovan.tools.buffer.CompositeByteBufferChannel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Http multipart 报文体的增量解析状态
+ *      逐段扫描 boundary 和 part 头, 文件 part 的内容直接追加到上传文件, 普通参数保存在分段通道中
+ *      数据不完整时立即返回已经处理的长度, 未处理的数据(可能是不完整的 boundary)留到下次继续扫描
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class HttpMultipartState {
+	public final static int BAD_REQUEST = -1;
+
+	//part 头的最大尺寸
+	private final static int PART_HEADER_MAX_SIZE = 8 * 1024;
+
+	private final static int PREAMBLE 		= 0;
+	private final static int BOUNDARY_END 	= 1;
+	private final static int PART_HEADER 	= 2;
+	private final static int PART_BODY 		= 3;
+	private final static int EPILOGUE 		= 4;
+
+	private final static byte[] BODY_MARK = HttpStatic.BODY_MARK_STRING.getBytes();
+	private final static AtomicLong FILE_INDEX = new AtomicLong();
+
+	private byte[] boundary;
+	private byte[] delimiter;
+	private int state;
+
+	private List<Object[]> bodyParts;
+	private Object[] partArray;
+	private CompositeByteBufferChannel partValue;
+	private String partFileName;
+
+	/**
+	 * 构造函数
+	 * @param boundary Content-Type 中的 boundary
+	 */
+	public HttpMultipartState(String boundary) {
+		this.boundary = TString.assembly("--", boundary).getBytes(Global.CS_UTF_8);
+		this.delimiter = TString.assembly("\r\n--", boundary).getBytes(Global.CS_UTF_8);
+		this.state = PREAMBLE;
+		this.bodyParts = new ArrayList<Object[]>();
+	}
+
+	/**
+	 * 是否已经读取到结束的 boundary
+	 * @return true: 报文体解析完成, false: 报文体未完成
+	 */
+	public boolean isFinished() {
+		return state == EPILOGUE;
+	}
+
+	/**
+	 * 获取解析完成的 part, 结构和 HttpParser 解析的 part 一致
+	 * @return part 的 list
+	 */
+	public List<Object[]> getBodyParts() {
+		return bodyParts;
+	}
+
+	/**
+	 * 从上次的状态继续处理报文体
+	 * @param byteBuffer 缓冲区
+	 * @param start 报文体数据的起始位置
+	 * @param end 报文体数据的结束位置(不包含)
+	 * @return 大于等于 0: 已经处理的数据长度, 调用方需要从缓冲区中移除这部分数据, BAD_REQUEST: 报文格式错误
+	 * @throws IOException 写入上传文件异常
+	 */
+	public int process(ByteBuffer byteBuffer, int start, int end) throws IOException {
+		int position = start;
+
+		while (true) {
+			switch (state) {
+				case PREAMBLE: {
+					int index = ByteBufferSearch.indexOf(byteBuffer, position, end, boundary);
+					if (index < 0) {
+						//保留可能是 boundary 开头的数据
+						return Math.max(position, end - boundary.length + 1) - start;
+					}
+
+					position = index + boundary.length;
+					state = BOUNDARY_END;
+					break;
+				}
+				case BOUNDARY_END: {
+					if (end - position < 2) {
+						return position - start;
+					}
+
+					byte first = byteBuffer.get(position);
+					byte second = byteBuffer.get(position + 1);
+					if (first == '-' && second == '-') {
+						state = EPILOGUE;
+						break;
+					} else if (first == Global.BYTE_CR && second == Global.BYTE_LF) {
+						position = position + 2;
+						state = PART_HEADER;
+						break;
+					} else {
+						return BAD_REQUEST;
+					}
+				}
+				case PART_HEADER: {
+					int index = ByteBufferSearch.indexOf(byteBuffer, position, end, BODY_MARK);
+					if (index < 0) {
+						return end - position > PART_HEADER_MAX_SIZE ? BAD_REQUEST : position - start;
+					}
+
+					ByteBuffer partHeadBuffer = byteBuffer.duplicate();
+					partHeadBuffer.limit(index + BODY_MARK.length);
+					partHeadBuffer.position(position);
+					startPart(HttpParser.parseHeader(partHeadBuffer.slice(), null, 0));
+
+					position = index + BODY_MARK.length;
+					state = PART_BODY;
+					break;
+				}
+				case PART_BODY: {
+					int index = ByteBufferSearch.indexOf(byteBuffer, position, end, delimiter);
+					//未找到 boundary 时保留可能是 boundary 开头的数据
+					int dataEnd = index < 0 ? Math.max(position, end - delimiter.length + 1) : index;
+					writePart(byteBuffer, position, dataEnd);
+
+					if (index < 0) {
+						return dataEnd - start;
+					}
+
+					finishPart();
+					position = index + delimiter.length;
+					state = BOUNDARY_END;
+					break;
+				}
+				default:
+					//结束 boundary 之后的数据直接丢弃
+					return end - start;
+			}
+		}
+	}
+
+	/**
+	 * 开始一个新的 part
+	 * @param partHeaderMap part 头
+	 * @throws IOException 创建上传文件异常
+	 */
+	private void startPart(Map<String, Object> partHeaderMap) throws IOException {
+		partArray = new Object[4];
+		partArray[HttpParser.HEADER] = partHeaderMap;
+
+		String fileName = HttpParser.getPerprotyEqualValue(partHeaderMap, HttpStatic.CONTENT_DISPOSITION_STRING, "filename");
+		if (fileName == null) {
+			//普通参数
+			partValue = new CompositeByteBufferChannel();
+		} else if (fileName.isEmpty()) {
+			//未选择文件的 part, 丢弃内容
+			partArray = null;
+		} else {
+			String fileExtName = TFile.getFileExtension(fileName);
+			fileExtName = fileExtName==null || fileExtName.equals(Global.EMPTY_STRING) ? "tmp" : fileExtName;
+
+			partFileName = TString.assembly(HttpParser.UPLOAD_PATH, Global.FRAMEWORK_NAME, System.currentTimeMillis(), "_", FILE_INDEX.incrementAndGet(), ".", fileExtName);
+			TFile.mkdir(partFileName);
+
+			File partFile = new File(partFileName);
+			partFile.createNewFile();
+			partFile.deleteOnExit();
+		}
+	}
+
+	/**
+	 * 写入 part 的内容
+	 * @param byteBuffer 缓冲区
+	 * @param start 起始位置
+	 * @param end 结束位置(不包含)
+	 * @throws IOException 写入上传文件异常
+	 */
+	private void writePart(ByteBuffer byteBuffer, int start, int end) throws IOException {
+		if (partArray == null || start >= end) {
+			return;
+		}
+
+		ByteBuffer data = byteBuffer.duplicate();
+		data.limit(end);
+		data.position(start);
+
+		if (partValue != null) {
+			partValue.writeEnd(data);
+		} else {
+			//每次写入后关闭文件, 连接中断时不会遗留文件句柄
+			try (RandomAccessFile randomAccessFile = new RandomAccessFile(partFileName, "rw")) {
+				randomAccessFile.seek(randomAccessFile.length());
+				while (data.hasRemaining()) {
+					randomAccessFile.getChannel().write(data);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 当前 part 完成
+	 */
+	private void finishPart() {
+		if (partArray != null) {
+			if (partValue != null) {
+				partArray[HttpParser.BODY_VALUE] = partValue.array();
+				partValue.release();
+			} else {
+				partArray[HttpParser.BODY_FILE] = partFileName.getBytes();
+			}
+			bodyParts.add(partArray);
+		}
+
+		partArray = null;
+		partValue = null;
+		partFileName = null;
+	}
+
+	/**
+	 * 释放未完成的报文体, 删除已经写入的上传文件
+	 */
+	public void release() {
+		if (partValue != null) {
+			partValue.release();
+			partValue = null;
+		}
+
+		if (partFileName != null) {
+			TFile.deleteFile(new File(partFileName));
+			partFileName = null;
+		}
+
+		for (Object[] part : bodyParts) {
+			if (part[HttpParser.BODY_FILE] != null) {
+				TFile.deleteFile(new File(new String((byte[]) part[HttpParser.BODY_FILE])));
+			}
+		}
+		bodyParts.clear();
+		partArray = null;
+	}
+}
@@ -2,6 +2,7 @@ package org.voovan.http.message;
 
 import org.voovan.Global;
 import org.voovan.http.message.packet.Cookie;
+import org.voovan.http.message.packet.Header;
 import org.voovan.http.message.packet.Part;
 import org.voovan.http.server.context.WebContext;
 import org.voovan.http.message.exception.HttpParserException;
@@ -9,6 +10,7 @@ import org.voovan.http.server.exception.RequestTooLarge;
 import org.voovan.network.IoSession;
 import org.voovan.tools.*;
 import org.voovan.tools.buffer.ByteBufferChannel;
+import org.voovan.tools.buffer.ByteBufferSearch;
 import org.voovan.tools.buffer.TByteBuffer;
 import org.voovan.tools.hashwheeltimer.HashWheelTask;
 import org.voovan.tools.log.Logger;
@@ -30,9 +32,9 @@ import java.util.concurrent.ConcurrentHashMap;
  * Licence: Apache v2 License
  */
 public class HttpParser {
-	private final static int HEADER = 0;
-	private final static int BODY_VALUE = 1;
-	private final static int BODY_FILE  = 2;
+	final static int HEADER = 0;
+	final static int BODY_VALUE = 1;
+	final static int BODY_FILE  = 2;
 	private final static int BODY_PARTS = 3;
 
 	private final static int PL_METHOD = 4;
@@ -44,9 +46,13 @@ public class HttpParser {
 	private final static int PL_QUERY_STRING = 10;
 	private final static int HEADER_MARK = 11;
 
-	private final static String UPLOAD_PATH 			= TFile.assemblyPath(TFile.getTemporaryPath(),"voovan", "webserver", "upload");
+	//请求头是否延迟解析, 只记录 header 的偏移, 访问时才创建 String, 启用 WebContext 缓存时不生效
+	public final static boolean LAZY_HEADER = TEnv.getSystemProperty("LazyHeader", true);
+
+	final static String UPLOAD_PATH 			= TFile.assemblyPath(TFile.getTemporaryPath(),"voovan", "webserver", "upload");
 
 	private final static String PROPERTY_LINE_SPILITER 	= ": ";
+	private final static byte[] HEADER_SPLITER_BYTES 	= HttpStatic.HEADER_SPLITER_STRING.getBytes();
 	private final static String EQUAL_MAP_REGEX 		= "([^ ;,]+=[^;,]+)";
 
 	private final static FastThreadLocal<Object[]> THREAD_PACKET_MAP = FastThreadLocal.withInitial(()->new Object[20]);
@@ -159,12 +165,21 @@ public class HttpParser {
 	 * @param valueName      属性值
 	 * @return
 	 */
-	private static String getPerprotyEqualValue(Map<String,Object> packetMap,String propertyName,String valueName){
+	static String getPerprotyEqualValue(Map<String,Object> packetMap,String propertyName,String valueName){
 		Object propertyValueObj = packetMap.get(propertyName);
 		if(propertyValueObj == null){
 			return null;
 		}
-		String propertyValue = propertyValueObj.toString();
+		return getPerprotyEqualValue(propertyValueObj.toString(), valueName);
+	}
+
+	/**
+	 * 获取HTTP 头属性值里等式的值
+	 * @param propertyValue  属性值
+	 * @param valueName      等式的名称
+	 * @return 等式的值
+	 */
+	static String getPerprotyEqualValue(String propertyValue, String valueName){
 		Map<String, String> equalMap = getEqualMap(propertyValue);
 		return equalMap.get(valueName);
 	}
@@ -218,19 +233,19 @@ public class HttpParser {
 	/**
 	 * 处理 body 段
 	 * 		判断是否使用 GZIP 压缩,如果使用则解压缩后返回,如果没有压缩则直接返回
-	 * @param headerMap
+	 * @param contentEncoding Content-Encoding 的值
 	 * @param contentBytes
 	 * @return
 	 * @throws IOException
 	 */
-	private static byte[] dealBodyContent(Map<String, Object> headerMap, byte[] contentBytes) throws IOException{
+	private static byte[] dealBodyContent(String contentEncoding, byte[] contentBytes) throws IOException{
 		byte[] bytesValue;
 		if(contentBytes.length == 0 ){
 			return contentBytes;
 		}
 
 		//是否支持 GZip
-		boolean isGZip = headerMap.get(HttpStatic.CONTENT_ENCODING_STRING)==null ? false : headerMap.get(HttpStatic.CONTENT_ENCODING_STRING).toString().contains(HttpStatic.GZIP_STRING);
+		boolean isGZip = contentEncoding==null ? false : contentEncoding.contains(HttpStatic.GZIP_STRING);
 
 		//如果是 GZip 则解压缩
 		if(isGZip && contentBytes.length>0){
@@ -426,6 +441,12 @@ public class HttpParser {
 	 * @return true: Header解析未完成, false: Header解析完成
 	 */
 	public static boolean parseHeaderLine(Map<String, Object> headerMap, ByteBuffer byteBuffer, Runnable contiuneRead, int timeout) {
+		//缓冲区中有完整的行时直接查找分隔符
+		int lineEnd = ByteBufferSearch.indexOfCRLF(byteBuffer, byteBuffer.position(), byteBuffer.limit());
+		if(lineEnd >= 0) {
+			return parseHeaderLine(headerMap, byteBuffer, lineEnd);
+		}
+
 		byte[] bytes = THREAD_BYTE_ARRAY.get();
 		int position = 0;
 		boolean isCache = WebContext.isCache();
@@ -487,13 +508,62 @@ public class HttpParser {
 
 		}
 
+		putHeader(headerMap, headerName, headerValue);
+		return false;
+	}
+
+	/**
+	 * 解析缓冲区中一个完整的 Header 行
+	 * @param headerMap 解析后数据的容器
+	 * @param byteBuffer ByteBuffer对象
+	 * @param lineEnd 行尾 CRLF 的位置
+	 * @return true: Header解析未完成, false: Header解析完成
+	 */
+	private static boolean parseHeaderLine(Map<String, Object> headerMap, ByteBuffer byteBuffer, int lineEnd) {
+		int lineStart = byteBuffer.position();
+		byteBuffer.position(lineEnd + 2);
+
+		//http 头结束了
+		if(lineStart == lineEnd) {
+			return true;
+		}
+
+		int splitIndex = ByteBufferSearch.indexOf(byteBuffer, lineStart, lineEnd, HEADER_SPLITER_BYTES);
+		//和逐字节解析保持一致, 没有分隔符的行作为头的结束
+		if(splitIndex < 0) {
+			return true;
+		}
+
+		String headerName = readHeaderString(byteBuffer, lineStart, splitIndex - lineStart);
+		String headerValue = readHeaderString(byteBuffer, splitIndex + HEADER_SPLITER_BYTES.length, lineEnd - splitIndex - HEADER_SPLITER_BYTES.length);
+		putHeader(headerMap, headerName, headerValue);
+		return false;
+	}
+
+	private static String readHeaderString(ByteBuffer byteBuffer, int start, int length) {
+		byte[] bytes = THREAD_BYTE_ARRAY.get();
+		if(length > bytes.length) {
+			bytes = new byte[length];
+		}
+
+		int position = byteBuffer.position();
+		byteBuffer.position(start);
+		byteBuffer.get(bytes, 0, length);
+		byteBuffer.position(position);
+
+		if(WebContext.isCache()) {
+			return HttpItem.getHttpItem(bytes, 0, length).getValue();
+		} else {
+			return new String(bytes, 0, length);
+		}
+	}
+
+	private static void putHeader(Map<String, Object> headerMap, String headerName, String headerValue) {
 		if(headerName!=null && headerValue!=null) {
-			String finalHeaderValue = headerValue;
 			headerMap.compute(headerName, (key, oldValue) -> {
-				return oldValue == null ? finalHeaderValue : oldValue.toString() + "\r\n" + finalHeaderValue;
+				return oldValue == null ? headerValue : oldValue.toString() + "\r\n" + headerValue;
 			});
 		}
-		return false;
 	}
 
 	/**
@@ -514,6 +584,65 @@ public class HttpParser {
 		return headerMap;
 	}
 
+	/**
+	 * 延迟解析 HTTP 请求 Header
+	 * 		将整个 Header 复制到 header 对象复用的字节数组中, 只记录每个 header 名称和值的偏移
+	 * @param header 用于保存延迟解析数据的 Header 对象
+	 * @param byteBuffer ByteBuffer对象
+	 * @return true: 解析完成, false: 缓冲区中没有完整的 Header 或 Header 格式异常, 需要使用逐行解析
+	 */
+	public static boolean parseHeader(Header header, ByteBuffer byteBuffer) {
+		int start = byteBuffer.position();
+		int limit = byteBuffer.limit();
+
+		//没有 header
+		if(limit - start >= 2 && byteBuffer.get(start) == Global.BYTE_CR && byteBuffer.get(start + 1) == Global.BYTE_LF) {
+			header.clear();
+			byteBuffer.position(start + 2);
+			return true;
+		}
+
+		int headerEnd = ByteBufferSearch.indexOfDoubleCRLF(byteBuffer, start, limit);
+		if(headerEnd < 0) {
+			return false;
+		}
+
+		//包含最后一行的 CRLF
+		int length = headerEnd - start + 2;
+		byte[] bytes = header.prepareRaw(length);
+		byteBuffer.get(bytes, 0, length);
+
+		int lineStart = 0;
+		while(lineStart < length) {
+			int lineEnd = lineStart;
+			while(bytes[lineEnd] != Global.BYTE_CR || bytes[lineEnd + 1] != Global.BYTE_LF) {
+				lineEnd++;
+			}
+
+			int splitIndex = -1;
+			for(int i = lineStart; i < lineEnd - 1; i++) {
+				if(bytes[i] == HEADER_SPLITER_BYTES[0] && bytes[i + 1] == HEADER_SPLITER_BYTES[1]) {
+					splitIndex = i;
+					break;
+				}
+			}
+
+			//没有分隔符的行交给逐行解析处理
+			if(splitIndex < 0) {
+				header.clear();
+				byteBuffer.position(start);
+				return false;
+			}
+
+			int valueStart = splitIndex + HEADER_SPLITER_BYTES.length;
+			header.addRaw(lineStart, splitIndex - lineStart, valueStart, lineEnd - valueStart);
+			lineStart = lineEnd + 2;
+		}
+
+		byteBuffer.position(headerEnd + 4);
+		return true;
+	}
+
 	/**
 	 * 获取可用缓存
 	 * @param byteBuffer bytebuffer 缓冲数据
@@ -609,6 +738,26 @@ public class HttpParser {
 	public static Object[] parser(IoSession session, Object[] packetMap, int type,
 								  ByteBufferChannel byteBufferChannel, int timeout,
 								  long requestMaxSize) throws IOException {
+		return parser(session, packetMap, type, byteBufferChannel, timeout, requestMaxSize, null, null);
+	}
+
+	/**
+	 * 解析 HTTP 报文
+	 * 		lazyHeader 不为空且缓冲区中有完整的 Header 时, Header 延迟解析到 lazyHeader 中, packetMap 的 HEADER 为 lazyHeader
+	 * @param session socket 会话对象
+	 * @param packetMap 用于填充的解析 map
+	 * @param type 解析的报文类型, 0: Request, 1: Response
+	 * @param byteBufferChannel 输入流
+	 * @param timeout 读取超时时间参数
+	 * @param requestMaxSize 上传文件的最大尺寸, 单位: byte
+	 * @param lazyHeader 用于延迟解析的 Header 对象, 为 null 时不使用延迟解析
+	 * @param bodyParts 已经由 HttpMultipartState 增量解析的 multipart 报文体, 为 null 时从输入流中解析
+	 * @return 解析后的 Map
+	 * @throws IOException IO 异常
+	 */
+	private static Object[] parser(IoSession session, Object[] packetMap, int type,
+								  ByteBufferChannel byteBufferChannel, int timeout,
+								  long requestMaxSize, Header lazyHeader, List<Object[]> bodyParts) throws IOException {
 		int totalLength = 0;
 		long protocolMark = 0;
 		int headerMark = 0;
@@ -616,6 +765,7 @@ public class HttpParser {
 
 		boolean isCache = WebContext.isCache();
 		TreeMap<String, Object> headerMap = null;
+		Header header = null;
 
 		requestMaxSize = requestMaxSize < 0 ? Integer.MAX_VALUE : requestMaxSize;
 
@@ -644,7 +794,10 @@ public class HttpParser {
 
 				//检查缓存是否存在,并获取
 				Object[] cachedPacketMap = findCache(byteBuffer, protocolPosition, protocolMark);
-				if (cachedPacketMap != null) {
+				if (!isCache && lazyHeader != null && parseHeader(lazyHeader, byteBuffer)) {
+					header = lazyHeader;
+					packetMap[HEADER] = header;
+				} else if (cachedPacketMap != null) {
 					packetMap = cachedPacketMap;
 					headerMap = (TreeMap<String, Object>) packetMap[HEADER];
 				} else {
@@ -668,23 +821,30 @@ public class HttpParser {
 				break;
 			}
 
-			String contentType = (String)headerMap.get(HttpStatic.CONTENT_TYPE_STRING);
+			String contentType = getHeader(headerMap, header, HttpStatic.CONTENT_TYPE_STRING);
 			if(contentType == null) {
 				//无 body 报文完成解析
 				break;
 			}
 
 			//解析 HTTP 请求 body
-			String transferEncoding = (String)headerMap.get(HttpStatic.TRANSFER_ENCODING_STRING);
-			String contentLength 	= (String)headerMap.get(HttpStatic.CONTENT_LENGTH_STRING);
+			String transferEncoding = getHeader(headerMap, header, HttpStatic.TRANSFER_ENCODING_STRING);
+			String contentLength 	= getHeader(headerMap, header, HttpStatic.CONTENT_LENGTH_STRING);
+			String contentEncoding 	= getHeader(headerMap, header, HttpStatic.CONTENT_ENCODING_STRING);
 
 			//1. 解析 HTTP 的 POST 请求 body part
 			if(contentType!=null && contentType.contains(HttpStatic.MULTIPART_FORM_DATA_STRING)){
+				//报文体已经在读取时写入上传文件, 报文中只剩下请求头
+				if(bodyParts != null) {
+					packetMap[BODY_PARTS] = bodyParts;
+					break;
+				}
+
 				//用来保存 Part 的 list
 				List<Object[]> bodyPartList = new ArrayList<Object[]>();
 
 				//取boundary 用于 part 内容分段
-				String boundary = TString.assembly("--", getPerprotyEqualValue(headerMap, HttpStatic.CONTENT_TYPE_STRING, HttpStatic.BOUNDARY_STRING));
+				String boundary = TString.assembly("--", getPerprotyEqualValue(contentType, HttpStatic.BOUNDARY_STRING));
 
 				ByteBuffer boundaryByteBuffer = ByteBuffer.allocate(2);
 				while(true) {
@@ -895,7 +1055,7 @@ public class HttpParser {
 					byteBufferChannel.shrink(2);
 				}
 
-				byte[] value = dealBodyContent(headerMap, chunkedByteBufferChannel.array());
+				byte[] value = dealBodyContent(contentEncoding, chunkedByteBufferChannel.array());
 				chunkedByteBufferChannel.release();
 				packetMap[BODY_VALUE] = value;
 				byteBufferChannel.shrink(2);
@@ -923,7 +1083,7 @@ public class HttpParser {
 				byteBufferChannel.get(contentBytes);
 				byteBufferChannel.shrink(0, contentSize);
 
-				byte[] value = dealBodyContent(headerMap, contentBytes);
+				byte[] value = dealBodyContent(contentEncoding, contentBytes);
 				packetMap[BODY_VALUE] = value;
 			}
 
@@ -933,6 +1093,22 @@ public class HttpParser {
 		return packetMap;
 	}
 
+	/**
+	 * 从解析的 Header 中读取值
+	 * @param headerMap 逐行解析的 Header
+	 * @param header 延迟解析的 Header, 不为空时优先使用
+	 * @param name header 的 name
+	 * @return header 的值
+	 */
+	private static String getHeader(Map<String, Object> headerMap, Header header, String name) {
+		if(header != null) {
+			return header.get(name);
+		}
+
+		Object value = headerMap.get(name);
+		return value == null ? null : value.toString();
+	}
+
 	/**
 	 * 解析报文成 HttpRequest 对象
 	 * @param session socket 会话对象
@@ -944,7 +1120,21 @@ public class HttpParser {
 	 */
 	@SuppressWarnings("unchecked")
 	public static Request parseRequest(IoSession session, ByteBufferChannel byteBufferChannel, int timeOut, long requestMaxSize) throws IOException {
-		return parseRequest(THREAD_REQUEST.get(), session, byteBufferChannel, timeOut, requestMaxSize);
+		return parseRequest(THREAD_REQUEST.get(), session, byteBufferChannel, timeOut, requestMaxSize, null);
+	}
+
+	/**
+	 * 解析报文成 HttpRequest 对象
+	 * @param session socket 会话对象
+	 * @param byteBufferChannel  输入字节流
+	 * @param timeOut 读取超时时间参数
+	 * @param requestMaxSize 上传文件的最大尺寸, 单位: byte
+	 * @param bodyParts 已经由 HttpMultipartState 增量解析的 multipart 报文体, 为 null 时从输入流中解析
+	 * @return   返回请求报文
+	 * @throws IOException IO 异常
+	 */
+	public static Request parseRequest(IoSession session, ByteBufferChannel byteBufferChannel, int timeOut, long requestMaxSize, List<Object[]> bodyParts) throws IOException {
+		return parseRequest(THREAD_REQUEST.get(), session, byteBufferChannel, timeOut, requestMaxSize, bodyParts);
 	}
 
 	/**
@@ -957,19 +1147,44 @@ public class HttpParser {
 	 * @return   返回请求报文
 	 * @throws IOException IO 异常
 	 */
-	@SuppressWarnings("unchecked")
 	public static Request parseRequest(Request request, IoSession session, ByteBufferChannel byteBufferChannel, int timeOut, long requestMaxSize) throws IOException {
+		return parseRequest(request, session, byteBufferChannel, timeOut, requestMaxSize, null);
+	}
+
+	/**
+	 * 解析报文成 HttpRequest 对象
+	 * @param request 请求对象
+	 * @param session socket 会话对象
+	 * @param byteBufferChannel  输入字节流
+	 * @param timeOut 读取超时时间参数
+	 * @param requestMaxSize 上传文件的最大尺寸, 单位: byte
+	 * @param bodyParts 已经由 HttpMultipartState 增量解析的 multipart 报文体, 为 null 时从输入流中解析
+	 * @return   返回请求报文
+	 * @throws IOException IO 异常
+	 */
+	@SuppressWarnings("unchecked")
+	public static Request parseRequest(Request request, IoSession session, ByteBufferChannel byteBufferChannel, int timeOut, long requestMaxSize, List<Object[]> bodyParts) throws IOException {
 		boolean isCache = WebContext.isCache();
 
 		Object[] packetMap = THREAD_PACKET_MAP.get();
-		packetMap = parser(session, packetMap, PARSER_TYPE_REQUEST, byteBufferChannel, timeOut, requestMaxSize);
+
+		//延迟解析的 Header 直接写入请求对象, 所以需要在解析前清理
+		Header lazyHeader = null;
+		if(LAZY_HEADER && !isCache) {
+			request.clear();
+			lazyHeader = request.header();
+		}
+
+		packetMap = parser(session, packetMap, PARSER_TYPE_REQUEST, byteBufferChannel, timeOut, requestMaxSize, lazyHeader, bodyParts);
 
 		//如果解析的Map为空,则直接返回空
 		if(byteBufferChannel.isReleased()){
 			return null;
 		}
 
-		request.clear();
+		if(lazyHeader == null || packetMap[HEADER] != lazyHeader) {
+			request.clear();
+		}
 
 		//是否使用的时缓存的数据
 		boolean bodyFlag = false;
@@ -1048,7 +1263,9 @@ public class HttpParser {
 					parsedPartArray.clear();
 					break;
 				case HEADER:
-					request.header().setHeaders((Map<String, String>) value);
+					if(value != request.header()) {
+						request.header().setHeaders((Map<String, String>) value);
+					}
 					break;
 			}
 		}
@@ -0,0 +1,391 @@
+package org.voovan.http.message;
+
+import org.voovan.Global;
+import org.voovan.tools.TEnv;
+import org.voovan.tools.buffer.ByteBufferSearch;
+import org.voovan.tools.exception.LargerThanMaxSizeException;
+import org.voovan.tools.log.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Http 请求报文的增量解析状态
+ *      逐段扫描请求行, 请求头, Content-Length 或者 chunked 报文体, 记录扫描的位置和状态
+ *      数据不完整时立即返回, 下次读取到数据时从上次的位置继续扫描, 不会在 IO 线程中等待数据
+ *      报文完整后再交给 HttpParser 解析, 这时 HttpParser 不需要再从 Socket 中读取数据
+ *      较大的 multipart 报文体由 HttpMultipartState 边接收边写入上传文件, 无法确定长度或格式错误的报文直接拒绝
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class HttpParserState {
+	//multipart 报文体大于这个尺寸时, 不在读缓冲区中等待完整的报文体, 由 HttpMultipartState 增量写入上传文件
+	public final static int MULTIPART_BUFFER_SIZE = TEnv.getSystemProperty("HttpMultipartBufferSize", 1024 * 1024);
+
+	public final static int NEED_MORE_DATA = -1;
+	public final static int TOO_LARGE = -2;
+	public final static int BAD_REQUEST = -3;
+	public final static int SERVER_ERROR = -4;
+
+	private final static int PROTOCOL 		= 0;
+	private final static int HEADER 		= 1;
+	private final static int BODY 			= 2;
+	private final static int CHUNK_SIZE 	= 3;
+	private final static int CHUNK_DATA 	= 4;
+	private final static int CHUNK_TRAILER 	= 5;
+	private final static int MULTIPART 		= 6;
+
+	private final static byte[] GET_MARK 				= "GET ".getBytes();
+	private final static byte[] CONTENT_LENGTH_MARK 	= HttpStatic.CONTENT_LENGTH_STRING.toLowerCase().getBytes();
+	private final static byte[] CONTENT_TYPE_MARK 		= HttpStatic.CONTENT_TYPE_STRING.toLowerCase().getBytes();
+	private final static byte[] TRANSFER_ENCODING_MARK 	= HttpStatic.TRANSFER_ENCODING_STRING.toLowerCase().getBytes();
+
+	private int state;
+	private int offset;
+	private int lineStart;
+	private long remaining;
+
+	private boolean isGet;
+	private boolean hasContentType;
+	private boolean isMultipart;
+	private boolean isChunked;
+	private long contentLength;
+	private String boundary;
+
+	private HttpMultipartState multipartState;
+	private List<Object[]> bodyParts;
+
+	public HttpParserState() {
+		reset();
+	}
+
+	/**
+	 * 重置解析状态
+	 */
+	public void reset() {
+		state = PROTOCOL;
+		offset = 0;
+		lineStart = 0;
+		remaining = 0;
+		isGet = false;
+		hasContentType = false;
+		isMultipart = false;
+		isChunked = false;
+		contentLength = -1;
+		boundary = null;
+
+		if (multipartState != null) {
+			multipartState.release();
+			multipartState = null;
+		}
+	}
+
+	/**
+	 * 获取已经扫描的数据长度
+	 * @return 已经扫描的数据长度
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * 获取并清除增量解析完成的 multipart 报文体
+	 *      报文完整后由 HttpParser 使用, 这时读缓冲区中只有请求头
+	 * @return part 的 list, null: 最后一个报文不是增量解析的 multipart 报文
+	 */
+	public List<Object[]> takeBodyParts() {
+		List<Object[]> result = bodyParts;
+		bodyParts = null;
+		return result;
+	}
+
+	/**
+	 * 从上次扫描的位置继续扫描报文
+	 *      两次调用之间缓冲区头部的数据不能被消费, 报文完整后状态会被重置
+	 * @param byteBuffer 缓冲区, 报文从 position 开始
+	 * @param requestMaxSize 请求的最大尺寸, 单位: byte, 小于 0 则不限制
+	 * @return 大于等于 0: 可以交给 HttpParser 解析的报文长度, NEED_MORE_DATA: 报文不完整, TOO_LARGE: 请求过大,
+	 * 			BAD_REQUEST: 报文格式错误, SERVER_ERROR: 写入上传文件失败
+	 */
+	public int parse(ByteBuffer byteBuffer, long requestMaxSize) {
+		requestMaxSize = requestMaxSize < 0 ? Integer.MAX_VALUE : requestMaxSize;
+
+		int base = byteBuffer.position();
+		int length = byteBuffer.limit() - base;
+
+		while (true) {
+			switch (state) {
+				case PROTOCOL:
+				case HEADER:
+				case CHUNK_SIZE:
+				case CHUNK_TRAILER: {
+					int lineEnd = ByteBufferSearch.indexOf(byteBuffer, base + offset, base + length, Global.BYTE_LF);
+					if (lineEnd < 0) {
+						offset = length;
+						//请求行或请求头过大
+						return state != CHUNK_SIZE && length > requestMaxSize ? TOO_LARGE : NEED_MORE_DATA;
+					}
+
+					lineEnd = lineEnd - base;
+					offset = lineEnd + 1;
+
+					int lineLength = lineEnd - lineStart;
+					if (lineLength > 0 && byteBuffer.get(base + lineEnd - 1) == Global.BYTE_CR) {
+						lineLength--;
+					}
+
+					int result = processLine(byteBuffer, base + lineStart, lineLength, requestMaxSize);
+					lineStart = offset;
+					if (result >= 0) {
+						return done(result);
+					} else if (result != -1) {
+						return result;
+					}
+					break;
+				}
+				case BODY:
+				case CHUNK_DATA: {
+					int available = length - offset;
+					if (available < remaining) {
+						offset = length;
+						remaining = remaining - available;
+						return NEED_MORE_DATA;
+					}
+
+					offset = offset + (int) remaining;
+					remaining = 0;
+
+					if (state == BODY) {
+						return done(offset);
+					}
+
+					lineStart = offset;
+					state = CHUNK_SIZE;
+					break;
+				}
+				case MULTIPART: {
+					int available = (int) Math.min(length - offset, remaining);
+					int processed;
+					try {
+						processed = multipartState.process(byteBuffer, base + offset, base + offset + available);
+					} catch (LargerThanMaxSizeException e) {
+						return TOO_LARGE;
+					} catch (IOException e) {
+						Logger.error("HttpParserState write upload file failed", e);
+						return SERVER_ERROR;
+					}
+
+					if (processed < 0) {
+						return BAD_REQUEST;
+					}
+
+					//已经处理的报文体从缓冲区中移除: 请求头向后移动, 缓冲区从新的位置开始
+					if (processed > 0) {
+						for (int i = offset - 1; i >= 0; i--) {
+							byteBuffer.put(base + processed + i, byteBuffer.get(base + i));
+						}
+						base = base + processed;
+						length = length - processed;
+						byteBuffer.position(base);
+					}
+
+					boolean isBodyComplete = available == remaining;
+					remaining = remaining - processed;
+
+					if (multipartState.isFinished() && remaining == 0) {
+						bodyParts = multipartState.getBodyParts();
+						multipartState = null;
+						return done(offset);
+					}
+
+					//报文体已经完整, 但是没有找到结束的 boundary
+					return isBodyComplete ? BAD_REQUEST : NEED_MORE_DATA;
+				}
+				default:
+					return done(offset);
+			}
+		}
+	}
+
+	/**
+	 * 处理一个完整的行
+	 * @param byteBuffer 缓冲区
+	 * @param start 行的起始位置
+	 * @param lineLength 行的长度, 不包含换行符
+	 * @param requestMaxSize 请求的最大尺寸
+	 * @return 大于等于 0: 报文完整时的报文长度, -1: 继续扫描, TOO_LARGE 或 BAD_REQUEST: 拒绝请求
+	 */
+	private int processLine(ByteBuffer byteBuffer, int start, int lineLength, long requestMaxSize) {
+		switch (state) {
+			case PROTOCOL:
+				//兼容部分 Web 中间件, 在请求前增加换行的问题
+				if (lineLength > 0) {
+					isGet = startWith(byteBuffer, start, lineLength, GET_MARK);
+					state = HEADER;
+				}
+				return -1;
+			case HEADER:
+				if (lineLength > 0) {
+					processHeaderLine(byteBuffer, start, lineLength);
+					return -1;
+				} else {
+					return processHeaderEnd(requestMaxSize);
+				}
+			case CHUNK_SIZE: {
+				String chunkedLengthLine = readString(byteBuffer, start, lineLength).trim();
+				if (chunkedLengthLine.isEmpty()) {
+					return -1;
+				}
+
+				long chunkedLength;
+				try {
+					chunkedLength = Long.parseLong(chunkedLengthLine, 16);
+				} catch (NumberFormatException e) {
+					return BAD_REQUEST;
+				}
+
+				if (chunkedLength < 0) {
+					return BAD_REQUEST;
+				} else if (chunkedLength == 0) {
+					state = CHUNK_TRAILER;
+				} else if (offset + chunkedLength > requestMaxSize) {
+					return TOO_LARGE;
+				} else {
+					//包含块尾部的换行
+					remaining = chunkedLength + 2;
+					state = CHUNK_DATA;
+				}
+				return -1;
+			}
+			case CHUNK_TRAILER:
+				return lineLength == 0 ? offset : -1;
+			default:
+				return offset;
+		}
+	}
+
+	/**
+	 * 请求头结束, 根据请求头确定报文体的读取方式, 和 HttpParser 中的判断保持一致
+	 * @param requestMaxSize 请求的最大尺寸
+	 * @return 大于等于 0: 报文完整时的报文长度, -1: 继续扫描报文体, TOO_LARGE 或 BAD_REQUEST: 拒绝请求
+	 */
+	private int processHeaderEnd(long requestMaxSize) {
+		//无 body 报文
+		if (isGet || !hasContentType) {
+			return offset;
+		}
+
+		if (isMultipart) {
+			//HttpParser 按 boundary 读取 multipart 报文, 不支持 chunked, 所以必须有 Content-Length
+			if (isChunked || contentLength < 0 || boundary == null) {
+				return BAD_REQUEST;
+			}
+
+			if (offset + contentLength > requestMaxSize) {
+				return TOO_LARGE;
+			}
+
+			if (contentLength > MULTIPART_BUFFER_SIZE) {
+				multipartState = new HttpMultipartState(boundary);
+				remaining = contentLength;
+				state = MULTIPART;
+				return -1;
+			}
+		} else if (isChunked) {
+			state = CHUNK_SIZE;
+			return -1;
+		} else if (contentLength < 0) {
+			//无 Content-Length 的报文没有 body
+			return offset;
+		} else if (offset + contentLength > requestMaxSize) {
+			return TOO_LARGE;
+		}
+
+		remaining = contentLength;
+		state = BODY;
+		return -1;
+	}
+
+	/**
+	 * 处理一个请求头, 只记录确定报文体长度所需要的请求头
+	 * @param byteBuffer 缓冲区
+	 * @param start 行的起始位置
+	 * @param lineLength 行的长度
+	 */
+	private void processHeaderLine(ByteBuffer byteBuffer, int start, int lineLength) {
+		int colonIndex = ByteBufferSearch.indexOf(byteBuffer, start, start + lineLength, Global.BYTE_COLON);
+		if (colonIndex <= start) {
+			return;
+		}
+		colonIndex = colonIndex - start;
+
+		int valueStart = colonIndex + 1;
+		while (valueStart < lineLength && byteBuffer.get(start + valueStart) == Global.BYTE_SPACE) {
+			valueStart++;
+		}
+
+		if (equalsIgnoreCase(byteBuffer, start, colonIndex, CONTENT_LENGTH_MARK)) {
+			try {
+				contentLength = Long.parseLong(readString(byteBuffer, start + valueStart, lineLength - valueStart).trim());
+			} catch (NumberFormatException e) {
+				contentLength = -1;
+			}
+		} else if (equalsIgnoreCase(byteBuffer, start, colonIndex, CONTENT_TYPE_MARK)) {
+			hasContentType = true;
+			String contentType = readString(byteBuffer, start + valueStart, lineLength - valueStart);
+			isMultipart = contentType.contains(HttpStatic.MULTIPART_FORM_DATA_STRING);
+			boundary = isMultipart ? HttpParser.getPerprotyEqualValue(contentType, HttpStatic.BOUNDARY_STRING) : null;
+		} else if (equalsIgnoreCase(byteBuffer, start, colonIndex, TRANSFER_ENCODING_MARK)) {
+			isChunked = HttpStatic.CHUNKED_STRING.equals(readString(byteBuffer, start + valueStart, lineLength - valueStart));
+		}
+	}
+
+	private int done(int messageLength) {
+		reset();
+		return messageLength;
+	}
+
+	private static boolean startWith(ByteBuffer byteBuffer, int start, int length, byte[] mark) {
+		if (length < mark.length) {
+			return false;
+		}
+
+		for (int i = 0; i < mark.length; i++) {
+			if (byteBuffer.get(start + i) != mark[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean equalsIgnoreCase(ByteBuffer byteBuffer, int start, int length, byte[] lowerCaseMark) {
+		if (length != lowerCaseMark.length) {
+			return false;
+		}
+
+		for (int i = 0; i < length; i++) {
+			byte value = byteBuffer.get(start + i);
+			if (value >= 'A' && value <= 'Z') {
+				value = (byte) (value + 32);
+			}
+
+			if (value != lowerCaseMark[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String readString(ByteBuffer byteBuffer, int start, int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = byteBuffer.get(start + i);
+		}
+		return new String(bytes);
+	}
+}
@@ -7,9 +7,10 @@ import org.voovan.http.message.packet.Cookie;
 import org.voovan.http.message.packet.Header;
 import org.voovan.http.message.packet.ResponseProtocol;
 import org.voovan.http.server.context.WebContext;
+import org.voovan.network.FileRegion;
 import org.voovan.network.IoSession;
 import org.voovan.tools.FastThreadLocal;
-import org.voovan.tools.TByte;
+import org.voovan.tools.TEnv;
 import org.voovan.tools.buffer.ByteBufferChannel;
 import org.voovan.tools.TString;
 import org.voovan.tools.exception.MemoryReleasedException;
@@ -17,9 +18,11 @@ import org.voovan.tools.json.JSONPath;
 import org.voovan.tools.log.Logger;
 
 import java.io.IOException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map.Entry;
 
 /**
  * HTTP 响应对象
@@ -33,6 +36,9 @@ import java.util.List;
 public class Response {
 	private static FastThreadLocal<StringBuilder> THREAD_STRING_BUILDER = FastThreadLocal.withInitial(()->new StringBuilder(512));
 
+	//超过这个大小的非压缩 body 使用聚合写或者文件直传发送, 不再复制到发送缓冲区
+	public final static int GATHERING_BODY_SIZE = TEnv.getSystemProperty("GatheringBodySize", 8 * 1024);
+
 	private ResponseProtocol 	protocol;
 	private Header				header;
 	private List<Cookie>		cookies;
@@ -43,6 +49,7 @@ public class Response {
 	private volatile boolean 	async = false;
 	private volatile boolean    cookieParsed = false;
 	private volatile Long       mark;
+	private volatile ResponseHead head;
 
 	/**
 	 * 构造函数
@@ -63,6 +70,7 @@ public class Response {
 		this.async = false;
 		this.mark = response.mark;
 		this.hasBody = response.hasBody;
+		this.head = response.head;
 	}
 
 	/**
@@ -206,6 +214,27 @@ public class Response {
 		}
 	}
 
+	/**
+	 * 获取预先编码的固定响应头
+	 * @return 固定响应头, 未设置时为 null
+	 */
+	public ResponseHead getHead() {
+		return head;
+	}
+
+	/**
+	 * 设置预先编码的固定响应头
+	 * 		发送时使用固定响应头中的状态行和 header, 响应的 header 中的内容追加在后面
+	 * @param head 固定响应头
+	 */
+	public void setHead(ResponseHead head) {
+		this.head = head;
+		if(head != null) {
+			protocol.setStatus(head.getStatus());
+			protocol.setStatusCode(head.getStatusCode());
+		}
+	}
+
 	public boolean isHasBody() {
 		return hasBody;
 	}
@@ -228,6 +257,9 @@ public class Response {
 		}
 
 		if (!header.contain(HttpStatic.CONTENT_TYPE_STRING)) {
+			if(head != null && head.hasContentType()) {
+				return;
+			}
 			header.put(HttpStatic.CONTENT_TYPE_STRING, HttpStatic.TEXT_HTML_STRING  + WebContext.getWebServerConfig().getResponseCharacterSet());
 		} else {
 			header.put(HttpStatic.CONTENT_TYPE_STRING, header.get(HttpStatic.CONTENT_TYPE_STRING) + WebContext.getWebServerConfig().getResponseCharacterSet());
@@ -261,7 +293,7 @@ public class Response {
 
 		initHeader();
 
-		stringBuilder.append(protocol.toString());
+		stringBuilder.append(head == null ? protocol.toString() : head.toString());
 
 		stringBuilder.append(header.toString());
 
@@ -271,12 +303,62 @@ public class Response {
 	}
 
 
-	private byte[] readEnd(){
-		if (isCompress) {
-			return TString.toAsciiBytes("0" + HttpStatic.BODY_MARK_STRING);
+	/**
+	 * 将响应报头直接编码到发送缓冲区
+	 * 		内容和 readHead 一致, 但不修改 header, 也不拼接字符串
+	 *
+	 * @param byteBuffer 发送缓冲区
+	 */
+	private void writeHead(ByteBuffer byteBuffer) {
+		String characterSet = WebContext.getWebServerConfig().getResponseCharacterSet();
+		boolean isChunked = body.size()!=0 && isCompress;
+		boolean hasContentType = false;
+
+		if(head != null) {
+			byteBuffer.put(head.getBytes());
+			hasContentType = head.hasContentType();
+		} else {
+			ResponseHeadEncoder.writeStatusLine(byteBuffer, protocol);
+		}
+
+		for(Entry<String, String> headerItemEntry : header.getHeaders().entrySet()) {
+			String name = headerItemEntry.getKey();
+			String value = headerItemEntry.getValue();
+
+			//Content-Length 和 chunked 相关的 header 按 body 重新生成
+			if(name.isEmpty() || HttpStatic.CONTENT_LENGTH_STRING.equalsIgnoreCase(name)) {
+				continue;
+			}
+
+			if(isChunked && (HttpStatic.TRANSFER_ENCODING_STRING.equalsIgnoreCase(name) || HttpStatic.CONTENT_ENCODING_STRING.equalsIgnoreCase(name))) {
+				continue;
+			}
+
+			if(HttpStatic.CONTENT_TYPE_STRING.equalsIgnoreCase(name)) {
+				ResponseHeadEncoder.writeContentType(byteBuffer, value, characterSet);
+				hasContentType = true;
+				continue;
+			}
+
+			ResponseHeadEncoder.writeHeader(byteBuffer, name, value);
+		}
+
+		if(isChunked) {
+			ResponseHeadEncoder.writeHeader(byteBuffer, HttpStatic.TRANSFER_ENCODING_STRING, HttpStatic.CHUNKED_STRING);
+			ResponseHeadEncoder.writeHeader(byteBuffer, HttpStatic.CONTENT_ENCODING_STRING, HttpStatic.GZIP_STRING);
 		} else {
-			return TByte.EMPTY_BYTES;
+			ResponseHeadEncoder.writeContentLength(byteBuffer, body.size());
 		}
+
+		if(!hasContentType) {
+			ResponseHeadEncoder.writeContentType(byteBuffer, HttpStatic.TEXT_HTML_STRING, characterSet);
+		}
+
+		for (Cookie cookie : cookies) {
+			ResponseHeadEncoder.writeSetCookie(byteBuffer, cookie.toString());
+		}
+
+		byteBuffer.put(WebContext.RESPONSE_COMMON_HEADER);
 	}
 
 	/**
@@ -285,6 +367,16 @@ public class Response {
 	 * @throws IOException IO异常
 	 */
 	public void send(IoSession session) throws IOException {
+		send(session, true);
+	}
+
+	/**
+	 * 发送数据
+	 * @param session socket 会话对象
+	 * @param isZeroCopy 是否允许使用聚合写或者文件直传发送 body, 需要从发送缓冲区获取完整报文时应当为 false
+	 * @throws IOException IO异常
+	 */
+	public void send(IoSession session, boolean isZeroCopy) throws IOException {
 		ByteBufferChannel byteBufferChannel = session.getSendByteBufferChannel();
 
 		try {
@@ -310,17 +402,56 @@ public class Response {
 			byteBuffer.limit(byteBuffer.capacity());
 
 			try {
-				byteBuffer.put(readHead());
-				byteBuffer.put(WebContext.RESPONSE_COMMON_HEADER);
+				int headPosition = byteBuffer.position();
+				while(true) {
+					try {
+						writeHead(byteBuffer);
+						break;
+					} catch (BufferOverflowException e) {
+						//发送缓冲区不足时扩容后重新写入报文头
+						byteBufferChannel.reallocate(byteBufferChannel.capacity() * 2);
+						byteBuffer.limit(byteBuffer.capacity());
+						byteBuffer.position(headPosition);
+					}
+				}
 			} catch (Throwable e) {
 				if (!(e instanceof MemoryReleasedException)) {
 					Logger.error("Response writeToChannel error: ", (Exception) e);
 				}
 			}
 
-			//是否需要压缩
-			if (isCompress) {
-				body.compress();
+			//压缩时边压缩边按 chunked 写入发送缓冲区, 不再先压缩整个 body
+			if (isCompress && body.size() != 0) {
+				try {
+					ChunkedGzipEncoder.encode(session, byteBufferChannel, byteBuffer, body);
+				} catch (Throwable e) {
+					if (!(e instanceof MemoryReleasedException)) {
+						Logger.error("Response writeToChannel error: ", (Exception) e);
+					}
+					return;
+				}
+
+				this.isSend = true;
+				return;
+			}
+
+			//非压缩的大 body 直接聚合写或者文件直传, 避免复制到发送缓冲区
+			if (isZeroCopy && !isCompress && body.size() >= GATHERING_BODY_SIZE && session.isGatheringSupported()) {
+				byteBuffer.flip();
+				byteBufferChannel.compact();
+
+				//body 在 clear() 中会被清理, 所以需要立即发送
+				if(body.getType() == Body.BodyType.BYTES) {
+					session.sendGathering(body.getByteBufferView());
+					session.flush();
+				} else {
+					try (FileRegion fileRegion = body.getFileRegion()) {
+						session.send(fileRegion);
+					}
+				}
+
+				this.isSend = true;
+				return;
 			}
 
 			//发送报文主体
@@ -329,17 +460,20 @@ public class Response {
 				int totalBodySize = (int) body.size();
 
 				while ( totalBodySize > 0) {
-					//预留写入 chunked 结束符的位置
-					byteBuffer.limit(byteBuffer.capacity() - 50); //预留协议字节和 chunk长度行, 换行符确认4个,长度描述符1-6个
-					avaliableSize = byteBuffer.remaining() > totalBodySize ? totalBodySize : byteBuffer.remaining();
+					byteBuffer.limit(byteBuffer.capacity());
 
-					//判断是否需要发送 chunked 段长度
-					if (isCompress() && avaliableSize != 0) {
-						byteBuffer.limit(byteBuffer.limit() + 10);
-						String chunkedLengthLine = Integer.toHexString(avaliableSize) + HttpStatic.LINE_MARK_STRING;
-						byteBuffer.put(TString.toAsciiBytes(chunkedLengthLine));
+					//发送缓冲区的剩余空间不足时先发送
+					if(byteBuffer.remaining() <= 50) {
+						byteBuffer.flip();
+						byteBufferChannel.compact();
+						session.flush();
+
+						byteBuffer.position(byteBuffer.limit());
+						byteBuffer.limit(byteBuffer.capacity());
 					}
 
+					avaliableSize = byteBuffer.remaining() > totalBodySize ? totalBodySize : byteBuffer.remaining();
+
 					//重置 Bytebuffer 可用字节数
 					byteBuffer.limit(byteBuffer.position() + avaliableSize);
 					int bodyReadSize = body.read(byteBuffer);
@@ -352,23 +486,9 @@ public class Response {
 
 					//重置写入位置
 					byteBuffer.position(byteBuffer.limit());
-					byteBuffer.limit(byteBuffer.capacity());
-
-					//判断是否需要发送 chunked 结束符号
-					if (isCompress() && avaliableSize != 0 &&  byteBuffer.remaining() > 0) {
-						byteBuffer.put(HttpStatic.LINE_MARK.getBytes());
-					}
-
-					if(byteBuffer.remaining() <= 50) {
-						byteBuffer.flip();
-						byteBufferChannel.compact();
-						session.flush();
-					}
 				}
 
-				//发送报文结束符
 				byteBuffer.limit(byteBuffer.capacity());
-				byteBuffer.put(readEnd());
 				byteBuffer.flip();
 			} catch (Throwable e) {
 				if (!(e instanceof MemoryReleasedException)) {
@@ -417,6 +537,7 @@ public class Response {
 		this.setCompress(otherResponse.isCompress);
 		this.setMark(otherResponse.getMark());
 		this.setHasBody(otherResponse.hasBody);
+		this.head = otherResponse.head;
 
 		if(useForSend) {
 			//判断是否启用压缩
@@ -448,6 +569,7 @@ public class Response {
 		this.async = false;
 		this.cookieParsed = false;
 		this.mark = null;
+		this.head = null;
 	}
 
 	@Override
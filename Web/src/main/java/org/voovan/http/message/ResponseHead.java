@@ -0,0 +1,99 @@
+package org.voovan.http.message;
+
+import org.voovan.tools.TString;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 预先编码的固定响应头
+ *      包含状态行和固定的 header, 发送时直接写入发送缓冲区, 每次响应只需要写入 Content-Length
+ *      适合状态和 header 都固定的路由, 例如: 返回 JSON 的 200 响应
+ *      Content-Type 按原样写入, 不再附加字符集
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class ResponseHead {
+	private int status;
+	private String statusCode;
+	private Map<String, String> headers;
+	private boolean hasContentType;
+	private String head;
+	private byte[] bytes;
+
+	/**
+	 * 构造函数
+	 * @param status 状态代码
+	 * @param statusCode 状态说明
+	 * @param headers 固定的 header, 不能包含 Content-Length 和 Transfer-Encoding
+	 */
+	public ResponseHead(int status, String statusCode, Map<String, String> headers) {
+		this.status = status;
+		this.statusCode = statusCode;
+		this.headers = new LinkedHashMap<String, String>(headers);
+
+		StringBuilder stringBuilder = new StringBuilder();
+		stringBuilder.append("HTTP/1.1 ").append(status).append(" ").append(statusCode).append(HttpStatic.LINE_MARK_STRING);
+		for(Map.Entry<String, String> entry : headers.entrySet()) {
+			String name = entry.getKey();
+			if(HttpStatic.CONTENT_LENGTH_STRING.equalsIgnoreCase(name) || HttpStatic.TRANSFER_ENCODING_STRING.equalsIgnoreCase(name)) {
+				throw new IllegalArgumentException("ResponseHead can't contain " + name + ", it is written by each response");
+			}
+
+			if(HttpStatic.CONTENT_TYPE_STRING.equalsIgnoreCase(name)) {
+				hasContentType = true;
+			}
+
+			stringBuilder.append(name).append(HttpStatic.HEADER_SPLITER_STRING).append(entry.getValue()).append(HttpStatic.LINE_MARK_STRING);
+		}
+
+		this.head = stringBuilder.toString();
+		this.bytes = TString.toAsciiBytes(head);
+	}
+
+	/**
+	 * 构造函数
+	 *      状态为 200 OK
+	 * @param headers 固定的 header, 不能包含 Content-Length 和 Transfer-Encoding
+	 */
+	public ResponseHead(Map<String, String> headers) {
+		this(200, "OK", headers);
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public String getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * 获取固定的 header
+	 * @return 固定的 header, 修改不会影响编码后的数据
+	 */
+	public Map<String, String> getHeaders() {
+		return headers;
+	}
+
+	public boolean hasContentType() {
+		return hasContentType;
+	}
+
+	/**
+	 * 获取编码后的状态行和 header
+	 * @return 编码后的字节数组, 不能修改
+	 */
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	@Override
+	public String toString() {
+		return head;
+	}
+}
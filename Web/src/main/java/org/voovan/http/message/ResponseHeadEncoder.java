@@ -0,0 +1,215 @@
+package org.voovan.http.message;
+
+import org.voovan.http.message.packet.ResponseProtocol;
+import org.voovan.tools.TString;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * HTTP 响应头编码器
+ *      直接将状态行和 header 写入发送缓冲区, 不再拼接字符串
+ *      状态行, 常用的 header 名称和值使用预先编码的字节数组, 和 WebContext.RESPONSE_COMMON_HEADER 的方式一致
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class ResponseHeadEncoder {
+	private final static int CACHE_MAX_SIZE = 1024;
+
+	private final static byte[] LINE_MARK 			= TString.toAsciiBytes(HttpStatic.LINE_MARK_STRING);
+	private final static byte[] SET_COOKIE_HEAD 	= TString.toAsciiBytes(HttpStatic.SET_COOKIE_STRING + HttpStatic.HEADER_SPLITER_STRING);
+
+	/**
+	 * 预先编码的状态行
+	 */
+	private static class StatusLine {
+		private final String protocol;
+		private final String version;
+		private final String statusCode;
+		private final byte[] bytes;
+
+		private StatusLine(ResponseProtocol responseProtocol) {
+			this.protocol = responseProtocol.getProtocol();
+			this.version = responseProtocol.getVersion();
+			this.statusCode = responseProtocol.getStatusCode();
+			this.bytes = TString.toAsciiBytes(responseProtocol.toString());
+		}
+	}
+
+	//状态行缓存, 按状态码索引
+	private final static StatusLine[] STATUS_LINES = new StatusLine[1000];
+
+	//header 名称的编码缓存, 包含分隔符 ": "
+	private final static ConcurrentHashMap<String, byte[]> NAME_CACHE = new ConcurrentHashMap<String, byte[]>();
+
+	//常用 header 值的编码缓存, 包含行尾的 CRLF, 只包含预先设置的值
+	private final static ConcurrentHashMap<String, byte[]> VALUE_CACHE = new ConcurrentHashMap<String, byte[]>();
+
+	//Content-Type 附加字符集后的编码缓存, 包含名称和行尾的 CRLF
+	private final static ConcurrentHashMap<String, byte[]> CONTENT_TYPE_CACHE = new ConcurrentHashMap<String, byte[]>();
+	private static volatile String contentTypeCharacterSet = "";
+
+	static {
+		String[] names = new String[]{
+				HttpStatic.CONTENT_TYPE_STRING, HttpStatic.CONTENT_LENGTH_STRING, HttpStatic.CONNECTION_STRING,
+				HttpStatic.TRANSFER_ENCODING_STRING, HttpStatic.CONTENT_ENCODING_STRING, HttpStatic.CACHE_CONTROL_STRING,
+				HttpStatic.LOCATION_STRING, HttpStatic.LAST_MODIFIED_STRING, HttpStatic.ETAG_STRING,
+				HttpStatic.UPGRADE_STRING, HttpStatic.VARY_STRING
+		};
+		for(String name : names) {
+			nameBytes(name);
+		}
+
+		String[] values = new String[]{
+				HttpStatic.KEEP_ALIVE_STRING, HttpStatic.CLOSE_STRING, HttpStatic.CHUNKED_STRING, HttpStatic.GZIP_STRING,
+				HttpStatic.TEXT_HTML_STRING, HttpStatic.APPLICATION_JSON_STRING,
+				HttpStatic.TEXT_PLAIN_STRING, HttpStatic.WEB_SOCKET_STRING
+		};
+		for(String value : values) {
+			VALUE_CACHE.put(value, TString.toAsciiBytes(value + HttpStatic.LINE_MARK_STRING));
+		}
+	}
+
+	/**
+	 * 私有构造函数
+	 * 该类无法被实例化
+	 */
+	private ResponseHeadEncoder(){
+	}
+
+	private static byte[] nameBytes(String name) {
+		byte[] bytes = NAME_CACHE.get(name);
+		if(bytes == null) {
+			bytes = TString.toAsciiBytes(name + HttpStatic.HEADER_SPLITER_STRING);
+			if(NAME_CACHE.size() < CACHE_MAX_SIZE) {
+				NAME_CACHE.put(name, bytes);
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * 按 ASCII 写入字符串, 和 TString.toAsciiBytes 的转换方式一致
+	 * @param byteBuffer 发送缓冲区
+	 * @param value 字符串
+	 */
+	public static void writeAscii(ByteBuffer byteBuffer, String value) {
+		for(int i = 0; i < value.length(); i++) {
+			byteBuffer.put((byte) value.charAt(i));
+		}
+	}
+
+	/**
+	 * 写入十进制整数
+	 * @param byteBuffer 发送缓冲区
+	 * @param value 整数
+	 */
+	public static void writeLong(ByteBuffer byteBuffer, long value) {
+		if(value < 0) {
+			byteBuffer.put((byte) '-');
+			value = -value;
+		}
+
+		long divisor = 1;
+		while(value / divisor >= 10) {
+			divisor = divisor * 10;
+		}
+
+		while(divisor > 0) {
+			byteBuffer.put((byte) ('0' + value / divisor % 10));
+			divisor = divisor / 10;
+		}
+	}
+
+	/**
+	 * 写入状态行
+	 * @param byteBuffer 发送缓冲区
+	 * @param protocol 响应协议对象
+	 */
+	public static void writeStatusLine(ByteBuffer byteBuffer, ResponseProtocol protocol) {
+		int status = protocol.getStatus();
+		if(status < 0 || status >= STATUS_LINES.length) {
+			writeAscii(byteBuffer, protocol.toString());
+			return;
+		}
+
+		StatusLine statusLine = STATUS_LINES[status];
+		if(statusLine == null ||
+				!statusLine.statusCode.equals(protocol.getStatusCode()) ||
+				!statusLine.version.equals(protocol.getVersion()) ||
+				!statusLine.protocol.equals(protocol.getProtocol())) {
+			statusLine = new StatusLine(protocol);
+			STATUS_LINES[status] = statusLine;
+		}
+
+		byteBuffer.put(statusLine.bytes);
+	}
+
+	/**
+	 * 写入一个 header
+	 * @param byteBuffer 发送缓冲区
+	 * @param name header 名称
+	 * @param value header 值
+	 */
+	public static void writeHeader(ByteBuffer byteBuffer, String name, String value) {
+		byteBuffer.put(nameBytes(name));
+
+		byte[] valueBytes = VALUE_CACHE.get(value);
+		if(valueBytes != null) {
+			byteBuffer.put(valueBytes);
+		} else {
+			writeAscii(byteBuffer, value);
+			byteBuffer.put(LINE_MARK);
+		}
+	}
+
+	/**
+	 * 写入 Content-Type, 值的后面附加字符集
+	 * @param byteBuffer 发送缓冲区
+	 * @param contentType Content-Type 的值
+	 * @param characterSet 字符集, 形如: ;charset=UTF-8
+	 */
+	public static void writeContentType(ByteBuffer byteBuffer, String contentType, String characterSet) {
+		if(!characterSet.equals(contentTypeCharacterSet)) {
+			CONTENT_TYPE_CACHE.clear();
+			contentTypeCharacterSet = characterSet;
+		}
+
+		byte[] bytes = CONTENT_TYPE_CACHE.get(contentType);
+		if(bytes == null) {
+			bytes = TString.toAsciiBytes(HttpStatic.CONTENT_TYPE_STRING + HttpStatic.HEADER_SPLITER_STRING +
+					contentType + characterSet + HttpStatic.LINE_MARK_STRING);
+			if(CONTENT_TYPE_CACHE.size() < CACHE_MAX_SIZE) {
+				CONTENT_TYPE_CACHE.put(contentType, bytes);
+			}
+		}
+
+		byteBuffer.put(bytes);
+	}
+
+	/**
+	 * 写入 Content-Length
+	 * @param byteBuffer 发送缓冲区
+	 * @param contentLength 内容长度
+	 */
+	public static void writeContentLength(ByteBuffer byteBuffer, long contentLength) {
+		byteBuffer.put(nameBytes(HttpStatic.CONTENT_LENGTH_STRING));
+		writeLong(byteBuffer, contentLength);
+		byteBuffer.put(LINE_MARK);
+	}
+
+	/**
+	 * 写入 Set-Cookie
+	 * @param byteBuffer 发送缓冲区
+	 * @param cookie Cookie 的字符串形式
+	 */
+	public static void writeSetCookie(ByteBuffer byteBuffer, String cookie) {
+		byteBuffer.put(SET_COOKIE_HEAD);
+		writeAscii(byteBuffer, cookie);
+		byteBuffer.put(LINE_MARK);
+	}
+}
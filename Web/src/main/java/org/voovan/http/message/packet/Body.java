@@ -1,6 +1,7 @@
 package org.voovan.http.message.packet;
 
 import org.voovan.http.message.exception.BodyParseExecption;
+import org.voovan.network.FileRegion;
 import org.voovan.tools.buffer.ByteBufferChannel;
 import org.voovan.tools.TFile;
 import org.voovan.tools.TString;
@@ -31,9 +32,14 @@ public class Body {
 	private ByteBufferChannel byteBufferChannel;
 	private BodyType type;
 	private File bodyFile;
+	private long fileOffset;
+	private long fileLength = -1;
 	private long position;
 	private int mark = 0;
 	private JSONPath jsonPath;
+	//共享的外部缓冲区, 不复制到 byteBufferChannel 中, 在 Body 清理或释放时调用 sharedReleaser
+	private ByteBuffer sharedBuffer;
+	private Runnable sharedReleaser;
 
 	/**
 	 * Body 类型枚举
@@ -100,12 +106,24 @@ public class Body {
 	 * @throws FileNotFoundException 文件未找到异常
 	 */
 	public void changeToFile(File bodyFile) throws FileNotFoundException{
+		changeToFile(bodyFile, 0, -1);
+	}
+
+	/**
+	 * 转换成文件形式, 只使用文件中的一段数据
+	 * @param bodyFile  文件对象
+	 * @param offset 文件中的起始位置
+	 * @param length 数据长度, 小于 0 则到文件结尾
+	 * @throws FileNotFoundException 文件未找到异常
+	 */
+	public void changeToFile(File bodyFile, long offset, long length) throws FileNotFoundException{
 
 		if(!bodyFile.exists()){
 			throw new FileNotFoundException("Upload file " + bodyFile.getPath() + " not exists");
 		}
 
 		this.bodyFile = bodyFile;
+		releaseShared();
 
 		if(byteBufferChannel != null){
 			byteBufferChannel.release();
@@ -113,6 +131,8 @@ public class Body {
 		}
 
 		position = 0;
+		fileOffset = offset;
+		fileLength = length;
 		this.type = BodyType.FILE;
 	}
 
@@ -130,6 +150,8 @@ public class Body {
 	 * 转换成字节形式
 	 */
 	public void changeToBytes() {
+		releaseShared();
+
 		if(byteBufferChannel == null || byteBufferChannel.isReleased()){
 			byteBufferChannel = new ByteBufferChannel();
 		}
@@ -148,12 +170,58 @@ public class Body {
 		type = BodyType.BYTES;
 	}
 
+	/**
+	 * 转换成共享缓冲区形式
+	 * 		不复制缓冲区, 发送时直接使用或者聚合写入通道, 在发送完成前不能修改传入的缓冲区
+	 * 		Body 清理, 释放或者再次写入时调用 releaser 归还缓冲区
+	 * @param byteBuffer 缓冲区, 使用 position 到 limit 之间的数据
+	 * @param mark 内容的标记, 用于响应缓存, 0 表示不缓存
+	 * @param releaser 归还缓冲区的操作, 可以为 null
+	 */
+	public void changeToBuffer(ByteBuffer byteBuffer, int mark, Runnable releaser) {
+		changeToBytes();
+		this.sharedBuffer = byteBuffer.asReadOnlyBuffer();
+		this.sharedReleaser = releaser;
+		this.mark = mark;
+	}
+
+	/**
+	 * 归还共享的缓冲区
+	 */
+	private void releaseShared() {
+		if(sharedBuffer != null) {
+			sharedBuffer = null;
+			if(sharedReleaser != null) {
+				Runnable releaser = sharedReleaser;
+				sharedReleaser = null;
+				releaser.run();
+			}
+		}
+	}
+
+	/**
+	 * 共享缓冲区中的数据复制到 byteBufferChannel 后归还, 用于继续写入
+	 */
+	private void unshare() {
+		if(sharedBuffer != null) {
+			ByteBuffer byteBuffer = sharedBuffer;
+			int sharedMark = mark;
+			changeToBytes();
+			byteBufferChannel.writeEnd(byteBuffer);
+			mark = sharedMark;
+		}
+	}
+
 	/**
 	 * 获取长度
 	 * @return 长度 小于0,则读取失败.
 	 */
 	public long size(){
 		if(type == BodyType.FILE){
+			if(fileLength >= 0) {
+				return fileLength;
+			}
+
 			try {
 				return TFile.getFileSize(bodyFile);
 			}catch(IOException e){
@@ -161,7 +229,7 @@ public class Body {
 				return -1;
 			}
 		}else {
-			return byteBufferChannel.size();
+			return sharedBuffer != null ? sharedBuffer.remaining() : byteBufferChannel.size();
 		}
 	}
 
@@ -171,7 +239,11 @@ public class Body {
 	 */
 	public byte[] getBodyBytes(){
 		if(type == BodyType.FILE){
-			return TFile.loadFile(bodyFile);
+			return fileLength < 0 ? TFile.loadFile(bodyFile) : TFile.loadFile(bodyFile, fileOffset, fileOffset + fileLength);
+		} else if(sharedBuffer != null) {
+			byte[] bodyBytes = new byte[sharedBuffer.remaining()];
+			sharedBuffer.duplicate().get(bodyBytes);
+			return bodyBytes;
 		} else {
 			return byteBufferChannel.array();
 		}
@@ -237,6 +309,35 @@ public class Body {
 		}
 	}
 
+	/**
+	 * 获取字节形式 Body 内容的 ByteBuffer 视图
+	 * 		不复制数据, 返回的 ByteBuffer 和 Body 共享内存, 在 Body 清理或释放前有效
+	 * @return ByteBuffer 对象, 文件形式或者已释放时返回 null
+	 */
+	public ByteBuffer getByteBufferView(){
+		if(type == BodyType.BYTES && sharedBuffer != null) {
+			return sharedBuffer.duplicate();
+		} else if(type == BodyType.BYTES && !byteBufferChannel.isReleased()) {
+			return byteBufferChannel.slice(byteBufferChannel.size());
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * 获取文件形式 Body 未读取部分的文件区域
+	 * 		用于通过 FileChannel.transferTo 直接发送文件, 调用方负责关闭文件区域
+	 * @return 文件区域, 字节形式返回 null
+	 * @throws IOException IO 异常
+	 */
+	public FileRegion getFileRegion() throws IOException {
+		if(type == BodyType.FILE) {
+			return new FileRegion(bodyFile, fileOffset + position, size() - position);
+		} else {
+			return null;
+		}
+	}
+
 	/**
 	 * 读取 Body 中的内容
 	 * @param byteBuffer ByteBuffer 对象
@@ -244,13 +345,30 @@ public class Body {
 	 */
 	public int read(ByteBuffer byteBuffer){
 		int readSize = -1;
-		if(type == BodyType.BYTES) {
+		if(type == BodyType.BYTES && sharedBuffer != null) {
+			readSize = Math.min(byteBuffer.remaining(), sharedBuffer.remaining());
+			if(readSize > 0) {
+				ByteBuffer source = sharedBuffer.duplicate();
+				source.limit(source.position() + readSize);
+				byteBuffer.put(source);
+				sharedBuffer.position(sharedBuffer.position() + readSize);
+				byteBuffer.flip();
+			} else {
+				readSize = -1;
+			}
+		} else if(type == BodyType.BYTES) {
 			if(!byteBufferChannel.isReleased() && byteBufferChannel.size() > 0) {
 				readSize = byteBufferChannel.readHead(byteBuffer);
 				readSize = readSize == 0 ? -1 : readSize;
 			}
 		}else {
-			byte[] fileContent = TFile.loadFile(bodyFile, position, position + byteBuffer.remaining());
+			long beginPos = fileOffset + position;
+			long endPos = beginPos + byteBuffer.remaining();
+			if(fileLength >= 0 && endPos > fileOffset + fileLength) {
+				endPos = fileOffset + fileLength;
+			}
+
+			byte[] fileContent = TFile.loadFile(bodyFile, beginPos, endPos);
 			if (fileContent != null){
 				readSize = fileContent.length;
 				position = position + readSize;
@@ -285,6 +403,7 @@ public class Body {
 	 * @param length  写入长度
 	 */
 	public void write(byte[] body,int offset,int length){
+		unshare();
 		if(type == BodyType.BYTES) {
 			int hash = THash.HashFNV1(body, offset, length);
 			mark = mark==0 ? hash : mark + hash;
@@ -334,6 +453,26 @@ public class Body {
 		write(body, 0, body.length);
 	}
 
+	/**
+	 * 写入 body
+	 * 		字节形式并且容量足够时直接复制缓冲区, 否则转换成字节数组写入, 不会改变 byteBuffer 的 position
+	 * @param byteBuffer 缓冲区, 写入 position 到 limit 之间的数据
+	 */
+	public void write(ByteBuffer byteBuffer){
+		unshare();
+		int length = byteBuffer.remaining();
+		if(type == BodyType.BYTES && !byteBufferChannel.isReleased() &&
+				byteBufferChannel.size() + length <= byteBufferChannel.getMaxSize()) {
+			int hash = THash.HashFNV1(byteBuffer, byteBuffer.position(), byteBuffer.limit());
+			mark = mark==0 ? hash : mark + hash;
+			byteBufferChannel.writeEnd(byteBuffer.duplicate());
+		} else {
+			byte[] bytes = new byte[length];
+			byteBuffer.duplicate().get(bytes);
+			write(bytes, 0, length);
+		}
+	}
+
 	/**
 	 * 使用特定的字符集写入 body 字符串
 	 * @param content body 字符串
@@ -386,7 +525,11 @@ public class Body {
 		}
 
 		if(type == BodyType.FILE) {
-			TFile.moveFile(bodyFile, destFile);
+			if(fileLength < 0) {
+				TFile.moveFile(bodyFile, destFile);
+			} else {
+				TFile.writeFile(destFile, getBodyBytes());
+			}
 		}
 	}
 
@@ -398,6 +541,15 @@ public class Body {
 	public boolean compress() throws IOException {
 
 		if(size()!=0) {
+			unshare();
+
+			//只使用文件中一段数据时转换成字节形式压缩
+			if (isFile() && fileLength >= 0) {
+				byte[] bodyBytes = getBodyBytes();
+				changeToBytes();
+				write(bodyBytes);
+			}
+
 			if (isFile()) {
 				String fileName = TFile.getFileName(bodyFile.getCanonicalPath());
 				fileName = fileName.equals("") ? ".tmp" : fileName;
@@ -425,6 +577,7 @@ public class Body {
 	}
 
 	public void release(){
+		releaseShared();
 		if(type == BodyType.BYTES && byteBufferChannel!=null && !byteBufferChannel.isReleased()) {
 			byteBufferChannel.release();
 		} else if(type == BodyType.FILE){
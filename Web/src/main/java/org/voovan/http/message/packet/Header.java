@@ -4,13 +4,16 @@ import org.voovan.http.message.HttpStatic;
 import org.voovan.tools.FastThreadLocal;
 import org.voovan.tools.json.JSON;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
 
 /**
  * HTTP 的 header 对象
+ *      支持延迟解析: 解析器只记录每个 header 名称和值在原始字节中的偏移, 访问时才创建 String
+ *      常用的 header 名称(Host, Content-Length, Connection, Content-Type, Cookie)使用预先计算的 hash 匹配
+ *      修改, 遍历等操作会先将所有 header 转换到 Map 中
  * @author helyho
  *
  * Voovan Framework.
@@ -20,13 +23,31 @@ import java.util.TreeMap;
 public class Header {
 	private static FastThreadLocal<StringBuilder> THREAD_STRING_BUILDER = FastThreadLocal.withInitial(()->new StringBuilder(512));
 
+	//每个延迟解析的 header 在索引中占用的 int 数: 名称偏移, 名称长度, 值偏移, 值长度, 名称 hash
+	private final static int INDEX_STEP = 5;
+
+	private final static int HOST_HASH 				= hash(HttpStatic.HOST_STRING);
+	private final static int CONTENT_LENGTH_HASH 	= hash(HttpStatic.CONTENT_LENGTH_STRING);
+	private final static int CONNECTION_HASH 		= hash(HttpStatic.CONNECTION_STRING);
+	private final static int CONTENT_TYPE_HASH 		= hash(HttpStatic.CONTENT_TYPE_STRING);
+	private final static int COOKIE_HASH 			= hash(HttpStatic.COOKIE_STRING);
+
 	private Map<String, String> headers;
+	//headers 是否由当前对象创建, 外部设置的 Map 可能被共享, 清理时不能直接清空
+	private boolean ownHeaders;
+
+	//延迟解析的数据
+	private byte[] rawBytes;
+	private int[] rawIndex;
+	private String[] rawValues;
+	private int rawCount;
 
 	/**
 	 * 构造函数
 	 */
 	public Header(){
 		headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+		ownHeaders = true;
 	}
 
 	/**
@@ -34,11 +55,181 @@ public class Header {
 	 * @return HTTP-Header 转换候的 Map
 	 */
 	public Map<String,String> getHeaders() {
+		materialize();
 		return headers;
 	}
 
 	public void setHeaders(Map<String, String> headers) {
+		rawCount = 0;
 		this.headers = headers;
+		this.ownHeaders = false;
+	}
+
+	/**
+	 * 计算 header 名称忽略大小写的 hash
+	 * @param name header 名称
+	 * @return hash 值, 名称包含非 ASCII 字符时返回 0
+	 */
+	private static int hash(String name) {
+		int hash = 1;
+		for(int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if(c > 0x7F) {
+				return 0;
+			}
+			hash = 31 * hash + toLowerCase(c);
+		}
+		return hash;
+	}
+
+	private static int hashOf(String name) {
+		//常用 header 快速判断
+		if(name == HttpStatic.HOST_STRING) {
+			return HOST_HASH;
+		} else if(name == HttpStatic.CONTENT_LENGTH_STRING) {
+			return CONTENT_LENGTH_HASH;
+		} else if(name == HttpStatic.CONNECTION_STRING) {
+			return CONNECTION_HASH;
+		} else if(name == HttpStatic.CONTENT_TYPE_STRING) {
+			return CONTENT_TYPE_HASH;
+		} else if(name == HttpStatic.COOKIE_STRING) {
+			return COOKIE_HASH;
+		}
+
+		return hash(name);
+	}
+
+	private static int toLowerCase(int c) {
+		return c >= 'A' && c <= 'Z' ? c + 32 : c;
+	}
+
+	/**
+	 * 准备延迟解析的缓冲区, 原有的数据会被清理
+	 *      缓冲区在多次解析之间复用
+	 * @param length header 原始数据的长度
+	 * @return 用于保存 header 原始数据的字节数组
+	 */
+	public byte[] prepareRaw(int length) {
+		clear();
+		if(rawBytes == null || rawBytes.length < length) {
+			rawBytes = new byte[Math.max(length, 512)];
+		}
+		return rawBytes;
+	}
+
+	/**
+	 * 增加一个延迟解析的 header, 偏移都相对于 prepareRaw 返回的字节数组
+	 * @param nameStart 名称的偏移
+	 * @param nameLength 名称的长度
+	 * @param valueStart 值的偏移
+	 * @param valueLength 值的长度
+	 */
+	public void addRaw(int nameStart, int nameLength, int valueStart, int valueLength) {
+		if(rawIndex == null) {
+			rawIndex = new int[16 * INDEX_STEP];
+			rawValues = new String[16];
+		} else if((rawCount + 1) * INDEX_STEP > rawIndex.length) {
+			rawIndex = Arrays.copyOf(rawIndex, rawIndex.length * 2);
+			rawValues = Arrays.copyOf(rawValues, rawValues.length * 2);
+		}
+
+		int hash = 1;
+		for(int i = nameStart; i < nameStart + nameLength; i++) {
+			hash = 31 * hash + toLowerCase(rawBytes[i]);
+		}
+
+		int offset = rawCount * INDEX_STEP;
+		rawIndex[offset] = nameStart;
+		rawIndex[offset + 1] = nameLength;
+		rawIndex[offset + 2] = valueStart;
+		rawIndex[offset + 3] = valueLength;
+		rawIndex[offset + 4] = hash;
+		rawValues[rawCount] = null;
+		rawCount++;
+	}
+
+	/**
+	 * 查找延迟解析的 header
+	 * @param name header 的 name
+	 * @param hash header 名称的 hash
+	 * @param from 开始查找的 header 序号
+	 * @return header 的序号, -1: 不存在
+	 */
+	private int indexOfRaw(String name, int hash, int from) {
+		for(int i = from; i < rawCount; i++) {
+			int offset = i * INDEX_STEP;
+			if(rawIndex[offset + 4] != hash || rawIndex[offset + 1] != name.length()) {
+				continue;
+			}
+
+			int nameStart = rawIndex[offset];
+			boolean match = true;
+			for(int j = 0; j < name.length(); j++) {
+				if(toLowerCase(rawBytes[nameStart + j]) != toLowerCase(name.charAt(j))) {
+					match = false;
+					break;
+				}
+			}
+
+			if(match) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	private String rawValue(int index) {
+		String value = rawValues[index];
+		if(value == null) {
+			int offset = index * INDEX_STEP;
+			value = new String(rawBytes, rawIndex[offset + 2], rawIndex[offset + 3]);
+			rawValues[index] = value;
+		}
+		return value;
+	}
+
+	/**
+	 * 读取延迟解析的 header 值, 同名的 header 使用 \r\n 连接
+	 * @param name header 的 name
+	 * @return header 的值
+	 */
+	private String getRaw(String name) {
+		int hash = hashOf(name);
+		if(hash == 0) {
+			materialize();
+			return headers.get(name);
+		}
+
+		int index = indexOfRaw(name, hash, 0);
+		if(index < 0) {
+			return null;
+		}
+
+		String value = rawValue(index);
+		while((index = indexOfRaw(name, hash, index + 1)) >= 0) {
+			value = value + "\r\n" + rawValue(index);
+		}
+		return value;
+	}
+
+	/**
+	 * 将延迟解析的 header 全部转换到 Map 中
+	 */
+	private void materialize() {
+		if(rawCount == 0) {
+			return;
+		}
+
+		int count = rawCount;
+		rawCount = 0;
+		for(int i = 0; i < count; i++) {
+			int offset = i * INDEX_STEP;
+			String name = new String(rawBytes, rawIndex[offset], rawIndex[offset + 1]);
+			String value = rawValue(i);
+			headers.compute(name, (key, oldValue) -> oldValue == null ? value : oldValue + "\r\n" + value);
+		}
+		Arrays.fill(rawValues, 0, count, null);
 	}
 
 	/**
@@ -47,6 +238,7 @@ public class Header {
 	 * @return 移除的header 的 name
 	 */
 	public String remove(String header){
+		materialize();
 		return headers.remove(header);
 	}
 
@@ -56,6 +248,13 @@ public class Header {
 	 * @return 是否存在
 	 */
 	public boolean contain(String header){
+		if(rawCount > 0) {
+			int hash = hashOf(header);
+			if(hash != 0) {
+				return indexOfRaw(header, hash, 0) >= 0;
+			}
+			materialize();
+		}
 		return headers.containsKey(header);
 	}
 
@@ -65,6 +264,9 @@ public class Header {
 	 * @return header 的值
 	 */
 	public String get(String header){
+		if(rawCount > 0) {
+			return getRaw(header);
+		}
 		return headers.get(header);
 	}
 
@@ -75,6 +277,7 @@ public class Header {
 	 * @return header 的 name
 	 */
 	public String put(String header,String value){
+		materialize();
 		return headers.put(header,value);
 	}
 
@@ -85,6 +288,7 @@ public class Header {
 	 * @return header 的 name
 	 */
 	public String putIfAbsent(String header,String value){
+		materialize();
 		return headers.putIfAbsent(header,value);
 	}
 
@@ -93,6 +297,7 @@ public class Header {
 	 * @param valueMap Header 的 Map 形式
 	 */
 	public void putAll(Map<String, String> valueMap){
+		materialize();
 		headers.putAll(valueMap);
 	}
 
@@ -101,6 +306,7 @@ public class Header {
 	 * @return header 元素的数量
 	 */
 	public int size(){
+		materialize();
 		return headers.size();
 	}
 
@@ -113,7 +319,19 @@ public class Header {
 	 * 清空头
 	 */
 	public void clear(){
-		headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+		if(rawCount > 0) {
+			Arrays.fill(rawValues, 0, rawCount, null);
+			rawCount = 0;
+		}
+
+		if(ownHeaders) {
+			if(!headers.isEmpty()) {
+				headers.clear();
+			}
+		} else {
+			headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+			ownHeaders = true;
+		}
 	}
 
 	@Override
@@ -121,6 +339,7 @@ public class Header {
 		StringBuilder headerContent = THREAD_STRING_BUILDER.get();
 		headerContent.setLength(0);
 
+		materialize();
 		for(Entry<String,String> headerItemEntry : this.headers.entrySet()){
 			String key = headerItemEntry.getKey();
 			String value = headerItemEntry.getValue();
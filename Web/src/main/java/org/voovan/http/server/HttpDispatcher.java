@@ -51,6 +51,7 @@ public class HttpDispatcher {
 	 * [MainKey] = HTTP method ,[Value] = { [Value Key] = Route path, [Value value] = RouteBuiz对象 }
 	 */
 	private Map<String, Map<String, RouterWrap<HttpRouter>>> methodRouters;
+	private Map<String, RouteTree<RouterWrap<HttpRouter>>> methodRouteTrees;
 	private WebServerConfig webConfig;
 	private SessionManager sessionManager;
 	private MimeFileRouter mimeFileRouter;
@@ -67,6 +68,7 @@ public class HttpDispatcher {
 		ROUTER_INFO_CACHE.get().clear();
 
 		methodRouters = new ConcurrentHashMap<String, Map<String, RouterWrap<HttpRouter>>>();
+		methodRouteTrees = new ConcurrentHashMap<String, RouteTree<RouterWrap<HttpRouter>>>();
 		this.webConfig = webConfig;
 		this.sessionManager = sessionManager;
 
@@ -117,6 +119,7 @@ public class HttpDispatcher {
 				}
 			});
 			methodRouters.put(method, routers);
+			methodRouteTrees.put(method, new RouteTree<RouterWrap<HttpRouter>>(webConfig.isMatchRouteIgnoreCase()));
 		}
 	}
 
@@ -151,7 +154,9 @@ public class HttpDispatcher {
 	public void addRouter(String method, String routePath, HttpRouter router) {
 		routePath = fixRoutePath(routePath);
 		if (methodRouters.keySet().contains(method)) {
-			methodRouters.get(method).put(routePath, new RouterWrap(method, routePath, router));
+			RouterWrap<HttpRouter> routerWrap = new RouterWrap(method, routePath, router);
+			methodRouters.get(method).put(routePath, routerWrap);
+			methodRouteTrees.get(method).add(routePath, routerWrap);
 		}
 	}
 
@@ -252,6 +257,16 @@ public class HttpDispatcher {
 	 * @return 路由信息对象 { 路由标签, [ 匹配到的已注册路由, HttpRouter对象 ] }
 	 */
 	public RouterWrap<HttpRouter> findRouter(HttpRequest request){
+		return findRouter(request, null);
+	}
+
+	/**
+	 * 获取路由处理对象和注册路由, 同时抽取路径参数
+	 * @param request 请求对象
+	 * @param pathVariables 用于保存路径参数的 Map, 为 null 时不抽取路径参数
+	 * @return 路由信息对象 { 路由标签, [ 匹配到的已注册路由, HttpRouter对象 ] }
+	 */
+	public RouterWrap<HttpRouter> findRouter(HttpRequest request, Map<String, String> pathVariables){
 		String requestPath      = request.protocol().getPath();
 		String requestMethod 	= request.protocol().getMethod();
 		int routerMark          = THash.HashFNV1(requestPath) << 16 +  THash.HashFNV1(requestMethod);
@@ -259,18 +274,15 @@ public class HttpDispatcher {
 		RouterWrap<HttpRouter> routerWrap = ROUTER_INFO_CACHE.get().get(routerMark);
 
 		if(routerWrap ==null) {
-			Map<String, RouterWrap<HttpRouter>> routers = methodRouters.get(requestMethod);
-			if(routers!=null) {
-				for (Map.Entry<String, RouterWrap<HttpRouter>> routeEntry : routers.entrySet()) {
-					RouterWrap tmpRouterWrap = routeEntry.getValue();
-
-					//寻找匹配的路由对象
-					if (matchPath(requestPath, tmpRouterWrap.getRoutePath(), tmpRouterWrap.getRegexPath(), webConfig.isMatchRouteIgnoreCase())) {
-						if (!tmpRouterWrap.getHasPathParam()) {
-							ROUTER_INFO_CACHE.get().put(routerMark, tmpRouterWrap);
-						}
-						return tmpRouterWrap;
+			RouteTree<RouterWrap<HttpRouter>> routeTree = methodRouteTrees.get(requestMethod);
+			if(routeTree!=null) {
+				//按路径段在路由树中查找, 同时抽取路径参数
+				routerWrap = routeTree.match(requestPath, pathVariables);
+				if (routerWrap != null) {
+					if (!routerWrap.getHasPathParam()) {
+						ROUTER_INFO_CACHE.get().put(routerMark, routerWrap);
 					}
+					return routerWrap;
 				}
 			}
 		}
@@ -293,23 +305,13 @@ public class HttpDispatcher {
 	 * @param response    Http响应对象
 	 */
 	public void disposeRoute(HttpRequest request, HttpResponse response){
-		String requestPath = request.protocol().getPath();
-
-		//[ 匹配到的已注册路由, HttpRouter对象
-		RouterWrap<HttpRouter> routerWrap = findRouter(request);
+		//[ 匹配到的已注册路由, HttpRouter对象, 路径变量在匹配时写入请求参数
+		RouterWrap<HttpRouter> routerWrap = findRouter(request, request.getParameters());
 
 		if (routerWrap !=null) {
 			try {
 				HttpRouter router = routerWrap.getRouter();
 
-				if(routerWrap.hasPathParam) {
-					//获取路径变量
-					Map<String, String> pathVariables = fetchPathVariables(requestPath, routerWrap, webConfig.isMatchRouteIgnoreCase());
-					if (pathVariables != null) {
-						request.getParameters().putAll(pathVariables);
-					}
-				}
-
 				//处理路由请求
 				router.process(request, response);
 
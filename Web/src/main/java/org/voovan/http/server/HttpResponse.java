@@ -155,10 +155,19 @@ public class HttpResponse extends Response {
 	 * @throws IOException IO 异常
 	 */
 	public void send() throws IOException {
+		send(true);
+	}
+
+	/**
+	 * 发送响应
+	 * @param isZeroCopy 是否允许使用聚合写或者文件直传发送 body
+	 * @throws IOException IO 异常
+	 */
+	public void send(boolean isZeroCopy) throws IOException {
 		if(socketSession == null) {
 			throw new NullPointerException("Socket session is null, are you clear this object before?");
 		}
-		super.send(socketSession);
+		super.send(socketSession, isZeroCopy);
 	}
 
 	/**
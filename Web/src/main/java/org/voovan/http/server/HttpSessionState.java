@@ -1,6 +1,7 @@
 package org.voovan.http.server;
 
 import org.voovan.http.HttpRequestType;
+import org.voovan.http.message.HttpParserState;
 
 /**
  * HttpSession状态类
@@ -16,6 +17,7 @@ public class HttpSessionState {
     private HttpRequestType type;
     private boolean isKeepAlive = false;
     private long keepAliveTimeout = -1;
+    private HttpParserState parserState = new HttpParserState();
 
     public HttpRequest getHttpRequest() {
         return httpRequest;
@@ -68,4 +70,12 @@ public class HttpSessionState {
     public void setKeepAliveTimeout(long keepAliveTimeout) {
         this.keepAliveTimeout = keepAliveTimeout;
     }
+
+    /**
+     * 获取请求报文的增量解析状态
+     * @return 请求报文的增量解析状态
+     */
+    public HttpParserState getParserState() {
+        return parserState;
+    }
 }
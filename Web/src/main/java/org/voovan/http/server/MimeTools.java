@@ -57,6 +57,33 @@ public class MimeTools {
 		return TObject.nullDefault(mimeTypeObj,"application/octet-stream").toString();
 	}
 
+	//本身已经压缩过的 MIME 类型前缀, 再次 gzip 压缩基本没有收益
+	private static final String[] COMPRESSED_MIME_PREFIXES = new String[]{
+			"image/jpeg", "image/png", "image/gif", "image/webp", "image/avif",
+			"video/", "audio/",
+			"application/zip", "application/gzip", "application/x-gzip", "application/x-7z-compressed",
+			"application/x-rar-compressed", "application/x-bzip2", "application/x-xz", "application/java-archive",
+			"font/woff", "application/font-woff", "application/pdf"
+	};
+
+	/**
+	 * 判断 MIME 类型是否本身已经压缩过
+	 * @param mimeType MIME 类型, 可以包含 charset 等参数
+	 * @return true: 已经压缩过, 不需要再次压缩
+	 */
+	public static boolean isCompressedMime(String mimeType){
+		if(mimeType == null) {
+			return false;
+		}
+
+		for(String prefix : COMPRESSED_MIME_PREFIXES) {
+			if(mimeType.regionMatches(true, 0, prefix, 0, prefix.length())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 //	/**
 //	 * 判断是否是 Mime 类型文件
 //	 * @param path  请求路径
@@ -0,0 +1,319 @@
+package org.voovan.http.server;
+
+import org.voovan.tools.TString;
+import org.voovan.tools.log.Logger;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 按路径段组织的路由树
+ *      节点分为三种: 静态段, 路径参数段(:name), 通配段(*), 匹配时按请求路径逐段查找, 同时抽取路径参数
+ *      查找的开销和请求路径的深度有关, 和路由的数量无关
+ *      多个路由都能匹配时, 和原有的规则一致: 路由路径更长的优先, 长度相同时先注册的优先
+ *      无法按段表示的路由(例如 /file/*.html, /a/x:id)仍然使用正则匹配
+ *
+ * @author helyho
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class RouteTree<V> {
+
+    /**
+     * 路由信息
+     */
+    private static class Route<V> implements Comparable<Route<V>> {
+        private String routePath;
+        private volatile V value;
+        private int sequence;
+        private String[] paramNames;
+
+        //以下字段只有使用正则匹配的路由使用
+        private String regexPath;
+        private String matchRegex;
+
+        private Route(String routePath, V value, int sequence) {
+            this.routePath = routePath;
+            this.value = value;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Route<V> other) {
+            int result = Integer.compare(other.routePath.length(), routePath.length());
+            return result != 0 ? result : Integer.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * 路由树节点
+     */
+    private static class Node<V> {
+        private Map<String, Node<V>> children = new ConcurrentHashMap<String, Node<V>>();
+        private volatile Node<V> paramChild;
+        private volatile Node<V> wildcardChild;
+        private volatile List<Route<V>> routes;
+    }
+
+    /**
+     * 匹配过程中的状态
+     */
+    private static class MatchState<V> {
+        private String[] segments;
+        private boolean trailingSlash;
+        private String[] values;
+        private Route<V> best;
+        private String[] bestValues;
+
+        private void offer(Node<V> node, int valueCount) {
+            List<Route<V>> routes = node.routes;
+            if(routes == null) {
+                return;
+            }
+
+            for(Route<V> route : routes) {
+                if(best == null || route.compareTo(best) < 0) {
+                    best = route;
+                    bestValues = new String[valueCount];
+                    System.arraycopy(values, 0, bestValues, 0, valueCount);
+                }
+            }
+        }
+    }
+
+    private boolean ignoreCase;
+    private Node<V> root = new Node<V>();
+    private Map<String, Route<V>> routes = new HashMap<String, Route<V>>();
+    private volatile List<Route<V>> regexRoutes = new ArrayList<Route<V>>();
+    private int sequence = 0;
+
+    /**
+     * 构造函数
+     * @param ignoreCase 静态路径段是否忽略大小写
+     */
+    public RouteTree(boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+    }
+
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    /**
+     * 获取路由的数量
+     * @return 路由的数量
+     */
+    public synchronized int size() {
+        return routes.size();
+    }
+
+    /**
+     * 增加路由, 路由路径相同时替换原有的路由
+     * @param routePath 规范的路由路径, 参考 HttpDispatcher.fixRoutePath
+     * @param value 路由对象
+     */
+    public synchronized void add(String routePath, V value) {
+        Route<V> route = routes.get(routePath);
+        if(route != null) {
+            route.value = value;
+            return;
+        }
+
+        route = new Route<V>(routePath, value, sequence++);
+        routes.put(routePath, route);
+
+        String[] segments = split(routePath);
+        if(!isTreeRoute(segments)) {
+            route.paramNames = TString.searchByRegex(routePath, ":[^:?/]*");
+            route.regexPath = HttpDispatcher.routePath2RegexPath(routePath);
+            route.matchRegex = routePath;
+            for (int i = 0; i < route.paramNames.length; i++) {
+                route.paramNames[i] = TString.removePrefix(route.paramNames[i]);
+                route.matchRegex = route.matchRegex.replace(":" + route.paramNames[i], "(?<" + route.paramNames[i] + ">.*)");
+            }
+
+            List<Route<V>> newRegexRoutes = new ArrayList<Route<V>>(regexRoutes);
+            newRegexRoutes.add(route);
+            Collections.sort(newRegexRoutes);
+            regexRoutes = newRegexRoutes;
+            return;
+        }
+
+        List<String> paramNames = new ArrayList<String>();
+        Node<V> node = root;
+        for(String segment : segments) {
+            if(segment.equals("*")) {
+                if(node.wildcardChild == null) {
+                    node.wildcardChild = new Node<V>();
+                }
+                node = node.wildcardChild;
+            } else if(segment.charAt(0) == ':') {
+                paramNames.add(segment.substring(1));
+                if(node.paramChild == null) {
+                    node.paramChild = new Node<V>();
+                }
+                node = node.paramChild;
+            } else {
+                node = node.children.computeIfAbsent(ignoreCase ? segment.toLowerCase() : segment, key -> new Node<V>());
+            }
+        }
+        route.paramNames = paramNames.toArray(new String[0]);
+
+        List<Route<V>> nodeRoutes = node.routes == null ? new ArrayList<Route<V>>() : new ArrayList<Route<V>>(node.routes);
+        nodeRoutes.add(route);
+        Collections.sort(nodeRoutes);
+        node.routes = nodeRoutes;
+    }
+
+    /**
+     * 判断路由能否按段放入路由树
+     * @param segments 路由的路径段
+     * @return true: 可以放入路由树, false: 需要使用正则匹配
+     */
+    private static boolean isTreeRoute(String[] segments) {
+        for(String segment : segments) {
+            if(segment.equals("*")) {
+                continue;
+            }
+
+            int paramIndex = segment.lastIndexOf(':');
+            if(paramIndex > 0 || segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0 || segment.equals(":")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按 / 拆分路径, 忽略空的路径段
+     * @param path 路径
+     * @return 路径段
+     */
+    private static String[] split(String path) {
+        List<String> segments = new ArrayList<String>();
+        int start = 0;
+        int length = path.length();
+        for(int i = 0; i <= length; i++) {
+            if(i == length || path.charAt(i) == '/') {
+                if(i > start) {
+                    segments.add(path.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return segments.toArray(new String[segments.size()]);
+    }
+
+    /**
+     * 查找路由
+     * @param requestPath 请求路径
+     * @param pathVariables 用于保存路径参数的 Map, 为 null 时不抽取路径参数
+     * @return 匹配的路由对象, 未匹配到返回 null
+     */
+    public V match(String requestPath, Map<String, String> pathVariables) {
+        MatchState<V> state = new MatchState<V>();
+        state.segments = split(requestPath);
+        state.trailingSlash = requestPath.endsWith("/");
+        state.values = new String[state.segments.length + 1];
+
+        find(root, 0, 0, state);
+
+        //正则路由只检查比路由树匹配结果优先的部分
+        Route<V> regexRoute = null;
+        for(Route<V> route : regexRoutes) {
+            if(state.best != null && route.compareTo(state.best) > 0) {
+                break;
+            }
+
+            if(HttpDispatcher.matchPath(requestPath, route.routePath, route.regexPath, ignoreCase)) {
+                regexRoute = route;
+                break;
+            }
+        }
+
+        try {
+            if (regexRoute != null) {
+                if (pathVariables != null && regexRoute.paramNames.length > 0) {
+                    Matcher matcher = TString.doRegex(requestPath, regexRoute.matchRegex, ignoreCase ? Pattern.UNICODE_CASE | Pattern.CASE_INSENSITIVE : 0);
+                    if (matcher != null) {
+                        for (String name : regexRoute.paramNames) {
+                            pathVariables.put(name, URLDecoder.decode(matcher.group(name), "UTF-8"));
+                        }
+                    }
+                }
+                return regexRoute.value;
+            }
+
+            if (state.best != null) {
+                if (pathVariables != null) {
+                    for (int i = 0; i < state.best.paramNames.length; i++) {
+                        pathVariables.put(state.best.paramNames[i], URLDecoder.decode(state.bestValues[i], "UTF-8"));
+                    }
+                }
+                return state.best.value;
+            }
+        } catch (UnsupportedEncodingException e) {
+            Logger.error("RoutePath URLDecoder.decode failed by charset: UTF-8", e);
+        }
+
+        return null;
+    }
+
+    /**
+     * 递归匹配路径段
+     * @param node 当前节点
+     * @param index 当前路径段的索引
+     * @param valueCount 已抽取的路径参数数量
+     * @param state 匹配状态
+     */
+    private void find(Node<V> node, int index, int valueCount, MatchState<V> state) {
+        String[] segments = state.segments;
+
+        if(index == segments.length) {
+            state.offer(node, valueCount);
+
+            //和正则匹配保持一致: /user/ 可以匹配 /user/:id 和 /user/*
+            if(state.trailingSlash) {
+                if(node.paramChild != null) {
+                    state.values[valueCount] = "";
+                    state.offer(node.paramChild, valueCount + 1);
+                }
+
+                if(node.wildcardChild != null) {
+                    state.offer(node.wildcardChild, valueCount);
+                }
+            }
+            return;
+        }
+
+        String segment = segments[index];
+
+        Node<V> child = node.children.get(ignoreCase ? segment.toLowerCase() : segment);
+        if(child != null) {
+            find(child, index + 1, valueCount, state);
+        }
+
+        Node<V> paramChild = node.paramChild;
+        if(paramChild != null && segment.indexOf(':') < 0) {
+            state.values[valueCount] = segment;
+            find(paramChild, index + 1, valueCount + 1, state);
+        }
+
+        //通配段匹配一个或多个路径段
+        Node<V> wildcardChild = node.wildcardChild;
+        if(wildcardChild != null) {
+            for(int i = index + 1; i <= segments.length; i++) {
+                find(wildcardChild, i, valueCount, state);
+            }
+        }
+    }
+}
@@ -124,7 +124,7 @@ public class WebServer {
 
 		serverSocket.handler(new WebServerHandler(config, httpDispatcher, webSocketDispatcher));
 		serverSocket.filterChain().add(new WebServerFilter());
-		serverSocket.messageSplitter(new HttpMessageSplitter());
+		serverSocket.messageSplitter(new HttpMessageSplitter(true));
 	}
 
 	/**
@@ -17,6 +17,7 @@ import org.voovan.tools.log.Logger;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -61,7 +62,8 @@ public class WebServerFilter implements IoFilter {
                         if (cacheBytes == null) {
                             ByteBufferChannel sendByteBufferChannel = session.getSendByteBufferChannel();
                             int size = sendByteBufferChannel.size();
-                            httpResponse.send();
+                            //需要从发送缓冲区获取完整报文用于缓存, 所以不使用聚合写和文件直传
+                            httpResponse.send(false);
 
                             if (size == 0) {
 								cacheBytes = new byte[sendByteBufferChannel.size()];
@@ -109,7 +111,9 @@ public class WebServerFilter implements IoFilter {
 			ByteBufferChannel byteBufferChannel = byteBufferChannel = session.getReadByteBufferChannel();
 
 			try {
-				Request request = HttpParser.parseRequest(session, byteBufferChannel, session.socketContext().getReadTimeout(), MAX_REQUEST_SIZE);
+				//较大的 multipart 报文体已经在消息分割时写入上传文件
+				List<Object[]> bodyParts = httpSessionState.getParserState().takeBodyParts();
+				Request request = HttpParser.parseRequest(session, byteBufferChannel, session.socketContext().getReadTimeout(), MAX_REQUEST_SIZE, bodyParts);
 				if(request!=null){
 					return request;
 				} else {
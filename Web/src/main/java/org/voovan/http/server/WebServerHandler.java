@@ -224,10 +224,12 @@ public class WebServerHandler implements IoHandler {
 		// 处理响应请求
 		httpDispatcher.process(httpRequest, httpResponse);
 
-		//Gzip 启用检测
+		//Gzip 启用检测, 已经设置了 Content-Encoding 或者本身已经压缩过的 MIME 类型不再压缩
 		if(isHttp11 && webConfig.isGzip() && httpRequest.header().contain(HttpStatic.ACCEPT_ENCODING_STRING) &&
 				httpRequest.header().get(HttpStatic.ACCEPT_ENCODING_STRING).contains(HttpStatic.GZIP_STRING) &&
-				httpResponse.header().get(HttpStatic.CONTENT_TYPE_STRING) != null) {
+				httpResponse.header().get(HttpStatic.CONTENT_TYPE_STRING) != null &&
+				!httpResponse.header().contain(HttpStatic.CONTENT_ENCODING_STRING) &&
+				!MimeTools.isCompressedMime(httpResponse.header().get(HttpStatic.CONTENT_TYPE_STRING))) {
 			//检查 body 大小是否启用 gzip
 			if(httpResponse.body().size() > webConfig.getGzipMinSize()){
 				//检查 MimeType 是否启用 gzip
@@ -79,6 +79,11 @@ public class WebContext {
 	 */
 	private static Map<String, Object> MIME_TYPES = new HashMap<String, Object>();
 
+	/**
+	 * 合并了系统定义的 MimeMap, 第一次使用时创建, 重新读取配置时清理
+	 */
+	private static volatile Map<String, Object> MIME_DEFINE = null;
+
 	/**
 	 * 错误输出 Map
 	 */
@@ -142,6 +147,7 @@ public class WebContext {
 				MIME_TYPES = JSON.toObject(new File(fullPath), Map.class);
 			}
 			MIME_TYPES = nullDefault(MIME_TYPES, new HashMap<String, Object>());
+			MIME_DEFINE = null;
 		}
 		Logger.simplef("[HTTP] Load MIME config: " + fullPath);
 
@@ -433,9 +439,23 @@ public class WebContext {
 
 	/**
 	 * 获取 mime 定义
+	 *      静态文件的每个请求都会使用, 只在第一次使用时读取系统定义的 mime.json
 	 * @return  MIME 定义 Map
 	 */
 	public static Map<String, Object> getMimeDefine() {
+		Map<String, Object> mimeDefine = MIME_DEFINE;
+		if(mimeDefine == null) {
+			mimeDefine = loadMimeDefine();
+			MIME_DEFINE = mimeDefine;
+		}
+		return mimeDefine;
+	}
+
+	/**
+	 * 读取系统定义的 mime.json 并合并配置中的 mime 定义
+	 * @return  MIME 定义 Map
+	 */
+	private static Map<String, Object> loadMimeDefine() {
 		byte[] mimeDefBytes = TFile.loadResource("org/voovan/http/server/conf/mime.json");
 		Map<String, Object> mimeDefMap = new ConcurrentHashMap<String, Object>();
 		try {
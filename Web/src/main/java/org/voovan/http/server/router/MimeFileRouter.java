@@ -6,6 +6,8 @@ import org.voovan.http.server.HttpResponse;
 import org.voovan.http.server.HttpRouter;
 import org.voovan.http.server.MimeTools;
 import org.voovan.http.server.context.HttpsConfig;
+import org.voovan.http.server.context.WebContext;
+import org.voovan.http.server.context.WebServerConfig;
 import org.voovan.http.server.exception.ResourceNotFound;
 import org.voovan.tools.TDateTime;
 import org.voovan.tools.TFile;
@@ -14,6 +16,7 @@ import org.voovan.tools.security.THash;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.util.Date;
 
@@ -30,6 +33,7 @@ import java.util.Date;
 public class MimeFileRouter implements HttpRouter {
 
 	private String	rootPath;
+	private StaticFileCache staticFileCache;
 
 	/**
 	 * 构造函数
@@ -37,6 +41,17 @@ public class MimeFileRouter implements HttpRouter {
 	 */
 	public MimeFileRouter(String rootPath) {
 		this.rootPath = rootPath;
+		if(StaticFileCache.STATIC_FILE_CACHE) {
+			this.staticFileCache = new StaticFileCache();
+		}
+	}
+
+	/**
+	 * 获取静态文件缓存
+	 * @return 静态文件缓存, 未启用时返回 null
+	 */
+	public StaticFileCache getStaticFileCache() {
+		return staticFileCache;
 	}
 
 	/**
@@ -59,12 +74,35 @@ public class MimeFileRouter implements HttpRouter {
 		String urlPath = request.protocol().getPath();
 		File responseFile = getStaticFile(request);
 
+		// 获取扩展名
+		String fileExtension = urlPath.substring(urlPath.lastIndexOf(".") + 1, urlPath.length());
+
+		//命中缓存时不再访问文件系统
+		StaticFileCache.Entry entry = staticFileCache == null ? null : staticFileCache.get(responseFile);
+		if (entry != null) {
+			try {
+				response.header().put(HttpStatic.CONTENT_TYPE_STRING, MimeTools.getMimeByFileExtension(fileExtension));
+				String eTag = isGzipResponse(entry, request) ? entry.getGzipETag() : entry.getETag();
+				if (!isNotModify(eTag, entry.getLastModified(), entry.getLastModifiedGMT(), request, response)) {
+					fillMimeFile(entry, request, response);
+				}
+			} finally {
+				entry.release();
+			}
+			return;
+		}
+
 		if (responseFile.exists()) {
-			// 获取扩展名
-			String fileExtension = urlPath.substring(urlPath.lastIndexOf(".") + 1, urlPath.length());
 			response.header().put(HttpStatic.CONTENT_TYPE_STRING, MimeTools.getMimeByFileExtension(fileExtension));
 
-			if(isNotModify(responseFile,request,response)){
+			//gzip 内容使用单独的 ETag
+			long lastModified = responseFile.lastModified();
+			String eTag = getETag(responseFile, lastModified);
+			if (request.header().get("Range") == null && isAcceptGzip(request) && getGzipFile(responseFile) != null) {
+				eTag = getGzipETag(eTag);
+			}
+
+			if(isNotModify(eTag, lastModified, TDateTime.formatToGMT(new Date(lastModified)), request, response)){
 				return ;
 			} else {
 				fillMimeFile(responseFile, request, response);
@@ -84,7 +122,22 @@ public class MimeFileRouter implements HttpRouter {
 	 */
 	public boolean isNotModify(File responseFile,HttpRequest request,HttpResponse response) throws ParseException{
 		//文件的修改日期
-		Date fileModifyDate = new Date(responseFile.lastModified());
+		long lastModified = responseFile.lastModified();
+		return isNotModify(getETag(responseFile, lastModified), lastModified, TDateTime.formatToGMT(new Date(lastModified)), request, response);
+	}
+
+	/**
+	 * 判断是否是304 not modify
+	 * @param eTag 文件的 ETag
+	 * @param lastModified 文件的修改时间
+	 * @param lastModifiedGMT 文件的修改时间, GMT 格式
+	 * @param request   HTTP 请求对象
+	 * @param response  HTTP 响应对象
+	 * @return 是否是304 not modify
+	 */
+	private boolean isNotModify(String eTag, long lastModified, String lastModifiedGMT, HttpRequest request, HttpResponse response) {
+		//文件的修改日期
+		Date fileModifyDate = new Date(lastModified);
 
 		//请求中的修改时间
 		Date requestModifyDate = null;
@@ -96,16 +149,13 @@ public class MimeFileRouter implements HttpRouter {
 			}
 		}
 
-		//文件的 ETag
-		String eTag = TString.assembly("\"", THash.encryptMD5(Integer.toString(responseFile.hashCode()+fileModifyDate.hashCode())).toUpperCase(), "\"");
-
 		//请求中的 ETag
 		String requestETag = request.header().get(HttpStatic.IF_NONE_MATCH_STRING);
 
 		//设置响应头 ETag
 		response.header().put(HttpStatic.ETAG_STRING, eTag);
 		//设置最后修改时间
-		response.header().put(HttpStatic.LAST_MODIFIED_STRING,TDateTime.formatToGMT(fileModifyDate));
+		response.header().put(HttpStatic.LAST_MODIFIED_STRING, lastModifiedGMT);
 		//设置缓存控制
 		response.header().put(HttpStatic.CACHE_CONTROL_STRING, "max-age=86400");
 		//设置浏览器缓存超时控制
@@ -124,6 +174,87 @@ public class MimeFileRouter implements HttpRouter {
 		return false;
 	}
 
+	/**
+	 * 获取文件的 ETag
+	 * @param responseFile 响应文件
+	 * @param lastModified 文件的修改时间
+	 * @return 文件的 ETag
+	 */
+	public static String getETag(File responseFile, long lastModified) {
+		return TString.assembly("\"", THash.encryptMD5(Integer.toString(responseFile.hashCode()+new Date(lastModified).hashCode())).toUpperCase(), "\"");
+	}
+
+	/**
+	 * 获取 gzip 内容的 ETag
+	 * 		同一个文件的原内容和 gzip 内容不同, 需要使用不同的 ETag
+	 * @param eTag 文件的 ETag
+	 * @return gzip 内容的 ETag
+	 */
+	public static String getGzipETag(String eTag) {
+		return TString.assembly(eTag.substring(0, eTag.length() - 1), "-gz\"");
+	}
+
+	/**
+	 * 判断缓存条目是否以 gzip 内容响应
+	 * @param entry 静态文件缓存条目
+	 * @param request HTTP 请求对象
+	 * @return true: 以 gzip 内容响应
+	 */
+	private static boolean isGzipResponse(StaticFileCache.Entry entry, HttpRequest request) {
+		return request.header().get("Range") == null && isAcceptGzip(request) && entry.hasGzip();
+	}
+
+	/**
+	 * 使用缓存条目填充 mime 文件到 response
+	 * @param entry 静态文件缓存条目
+	 * @param request   HTTP 请求对象
+	 * @param response  HTTP 响应对象
+	 * @throws IOException IO操作异常
+	 */
+	public void fillMimeFile(StaticFileCache.Entry entry, HttpRequest request, HttpResponse response) throws IOException {
+		//范围请求直接使用文件
+		if (request.header().get("Range") != null) {
+			fillMimeFile(entry.getFile(), request, response);
+			return;
+		}
+
+		if (isGzipResponse(entry, request)) {
+			response.header().put(HttpStatic.CONTENT_ENCODING_STRING, HttpStatic.GZIP_STRING);
+			response.header().put(HttpStatic.VARY_STRING, HttpStatic.ACCEPT_ENCODING_STRING);
+			ByteBuffer gzipContent = entry.getGzipContent();
+			if (gzipContent != null) {
+				shareContent(entry, gzipContent, true, response);
+			} else {
+				response.body().changeToFile(entry.getGzipFile());
+			}
+			return;
+		}
+
+		//大文件没有缓存内容, 通过文件直传发送
+		ByteBuffer content = entry.getContent();
+		if (content != null) {
+			shareContent(entry, content, false, response);
+		} else {
+			response.body().changeToFile(entry.getFile());
+		}
+	}
+
+	/**
+	 * 缓存内容直接作为 body 发送, 不复制也不重新计算标记
+	 * 		body 持有条目的引用, 发送完成后 body 清理时释放
+	 * @param entry 静态文件缓存条目
+	 * @param content 缓存内容的只读缓冲区
+	 * @param isGzip 是否是 gzip 内容
+	 * @param response HTTP 响应对象
+	 */
+	private static void shareContent(StaticFileCache.Entry entry, ByteBuffer content, boolean isGzip, HttpResponse response) {
+		if (entry.retain()) {
+			response.body().changeToBuffer(content, entry.getMark(isGzip), entry::release);
+		} else {
+			response.body().write(content);
+		}
+	}
+
 	/**
 	 * 填充 mime 文件到 response
 	 * @param responseFile   响应文件
@@ -132,7 +263,6 @@ public class MimeFileRouter implements HttpRouter {
 	 * @throws IOException IO操作异常
 	 */
 	public void fillMimeFile(File responseFile,HttpRequest request,HttpResponse response) throws IOException {
-		byte[] fileByte = null;
 		long fileSize = TFile.getFileSize(responseFile);
 
 		// 如果包含取一个范围内的文件内容进行处理,形似:Range: 0-800
@@ -160,13 +290,48 @@ public class MimeFileRouter implements HttpRouter {
 				beginPos = Long.parseLong(ranges[0]);
 				endPos   = Long.parseLong(ranges[1]);
 			}
-			fileByte = TFile.loadFileFromSysPath(responseFile.getPath(), beginPos, endPos);
+			//使用文件区域, 发送时可以通过 FileChannel.transferTo 直接发送
+			beginPos = Math.max(0, Math.min(beginPos, fileSize));
+			endPos = Math.max(beginPos, Math.min(endPos, fileSize));
 			response.header().put(HttpStatic.CONTENT_RANGE_STRING, TString.assembly("bytes ", rangeStr, File.separator, fileSize));
-			response.body().write(fileByte);
+			response.body().changeToFile(responseFile, beginPos, endPos - beginPos);
 
 		} else {
-			response.body().changeToFile(responseFile);
+			//存在预先压缩的 .gz 文件时直接发送, 不再实时压缩
+			File gzipFile = isAcceptGzip(request) ? getGzipFile(responseFile) : null;
+			if(gzipFile != null) {
+				response.header().put(HttpStatic.CONTENT_ENCODING_STRING, HttpStatic.GZIP_STRING);
+				response.header().put(HttpStatic.VARY_STRING, HttpStatic.ACCEPT_ENCODING_STRING);
+				response.body().changeToFile(gzipFile);
+			} else {
+				response.body().changeToFile(responseFile);
+			}
+		}
+	}
+
+	/**
+	 * 判断是否可以发送 gzip 压缩的内容
+	 * @param request HTTP 请求对象
+	 * @return true: 启用了 gzip 并且客户端支持 gzip
+	 */
+	public static boolean isAcceptGzip(HttpRequest request) {
+		WebServerConfig webServerConfig = WebContext.getWebServerConfig();
+		String acceptEncoding = request.header().get(HttpStatic.ACCEPT_ENCODING_STRING);
+		return webServerConfig != null && webServerConfig.isGzip() &&
+				acceptEncoding != null && acceptEncoding.contains(HttpStatic.GZIP_STRING);
+	}
+
+	/**
+	 * 获取预先压缩的 .gz 文件
+	 * @param responseFile 响应文件
+	 * @return .gz 文件, 不存在或者比原文件旧时返回 null
+	 */
+	public static File getGzipFile(File responseFile) {
+		File gzipFile = new File(responseFile.getPath() + ".gz");
+		if(gzipFile.isFile() && gzipFile.lastModified() >= responseFile.lastModified()) {
+			return gzipFile;
 		}
+		return null;
 	}
 
 	/**
@@ -0,0 +1,632 @@
+package org.voovan.http.server.router;
+
+import org.voovan.http.server.MimeTools;
+import org.voovan.http.server.context.WebContext;
+import org.voovan.http.server.context.WebServerConfig;
+import org.voovan.tools.TDateTime;
+import org.voovan.tools.TEnv;
+import org.voovan.tools.TFile;
+import org.voovan.tools.TZip;
+import org.voovan.tools.buffer.TByteBuffer;
+import org.voovan.tools.log.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 静态文件缓存
+ *      缓存文件的修改时间, 长度, ETag 和预先压缩的 gzip 内容, 命中时不再访问文件系统
+ *      小文件的内容保存在非堆内存中, 大文件仍然通过文件直传发送
+ *      命中时不加锁, 访问记录写入按线程分段的缓冲区, 批量更新访问顺序, 锁繁忙时丢弃访问记录
+ *      占用的内存超过 StaticFileCacheSize 时, 按访问顺序淘汰最久未使用的条目
+ *      同一个文件同时未命中时只加载一次, 其他请求等待加载的结果
+ *      通过 WatchService 监听缓存文件所在的目录, 文件变化时通过路径索引移除对应的缓存
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class StaticFileCache {
+	public final static boolean STATIC_FILE_CACHE = TEnv.getSystemProperty("StaticFileCache", true);
+	public final static long CACHE_SIZE = TEnv.getSystemProperty("StaticFileCacheSize", 64 * 1024 * 1024L);
+	public final static int MAX_FILE_SIZE = TEnv.getSystemProperty("StaticFileCacheMaxFileSize", 1024 * 1024);
+
+	//没有缓存内容的条目按固定大小计算, 限制条目的数量
+	private final static int ENTRY_BASE_SIZE = 256;
+	//每个分段缓冲的访问记录数量
+	private final static int READ_BUFFER_SIZE = 32;
+
+	/**
+	 * 缓存条目
+	 *      使用引用计数, 被淘汰时等待正在使用的请求释放后再回收内存
+	 */
+	public static class Entry {
+		private File file;
+		private Path path;
+		private long lastModified;
+		private long length;
+		private String eTag;
+		private String gzipETag;
+		private int mark;
+		private int gzipMark;
+		private String lastModifiedGMT;
+		private ByteBuffer content;
+		private File gzipFile;
+		private ByteBuffer gzipContent;
+		private long weight;
+		private AtomicInteger refCount = new AtomicInteger(1);
+
+		public File getFile() {
+			return file;
+		}
+
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		public long getLength() {
+			return length;
+		}
+
+		public String getETag() {
+			return eTag;
+		}
+
+		/**
+		 * 获取 gzip 内容的 ETag, 和原内容的 ETag 区分
+		 * @return gzip 内容的 ETag
+		 */
+		public String getGzipETag() {
+			return gzipETag;
+		}
+
+		/**
+		 * 获取内容的标记, 由 ETag 预先计算, 用于响应缓存
+		 * @param isGzip 是否是 gzip 内容
+		 * @return 内容的标记
+		 */
+		public int getMark(boolean isGzip) {
+			return isGzip ? gzipMark : mark;
+		}
+
+		public String getLastModifiedGMT() {
+			return lastModifiedGMT;
+		}
+
+		/**
+		 * 获取缓存的文件内容
+		 * @return 只读的缓冲区, 大文件返回 null
+		 */
+		public ByteBuffer getContent() {
+			return content == null ? null : content.asReadOnlyBuffer();
+		}
+
+		/**
+		 * 获取预先压缩的 .gz 文件
+		 * @return .gz 文件, 不存在返回 null
+		 */
+		public File getGzipFile() {
+			return gzipFile;
+		}
+
+		/**
+		 * 是否存在 gzip 内容
+		 * @return true: 存在缓存的 gzip 内容或者 .gz 文件
+		 */
+		public boolean hasGzip() {
+			return gzipContent != null || gzipFile != null;
+		}
+
+		/**
+		 * 获取 gzip 压缩后的内容, 来自 .gz 文件或者加载时压缩
+		 * @return 只读的缓冲区, 没有时返回 null
+		 */
+		public ByteBuffer getGzipContent() {
+			return gzipContent == null ? null : gzipContent.asReadOnlyBuffer();
+		}
+
+		boolean retain() {
+			while (true) {
+				int count = refCount.get();
+				if (count <= 0) {
+					return false;
+				}
+
+				if (refCount.compareAndSet(count, count + 1)) {
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * 释放条目的引用, 引用全部释放后回收内存
+		 */
+		public void release() {
+			if (refCount.decrementAndGet() == 0) {
+				TByteBuffer.release(content);
+				TByteBuffer.release(gzipContent);
+				content = null;
+				gzipContent = null;
+			}
+		}
+	}
+
+	private ConcurrentHashMap<Path, Entry> entries = new ConcurrentHashMap<Path, Entry>();
+	//按访问顺序排列, 头部是最久未使用的条目, 需要持有锁
+	private LinkedHashMap<Path, Entry> accessOrder = new LinkedHashMap<Path, Entry>(16, 0.75f, true);
+	//目录到其中缓存文件的索引, 目录变化时不需要遍历全部条目
+	private HashMap<Path, HashSet<Path>> dirIndex = new HashMap<Path, HashSet<Path>>();
+	private ReentrantLock lock = new ReentrantLock();
+	//正在加载的文件
+	private ConcurrentHashMap<Path, CompletableFuture<Entry>> loading = new ConcurrentHashMap<Path, CompletableFuture<Entry>>();
+	//命中时的访问记录, 按线程分段
+	private AtomicReferenceArray<Entry>[] readBuffers;
+	private AtomicInteger[] readCounts;
+	private int readBufferMask;
+	private ConcurrentHashMap<Path, WatchKey> watchedDirs = new ConcurrentHashMap<Path, WatchKey>();
+	private AtomicLong size = new AtomicLong(0);
+	//文件变化的次数, 用于丢弃加载过程中发生了变化的条目
+	private AtomicLong version = new AtomicLong(0);
+	private long maxSize;
+	private int maxFileSize;
+	private WatchService watchService;
+	private Thread watchThread;
+
+	/**
+	 * 构造函数
+	 * @param maxSize 缓存占用的最大内存
+	 * @param maxFileSize 缓存内容的最大文件大小, 超过的文件只缓存文件信息
+	 */
+	@SuppressWarnings("unchecked")
+	public StaticFileCache(long maxSize, int maxFileSize) {
+		this.maxSize = maxSize;
+		this.maxFileSize = maxFileSize;
+
+		int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+		readBuffers = new AtomicReferenceArray[stripes];
+		readCounts = new AtomicInteger[stripes];
+		for (int i = 0; i < stripes; i++) {
+			readBuffers[i] = new AtomicReferenceArray<Entry>(READ_BUFFER_SIZE);
+			readCounts[i] = new AtomicInteger(0);
+		}
+		readBufferMask = stripes - 1;
+
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+		} catch (IOException e) {
+			Logger.warn("StaticFileCache create WatchService failed, static file cache is disabled", e);
+		}
+	}
+
+	/**
+	 * 构造函数
+	 *      使用 StaticFileCacheSize 和 StaticFileCacheMaxFileSize 的配置
+	 */
+	public StaticFileCache() {
+		this(CACHE_SIZE, MAX_FILE_SIZE);
+	}
+
+	/**
+	 * 获取缓存占用的内存
+	 * @return 缓存占用的内存
+	 */
+	public long size() {
+		return size.get();
+	}
+
+	/**
+	 * 获取文件的缓存条目, 未缓存时加载
+	 *      使用完成后需要调用 Entry.release()
+	 * @param file 文件对象
+	 * @return 缓存条目, 文件不存在或者缓存不可用时返回 null
+	 */
+	public Entry get(File file) {
+		if (watchService == null) {
+			return null;
+		}
+
+		Path path = file.getAbsoluteFile().toPath();
+		Entry entry = entries.get(path);
+		if (entry != null && entry.retain()) {
+			recordAccess(entry);
+			return entry;
+		}
+
+		if (!file.isFile()) {
+			return null;
+		}
+
+		//已经有请求在加载这个文件时等待加载的结果
+		CompletableFuture<Entry> future = new CompletableFuture<Entry>();
+		CompletableFuture<Entry> loadingFuture = loading.putIfAbsent(path, future);
+		if (loadingFuture != null) {
+			entry = loadingFuture.join();
+			//加载失败或者未缓存的条目已经被释放, 不放入缓存直接加载
+			return entry != null && entry.retain() ? entry : load(file, path);
+		}
+
+		entry = null;
+		try {
+			entry = loadAndCache(file, path);
+			return entry;
+		} finally {
+			future.complete(entry);
+			loading.remove(path, future);
+		}
+	}
+
+	/**
+	 * 加载文件的缓存条目并放入缓存
+	 * @param file 文件对象
+	 * @param path 文件的绝对路径
+	 * @return 缓存条目, 文件不存在返回 null
+	 */
+	private Entry loadAndCache(File file, Path path) {
+		//先监听目录再加载, 加载过程中文件发生变化时不放入缓存
+		boolean isWatched = watch(path.getParent());
+		long currentVersion = version.get();
+		Entry entry = load(file, path);
+		if (entry == null || !isWatched) {
+			return entry;
+		}
+
+		lock.lock();
+		try {
+			if (version.get() != currentVersion) {
+				return entry;
+			}
+
+			//加入缓存的引用
+			entry.retain();
+			remove(path);
+			entries.put(path, entry);
+			accessOrder.put(path, entry);
+			dirIndex.computeIfAbsent(path.getParent(), dir -> new HashSet<Path>()).add(path);
+			size.addAndGet(entry.weight);
+
+			if (size.get() > maxSize) {
+				drainAccess();
+				evict();
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		return entry;
+	}
+
+	/**
+	 * 记录命中的条目
+	 *      写入当前线程对应的分段缓冲区, 缓冲区写满时获取到锁才更新访问顺序, 否则丢弃这次访问记录
+	 * @param entry 缓存条目
+	 */
+	private void recordAccess(Entry entry) {
+		int stripe = (int) Thread.currentThread().getId() & readBufferMask;
+		int index = readCounts[stripe].getAndIncrement();
+		if (index < READ_BUFFER_SIZE) {
+			readBuffers[stripe].lazySet(index, entry);
+			if (index < READ_BUFFER_SIZE - 1) {
+				return;
+			}
+		}
+
+		if (lock.tryLock()) {
+			try {
+				drainAccess();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * 按缓冲的访问记录更新访问顺序, 调用方需要持有锁
+	 */
+	private void drainAccess() {
+		for (int stripe = 0; stripe < readBuffers.length; stripe++) {
+			AtomicReferenceArray<Entry> readBuffer = readBuffers[stripe];
+			int count = Math.min(readCounts[stripe].get(), READ_BUFFER_SIZE);
+			for (int i = 0; i < count; i++) {
+				Entry entry = readBuffer.getAndSet(i, null);
+				if (entry != null) {
+					//访问顺序的 LinkedHashMap 在 get 时移动到尾部, 已经移除的条目不会被加入
+					accessOrder.get(entry.path);
+				}
+			}
+			readCounts[stripe].set(0);
+		}
+	}
+
+	/**
+	 * 加载文件的缓存条目
+	 * @param file 文件对象
+	 * @param path 文件的绝对路径
+	 * @return 缓存条目, 文件不存在返回 null
+	 */
+	private Entry load(File file, Path path) {
+		if (!file.isFile()) {
+			return null;
+		}
+
+		Entry entry = new Entry();
+		entry.file = file;
+		entry.path = path;
+		entry.lastModified = file.lastModified();
+		entry.length = file.length();
+		entry.eTag = MimeFileRouter.getETag(file, entry.lastModified);
+		entry.gzipETag = MimeFileRouter.getGzipETag(entry.eTag);
+		entry.mark = entry.eTag.hashCode();
+		entry.gzipMark = entry.gzipETag.hashCode();
+		entry.lastModifiedGMT = TDateTime.formatToGMT(new Date(entry.lastModified));
+		entry.weight = ENTRY_BASE_SIZE;
+
+		try {
+			if (entry.length <= maxFileSize) {
+				byte[] bytes = TFile.loadFile(file);
+				if (bytes == null || bytes.length != entry.length) {
+					return null;
+				}
+				entry.content = toDirect(bytes);
+				entry.weight += bytes.length;
+
+				//支持压缩的文件预先计算 gzip 内容
+				File gzipFile = MimeFileRouter.getGzipFile(file);
+				if (gzipFile != null) {
+					entry.gzipFile = gzipFile;
+					if (gzipFile.length() <= maxFileSize) {
+						byte[] gzipBytes = TFile.loadFile(gzipFile);
+						entry.gzipContent = gzipBytes == null ? null : toDirect(gzipBytes);
+					}
+				} else if (isGzipMime(file, bytes.length)) {
+					entry.gzipContent = toDirect(TZip.encodeGZip(bytes));
+				}
+
+				if (entry.gzipContent != null) {
+					entry.weight += entry.gzipContent.capacity();
+				}
+			} else {
+				entry.gzipFile = MimeFileRouter.getGzipFile(file);
+			}
+		} catch (IOException e) {
+			Logger.error("StaticFileCache load file " + file.getPath() + " failed", e);
+			entry.release();
+			return null;
+		}
+
+		return entry;
+	}
+
+	private static ByteBuffer toDirect(byte[] bytes) {
+		ByteBuffer byteBuffer = TByteBuffer.allocateDirect(bytes.length);
+		byteBuffer.put(bytes);
+		byteBuffer.flip();
+		return byteBuffer;
+	}
+
+	/**
+	 * 判断文件是否需要预先压缩, 和 WebServerHandler 中的 gzip 启用检测一致
+	 * @param file 文件对象
+	 * @param length 文件长度
+	 * @return true: 需要预先压缩
+	 */
+	private static boolean isGzipMime(File file, int length) {
+		WebServerConfig webServerConfig = WebContext.getWebServerConfig();
+		if (webServerConfig == null || !webServerConfig.isGzip() || length <= webServerConfig.getGzipMinSize()) {
+			return false;
+		}
+
+		String fileExtension = TFile.getFileExtension(file.getName());
+		if (fileExtension == null) {
+			return false;
+		}
+
+		String mimeType = MimeTools.getMimeByFileExtension(fileExtension);
+		if (MimeTools.isCompressedMime(mimeType)) {
+			return false;
+		}
+
+		for (String gzipMimeType : webServerConfig.getGzipMimeType()) {
+			if (mimeType.contains(gzipMimeType)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 从访问顺序的头部淘汰条目, 直到占用的内存小于最大值
+	 *      调用方需要持有锁
+	 */
+	private void evict() {
+		Iterator<Entry> iterator = accessOrder.values().iterator();
+		while (size.get() > maxSize && iterator.hasNext()) {
+			Entry entry = iterator.next();
+			iterator.remove();
+			entries.remove(entry.path, entry);
+			unindex(entry.path);
+			size.addAndGet(-entry.weight);
+			entry.release();
+		}
+	}
+
+	/**
+	 * 移除条目, 调用方需要持有锁
+	 * @param path 文件的绝对路径
+	 */
+	private void remove(Path path) {
+		Entry entry = entries.remove(path);
+		if (entry != null) {
+			accessOrder.remove(path);
+			unindex(path);
+			size.addAndGet(-entry.weight);
+			entry.release();
+		}
+	}
+
+	private void unindex(Path path) {
+		HashSet<Path> paths = dirIndex.get(path.getParent());
+		if (paths != null) {
+			paths.remove(path);
+			if (paths.isEmpty()) {
+				dirIndex.remove(path.getParent());
+			}
+		}
+	}
+
+	/**
+	 * 移除文件的缓存条目
+	 * @param file 文件对象
+	 */
+	public void invalidate(File file) {
+		invalidate(file.getAbsoluteFile().toPath());
+	}
+
+	private void invalidate(Path path) {
+		lock.lock();
+		try {
+			version.incrementAndGet();
+			remove(path);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 移除目录中全部文件的缓存条目
+	 * @param dir 目录
+	 */
+	private void invalidateDir(Path dir) {
+		lock.lock();
+		try {
+			version.incrementAndGet();
+			HashSet<Path> paths = dirIndex.get(dir);
+			if (paths != null) {
+				for (Path path : paths.toArray(new Path[0])) {
+					remove(path);
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 移除全部缓存条目
+	 */
+	public void clear() {
+		lock.lock();
+		try {
+			version.incrementAndGet();
+			for (Path path : entries.keySet().toArray(new Path[0])) {
+				remove(path);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 关闭缓存, 停止监听目录并释放全部条目
+	 */
+	public void close() {
+		if (watchService != null) {
+			try {
+				watchService.close();
+			} catch (IOException e) {
+				Logger.error("StaticFileCache close WatchService failed", e);
+			}
+			watchService = null;
+		}
+		clear();
+	}
+
+	/**
+	 * 监听文件所在的目录
+	 * @param dir 目录
+	 * @return true: 已经在监听, false: 无法监听, 不能缓存这个目录中的文件
+	 */
+	private boolean watch(Path dir) {
+		if (watchedDirs.containsKey(dir)) {
+			return true;
+		}
+
+		synchronized (this) {
+			if (watchedDirs.containsKey(dir)) {
+				return true;
+			}
+
+			try {
+				WatchKey watchKey = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+				watchedDirs.put(dir, watchKey);
+			} catch (IOException | ClosedWatchServiceException e) {
+				Logger.warn("StaticFileCache watch " + dir + " failed", e);
+				return false;
+			}
+
+			if (watchThread == null) {
+				watchThread = new Thread(this::processEvents, "StaticFileCache-Watcher");
+				watchThread.setDaemon(true);
+				watchThread.start();
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * 处理目录变化的事件, 移除变化的文件和对应 .gz 文件的原文件
+	 */
+	private void processEvents() {
+		WatchService currentWatchService = watchService;
+		while (currentWatchService != null) {
+			WatchKey watchKey;
+			try {
+				watchKey = currentWatchService.take();
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				return;
+			}
+
+			Path dir = (Path) watchKey.watchable();
+			for (WatchEvent<?> event : watchKey.pollEvents()) {
+				if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					invalidateDir(dir);
+					continue;
+				}
+
+				String fileName = event.context().toString();
+				invalidate(dir.resolve(fileName));
+				if (fileName.endsWith(".gz")) {
+					invalidate(dir.resolve(fileName.substring(0, fileName.length() - 3)));
+				}
+			}
+
+			//目录被删除或者无法访问
+			if (!watchKey.reset()) {
+				watchedDirs.remove(dir, watchKey);
+				invalidateDir(dir);
+			}
+		}
+	}
+}
@@ -1,11 +1,17 @@
 package org.voovan.network.messagesplitter;
 
 import org.voovan.http.HttpRequestType;
+import org.voovan.http.message.HttpParserState;
+import org.voovan.http.message.HttpStatic;
+import org.voovan.http.message.Response;
 import org.voovan.http.server.HttpSessionState;
+import org.voovan.http.server.WebServerFilter;
 import org.voovan.http.server.WebServerHandler;
 import org.voovan.network.IoSession;
 import org.voovan.network.MessageSplitter;
+import org.voovan.tools.log.Logger;
 
+import java.io.IOException;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 
@@ -19,6 +25,19 @@ import java.nio.ByteBuffer;
  * Licence: Apache v2 License
  */
 public class HttpMessageSplitter implements MessageSplitter {
+    private boolean isRequest;
+
+    public HttpMessageSplitter() {
+        this(false);
+    }
+
+    /**
+     * 构造函数
+     * @param isRequest true: 分割请求报文, 请求报文完整后才交给过滤器解析, false: 直接交给过滤器以流的方式解析
+     */
+    public HttpMessageSplitter(boolean isRequest) {
+        this.isRequest = isRequest;
+    }
 
     @Override
     public int canSplite(IoSession session, ByteBuffer byteBuffer) {
@@ -38,12 +57,52 @@ public class HttpMessageSplitter implements MessageSplitter {
                 httpSessionState.setType(HttpRequestType.HTTP);
 			}
 
+            if(isRequest && httpSessionState.isHttp()) {
+                //增量扫描请求报文, 报文不完整时等待下一次读事件, 不阻塞 IO 线程
+                int length = httpSessionState.getParserState().parse(byteBuffer, WebServerFilter.MAX_REQUEST_SIZE);
+                if(length == HttpParserState.NEED_MORE_DATA) {
+                    return MessageSplitter.WAIT_DATA;
+                } else if(length == HttpParserState.TOO_LARGE) {
+                    reject(session, httpSessionState, 413);
+                    return MessageSplitter.WAIT_DATA;
+                } else if(length == HttpParserState.BAD_REQUEST) {
+                    reject(session, httpSessionState, 400);
+                    return MessageSplitter.WAIT_DATA;
+                } else if(length == HttpParserState.SERVER_ERROR) {
+                    reject(session, httpSessionState, 500);
+                    return MessageSplitter.WAIT_DATA;
+                }
+            }
+
             return 0;
         }
 
         return result;
     }
 
+    /**
+     * 拒绝无法解析的请求
+     *      缓冲区中剩余的数据无法确定边界, 所以发送响应后关闭连接
+     * @param session socket 会话对象
+     * @param httpSessionState Http 会话状态
+     * @param status 响应的状态码
+     */
+    private static void reject(IoSession session, HttpSessionState httpSessionState, int status) {
+        httpSessionState.getParserState().reset();
+
+        Response response = new Response();
+        response.protocol().setStatus(status);
+        response.header().put(HttpStatic.CONNECTION_STRING, HttpStatic.CLOSE_STRING);
+        try {
+            response.send(session);
+            session.flush();
+        } catch (IOException e) {
+            Logger.error("HttpMessageSplitter send reject response failed", e);
+        } finally {
+            session.close();
+        }
+    }
+
     /**
      * 判断缓冲区中的数据是否是一个 WebSocket 帧
      * @param buffer 缓冲区对象
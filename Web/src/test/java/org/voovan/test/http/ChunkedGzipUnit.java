@@ -0,0 +1,232 @@
+package org.voovan.test.http;
+
+import junit.framework.TestCase;
+import org.voovan.http.message.HttpStatic;
+import org.voovan.http.server.WebServer;
+import org.voovan.http.server.context.WebServerConfig;
+import org.voovan.tools.TFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * gzip chunked 响应测试
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class ChunkedGzipUnit extends TestCase {
+	private final static int PORT = 28155;
+	private final static int SEND_BUFFER_SIZE = 4096;
+
+	private static WebServer webServer;
+	private static File dir;
+	private static byte[] largeContent;
+
+	/**
+	 * 可压缩但压缩后仍然远大于发送缓冲区的文本
+	 */
+	private static byte[] createContent(int size) {
+		byte[] words = "voovan framework chunked gzip encoder test ".getBytes();
+		Random random = new Random(size);
+		byte[] content = new byte[size];
+		for (int i = 0; i < size; i++) {
+			content[i] = random.nextInt(4) == 0 ? (byte) ('a' + random.nextInt(26)) : words[i % words.length];
+		}
+		return content;
+	}
+
+	private static byte[] gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream)) {
+			gzipOutputStream.write(data);
+		}
+		return byteArrayOutputStream.toByteArray();
+	}
+
+	private static byte[] gunzip(byte[] data) throws IOException {
+		try (GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(data))) {
+			ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int readSize;
+			while ((readSize = gzipInputStream.read(buffer)) != -1) {
+				byteArrayOutputStream.write(buffer, 0, readSize);
+			}
+			return byteArrayOutputStream.toByteArray();
+		}
+	}
+
+	private static File writeFile(String name, byte[] content) {
+		File file = new File(dir, name);
+		TFile.writeFile(file, false, content, 0, content.length);
+		return file;
+	}
+
+	@Override
+	public void setUp() {
+		if (webServer != null) {
+			return;
+		}
+
+		largeContent = createContent(256 * 1024);
+
+		//临时目录中的 body 文件在响应清理时会被删除, 所以放在工作目录中
+		dir = new File(TFile.getSystemPath(TFile.assemblyPath("target", "ChunkedGzipUnit")));
+		TFile.mkdir(dir.getPath() + File.separator);
+		writeFile("large.txt", largeContent);
+
+		WebServerConfig config = new WebServerConfig();
+		config.setHost("127.0.0.1");
+		config.setPort(PORT);
+		config.setContextPath(dir.getPath());
+		webServer = WebServer.newInstance(config);
+		webServer.get("/bytes", (request, response) -> {
+			response.header().put(HttpStatic.CONTENT_TYPE_STRING, HttpStatic.TEXT_PLAIN_STRING);
+			response.write(largeContent);
+		});
+		//静态文件路由会使用缓存的压缩内容, 这里直接使用文件作为 body
+		webServer.get("/file", (request, response) -> {
+			response.header().put(HttpStatic.CONTENT_TYPE_STRING, HttpStatic.TEXT_PLAIN_STRING);
+			response.body().changeToFile(new File(dir, "large.txt"));
+		});
+		webServer.syncServe();
+		//接受的连接使用监听 socket 的发送缓冲区大小
+		webServer.getServerSocket().setSendBufferSize(SEND_BUFFER_SIZE);
+	}
+
+	/**
+	 * 一次 HTTP 请求的响应
+	 */
+	private static class HttpResult {
+		private String statusLine;
+		private Map<String, String> headers = new HashMap<String, String>();
+		private byte[] body;
+	}
+
+	private static String readLine(InputStream inputStream) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int value;
+		while ((value = inputStream.read()) != '\n') {
+			if (value == -1) {
+				throw new IOException("Connection closed");
+			}
+			if (value != '\r') {
+				line.append((char) value);
+			}
+		}
+		return line.toString();
+	}
+
+	/**
+	 * 发送请求并按 Content-Length 或者 chunked 读取完整的响应
+	 */
+	private static HttpResult request(String path, boolean acceptGzip) throws IOException {
+		try (Socket socket = new Socket("127.0.0.1", PORT)) {
+			socket.setSoTimeout(5000);
+			String request = "GET " + path + " HTTP/1.1\r\nHost: 127.0.0.1\r\n" +
+					(acceptGzip ? "Accept-Encoding: gzip, deflate\r\n" : "") + "\r\n";
+			socket.getOutputStream().write(request.getBytes());
+
+			DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+			HttpResult result = new HttpResult();
+			result.statusLine = readLine(inputStream);
+			String line;
+			while (!(line = readLine(inputStream)).isEmpty()) {
+				int index = line.indexOf(':');
+				result.headers.put(line.substring(0, index).trim(), line.substring(index + 1).trim());
+			}
+
+			if (HttpStatic.CHUNKED_STRING.equals(result.headers.get(HttpStatic.TRANSFER_ENCODING_STRING))) {
+				ByteArrayOutputStream body = new ByteArrayOutputStream();
+				while (true) {
+					int chunkSize = Integer.parseInt(readLine(inputStream).trim(), 16);
+					if (chunkSize == 0) {
+						assertEquals("", readLine(inputStream));
+						break;
+					}
+					byte[] chunk = new byte[chunkSize];
+					inputStream.readFully(chunk);
+					body.write(chunk);
+					assertEquals("", readLine(inputStream));
+				}
+				result.body = body.toByteArray();
+			} else {
+				result.body = new byte[Integer.parseInt(result.headers.get(HttpStatic.CONTENT_LENGTH_STRING))];
+				inputStream.readFully(result.body);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * 字节形式的 body 边压缩边发送, 压缩结果大于发送缓冲区
+	 */
+	public void testBytesBody() throws IOException {
+		HttpResult result = request("/bytes", true);
+
+		assertEquals("HTTP/1.1 200 OK", result.statusLine);
+		assertEquals(HttpStatic.GZIP_STRING, result.headers.get(HttpStatic.CONTENT_ENCODING_STRING));
+		assertEquals(HttpStatic.CHUNKED_STRING, result.headers.get(HttpStatic.TRANSFER_ENCODING_STRING));
+		assertTrue(result.body.length > SEND_BUFFER_SIZE);
+		assertTrue(result.body.length < largeContent.length);
+		assertTrue(Arrays.equals(largeContent, gunzip(result.body)));
+	}
+
+	/**
+	 * 文件形式的 body 分段读取并压缩
+	 */
+	public void testFileBody() throws IOException {
+		HttpResult result = request("/file", true);
+
+		assertEquals(HttpStatic.GZIP_STRING, result.headers.get(HttpStatic.CONTENT_ENCODING_STRING));
+		assertEquals(HttpStatic.CHUNKED_STRING, result.headers.get(HttpStatic.TRANSFER_ENCODING_STRING));
+		assertTrue(result.body.length > SEND_BUFFER_SIZE);
+		assertTrue(Arrays.equals(largeContent, gunzip(result.body)));
+
+		//客户端不支持 gzip 时发送原内容
+		result = request("/file", false);
+		assertNull(result.headers.get(HttpStatic.CONTENT_ENCODING_STRING));
+		assertTrue(Arrays.equals(largeContent, result.body));
+	}
+
+	/**
+	 * 存在 .gz 文件时直接发送, 不再压缩
+	 */
+	public void testPrecompressed() throws IOException {
+		byte[] content = createContent(64 * 1024);
+		byte[] gzipContent = gzip(content);
+		writeFile("pre.txt", content);
+		File gzipFile = writeFile("pre.txt.gz", gzipContent);
+		gzipFile.setLastModified(System.currentTimeMillis() + 1000);
+
+		HttpResult result = request("/pre.txt", true);
+		assertEquals(HttpStatic.GZIP_STRING, result.headers.get(HttpStatic.CONTENT_ENCODING_STRING));
+		assertEquals(HttpStatic.ACCEPT_ENCODING_STRING, result.headers.get(HttpStatic.VARY_STRING));
+		assertNull(result.headers.get(HttpStatic.TRANSFER_ENCODING_STRING));
+		assertTrue(Arrays.equals(gzipContent, result.body));
+		assertTrue(Arrays.equals(content, gunzip(result.body)));
+
+		//再次请求仍然使用 .gz 文件
+		result = request("/pre.txt", true);
+		assertTrue(Arrays.equals(gzipContent, result.body));
+
+		//不支持 gzip 的客户端收到原文件
+		result = request("/pre.txt", false);
+		assertNull(result.headers.get(HttpStatic.CONTENT_ENCODING_STRING));
+		assertTrue(Arrays.equals(content, result.body));
+	}
+}
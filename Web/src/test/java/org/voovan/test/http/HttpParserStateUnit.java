@@ -0,0 +1,245 @@
+package org.voovan.test.http;
+
+import junit.framework.TestCase;
+import org.voovan.http.message.HttpParserState;
+import org.voovan.tools.TFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Http 请求报文增量解析测试
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class HttpParserStateUnit extends TestCase {
+
+	static final String httpRequestGet =
+			"GET /test/t?name=helyho HTTP/1.1\r\n"+
+			"Connection: keep-alive\r\n"+
+			"Host: 127.0.0.1:1031\r\n"+
+			"\r\n";
+
+	static final String httpRequestPost =
+			"POST /test/t HTTP/1.1\r\n"+
+			"Content-Type: application/x-www-form-urlencoded\r\n"+
+			"content-length: 34\r\n"+
+			"\r\n"+
+			"name=helyho&age=32%3D&address=wlmq";
+
+	static final String httpRequestChunked =
+			"POST /test/t HTTP/1.1\r\n"+
+			"Content-Type: text/plain\r\n"+
+			"Transfer-Encoding: chunked\r\n"+
+			"\r\n"+
+			"6\r\n"+
+			"helyho\r\n"+
+			"a\r\n"+
+			"0123456789\r\n"+
+			"0\r\n"+
+			"\r\n";
+
+	static final String boundary = "----VoovanBoundary7MA4YWxkTrZu0gW";
+
+	/**
+	 * 构造 multipart 报文
+	 * @param fileContent 文件 part 的内容
+	 * @param withLength 是否包含 Content-Length
+	 * @param isFinished 是否包含结束的 boundary
+	 * @return 报文字节数组
+	 */
+	static byte[] multipartRequest(byte[] fileContent, boolean withLength, boolean isFinished) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		body.write(("--" + boundary + "\r\n" +
+				"Content-Disposition: form-data; name=\"name\"\r\n" +
+				"\r\n" +
+				"helyho\r\n" +
+				"--" + boundary + "\r\n" +
+				"Content-Disposition: form-data; name=\"file\"; filename=\"upload.bin\"\r\n" +
+				"Content-Type: application/octet-stream\r\n" +
+				"\r\n").getBytes());
+		body.write(fileContent);
+		body.write(("\r\n--" + boundary + (isFinished ? "--\r\n" : "\r\n")).getBytes());
+
+		ByteArrayOutputStream request = new ByteArrayOutputStream();
+		request.write(("POST /upload HTTP/1.1\r\n" +
+				"Content-Type: multipart/form-data; boundary=" + boundary + "\r\n" +
+				(withLength ? "Content-Length: " + body.size() + "\r\n" : "") +
+				"\r\n").getBytes());
+		request.write(body.toByteArray());
+		return request.toByteArray();
+	}
+
+	/**
+	 * 文件内容中包含和 boundary 相似的数据
+	 */
+	static byte[] fileContent(int size) {
+		byte[] mark = ("\r\n--" + boundary.substring(0, boundary.length() - 1)).getBytes();
+		byte[] content = new byte[size];
+		for(int i=0; i<size; i++) {
+			content[i] = i % 4096 < mark.length ? mark[i % 4096] : (byte) i;
+		}
+		return content;
+	}
+
+	/**
+	 * 分段写入报文, 和 MessageLoader 一样每次解析后压缩缓冲区
+	 * @param byteBuffer 缓冲区, 写模式
+	 * @param bytes 报文
+	 * @param chunkSize 每次写入的大小
+	 * @return 最后一次解析的结果, 报文完整时缓冲区为读模式, position 为报文的起始位置
+	 */
+	private int parseInChunks(HttpParserState parserState, ByteBuffer byteBuffer, byte[] bytes, int chunkSize) {
+		int result = HttpParserState.NEED_MORE_DATA;
+		for(int i=0; i<bytes.length; i=i+chunkSize) {
+			byteBuffer.put(bytes, i, Math.min(chunkSize, bytes.length - i));
+			byteBuffer.flip();
+			result = parserState.parse(byteBuffer, -1);
+			if(result != HttpParserState.NEED_MORE_DATA) {
+				return result;
+			}
+			byteBuffer.compact();
+		}
+
+		return result;
+	}
+
+	/**
+	 * 逐字节写入报文, 模拟缓慢发送数据的客户端
+	 * @param request 请求报文
+	 * @return 报文完整时的报文长度
+	 */
+	private int parseByteByByte(HttpParserState parserState, String request) {
+		byte[] bytes = request.getBytes();
+		ByteBuffer byteBuffer = ByteBuffer.allocate(bytes.length + 64);
+
+		for(int i=0; i<bytes.length; i++) {
+			byteBuffer.put(bytes[i]);
+			byteBuffer.flip();
+			int result = parserState.parse(byteBuffer, -1);
+			byteBuffer.position(byteBuffer.limit());
+			byteBuffer.limit(byteBuffer.capacity());
+
+			if(i < bytes.length - 1) {
+				assertEquals(HttpParserState.NEED_MORE_DATA, result);
+			} else {
+				return result;
+			}
+		}
+
+		return HttpParserState.NEED_MORE_DATA;
+	}
+
+	public void testGet() {
+		HttpParserState parserState = new HttpParserState();
+		assertEquals(httpRequestGet.length(), parseByteByByte(parserState, httpRequestGet));
+		assertEquals(0, parserState.getOffset());
+	}
+
+	public void testContentLength() {
+		HttpParserState parserState = new HttpParserState();
+		assertEquals(httpRequestPost.length(), parseByteByByte(parserState, httpRequestPost));
+	}
+
+	public void testChunked() {
+		HttpParserState parserState = new HttpParserState();
+		assertEquals(httpRequestChunked.length(), parseByteByByte(parserState, httpRequestChunked));
+	}
+
+	public void testPipeline() {
+		HttpParserState parserState = new HttpParserState();
+		ByteBuffer byteBuffer = ByteBuffer.wrap((httpRequestPost + httpRequestGet).getBytes());
+		assertEquals(httpRequestPost.length(), parserState.parse(byteBuffer, -1));
+
+		byteBuffer.position(httpRequestPost.length());
+		assertEquals(httpRequestGet.length(), parserState.parse(byteBuffer, -1));
+	}
+
+	public void testTooLarge() {
+		HttpParserState parserState = new HttpParserState();
+		ByteBuffer byteBuffer = ByteBuffer.wrap("GET /test/t HTTP/1.1\r\nHost: 127.0.0.1".getBytes());
+		assertEquals(HttpParserState.TOO_LARGE, parserState.parse(byteBuffer, 16));
+	}
+
+	public void testMalformedChunkSize() {
+		HttpParserState parserState = new HttpParserState();
+		ByteBuffer byteBuffer = ByteBuffer.wrap(("POST /test/t HTTP/1.1\r\n" +
+				"Content-Type: text/plain\r\n" +
+				"Transfer-Encoding: chunked\r\n" +
+				"\r\n" +
+				"zz\r\n").getBytes());
+		assertEquals(HttpParserState.BAD_REQUEST, parserState.parse(byteBuffer, -1));
+	}
+
+	public void testChunkTooLarge() {
+		HttpParserState parserState = new HttpParserState();
+		ByteBuffer byteBuffer = ByteBuffer.wrap(httpRequestChunked.getBytes());
+		assertEquals(HttpParserState.TOO_LARGE, parserState.parse(byteBuffer, 90));
+	}
+
+	public void testMultipartWithoutLength() throws IOException {
+		HttpParserState parserState = new HttpParserState();
+		ByteBuffer byteBuffer = ByteBuffer.wrap(multipartRequest(new byte[16], false, true));
+		assertEquals(HttpParserState.BAD_REQUEST, parserState.parse(byteBuffer, -1));
+	}
+
+	public void testMultipartTooLarge() throws IOException {
+		HttpParserState parserState = new HttpParserState();
+		ByteBuffer byteBuffer = ByteBuffer.wrap(multipartRequest(new byte[4096], true, true));
+		assertEquals(HttpParserState.TOO_LARGE, parserState.parse(byteBuffer, 1024));
+	}
+
+	/**
+	 * 大于 MULTIPART_BUFFER_SIZE 的上传边接收边写入文件, 缓冲区远小于报文
+	 */
+	@SuppressWarnings("unchecked")
+	public void testStreamedMultipart() throws IOException {
+		byte[] content = fileContent(HttpParserState.MULTIPART_BUFFER_SIZE + 100 * 1024);
+		byte[] request = multipartRequest(content, true, true);
+		int headLength = new String(request).indexOf("\r\n\r\n") + 4;
+
+		HttpParserState parserState = new HttpParserState();
+		ByteBuffer byteBuffer = ByteBuffer.allocate(64 * 1024);
+		assertEquals(headLength, parseInChunks(parserState, byteBuffer, request, 997));
+
+		//缓冲区中只剩下请求头
+		assertEquals(headLength, byteBuffer.remaining());
+		assertTrue(new String(request, 0, headLength).equals(new String(byteBuffer.array(), byteBuffer.position(), headLength)));
+
+		List<Object[]> bodyParts = parserState.takeBodyParts();
+		assertNull(parserState.takeBodyParts());
+		assertEquals(2, bodyParts.size());
+
+		Object[] valuePart = bodyParts.get(0);
+		assertEquals("form-data; name=\"name\"", ((Map<String, Object>)valuePart[0]).get("Content-Disposition"));
+		assertEquals("helyho", new String((byte[]) valuePart[1]));
+
+		Object[] filePart = bodyParts.get(1);
+		assertNull(filePart[1]);
+		File file = new File(new String((byte[]) filePart[2]));
+		assertTrue(Arrays.equals(content, TFile.loadFile(file)));
+		file.delete();
+	}
+
+	/**
+	 * 报文体完整但是没有结束的 boundary, 删除已经写入的文件
+	 */
+	public void testStreamedMultipartMalformed() throws IOException {
+		byte[] request = multipartRequest(fileContent(HttpParserState.MULTIPART_BUFFER_SIZE + 1024), true, false);
+
+		HttpParserState parserState = new HttpParserState();
+		ByteBuffer byteBuffer = ByteBuffer.allocate(64 * 1024);
+		assertEquals(HttpParserState.BAD_REQUEST, parseInChunks(parserState, byteBuffer, request, 8192));
+		parserState.reset();
+		assertNull(parserState.takeBodyParts());
+	}
+}
@@ -5,6 +5,7 @@ import org.voovan.http.message.HttpParser;
 import org.voovan.http.message.HttpStatic;
 import org.voovan.http.message.Request;
 import org.voovan.http.message.Response;
+import org.voovan.http.message.packet.Header;
 import org.voovan.tools.buffer.ByteBufferChannel;
 import org.voovan.tools.TEnv;
 
@@ -102,6 +103,33 @@ public class HttpParserUnit extends TestCase {
 		assertEquals(request.getQueryString("UTF-8"),"name=helyho&age=32=&address=wlmq");
 	}
 
+	public void testLazyHeader() throws IOException{
+		String head = "Connection: keep-alive\r\n"+
+				"HOST: 127.0.0.1:1031\r\n"+
+				"Content-Length: 34\r\n"+
+				"host: localhost\r\n"+
+				"\r\nbody";
+		ByteBuffer byteBuffer = ByteBuffer.wrap(head.getBytes());
+		Header header = new Header();
+		assertTrue(HttpParser.parseHeader(header, byteBuffer));
+		assertEquals("body", new String(byteBuffer.array(), byteBuffer.position(), byteBuffer.remaining()));
+
+		assertEquals("127.0.0.1:1031\r\nlocalhost", header.get(HttpStatic.HOST_STRING));
+		assertEquals("34", header.get("content-length"));
+		assertTrue(header.contain(HttpStatic.CONNECTION_STRING));
+		assertFalse(header.contain(HttpStatic.COOKIE_STRING));
+		assertNull(header.get("Content-Type"));
+
+		header.put("Content-Type", "text/html");
+		assertEquals(4, header.size());
+		assertEquals("keep-alive", header.get("connection"));
+
+		//没有完整的 header
+		byteBuffer = ByteBuffer.wrap("Host: 127.0.0.1\r\n".getBytes());
+		assertFalse(HttpParser.parseHeader(header, byteBuffer));
+		assertEquals(0, byteBuffer.position());
+	}
+
 	public void testResposne() throws IOException{
 		ByteBufferChannel b = new ByteBufferChannel();
 		Response response = HttpParser.parseResponse(null, b, 30000);
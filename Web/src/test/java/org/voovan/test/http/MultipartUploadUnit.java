@@ -0,0 +1,161 @@
+package org.voovan.test.http;
+
+import junit.framework.TestCase;
+import org.voovan.http.message.HttpParserState;
+import org.voovan.http.message.HttpStatic;
+import org.voovan.http.message.packet.Part;
+import org.voovan.http.server.WebServer;
+import org.voovan.http.server.context.WebServerConfig;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 上传和异常请求报文在 IO 线程中的处理测试
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class MultipartUploadUnit extends TestCase {
+	private final static int PORT = 28160;
+
+	private static WebServer webServer;
+	private static byte[] content;
+
+	@Override
+	public void setUp() {
+		if (webServer != null) {
+			return;
+		}
+
+		content = HttpParserStateUnit.fileContent(HttpParserState.MULTIPART_BUFFER_SIZE + 200 * 1024);
+
+		WebServerConfig config = new WebServerConfig();
+		config.setHost("127.0.0.1");
+		config.setPort(PORT);
+		webServer = WebServer.newInstance(config);
+		webServer.post("/upload", (request, response) -> {
+			StringBuilder result = new StringBuilder();
+			for (Part part : request.parts()) {
+				result.append(part.getName()).append("=");
+				if (part.getFileName() == null) {
+					result.append(part.body().getBodyString());
+				} else {
+					result.append(part.body().isFile()).append(":").append(Arrays.equals(content, part.body().getBodyBytes()));
+				}
+				result.append(";");
+			}
+			response.write(result.toString());
+		});
+		webServer.get("/ping", (request, response) -> {
+			response.write("pong");
+		});
+		webServer.syncServe();
+	}
+
+	/**
+	 * 一次 HTTP 请求的响应
+	 */
+	private static class HttpResult {
+		private String statusLine;
+		private Map<String, String> headers = new HashMap<String, String>();
+		private String body;
+	}
+
+	private static String readLine(InputStream inputStream) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int value;
+		while ((value = inputStream.read()) != '\n') {
+			if (value == -1) {
+				throw new IOException("Connection closed");
+			}
+			if (value != '\r') {
+				line.append((char) value);
+			}
+		}
+		return line.toString();
+	}
+
+	private static HttpResult readResponse(DataInputStream inputStream) throws IOException {
+		HttpResult result = new HttpResult();
+		result.statusLine = readLine(inputStream);
+		String line;
+		while (!(line = readLine(inputStream)).isEmpty()) {
+			int index = line.indexOf(':');
+			result.headers.put(line.substring(0, index).trim(), line.substring(index + 1).trim());
+		}
+
+		byte[] body = new byte[Integer.parseInt(result.headers.get(HttpStatic.CONTENT_LENGTH_STRING))];
+		inputStream.readFully(body);
+		result.body = new String(body);
+		return result;
+	}
+
+	/**
+	 * 大于 MULTIPART_BUFFER_SIZE 的上传由 IO 线程增量写入文件, 同一连接上的后续请求正常处理
+	 */
+	public void testLargeUpload() throws IOException {
+		try (Socket socket = new Socket("127.0.0.1", PORT)) {
+			socket.setSoTimeout(5000);
+
+			ByteArrayOutputStream request = new ByteArrayOutputStream();
+			request.write(HttpParserStateUnit.multipartRequest(content, true, true));
+			request.write("GET /ping HTTP/1.1\r\nHost: 127.0.0.1\r\n\r\n".getBytes());
+			socket.getOutputStream().write(request.toByteArray());
+
+			DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+			HttpResult result = readResponse(inputStream);
+			assertEquals("HTTP/1.1 200 OK", result.statusLine);
+			assertEquals("name=helyho;file=true:true;", result.body);
+
+			result = readResponse(inputStream);
+			assertEquals("pong", result.body);
+		}
+	}
+
+	/**
+	 * 错误的 chunk 长度立即返回 400, 不等待更多的数据
+	 */
+	public void testMalformedChunkSize() throws IOException {
+		try (Socket socket = new Socket("127.0.0.1", PORT)) {
+			socket.setSoTimeout(5000);
+			String request = "POST /upload HTTP/1.1\r\n" +
+					"Content-Type: text/plain\r\n" +
+					"Transfer-Encoding: chunked\r\n" +
+					"\r\n" +
+					"zz\r\n";
+			long start = System.currentTimeMillis();
+			socket.getOutputStream().write(request.getBytes());
+
+			DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+			HttpResult result = readResponse(inputStream);
+			assertTrue(result.statusLine.startsWith("HTTP/1.1 400"));
+			assertEquals(HttpStatic.CLOSE_STRING, result.headers.get(HttpStatic.CONNECTION_STRING));
+			assertTrue(System.currentTimeMillis() - start < 1000);
+			assertEquals(-1, inputStream.read());
+		}
+	}
+
+	/**
+	 * 无法确定长度的 multipart 报文返回 400
+	 */
+	public void testMultipartWithoutLength() throws IOException {
+		try (Socket socket = new Socket("127.0.0.1", PORT)) {
+			socket.setSoTimeout(5000);
+			socket.getOutputStream().write(HttpParserStateUnit.multipartRequest(new byte[16], false, true));
+
+			DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+			HttpResult result = readResponse(inputStream);
+			assertTrue(result.statusLine.startsWith("HTTP/1.1 400"));
+		}
+	}
+}
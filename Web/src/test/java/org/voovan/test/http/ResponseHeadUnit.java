@@ -0,0 +1,73 @@
+package org.voovan.test.http;
+
+import junit.framework.TestCase;
+import org.voovan.http.message.ResponseHead;
+import org.voovan.http.message.ResponseHeadEncoder;
+import org.voovan.http.message.packet.ResponseProtocol;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 响应头编码测试
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class ResponseHeadUnit extends TestCase {
+
+	private static String read(ByteBuffer byteBuffer) {
+		byteBuffer.flip();
+		byte[] bytes = new byte[byteBuffer.remaining()];
+		byteBuffer.get(bytes);
+		byteBuffer.clear();
+		return new String(bytes);
+	}
+
+	public void testEncoder() {
+		ByteBuffer byteBuffer = ByteBuffer.allocate(1024);
+
+		ResponseProtocol protocol = new ResponseProtocol();
+		ResponseHeadEncoder.writeStatusLine(byteBuffer, protocol);
+		assertEquals("HTTP/1.1 200 OK\r\n", read(byteBuffer));
+
+		protocol.setStatus(200);
+		protocol.setStatusCode("Fine");
+		ResponseHeadEncoder.writeStatusLine(byteBuffer, protocol);
+		assertEquals("HTTP/1.1 200 Fine\r\n", read(byteBuffer));
+
+		for(long length : new long[]{0, 7, 10, 12345, 1L << 40}) {
+			ResponseHeadEncoder.writeContentLength(byteBuffer, length);
+			assertEquals("Content-Length: " + length + "\r\n", read(byteBuffer));
+		}
+
+		ResponseHeadEncoder.writeHeader(byteBuffer, "Connection", "keep-alive");
+		ResponseHeadEncoder.writeHeader(byteBuffer, "X-Test", "value");
+		assertEquals("Connection: keep-alive\r\nX-Test: value\r\n", read(byteBuffer));
+
+		ResponseHeadEncoder.writeContentType(byteBuffer, "application/json", ";charset=UTF-8");
+		ResponseHeadEncoder.writeContentType(byteBuffer, "application/json", "");
+		assertEquals("Content-Type: application/json;charset=UTF-8\r\nContent-Type: application/json\r\n", read(byteBuffer));
+	}
+
+	public void testResponseHead() {
+		Map<String, String> headers = new LinkedHashMap<String, String>();
+		headers.put("Content-Type", "application/json");
+		headers.put("Cache-Control", "no-cache");
+
+		ResponseHead head = new ResponseHead(headers);
+		assertTrue(head.hasContentType());
+		assertEquals("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nCache-Control: no-cache\r\n", new String(head.getBytes()));
+
+		headers.put("Content-Length", "10");
+		try {
+			new ResponseHead(404, "Not Found", headers);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package org.voovan.test.http;
+
+import junit.framework.TestCase;
+import org.voovan.http.server.HttpDispatcher;
+import org.voovan.http.server.RouteTree;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 路由树测试
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class RouteTreeUnit extends TestCase {
+
+	static final String[] ROUTES = {
+			"/", "/user", "/user/:id", "/user/:id/profile", "/user/list", "/user/:id/:tab",
+			"/static/*", "/a/*/b", "/file/*.html", "/order/x:no", "/Mixed/Case", "/user/:name/profile"
+	};
+
+	static final String[] PATHS = {
+			"/", "//", "/user", "/user/", "/user/5", "/user/list", "/user/list/", "/user/5/profile", "/user/5/posts",
+			"/static/", "/static/js/app.js", "/static", "/a/x/b", "/a/x/y/b", "/a/b", "/file/index.html", "/file/a/b.html",
+			"/order/x12", "/mixed/case", "/Mixed/Case", "/none", "/user/5/profile/more"
+	};
+
+	private RouteTree<String> newTree(boolean ignoreCase) {
+		RouteTree<String> routeTree = new RouteTree<String>(ignoreCase);
+		for(String route : ROUTES) {
+			routeTree.add(HttpDispatcher.fixRoutePath(route), route);
+		}
+		return routeTree;
+	}
+
+	/**
+	 * 原有的匹配方式: 按路由长度倒序, 长度相同按注册顺序, 逐个正则匹配
+	 */
+	private String regexMatch(String path, boolean ignoreCase) {
+		String result = null;
+		for(String route : ROUTES) {
+			String routePath = HttpDispatcher.fixRoutePath(route);
+			if(HttpDispatcher.matchPath(path, routePath, HttpDispatcher.routePath2RegexPath(routePath), ignoreCase)) {
+				if(result == null || HttpDispatcher.fixRoutePath(result).length() < routePath.length()) {
+					result = route;
+				}
+			}
+		}
+		return result;
+	}
+
+	public void testSameAsRegex() {
+		for(boolean ignoreCase : new boolean[]{false, true}) {
+			RouteTree<String> routeTree = newTree(ignoreCase);
+			for (String path : PATHS) {
+				assertEquals(path + " ignoreCase=" + ignoreCase, regexMatch(path, ignoreCase), routeTree.match(path, null));
+			}
+		}
+	}
+
+	public void testPathVariables() {
+		RouteTree<String> routeTree = newTree(false);
+
+		Map<String, String> pathVariables = new HashMap<String, String>();
+		assertEquals("/user/:id/:tab", routeTree.match("/user/5/posts", pathVariables));
+		assertEquals("5", pathVariables.get("id"));
+		assertEquals("posts", pathVariables.get("tab"));
+
+		pathVariables.clear();
+		//路由路径更长的优先
+		assertEquals("/user/:name/profile", routeTree.match("/user/%E4%B8%AD/profile", pathVariables));
+		assertEquals("中", pathVariables.get("name"));
+		assertNull(pathVariables.get("id"));
+
+		pathVariables.clear();
+		assertEquals("/order/x:no", routeTree.match("/order/x12", pathVariables));
+		assertEquals("12", pathVariables.get("no"));
+
+		pathVariables.clear();
+		assertEquals("/user/list", routeTree.match("/user/list", pathVariables));
+		assertTrue(pathVariables.isEmpty());
+	}
+
+	public void testReplace() {
+		RouteTree<String> routeTree = newTree(false);
+		int size = routeTree.size();
+		routeTree.add("/user/:id", "replaced");
+		assertEquals(size, routeTree.size());
+		assertEquals("replaced", routeTree.match("/user/9", new LinkedHashMap<String, String>()));
+	}
+}
@@ -0,0 +1,266 @@
+package org.voovan.test.http;
+
+import junit.framework.TestCase;
+import org.voovan.http.message.packet.Body;
+import org.voovan.http.server.router.MimeFileRouter;
+import org.voovan.http.server.router.StaticFileCache;
+import org.voovan.tools.TEnv;
+import org.voovan.tools.TFile;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 静态文件缓存测试
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class StaticFileCacheUnit extends TestCase {
+
+	private File dir;
+	private StaticFileCache staticFileCache;
+
+	@Override
+	public void setUp() {
+		dir = new File(TFile.assemblyPath(TFile.getTemporaryPath(), "voovan", "StaticFileCacheUnit"));
+		TFile.mkdir(dir.getPath() + File.separator);
+		staticFileCache = new StaticFileCache(10000, 4096);
+	}
+
+	@Override
+	public void tearDown() {
+		staticFileCache.close();
+		TFile.deleteFile(dir);
+	}
+
+	private File writeFile(String name, byte[] content) {
+		File file = new File(dir, name);
+		TFile.writeFile(file, false, content, 0, content.length);
+		return file;
+	}
+
+	private static byte[] toBytes(ByteBuffer byteBuffer) {
+		byte[] bytes = new byte[byteBuffer.remaining()];
+		byteBuffer.get(bytes);
+		return bytes;
+	}
+
+	public void testHitAndInvalidate() {
+		File file = writeFile("a.bin", "first".getBytes());
+
+		StaticFileCache.Entry entry = staticFileCache.get(file);
+		assertEquals("first", new String(toBytes(entry.getContent())));
+		entry.release();
+
+		StaticFileCache.Entry cachedEntry = staticFileCache.get(file);
+		assertSame(entry, cachedEntry);
+		cachedEntry.release();
+
+		//文件修改后由 WatchService 移除缓存
+		writeFile("a.bin", "second".getBytes());
+		TEnv.wait(5000, ()->staticFileCache.size() != 0);
+
+		entry = staticFileCache.get(file);
+		assertEquals("second", new String(toBytes(entry.getContent())));
+		entry.release();
+	}
+
+	public void testEvict() {
+		File first = writeFile("0.bin", new byte[3000]);
+		StaticFileCache.Entry heldEntry = staticFileCache.get(first);
+
+		for(int i=1; i<6; i++) {
+			staticFileCache.get(writeFile(i + ".bin", new byte[3000])).release();
+			assertTrue(staticFileCache.size() <= 10000);
+		}
+
+		//被淘汰的条目在释放前仍然可以使用
+		assertEquals(3000, heldEntry.getContent().remaining());
+		heldEntry.release();
+
+		//超过 maxFileSize 的文件只缓存文件信息
+		StaticFileCache.Entry largeEntry = staticFileCache.get(writeFile("large.bin", new byte[5000]));
+		assertNull(largeEntry.getContent());
+		assertEquals(5000, largeEntry.getLength());
+		largeEntry.release();
+	}
+
+	public void testLruOrder() {
+		//先写入全部文件, 避免加载过程中的文件变化事件使条目不被缓存
+		File[] files = new File[4];
+		for(int i=0; i<4; i++) {
+			files[i] = writeFile(i + ".bin", new byte[3000]);
+		}
+
+		StaticFileCache.Entry[] entries = new StaticFileCache.Entry[3];
+		for(int i=0; i<3; i++) {
+			entries[i] = staticFileCache.get(files[i]);
+			entries[i].release();
+		}
+
+		//访问 0.bin 后, 最久未使用的是 1.bin
+		staticFileCache.get(files[0]).release();
+		staticFileCache.get(files[3]).release();
+
+		StaticFileCache.Entry entry = staticFileCache.get(files[0]);
+		assertSame(entries[0], entry);
+		entry.release();
+
+		entry = staticFileCache.get(files[2]);
+		assertSame(entries[2], entry);
+		entry.release();
+
+		entry = staticFileCache.get(files[1]);
+		assertNotSame(entries[1], entry);
+		entry.release();
+	}
+
+	/**
+	 * 同一个文件同时未命中时只加载一次, 全部请求得到同一个条目
+	 */
+	public void testSingleFlight() throws InterruptedException {
+		staticFileCache.close();
+		staticFileCache = new StaticFileCache(64 * 1024 * 1024, 8 * 1024 * 1024);
+		File file = writeFile("large.bin", new byte[4 * 1024 * 1024]);
+
+		int threadCount = 8;
+		StaticFileCache.Entry[] entries = new StaticFileCache.Entry[threadCount];
+		CountDownLatch startLatch = new CountDownLatch(1);
+		Thread[] threads = new Thread[threadCount];
+		for(int i=0; i<threadCount; i++) {
+			int index = i;
+			threads[i] = new Thread(()->{
+				try {
+					startLatch.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				entries[index] = staticFileCache.get(file);
+			});
+			threads[i].start();
+		}
+
+		startLatch.countDown();
+		for(Thread thread : threads) {
+			thread.join();
+		}
+
+		for(int i=0; i<threadCount; i++) {
+			assertSame(entries[0], entries[i]);
+			assertEquals(4 * 1024 * 1024, entries[i].getContent().remaining());
+			entries[i].release();
+		}
+
+		//只有一份内容计入缓存
+		assertEquals(4 * 1024 * 1024 + 256, staticFileCache.size());
+	}
+
+	/**
+	 * 多线程命中时访问记录批量更新, 缓存的条目和占用的内存保持一致
+	 */
+	public void testConcurrentHit() throws InterruptedException {
+		//先写入全部文件, 避免加载过程中的文件变化事件使条目不被缓存
+		File[] files = new File[4];
+		for(int i=0; i<4; i++) {
+			files[i] = writeFile(i + ".bin", new byte[i == 3 ? 8000 : 1000]);
+		}
+		for(int i=0; i<3; i++) {
+			staticFileCache.get(files[i]).release();
+		}
+		long size = staticFileCache.size();
+
+		AtomicInteger failCount = new AtomicInteger(0);
+		Thread[] threads = new Thread[4];
+		for(int i=0; i<threads.length; i++) {
+			threads[i] = new Thread(()->{
+				for(int j=0; j<10000; j++) {
+					StaticFileCache.Entry entry = staticFileCache.get(files[j % 3]);
+					if(entry == null || entry.getContent().remaining() != 1000) {
+						failCount.incrementAndGet();
+					}
+					entry.release();
+				}
+			});
+			threads[i].start();
+		}
+
+		for(Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(0, failCount.get());
+		assertEquals(size, staticFileCache.size());
+
+		//访问记录更新后仍然按访问顺序淘汰
+		StaticFileCache.Entry entry = staticFileCache.get(files[0]);
+		entry.release();
+		staticFileCache.get(files[3]).release();
+		StaticFileCache.Entry cachedEntry = staticFileCache.get(files[0]);
+		assertSame(entry, cachedEntry);
+		cachedEntry.release();
+	}
+
+	public void testInvalidate() {
+		File file = writeFile("a.bin", "first".getBytes());
+		StaticFileCache.Entry entry = staticFileCache.get(file);
+		entry.release();
+		long size = staticFileCache.size();
+		assertTrue(size > 0);
+
+		staticFileCache.invalidate(new File(dir, "a.bin"));
+		assertEquals(0, staticFileCache.size());
+
+		StaticFileCache.Entry newEntry = staticFileCache.get(file);
+		assertNotSame(entry, newEntry);
+		assertEquals(size, staticFileCache.size());
+		newEntry.release();
+	}
+
+	public void testGzipETag() {
+		File file = writeFile("a.bin", "first".getBytes());
+		StaticFileCache.Entry entry = staticFileCache.get(file);
+		assertEquals(MimeFileRouter.getGzipETag(entry.getETag()), entry.getGzipETag());
+		assertFalse(entry.getETag().equals(entry.getGzipETag()));
+		assertTrue(entry.getGzipETag().endsWith("-gz\""));
+		assertTrue(entry.getMark(false) != entry.getMark(true));
+		entry.release();
+	}
+
+	public void testSharedBody() {
+		ByteBuffer content = ByteBuffer.allocateDirect(16);
+		content.put("helyho".getBytes());
+		content.flip();
+
+		AtomicInteger releaseCount = new AtomicInteger(0);
+		Body body = new Body();
+		body.changeToBuffer(content, 1, releaseCount::incrementAndGet);
+		assertEquals(6, body.size());
+		assertEquals(1, (int) body.getMark());
+		assertEquals("helyho", new String(toBytes(body.getByteBufferView())));
+		assertEquals("helyho", body.getBodyString());
+		assertEquals(0, releaseCount.get());
+
+		//继续写入时复制后归还共享的缓冲区
+		body.write(" voovan");
+		assertEquals(1, releaseCount.get());
+		assertEquals("helyho voovan", body.getBodyString());
+		assertEquals(6, content.remaining());
+
+		body.changeToBuffer(content, 1, releaseCount::incrementAndGet);
+		ByteBuffer byteBuffer = ByteBuffer.allocate(4);
+		assertEquals(4, body.read(byteBuffer));
+		assertEquals("hely", new String(toBytes(byteBuffer)));
+		assertEquals(2, body.size());
+
+		body.clear();
+		assertEquals(2, releaseCount.get());
+		body.release();
+		assertEquals(2, releaseCount.get());
+	}
+}